@@ -1,9 +1,23 @@
 package client;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import entities.Message;
+import entities.MessageCodec;
 import entities.User;
 import ocsf.client.AbstractClient;
 
@@ -19,15 +33,83 @@ public class ChatClient extends AbstractClient {
 	 */
     ChatIF clientUI;
 
-	/**
-     * A static flag indicating whether the client is currently awaiting a response from the server.
+    /**
+     * Maximum time in seconds to wait for the server to answer a request.
+     */
+    public static final long REQUEST_TIMEOUT_SECONDS = 30;
+
+    /**
+     * A static map that stores the last message received from the server for each message type.
+     */
+    public static Map<String, Message<?>> serverMsg;
+
+    /**
+     * Source of the request ids attached to outgoing messages.
+     */
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    /**
+     * Maximum number of requests sent to the server and not yet answered.
+     * Further requests wait on the client until an earlier one completes.
+     */
+    public static final int MAX_IN_FLIGHT = Math.max(1, Integer.getInteger("biteme.client.maxInFlight", 8));
+
+    /**
+     * Requests that are still waiting for their response, by request id.
+     */
+    private final Map<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Requests waiting for a free slot in the in-flight window, in the order they were made.
+     * Guarded by this client.
+     */
+    private final Queue<PendingRequest> queuedRequests = new ArrayDeque<>();
+
+    /**
+     * Number of requests sent to the server and not answered yet. Guarded by this client.
+     */
+    private int inFlight;
+
+    /**
+     * Number of times a request refused with SERVER_BUSY is sent again before the
+     * SERVER_BUSY response is handed to the caller.
+     */
+    public static final int MAX_BUSY_RETRIES = Math.max(0, Integer.getInteger("biteme.client.busyRetries", 3));
+
+    /**
+     * Sends refused requests again once the delay asked by the server has passed.
+     */
+    private static final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "request-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Whether to connect with the length-prefixed framing of the server's NIO transport
+     * instead of the OCSF object stream. Selected with -Dbiteme.transport=nio.
+     */
+    public static final boolean FRAMED_TRANSPORT = "nio".equalsIgnoreCase(System.getProperty("biteme.transport", "ocsf"));
+
+    /**
+     * Whether to offer the binary message codec to the server. Disabled with -Dbiteme.codec=java.
+     */
+    public static final boolean BINARY_CODEC = !"java".equalsIgnoreCase(System.getProperty("biteme.codec", "binary"));
+
+    /**
+     * Whether the server accepted the binary codec for this connection.
      */
-    public static boolean awaitResponse = false;
+    private volatile boolean binaryCodec;
 
     /**
-     * A static HashMap that stores messages received from the server.
+     * The connection used when {@link #FRAMED_TRANSPORT} is selected, null otherwise.
      */
-    public static HashMap<String, Message<?>> serverMsg;
+    private FramedConnection framedConnection;
+
+    /**
+     * Listeners receiving the messages the server pushes without a request, such as order changes.
+     */
+    private final List<Consumer<Message<?>>> pushListeners = new CopyOnWriteArrayList<>();
 
     /**
      * A static User object that represents the currently logged-in user.
@@ -45,7 +127,7 @@ public class ChatClient extends AbstractClient {
     public ChatClient(String host, int port, ChatIF clientUI) throws IOException {
         super(host, port);
         this.clientUI = clientUI;
-        serverMsg = new HashMap<>();
+        serverMsg = new ConcurrentHashMap<>();
     }
     
 	/**
@@ -54,18 +136,59 @@ public class ChatClient extends AbstractClient {
 	 * @throws IOException If an I/O error occurs while connecting to the server.
 	 */
     public void join() throws IOException {
-        openConnection();
-        System.out.println("Connection opened to server: " + getHost() + ":" + getPort());    }
+        if (FRAMED_TRANSPORT) {
+            framedConnection = new FramedConnection(getHost(), getPort(), this);
+        } else {
+            openConnection();
+        }
+        System.out.println("Connection opened to server: " + getHost() + ":" + getPort());
+        if (BINARY_CODEC) {
+            negotiateCodec();
+        }
+    }
+
+    /**
+     * Offers the binary message codec to the server.
+     * Requests keep using Java serialization until the server accepts; a server that
+     * does not know the codec never answers, and the client simply stays on Java serialization.
+     */
+    private void negotiateCodec() {
+        sendRequest(new Message<>(MessageCodec.HELLO, MessageCodec.VERSION)).whenComplete((response, error) -> {
+            if (error == null && Integer.valueOf(MessageCodec.VERSION).equals(response.getType())) {
+                binaryCodec = true;
+                System.out.println("Using binary message codec version " + MessageCodec.VERSION);
+            }
+        });
+    }
 
     /**
      * Handles messages received from the server.
+     * The message is stored by type for callers using getResponse, and the request
+     * waiting for it (if any) is completed directly.
      *
      * @param msg The message received from the server.
      */
     @Override
     protected void handleMessageFromServer(Object msg) {
+        if (msg instanceof byte[]) {
+            try {
+                msg = MessageCodec.decode((byte[]) msg);
+            } catch (IOException e) {
+                System.out.println("Invalid binary message from server: " + e.getMessage());
+                return;
+            }
+        }
         if (msg instanceof Message) {
             Message<?> messageFromServer = (Message<?>) msg;
+            if ("SERVER_BUSY".equals(messageFromServer.getMessage()) && retryLater(messageFromServer)) {
+                return;
+            }
+            if (messageFromServer.getRequestId() == 0 && isPushMessage(messageFromServer.getMessage())) {
+                for (Consumer<Message<?>> listener : pushListeners) {
+                    listener.accept(messageFromServer);
+                }
+                return;
+            }
             String message = messageFromServer.getMessage();
             switch (message) {
                 case "LOGIN_SUCCESS":
@@ -103,6 +226,7 @@ public class ChatClient extends AbstractClient {
                     break;
                 case "ORDER_PLACED_SUCCESSFULLY":
                 case "ORDER_PLACEMENT_FAILED":
+                case "ORDER_OUT_OF_STOCK":
                     serverMsg.put("PLACE_ORDER", messageFromServer);
                     break;
                 case "GET_CUSTOMER_ORDERS_RESPONSE":
@@ -138,8 +262,197 @@ public class ChatClient extends AbstractClient {
                     serverMsg.put(messageFromServer.getMessage(), messageFromServer);
                     break;
             }
+            completeRequest(messageFromServer);
+        }
+    }
+
+    /**
+     * Checks whether a message name is one the server pushes on its own.
+     *
+     * @param message The message name.
+     * @return true for pushed order changes.
+     */
+    private static boolean isPushMessage(String message) {
+        return "ORDER_CREATED".equals(message) || "ORDER_STATUS_CHANGED".equals(message);
+    }
+
+    /**
+     * Registers a listener for the messages the server pushes without a request.
+     * Listeners are called on the connection reader thread.
+     *
+     * @param listener The listener to add.
+     */
+    public void addPushListener(Consumer<Message<?>> listener) {
+        pushListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addPushListener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removePushListener(Consumer<Message<?>> listener) {
+        pushListeners.remove(listener);
+    }
+
+    /**
+     * Schedules a request the server refused as busy to be sent again after the delay
+     * the server asked for, plus some jitter so refused clients do not all come back at once.
+     * The request gives up its window slot meanwhile, so other requests are not held back.
+     *
+     * @param busy The SERVER_BUSY response, carrying the retry delay in milliseconds.
+     * @return false if the request is unknown or ran out of retries, so the response
+     *         should be handed to the caller.
+     */
+    private boolean retryLater(Message<?> busy) {
+        PendingRequest pending = pendingRequests.get(busy.getRequestId());
+        if (pending == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (pending.retries >= MAX_BUSY_RETRIES) {
+                return false;
+            }
+            pending.retries++;
+            if (pending.sent) {
+                pending.sent = false;
+                inFlight--;
+            }
+        }
+        long retryAfter = busy.getType() instanceof Number ? ((Number) busy.getType()).longValue() : 250;
+        long delay = retryAfter + ThreadLocalRandom.current().nextLong(retryAfter / 2 + 1);
+        System.out.println("Server busy, retrying " + pending.message.getMessage() + " in " + delay + " ms");
+        retryScheduler.schedule(() -> {
+            synchronized (this) {
+                if (!pending.future.isDone()) {
+                    queuedRequests.add(pending);
+                }
+            }
+            sendQueuedRequests();
+        }, delay, TimeUnit.MILLISECONDS);
+        sendQueuedRequests();
+        return true;
+    }
+
+    /**
+     * Completes the pending request the given response belongs to.
+     *
+     * @param response The response received from the server.
+     */
+    private void completeRequest(Message<?> response) {
+        if (response.getRequestId() == 0) {
+            return;
+        }
+        PendingRequest pending = pendingRequests.get(response.getRequestId());
+        if (pending != null) {
+            pending.future.complete(response);
+        }
+    }
+
+    /**
+     * Sends a request to the server without waiting for the response.
+     * The message is tagged with a new request id; the returned future is completed
+     * with the response carrying the same id, or fails if the server does not answer in time.
+     * Up to {@link #MAX_IN_FLIGHT} requests are pipelined on the connection; the rest
+     * are sent as soon as earlier requests complete.
+     *
+     * @param message The message to send to the server.
+     * @return A future completed with the server's response.
+     */
+    public CompletableFuture<Message<?>> sendRequest(Message<?> message) {
+        long requestId = nextRequestId.incrementAndGet();
+        message.setRequestId(requestId);
+        PendingRequest pending = new PendingRequest(message);
+        pendingRequests.put(requestId, pending);
+        synchronized (this) {
+            queuedRequests.add(pending);
+        }
+        pending.future.orTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                      .whenComplete((response, error) -> requestCompleted(pending));
+        sendQueuedRequests();
+        return pending.future;
+    }
+
+    /**
+     * Sends queued requests while the in-flight window has room.
+     */
+    private synchronized void sendQueuedRequests() {
+        while (inFlight < MAX_IN_FLIGHT && !queuedRequests.isEmpty()) {
+            PendingRequest pending = queuedRequests.poll();
+            if (pending.future.isDone()) {
+                continue;
+            }
+            pending.sent = true;
+            inFlight++;
+            try {
+                transmit(pending.message);
+            } catch (IOException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a message to the connection in use, with the binary codec once negotiated.
+     *
+     * @param message The message to write.
+     * @throws IOException if the message cannot be written.
+     */
+    private void transmit(Message<?> message) throws IOException {
+        Object payload = binaryCodec ? MessageCodec.encode(message) : message;
+        if (framedConnection != null) {
+            framedConnection.send(payload);
+        } else {
+            super.sendToServer(payload);
+        }
+    }
+
+    /**
+     * Releases the window slot of a completed request and sends the next queued ones.
+     *
+     * @param pending The request that completed.
+     */
+    private void requestCompleted(PendingRequest pending) {
+        pendingRequests.remove(pending.message.getRequestId());
+        synchronized (this) {
+            if (pending.sent) {
+                pending.sent = false;
+                inFlight--;
+            } else {
+                queuedRequests.remove(pending);
+            }
+        }
+        sendQueuedRequests();
+    }
+
+    /**
+     * Fails all the requests still waiting for a response.
+     *
+     * @param cause The reason the requests failed.
+     */
+    private void failPendingRequests(Exception cause) {
+        for (PendingRequest pending : pendingRequests.values()) {
+            pending.future.completeExceptionally(cause);
         }
-        awaitResponse = false;
+        pendingRequests.clear();
+    }
+
+    /**
+     * Called when the connection to the server is closed.
+     */
+    @Override
+    protected void connectionClosed() {
+        failPendingRequests(new IOException("Connection to server closed"));
+    }
+
+    /**
+     * Called when the connection to the server fails.
+     *
+     * @param exception The exception raised by the connection.
+     */
+    @Override
+    protected void connectionException(Exception exception) {
+        failPendingRequests(exception);
     }
 
     /**
@@ -149,18 +462,10 @@ public class ChatClient extends AbstractClient {
      */
     public void sendToServer(Message<?> message) {
         try {
-            awaitResponse = true;
-            super.sendToServer(message);
-            
-            // Wait for response
-            while (awaitResponse) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        } catch (IOException e) {
+            sendRequest(message).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
             e.printStackTrace();
         }
     }
@@ -175,4 +480,31 @@ public class ChatClient extends AbstractClient {
     	System.out.println(messageType);
         return serverMsg.get(messageType);
     }
+
+    /**
+     * A request made through sendRequest, from the time it is queued until its response arrives.
+     */
+    private static final class PendingRequest {
+
+        /** The request message, already tagged with its request id */
+        private final Message<?> message;
+
+        /** The future completed with the response */
+        private final CompletableFuture<Message<?>> future = new CompletableFuture<>();
+
+        /** Whether the request was written to the connection and holds a window slot */
+        private boolean sent;
+
+        /** Number of times the request was sent again after a SERVER_BUSY response */
+        private int retries;
+
+        /**
+         * Creates a pending request.
+         *
+         * @param message The request message.
+         */
+        PendingRequest(Message<?> message) {
+            this.message = message;
+        }
+    }
 }
\ No newline at end of file
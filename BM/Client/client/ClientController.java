@@ -2,9 +2,18 @@ package client;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import entities.MenuRequest;
+import entities.MenuUpdate;
 import entities.Message;
 import entities.Order;
+import entities.OrderPageRequest;
 import entities.User;
 
 /**
@@ -18,6 +27,11 @@ public class ClientController implements ChatIF {
      */
     private ChatClient client;
 
+    /**
+     * The menus received from the server, with their version, by restaurant ID.
+     */
+    private final Map<String, MenuUpdate> menus = new ConcurrentHashMap<>();
+
     /**
      * Constructs an instance of the ClientController.
      *
@@ -47,6 +61,18 @@ public class ClientController implements ChatIF {
         }
     }
 
+    /**
+     * Sends a request to the server without blocking the caller.
+     * The returned future is completed on the client reader thread, so callers
+     * updating the UI must use Platform.runLater.
+     *
+     * @param msg The request to send to the server.
+     * @return A future completed with the server's response to this request.
+     */
+    public CompletableFuture<Message<?>> sendRequest(Message<?> msg) {
+        return client.sendRequest(msg);
+    }
+
     /**
      * Retrieves the response from the server for a given message type.
      * 
@@ -111,45 +137,79 @@ public class ClientController implements ChatIF {
     }
     
     /**
-     * Sends an income report request to the server and retrieves the response.
+     * Sends an income report request to the server.
      * @param startDate The start date for the report period.
      * @param endDate The end date for the report period.
      * @param managerId The ID of the manager requesting the report.
-     * @return A Message object containing the server's response to the income report request.
+     * @return A future completed with the server's response to the income report request.
      */
-    public Message<?> handleIncomeReport(LocalDate startDate, LocalDate endDate, String managerId) {
+    public CompletableFuture<Message<?>> handleIncomeReport(LocalDate startDate, LocalDate endDate, String managerId) {
         Object[] params = new Object[]{startDate, endDate, managerId};
-        Message<Object[]> incomeReportMsg = new Message<>("INCOME_REPORT", params);
-        accept(incomeReportMsg);
-        return getResponse("INCOME_REPORT_RESPONSE");
+        return sendRequest(new Message<>("IncomeReport", params));
     }
 
     /**
-     * Sends an orders report request to the server and retrieves the response.
+     * Sends an orders report request to the server.
      * @param startDate The start date for the report period.
      * @param endDate The end date for the report period.
      * @param managerId The ID of the manager requesting the report.
-     * @return A Message object containing the server's response to the orders report request.
+     * @return A future completed with the server's response to the orders report request.
      */
-    public Message<?> handleOrdersReport(LocalDate startDate, LocalDate endDate, String managerId) {
-        Object[] params = new Object[]{startDate, endDate, managerId};
-        Message<Object[]> ordersReportMsg = new Message<>("ORDERS_REPORT", params);
-        accept(ordersReportMsg);
-        return getResponse("ORDER_REPORT_RESPONSE");
+    public CompletableFuture<Message<?>> handleOrdersReport(LocalDate startDate, LocalDate endDate, String managerId) {
+        return handleOrdersReport(startDate, endDate, managerId, false);
+    }
+
+    /**
+     * Sends an orders report request to the server, optionally asking for the item lines.
+     * @param startDate The start date for the report period.
+     * @param endDate The end date for the report period.
+     * @param managerId The ID of the manager requesting the report.
+     * @param detail Whether the report should carry its item lines, as an OrdersReportDetail.
+     * @return A future completed with the server's response to the orders report request.
+     */
+    public CompletableFuture<Message<?>> handleOrdersReport(LocalDate startDate, LocalDate endDate, String managerId,
+            boolean detail) {
+        Object[] params = new Object[]{startDate, endDate, managerId, detail};
+        return sendRequest(new Message<>("OrdersReport", params));
     }
 
     /**
-     * Sends a performance report request to the server and retrieves the response.
+     * Sends a performance report request to the server.
      * @param startDate The start date for the report period.
      * @param endDate The end date for the report period.
      * @param managerId The ID of the manager requesting the report.
-     * @return A Message object containing the server's response to the performance report request.
+     * @return A future completed with the server's response to the performance report request.
      */
-    public Message<?> handlePerformanceReport(LocalDate startDate, LocalDate endDate, String managerId) {
+    public CompletableFuture<Message<?>> handlePerformanceReport(LocalDate startDate, LocalDate endDate, String managerId) {
         Object[] params = new Object[]{startDate, endDate, managerId};
-        Message<Object[]> performanceReportMsg = new Message<>("PERFORMANCE_REPORT", params);
-        accept(performanceReportMsg);
-        return getResponse("PERFORMANCE_REPORT_RESPONSE");
+        return sendRequest(new Message<>("PerformanceReport", params));
+    }
+
+    /**
+     * Sends a request for the same report of several branches, answered in one response
+     * holding the report of every branch by branch.
+     * @param reportType The report: "income", "orders" or "performance".
+     * @param startDate The start date for the report period.
+     * @param endDate The end date for the report period.
+     * @param branches The branches to report on.
+     * @return A future completed with the server's response; its content is null if a branch failed.
+     */
+    public CompletableFuture<Message<?>> handleBranchReports(String reportType, LocalDate startDate, LocalDate endDate,
+            List<String> branches) {
+        Object[] params = new Object[]{reportType, startDate, endDate, new ArrayList<>(branches)};
+        return sendRequest(new Message<>("BranchReports", params));
+    }
+
+    /**
+     * Sends a quarterly report request to the server.
+     * @param quarter The quarter of the report (1-4).
+     * @param year The year of the report.
+     * @param branch The branch the report is generated for.
+     * @return A future completed with the server's response to the quarterly report request.
+     */
+    public CompletableFuture<Message<?>> handleQuarterlyReport(int quarter, int year, String branch) {
+        Object[] params = new Object[]{quarter, year, branch};
+        return sendRequest(new Message<>("QuarterlyReport", params));
     }
 
     /**
@@ -165,64 +225,105 @@ public class ClientController implements ChatIF {
     }
     
     /**
-     * Sends a request to get all restaurants from the server and retrieves the response.
-     * @return A Message object containing the server's response with the list of restaurants.
+     * Sends a request to get all restaurants from the server.
+     * @return A future completed with the server's response with the list of restaurants.
      */
-    public Message<?> getRestaurants() {
-        Message<Void> getRestaurantsMsg = new Message<>("GET_RESTAURANTS", null);
-        accept(getRestaurantsMsg);
-        return getResponse("GET_RESTAURANTS");
+    public CompletableFuture<Message<?>> getRestaurants() {
+        return sendRequest(new Message<Void>("GET_RESTAURANTS", null));
     }
 
     /**
-     * Sends a request to get menu items for a specific restaurant from the server and retrieves the response.
+     * Sends a request to get menu items for a specific restaurant from the server.
+     * The menus already received are kept with their version; the server then sends
+     * only the items changed since, or nothing if the menu did not change.
      * @param restaurantId The ID of the restaurant to get menu items for.
-     * @return A Message object containing the server's response with the list of menu items.
+     * @return A future completed with the server's response with the list of menu items.
      */
-    public Message<?> getMenuItems(String restaurantId) {
+    public CompletableFuture<Message<?>> getMenuItems(String restaurantId) {
         System.out.println("Requesting menu items for restaurant ID: " + restaurantId);
-        Message<String> getMenuItemsMsg = new Message<>("GET_MENU_ITEMS", restaurantId);
-        accept(getMenuItemsMsg);
-        Message<?> response = getResponse("GET_MENU_ITEMS");
-        System.out.println("Received response for menu items: " + response);
-        return response;
+        MenuUpdate cached = menus.get(restaurantId);
+        MenuRequest request = new MenuRequest(restaurantId, cached != null ? cached.getVersion() : 0);
+        return sendRequest(new Message<>("GET_MENU_ITEMS", request)).thenApply(response -> {
+            if (!(response.getType() instanceof MenuUpdate)) {
+                return response;
+            }
+            MenuUpdate menu = ((MenuUpdate) response.getType()).applyTo(menus.get(restaurantId));
+            menus.put(restaurantId, menu);
+            return new Message<>(response.getMessage(), new ArrayList<>(menu.getItems()));
+        });
     }
 
     /**
-     * Sends a request to place a new order to the server and retrieves the response.
+     * Sends a request to place a new order to the server.
      * @param order The Order object containing the details of the new order.
-     * @return A Message object containing the server's response to the order placement.
+     * @return A future completed with the server's response to the order placement.
      */
-    public Message<?> placeOrder(Order order) {
-        Message<Order> placeOrderMsg = new Message<>("PLACE_ORDER", order);
-        accept(placeOrderMsg);
-        return getResponse("PLACE_ORDER");
+    public CompletableFuture<Message<?>> placeOrder(Order order) {
+        return sendRequest(new Message<>("PLACE_ORDER", order));
     }
     
     /**
-     * Sends a request to get orders for a specific customer from the server and retrieves the response.
+     * Sends a request to get orders for a specific customer from the server.
      * @param customerId The ID of the customer to get orders for.
-     * @return A Message object containing the server's response with the list of orders.
+     * @return A future completed with the server's response with the list of orders.
      */
-    public Message<?> getCustomerOrders(String customerId) {
-        Message<String> getCustomerOrdersMsg = new Message<>("GET_CUSTOMER_ORDERS", customerId);
-        accept(getCustomerOrdersMsg);
-        return getResponse("GET_CUSTOMER_ORDERS");
+    public CompletableFuture<Message<?>> getCustomerOrders(String customerId) {
+        return sendRequest(new Message<>("GET_CUSTOMER_ORDERS", customerId));
     }
     
-	 /**
-	 * Sends a request to retrieve the menu items for a specified restaurant.
-	 * This method creates a message containing the restaurant ID and sends it to the server.
-	 * It then waits for a response with the menu items and returns it.
-	 * @param restaurantid The ID of the restaurant to fetch menu items for.
-	 * @return A message containing the restaurant's menu items or an empty message if no menu items were found.
+	/**
+	 * Sends a request to retrieve the open orders of a specified restaurant.
+	 * @param restaurantid The ID of the restaurant to fetch orders for.
+	 * @return A future completed with the server's response containing the restaurant's orders.
 	 */
-	public Message<?> handleGetRestaurantOrders(String restaurantid) {
-	    Message<String> getRestaurantOrdersMsg = new Message<>("RESTAURANT_ORDERS",(String)restaurantid);
-	    accept(getRestaurantOrdersMsg);
-	    return getResponse("RESTAURANT_ORDERS");
+	public CompletableFuture<Message<?>> handleGetRestaurantOrders(String restaurantid) {
+	    return sendRequest(new Message<>("RESTAURANT_ORDERS", restaurantid));
 	}
 	
+    /**
+     * Sends a request for one page of a customer's order history, most recent first.
+     * @param request The customer, the cursor of the last order received and the page size.
+     * @return A future completed with the server's response carrying an OrderPage.
+     */
+    public CompletableFuture<Message<?>> getCustomerOrdersPage(OrderPageRequest request) {
+        return sendRequest(new Message<>("GET_CUSTOMER_ORDERS_PAGE", request));
+    }
+
+    /**
+     * Sends a request for one page of a restaurant's open orders, oldest first.
+     * @param request The restaurant, the cursor of the last order received and the page size.
+     * @return A future completed with the server's response carrying an OrderPage.
+     */
+    public CompletableFuture<Message<?>> getRestaurantOrdersPage(OrderPageRequest request) {
+        return sendRequest(new Message<>("RESTAURANT_ORDERS_PAGE", request));
+    }
+
+    /**
+     * Subscribes to the order changes of a restaurant.
+     * The listener receives every ORDER_CREATED and ORDER_STATUS_CHANGED message the server
+     * pushes, on the client reader thread, so it must use Platform.runLater for UI updates.
+     *
+     * @param restaurantId The ID of the restaurant to follow.
+     * @param listener The listener receiving the pushed order changes.
+     * @return A future completed when the server confirmed the subscription.
+     */
+    public CompletableFuture<Message<?>> subscribeRestaurantOrders(String restaurantId, Consumer<Message<?>> listener) {
+        client.addPushListener(listener);
+        return sendRequest(new Message<>("SUBSCRIBE_RESTAURANT_ORDERS", restaurantId));
+    }
+
+    /**
+     * Cancels a subscription made with subscribeRestaurantOrders.
+     *
+     * @param restaurantId The ID of the restaurant.
+     * @param listener The listener given when subscribing.
+     * @return A future completed when the server confirmed the cancellation.
+     */
+    public CompletableFuture<Message<?>> unsubscribeRestaurantOrders(String restaurantId, Consumer<Message<?>> listener) {
+        client.removePushListener(listener);
+        return sendRequest(new Message<>("UNSUBSCRIBE_RESTAURANT_ORDERS", restaurantId));
+    }
+
     /**
      * Sends a request to update the status of an order.
      * 
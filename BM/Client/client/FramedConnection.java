@@ -0,0 +1,143 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import entities.MessageCodec;
+
+/**
+ * A blocking client connection that speaks the length-prefixed framing of the server's
+ * NIO transport: every message is a 4 byte big-endian length followed by the Java
+ * serialization of the message, or by a binary codec frame passed as a byte array. Messages read from the server are handed to the
+ * ChatClient on a dedicated reader thread, exactly like the OCSF client does.
+ */
+public class FramedConnection implements Runnable {
+
+    /** Largest frame accepted from the server */
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    /** The client receiving the messages */
+    private final ChatClient client;
+
+    /** The socket connected to the server */
+    private final Socket socket;
+
+    /** Stream used to write frames */
+    private final DataOutputStream output;
+
+    /** Stream used to read frames */
+    private final DataInputStream input;
+
+    /** Whether the connection was closed on purpose */
+    private volatile boolean closing;
+
+    /**
+     * Connects to the server and starts the reader thread.
+     *
+     * @param host The server host
+     * @param port The server port
+     * @param client The client receiving the messages
+     * @throws IOException if the connection cannot be opened
+     */
+    public FramedConnection(String host, int port, ChatClient client) throws IOException {
+        this.client = client;
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread(this, "framed-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sends a message to the server as one frame.
+     *
+     * @param msg The message to send
+     * @throws IOException if the message cannot be sent
+     */
+    public void send(Object msg) throws IOException {
+        byte[] body;
+        if (msg instanceof byte[]) {
+            body = (byte[]) msg;
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(msg);
+            }
+            body = bytes.toByteArray();
+        }
+        synchronized (output) {
+            output.writeInt(body.length);
+            output.write(body);
+            output.flush();
+        }
+    }
+
+    /**
+     * Reads frames until the connection is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closing) {
+                int length = input.readInt();
+                if (length <= 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                byte[] body = new byte[length];
+                input.readFully(body);
+                if (MessageCodec.isBinaryFrame(body)) {
+                    client.handleMessageFromServer(body);
+                    continue;
+                }
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body))) {
+                    client.handleMessageFromServer(in.readObject());
+                }
+            }
+        } catch (Exception e) {
+            if (!closing) {
+                closeQuietly();
+                client.connectionException(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection to the server.
+     *
+     * @throws IOException if the socket cannot be closed cleanly
+     */
+    public void close() throws IOException {
+        closing = true;
+        socket.close();
+    }
+
+    /**
+     * Closes the connection, ignoring any error.
+     */
+    private void closeQuietly() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // The connection already failed
+        }
+    }
+
+    /**
+     * Checks whether the connection is open.
+     *
+     * @return true if the socket is connected and not closed
+     */
+    public boolean isConnected() {
+        return socket.isConnected() && !socket.isClosed();
+    }
+}
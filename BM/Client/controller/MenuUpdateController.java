@@ -8,6 +8,7 @@ import java.util.ResourceBundle;
 import client.ClientController;
 import entities.MenuItem;
 import entities.Message;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Alert;
@@ -99,23 +100,22 @@ public class MenuUpdateController implements Initializable {
 
     /**
      * Loads menu items for the current restaurant from the server.
+     * The request is sent asynchronously and the combo box is filled when the response arrives.
      */
-    @SuppressWarnings("unchecked")
 	private void loadMenuItems() {
-        try {
-            System.out.println("Current Restaurant ID: " + currentRestaurantId);
-            Message<?> response = clientController.getMenuItems(currentRestaurantId);
-
-            if (response != null && response.getType() instanceof List<?>) {
+        System.out.println("Current Restaurant ID: " + currentRestaurantId);
+        clientController.getMenuItems(currentRestaurantId).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showAlert(AlertType.ERROR, "Error", "Error loading menu items: " + error.getMessage());
+            } else if (response != null && response.getType() instanceof List<?>) {
+                @SuppressWarnings("unchecked")
                 List<MenuItem> menuItems = (List<MenuItem>) response.getType();
                 menuItemsComboBox.getItems().clear();
                 menuItemsComboBox.getItems().addAll(menuItems);
             } else {
                 showAlert(AlertType.INFORMATION, "No Items", "No menu items found.");
             }
-        } catch (Exception e) {
-            showAlert(AlertType.ERROR, "Error", "Error loading menu items: " + e.getMessage());
-        }
+        }));
     }
 
     /**
@@ -9,7 +9,6 @@ import javafx.fxml.Initializable;
 
 import client.ChatClient;
 import client.ClientController;
-import entities.Message;
 import entities.Order;
 import entities.Order.DeliveryType;
 import entities.Order.OrderStatus;
@@ -388,31 +387,30 @@ public class OrderController implements Initializable {
             return;
         }
         
-        Message<Void> getMessage = new Message<>("GET_RESTAURANTS", null);
-        clientController.accept(getMessage);
-        Message<?> response = clientController.getResponse("GET_RESTAURANTS");
-        System.out.println("Received response: " + response);
-        if (response != null) {
-            if (response.getType() instanceof List) {
-                @SuppressWarnings("unchecked")
-				List<Restaurant> restaurants = (List<Restaurant>) response.getType();
-                System.out.println("Received " + restaurants.size() + " restaurants");
-                if (restaurants.isEmpty()) {
-                    Platform.runLater(() -> showAlert(Alert.AlertType.INFORMATION, "No Restaurants", "There are currently no restaurants available."));
+        clientController.getRestaurants().whenComplete((response, error) -> {
+            System.out.println("Received response: " + response);
+            if (error == null && response != null) {
+                if (response.getType() instanceof List) {
+                    @SuppressWarnings("unchecked")
+                    List<Restaurant> restaurants = (List<Restaurant>) response.getType();
+                    System.out.println("Received " + restaurants.size() + " restaurants");
+                    if (restaurants.isEmpty()) {
+                        Platform.runLater(() -> showAlert(Alert.AlertType.INFORMATION, "No Restaurants", "There are currently no restaurants available."));
+                    } else {
+                        Platform.runLater(() -> {
+                            restaurantComboBox.getItems().clear();
+                            restaurantComboBox.getItems().addAll(restaurants);
+                        });
+                    }
                 } else {
-                    Platform.runLater(() -> {
-                        restaurantComboBox.getItems().clear();
-                        restaurantComboBox.getItems().addAll(restaurants);
-                    });
+                    System.out.println("Error: Response type is not a List. Actual type: " + response.getType());
+                    Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "Unexpected response from server. Please try again later."));
                 }
             } else {
-                System.out.println("Error: Response type is not a List. Actual type: " + response.getType().getClass().getName());
-                Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "Unexpected response from server. Please try again later."));
+                System.out.println("Error: Received no response from server");
+                Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "No response from server. Please check your connection and try again."));
             }
-        } else {
-            System.out.println("Error: Received null response from server");
-            Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "No response from server. Please check your connection and try again."));
-        }
+        });
     }
 
     /**
@@ -424,19 +422,14 @@ public class OrderController implements Initializable {
         Restaurant selectedRestaurant = restaurantComboBox.getValue();
         if (selectedRestaurant != null) {
             System.out.println("Selected Restaurant: " + selectedRestaurant.getName() + " ID: " + selectedRestaurant.getRestaurantId());
-            Message<String> getMessage = new Message<>("GET_MENU_ITEMS", selectedRestaurant.getRestaurantId());
-            clientController.accept(getMessage);
-
-            try {
-                Message<?> response = clientController.getResponse("GET_MENU_ITEMS");
+            clientController.getMenuItems(selectedRestaurant.getRestaurantId()).whenComplete((response, error) -> {
                 System.out.println("Received response for menu items: " + response);
-
-                if (response != null && response.getType() instanceof List) {
+                if (error != null) {
+                    error.printStackTrace();
+                    Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Exception", "An error occurred: " + error.getMessage()));
+                } else if (response != null && response.getType() instanceof List) {
                     List<?> menuItems = (List<?>) response.getType();
                     System.out.println("Number of menu items received: " + menuItems.size());
-                    for (Object item : menuItems) {
-                        System.out.println("Item: " + item);
-                    }
                     Platform.runLater(() -> {
                         populateMenuComboBoxes((List<MenuItem>) menuItems);
                         if (menuItems.isEmpty()) {
@@ -447,10 +440,7 @@ public class OrderController implements Initializable {
                     System.out.println("Response is not a List or is null");
                     Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "Failed to load menu items."));
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Exception", "An error occurred: " + e.getMessage()));
-            }
+            });
         } else {
             Platform.runLater(() -> showAlert(Alert.AlertType.WARNING, "Warning", "Please select a restaurant."));
         }
@@ -526,26 +516,28 @@ public class OrderController implements Initializable {
         Order order = createOrder();
         if (showOrderConfirmation(order)) {
             order.setPayed(true); // Set isPayed to true after confirmation
-            Message<?> response = clientController.placeOrder(order);
-
-            if (response != null && response.getMessage().equals("ORDER_PLACED_SUCCESSFULLY")) {
-                showAlert(Alert.AlertType.INFORMATION, "Order Placed", "Your order has been placed successfully!");
-                
-                // Close the current order stage
-                Stage currentStage = (Stage) placeOrderButton.getScene().getWindow();
-                currentStage.close();
-                
-                // Show the customer stage
-                if (customerStage != null) {
-                    Platform.runLater(() -> {
+            placeOrderButton.setDisable(true);
+            clientController.placeOrder(order).whenComplete((response, error) -> Platform.runLater(() -> {
+                placeOrderButton.setDisable(false);
+                if (error == null && response != null && response.getMessage().equals("ORDER_PLACED_SUCCESSFULLY")) {
+                    showAlert(Alert.AlertType.INFORMATION, "Order Placed", "Your order has been placed successfully!");
+                    
+                    // Close the current order stage
+                    Stage currentStage = (Stage) placeOrderButton.getScene().getWindow();
+                    currentStage.close();
+                    
+                    // Show the customer stage
+                    if (customerStage != null) {
                         customerStage.show();
-                    });
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Navigation Error", "Unable to return to the customer page.");
+                    }
+                } else if (error == null && response != null && response.getMessage().equals("ORDER_OUT_OF_STOCK")) {
+                    showAlert(Alert.AlertType.WARNING, "Out of Stock", response.getType() + "\nPlease update your order and try again.");
                 } else {
-                    showAlert(Alert.AlertType.ERROR, "Navigation Error", "Unable to return to the customer page.");
+                    showAlert(Alert.AlertType.ERROR, "Order Failed", "Failed to place order. Please try again.");
                 }
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Order Failed", "Failed to place order. Please try again.");
-            }
+            }));
         }
     }
 
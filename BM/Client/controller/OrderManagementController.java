@@ -2,13 +2,11 @@ package controller;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.ResourceBundle;
+import java.util.function.Consumer;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -16,14 +14,16 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.SelectionMode;
-import javafx.util.Duration;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import client.ClientController;
 import entities.Message;
 import entities.Order;
+import entities.OrderPage;
+import entities.OrderPageRequest;
 
 /**
  * Controller class for managing orders in the restaurant system.
@@ -86,6 +86,36 @@ public class OrderManagementController implements Initializable {
 	 */
 	private ControllerCommunicationUtility communicationUtility;
 
+	/**
+	 * Receives the order changes the server pushes for this restaurant.
+	 */
+	private final Consumer<Message<?>> orderEventListener = this::handleOrderEvent;
+
+	/**
+	 * Number of orders requested per page.
+	 */
+	private static final int PAGE_SIZE = 25;
+
+	/**
+	 * How close to the end of the loaded orders a visible cell triggers loading the next page.
+	 */
+	private static final int PREFETCH_DISTANCE = 5;
+
+	/**
+	 * The request for the next page of orders, null until the first page is requested.
+	 */
+	private OrderPageRequest nextPage;
+
+	/**
+	 * Whether the server has more open orders after the ones loaded.
+	 */
+	private boolean hasMoreOrders;
+
+	/**
+	 * Whether a page request is in progress.
+	 */
+	private boolean loadingPage;
+
     /**
      * Initializes the controller class. This method is automatically called
      * after the FXML file has been loaded.
@@ -95,11 +125,20 @@ public class OrderManagementController implements Initializable {
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        startOrderRefreshTimer();
         ordersList = FXCollections.observableArrayList();
         ordersMap = new HashMap<>();
         ordersListView.setItems(ordersList);
         ordersListView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
+        ordersListView.setCellFactory(list -> new ListCell<String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : item);
+                if (!empty && getIndex() >= getListView().getItems().size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
         
         acceptOrderButton.setOnAction(event -> handleAcceptOrder());
         rejectOrderButton.setOnAction(event -> handleRejectOrder());
@@ -137,15 +176,74 @@ public class OrderManagementController implements Initializable {
 
     /**
      * Sets the restaurant ID for this OrderManagementController.
+     * Subscribes to the restaurant's order changes and then loads the current orders once;
+     * from then on the list is kept up to date by the changes the server pushes.
      *
      * @param restaurantId The ID of the restaurant.
      */
     public void setRestaurantId(String restaurantId) {
         this.restaurantId = restaurantId;
         if (this.clientController != null) {
+            clientController.subscribeRestaurantOrders(restaurantId, orderEventListener);
             loadOrders();
         }
     }
+
+    /**
+     * Stops receiving order changes. Called when the order management window is closed.
+     */
+    public void close() {
+        if (clientController != null && restaurantId != null) {
+            clientController.unsubscribeRestaurantOrders(restaurantId, orderEventListener);
+        }
+    }
+
+    /**
+     * Handles an order change pushed by the server.
+     *
+     * @param event The ORDER_CREATED or ORDER_STATUS_CHANGED message carrying the order.
+     */
+    private void handleOrderEvent(Message<?> event) {
+        if (event.getType() instanceof Order) {
+            Order order = (Order) event.getType();
+            if (order.getRestaurantId() != null && order.getRestaurantId().equals(restaurantId)) {
+                Platform.runLater(() -> applyOrderChange(order));
+            }
+        }
+    }
+
+    /**
+     * Applies an order change to the list. The list shows the same orders as a full reload
+     * would: orders that are pending or being prepared. While later pages are still to be
+     * loaded, an order that is not listed yet is left for its page, which is where it
+     * belongs in the oldest-first order.
+     *
+     * @param order The changed order.
+     */
+    private void applyOrderChange(Order order) {
+        int index = -1;
+        for (int i = 0; i < ordersList.size(); i++) {
+            if (extractOrderIdFromString(ordersList.get(i)) == order.getOrderId()) {
+                index = i;
+                break;
+            }
+        }
+        boolean listed = order.getStatus() == Order.OrderStatus.PENDING || order.getStatus() == Order.OrderStatus.PREPARING;
+        if (listed) {
+            if (index != -1) {
+                ordersList.set(index, order.toString());
+            } else if (!hasMoreOrders) {
+                ordersList.add(order.toString());
+            } else {
+                return;
+            }
+            ordersMap.put(order.getOrderId(), order);
+        } else if (index != -1) {
+            ordersList.remove(index);
+            ordersMap.remove(order.getOrderId());
+        }
+        ordersListView.refresh();
+    }
 	
     /**
      * Retrieves an Order object by its ID from the current list of orders.
@@ -189,29 +287,52 @@ public class OrderManagementController implements Initializable {
     }
     
     /**
-     * Loads orders for the current restaurant from the server.
+     * Loads the open orders of the current restaurant from the server, starting over
+     * from the first page. Later pages are loaded as the list is scrolled.
      */
     private void loadOrders() {
         System.out.println("Loading orders for restaurant ID: " + this.restaurantId);
-        Message<?> response = this.clientController.handleGetRestaurantOrders(this.restaurantId);
-        System.out.println("Response received: " + response);
-        if (response != null && response.getType() instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<Order> orders = (List<Order>) response.getType();
-            System.out.println("Number of orders received: " + orders.size());
-            Platform.runLater(() -> {
-                ordersList.clear();
-                ordersMap.clear();
-                for (Order order : orders) {
-                    ordersList.add(order.toString());
-                    ordersMap.put(order.getOrderId(), order);
+        nextPage = OrderPageRequest.firstPage(restaurantId, PAGE_SIZE);
+        hasMoreOrders = true;
+        loadingPage = false;
+        loadNextPage();
+    }
+
+    /**
+     * Loads the next page of open orders and appends it to the list.
+     * Orders already listed, because a pushed change added them meanwhile, are not repeated.
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMoreOrders || nextPage == null || clientController == null) {
+            return;
+        }
+        loadingPage = true;
+        OrderPageRequest request = nextPage;
+        this.clientController.getRestaurantOrdersPage(request).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (request != nextPage) {
+                return; // The list was reloaded meanwhile
+            }
+            loadingPage = false;
+            if (error == null && response != null && response.getType() instanceof OrderPage) {
+                OrderPage page = (OrderPage) response.getType();
+                System.out.println("Number of orders received: " + page.getOrders().size());
+                if (request.isFirstPage()) {
+                    ordersList.clear();
+                    ordersMap.clear();
+                }
+                for (Order order : page.getOrders()) {
+                    if (ordersMap.put(order.getOrderId(), order) == null) {
+                        ordersList.add(order.toString());
+                    }
                 }
-                ordersListView.setItems(ordersList);
+                nextPage = request.next(page);
+                hasMoreOrders = page.hasMore();
                 ordersListView.refresh();
-            });
-        } else {
-            System.out.println("No orders found or invalid response");
-        }
+            } else {
+                hasMoreOrders = false;
+                System.out.println("No orders found or invalid response");
+            }
+        }));
     }
 
     /**
@@ -259,7 +380,6 @@ public class OrderManagementController implements Initializable {
                     }).start();
 
                     communicationUtility.sendMessage(new Message<>("ORDER_ACCEPTED", selectedOrder.getOrderId()));
-                    refreshOrdersAfterDelay();
                 } else {
                     showAlert("Error", "Failed to confirm the order: " + response.getType());
                 }
@@ -272,22 +392,6 @@ public class OrderManagementController implements Initializable {
         }
     }
     
-    /**
-     * Refreshes the list of orders after a short delay of 2 seconds.
-     * This is useful to ensure the UI reflects any updates after performing an action, 
-     * such as accepting, rejecting, or marking an order as ready.
-     */
-    private void refreshOrdersAfterDelay() {
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000); // 2-second delay
-                Platform.runLater(this::loadOrders);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }).start();
-    }
-    
     /**
      * Handles the action when the Reject Order button is clicked.
      */
@@ -303,7 +407,6 @@ public class OrderManagementController implements Initializable {
                 sendMessageToClient(selectedOrder.getCustomerId(), "Your order #" + selectedOrder.getOrderId() + " has been rejected by the restaurant.");
                 
                 communicationUtility.sendMessage(new Message<>("ORDER_REJECTED", selectedOrder.getOrderId()));
-                loadOrders(); // Refresh the orders
             } catch (Exception e) {
                 showAlert("Error", "An error occurred while rejecting the order: " + e.getMessage());
             }
@@ -356,7 +459,6 @@ public class OrderManagementController implements Initializable {
                     }).start();
 
                     communicationUtility.sendMessage(new Message<>("ORDER_READY", selectedOrder.getOrderId()));
-                    refreshOrdersAfterDelay();
                 } else {
                     showAlert("Error", "Failed to mark the order as ready: " + response.getType());
                 }
@@ -397,18 +499,6 @@ public class OrderManagementController implements Initializable {
         }
     }
     
-    /**
-     * Starts a timer that automatically refreshes the list of orders every 30 seconds.
-     * This ensures that the UI stays up-to-date with any changes in order status or new orders.
-     */
-    private void startOrderRefreshTimer() {
-        Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(30), event -> {
-            loadOrders();
-        }));
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        timeline.play();
-    }
-    
     /**
      * Gets the currently selected order from the list view.
      *
@@ -3,12 +3,13 @@ package controller;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URL;
-import java.util.List;
 import java.util.ResourceBundle;
 
 import client.ClientController;
 import entities.Message;
 import entities.Order;
+import entities.OrderPage;
+import entities.OrderPageRequest;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -70,6 +71,31 @@ public class OrderViewController implements Initializable, PropertyChangeListene
      */
     private ControllerCommunicationUtility communicationUtility;
 
+    /**
+     * Number of orders requested per page.
+     */
+    private static final int PAGE_SIZE = 25;
+
+    /**
+     * How close to the end of the loaded orders a visible cell triggers loading the next page.
+     */
+    private static final int PREFETCH_DISTANCE = 5;
+
+    /**
+     * The request for the next page of orders, null until the first page is requested.
+     */
+    private OrderPageRequest nextPage;
+
+    /**
+     * Whether the server has more orders after the ones loaded.
+     */
+    private boolean hasMoreOrders;
+
+    /**
+     * Whether a page request is in progress.
+     */
+    private boolean loadingPage;
+
     /**
      * Initializes the OrderViewController class. This method is automatically called
      * after the FXML file has been loaded.
@@ -278,6 +304,9 @@ public class OrderViewController implements Initializable, PropertyChangeListene
                         } else {
                             setText("Order #" + item.getOrderId() + " - " + item.getStatus() + 
                                     " - " + item.getDeliveryType());
+                            if (getIndex() >= getListView().getItems().size() - PREFETCH_DISTANCE) {
+                                loadNextPage();
+                            }
                         }
                     }
                 };
@@ -317,34 +346,57 @@ public class OrderViewController implements Initializable, PropertyChangeListene
     }
    
     /**
-     * Loads the orders for the current user and displays them in the UI.
+     * Reloads the orders of the current user from the first page and displays them in the UI.
      */
     public void loadOrders() {
         if (currentUserId == null) {
             showAlert(Alert.AlertType.ERROR, "Error", "User ID not set. Unable to load orders.");
             return;
         }
-        Message<String> getMessage = new Message<>("GET_CUSTOMER_ORDERS", currentUserId);
-        clientController.accept(getMessage);
-        Message<?> response = clientController.getResponse("GET_CUSTOMER_ORDERS");
-        if (response != null && response.getType() instanceof List) {
-            @SuppressWarnings("unchecked")
-			List<Order> orders = (List<Order>) response.getType();
-            Platform.runLater(() -> {
-                if (orders.isEmpty()) {
+        nextPage = OrderPageRequest.firstPage(currentUserId, PAGE_SIZE);
+        hasMoreOrders = true;
+        loadingPage = false;
+        loadNextPage();
+    }
+
+    /**
+     * Loads the next page of orders and appends it to the list.
+     * Called for the first page and then whenever the list is scrolled near its end,
+     * so only the orders the customer actually looks at are fetched.
+     * Must be called on the JavaFX application thread.
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMoreOrders || nextPage == null) {
+            return;
+        }
+        loadingPage = true;
+        OrderPageRequest request = nextPage;
+        clientController.getCustomerOrdersPage(request).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (request != nextPage) {
+                return; // The list was reloaded meanwhile
+            }
+            loadingPage = false;
+            if (error == null && response != null && response.getType() instanceof OrderPage) {
+                OrderPage page = (OrderPage) response.getType();
+                if (request.isFirstPage()) {
+                    ordersListView.getItems().clear();
+                }
+                ordersListView.getItems().addAll(page.getOrders());
+                nextPage = request.next(page);
+                hasMoreOrders = page.hasMore();
+                if (ordersListView.getItems().isEmpty()) {
                     ordersListView.setVisible(false);
                     noOrdersLabel.setText("You have no orders yet.");
                     noOrdersLabel.setVisible(true);
                 } else {
-                    ordersListView.getItems().clear();
-                    ordersListView.getItems().addAll(orders);
                     ordersListView.setVisible(true);
                     noOrdersLabel.setVisible(false);
                 }
-            });
-        } else {
-            showAlert(Alert.AlertType.ERROR, "Error", "Failed to load orders.");
-        }
+            } else {
+                hasMoreOrders = false;
+                showAlert(Alert.AlertType.ERROR, "Error", "Failed to load orders.");
+            }
+        }));
     }
     
     /**
@@ -1,8 +1,9 @@
 package controller;
-import java.math.BigDecimal;
 import java.net.URL;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -11,8 +12,12 @@ import java.util.Optional;
 import java.util.ResourceBundle;
 import javafx.scene.control.DatePicker;
 import client.ClientController;
-import entities.Message;
+import entities.IncomeReport;
+import entities.OrdersReport;
+import entities.PerformanceReport;
+import entities.QuarterlyReport;
 import entities.User;
+import javafx.application.Platform;
 
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -52,6 +57,16 @@ import javafx.util.StringConverter;
  */
 public class ReportController implements Initializable  {
     
+	/**
+	 * Choice of the CEO branch selectors that reports on every branch at once.
+	 */
+	private static final String ALL_BRANCHES = "all";
+
+	/**
+	 * The branches reported on when the CEO chooses all branches.
+	 */
+	private static final List<String> BRANCHES = List.of("north", "center", "south");
+
 	/**
 	 * Button to generate an income report.
 	 */
@@ -215,7 +230,7 @@ public class ReportController implements Initializable  {
         DatePicker startDatePicker = new DatePicker();
         DatePicker endDatePicker = new DatePicker();
         ComboBox<String> branchSelector = new ComboBox<>();
-        branchSelector.getItems().addAll("north", "center", "south");
+        branchSelector.getItems().addAll("north", "center", "south", ALL_BRANCHES);
 
         dialog.getDialogPane().setContent(new VBox(10, 
             new Label("Branch:"), branchSelector,
@@ -251,7 +266,11 @@ public class ReportController implements Initializable  {
         result.ifPresent(dateRangeAndBranch -> {
             Pair<LocalDate, LocalDate> dateRange = dateRangeAndBranch.getKey();
             String branchId = dateRangeAndBranch.getValue();
-            generateIncomeReport(dateRange.getKey(), dateRange.getValue(), branchId);
+            if (ALL_BRANCHES.equals(branchId)) {
+                generateBranchReports("income", dateRange.getKey(), dateRange.getValue());
+            } else {
+                generateIncomeReport(dateRange.getKey(), dateRange.getValue(), branchId);
+            }
         });
     }
     
@@ -266,7 +285,7 @@ public class ReportController implements Initializable  {
         DatePicker startDatePicker = new DatePicker();
         DatePicker endDatePicker = new DatePicker();
         ComboBox<String> branchSelector = new ComboBox<>();
-        branchSelector.getItems().addAll("north", "center", "south");
+        branchSelector.getItems().addAll("north", "center", "south", ALL_BRANCHES);
 
         dialog.getDialogPane().setContent(new VBox(10, 
             new Label("Branch:"), branchSelector,
@@ -302,7 +321,11 @@ public class ReportController implements Initializable  {
         result.ifPresent(dateRangeAndBranch -> {
             Pair<LocalDate, LocalDate> dateRange = dateRangeAndBranch.getKey();
             String branchId = dateRangeAndBranch.getValue();
-            generateOrdersReport(dateRange.getKey(), dateRange.getValue(), branchId);
+            if (ALL_BRANCHES.equals(branchId)) {
+                generateBranchReports("orders", dateRange.getKey(), dateRange.getValue());
+            } else {
+                generateOrdersReport(dateRange.getKey(), dateRange.getValue(), branchId);
+            }
         });
     }
 
@@ -317,7 +340,7 @@ public class ReportController implements Initializable  {
         DatePicker startDatePicker = new DatePicker();
         DatePicker endDatePicker = new DatePicker();
         ComboBox<String> branchSelector = new ComboBox<>();
-        branchSelector.getItems().addAll("north", "center", "south");
+        branchSelector.getItems().addAll("north", "center", "south", ALL_BRANCHES);
 
         dialog.getDialogPane().setContent(new VBox(10, 
             new Label("Branch:"), branchSelector,
@@ -352,7 +375,11 @@ public class ReportController implements Initializable  {
         result.ifPresent(dateRangeAndBranch -> {
             Pair<LocalDate, LocalDate> dateRange = dateRangeAndBranch.getKey();
             String branchId = dateRangeAndBranch.getValue();
-            generatePerformanceReport(dateRange.getKey(), dateRange.getValue(), branchId);
+            if (ALL_BRANCHES.equals(branchId)) {
+                generateBranchReports("performance", dateRange.getKey(), dateRange.getValue());
+            } else {
+                generatePerformanceReport(dateRange.getKey(), dateRange.getValue(), branchId);
+            }
         }); 
     }
     
@@ -548,30 +575,23 @@ public class ReportController implements Initializable  {
     * @param branch The branch for which the report is generated.
     */
     private void generateQuarterlyReport(int quarter, int year, String branch) {
-        Message<Object[]> request = new Message<>("QuarterlyReport", new Object[]{quarter, year, branch});
-        clientController.accept(request);
-        Message<?> response = clientController.getResponse("QuarterlyReportResponse");
-
-        if (response != null && response.getType() instanceof Map) {
-            @SuppressWarnings("unchecked")
-			Map<String, Object> reportData = (Map<String, Object>) response.getType();
-            displayQuarterlyReport(reportData);
-        } else {
-            showAlert("Error", "An error occurred while creating the quarterly report");
-        }
+        clientController.handleQuarterlyReport(quarter, year, branch).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error == null && response != null && response.getType() instanceof QuarterlyReport) {
+                displayQuarterlyReport((QuarterlyReport) response.getType());
+            } else {
+                showAlert("Error", "An error occurred while creating the quarterly report");
+            }
+        }));
     }
     
     /**
      * Displays the quarterly report data in a new window.
      *
-     * @param reportData A map containing the report data including branch information and revenue data.
+     * @param reportData The report, including the branch and the days and revenue of every restaurant.
      */
-    private void displayQuarterlyReport(Map<String, Object> reportData) {
+    private void displayQuarterlyReport(QuarterlyReport reportData) {
         Stage reportStage = new Stage();
-        String branch = (String) reportData.get("branch");
-        Integer quarter = (Integer) reportData.get("quarter");
-        Integer year = (Integer) reportData.get("year");
-        reportStage.setTitle("Quarter Report - " + branch + " Q" + quarter + " " + year);
+        reportStage.setTitle("Quarter Report - " + reportData.getBranch() + " Q" + reportData.getQuarter() + " " + reportData.getYear());
        
         VBox root = new VBox(10);
         root.setPadding(new Insets(10));
@@ -591,46 +611,44 @@ public class ReportController implements Initializable  {
     /**
      * Creates a histogram chart representing branch data for a quarterly report.
      *
-     * @param reportData A map containing the report data, including branch information,
-     *                   quarter, year, and revenue data.
+     * @param reportData The report, including the branch, quarter, year, and revenue data.
      * @return A Node containing the histogram chart and a total revenue table.
      */
-    private Node createBranchHistogram(Map<String, Object> reportData) {
+    private Node createBranchHistogram(QuarterlyReport reportData) {
         CategoryAxis xAxis = new CategoryAxis();
         NumberAxis yAxis = new NumberAxis();
         
         StackedBarChart<String, Number> barChart = new StackedBarChart<>(xAxis, yAxis);
-        barChart.setTitle("Quarter Report Branch " + reportData.get("branch") + 
-                          ", Q" + reportData.get("quarter") + " " + reportData.get("year"));
+        barChart.setTitle("Quarter Report Branch " + reportData.getBranch() +
+                          ", Q" + reportData.getQuarter() + " " + reportData.getYear());
         
         xAxis.setLabel("Daily Order Range");
         yAxis.setLabel("Number Of Days");
 
-        @SuppressWarnings("unchecked")
-		Map<String, Map<String, Integer>> branchData = (Map<String, Map<String, Integer>>) reportData.get("branchData");
-        @SuppressWarnings("unchecked")
-		Map<String, Map<String, Double>> revenueData = (Map<String, Map<String, Double>>) reportData.get("revenueData");
-        
-        if (branchData == null || branchData.isEmpty() || revenueData == null || revenueData.isEmpty()) {
+        if (reportData.isEmpty()) {
            showAlert("No data available for the selected period","No Data");
         }
-        
-        /* This method iterates through the branchData map, creating a new series for each restaurant.
-        * For each restaurant, it then iterates through its data ranges, adding each data point to the series.
+
+        /* This method iterates through the restaurants of the report, creating a new series for each restaurant.
+        * For each restaurant, it then iterates through the order ranges it had days in, adding each data point to the series.
         * Finally, each series is added to the barChart.
-        * 
-        *The outer loop iterates over restaurant names, while the inner loop iterates over data ranges for each restaurant.
-        * 
-        * @throws NullPointerException if branchData or barChart is null
-        * @throws ClassCastException if the map values are not of the expected types
+        *
+        *The outer loop iterates over restaurants, while the inner loop iterates over the order ranges.
         */
-        for (String restaurantName : branchData.keySet()) {
+        List<String> ranges = new ArrayList<>();
+        for (int restaurant = 0; restaurant < reportData.getRestaurantCount(); restaurant++) {
             XYChart.Series<String, Number> series = new XYChart.Series<>();
-            series.setName(restaurantName);
-
-            Map<String, Integer> restaurantData = branchData.get(restaurantName);
-            for (String range : restaurantData.keySet()) {
-                series.getData().add(new XYChart.Data<>(range, restaurantData.get(range)));
+            series.setName(reportData.getRestaurantName(restaurant));
+
+            for (int range = 0; range < QuarterlyReport.RANGES.size(); range++) {
+                int days = reportData.getDays(restaurant, range);
+                if (days > 0) {
+                    String rangeName = QuarterlyReport.RANGES.get(range);
+                    series.getData().add(new XYChart.Data<>(rangeName, days));
+                    if (!ranges.contains(rangeName)) {
+                        ranges.add(rangeName);
+                    }
+                }
             }
 
             barChart.getData().add(series);
@@ -641,20 +659,12 @@ public class ReportController implements Initializable  {
         * For each data point, it retrieves the associated node (which represents the bar), 
         * and then adds a {@link VBox} containing additional details such as the number of days and revenue.
         */
-        for (XYChart.Series<String, Number> series : barChart.getData()) {
-            for (XYChart.Data<String, Number> data : series.getData()) {
+        for (int restaurant = 0; restaurant < barChart.getData().size(); restaurant++) {
+            for (XYChart.Data<String, Number> data : barChart.getData().get(restaurant).getData()) {
                 StackPane bar = (StackPane) data.getNode();
-                String restaurantName = series.getName();
-                String range = data.getXValue();
+                int range = QuarterlyReport.RANGES.indexOf(data.getXValue());
                 int days = data.getYValue() != null ? data.getYValue().intValue() : 0;
-                double revenue = 0.0;
-                Map<String, Double> restaurantRevenue = revenueData.get(restaurantName);
-                if (restaurantRevenue != null) {
-                    Double revenueValue = restaurantRevenue.get(range);
-                    if (revenueValue != null) {
-                        revenue = revenueValue;
-                    }
-                }
+                double revenue = reportData.getRevenue(restaurant, range);
                
                 VBox vbox = new VBox(2);
                 Label daysLabel = new Label(days + " Days");
@@ -668,10 +678,8 @@ public class ReportController implements Initializable  {
         Pane chartPane = new Pane();
         chartPane.getChildren().add(barChart);
 
-        for (String range : branchData.values().iterator().next().keySet()) {
-            double totalRevenue = revenueData.values().stream()
-                    .mapToDouble(map -> map.get(range))
-                    .sum();
+        for (String range : ranges) {
+            double totalRevenue = reportData.getRangeRevenue(QuarterlyReport.RANGES.indexOf(range));
             
             Label totalLabel = new Label(String.format("₪%.0fK", totalRevenue / 1000));
             totalLabel.setRotate(-90);
@@ -687,7 +695,7 @@ public class ReportController implements Initializable  {
         }
 
         VBox vbox = new VBox(10);
-        vbox.getChildren().addAll(chartPane, createTotalRevenueTable(revenueData));
+        vbox.getChildren().addAll(chartPane, createTotalRevenueTable(reportData));
 
         return vbox;
     }
@@ -695,11 +703,11 @@ public class ReportController implements Initializable  {
     /**
      * Creates a table view displaying the total revenue for each restaurant and the branch.
      *
-     * @param revenueData A map containing revenue data for each restaurant.
+     * @param reportData The report containing the revenue of each restaurant.
      * @return A Node containing the table view of total revenues.
      */
     @SuppressWarnings("unchecked")
-	private Node createTotalRevenueTable(Map<String, Map<String, Double>> revenueData) {
+	private Node createTotalRevenueTable(QuarterlyReport reportData) {
         TableView<RestaurantRevenue> table = new TableView<>();
         
         TableColumn<RestaurantRevenue, String> nameCol = new TableColumn<>("Resturant");
@@ -711,9 +719,9 @@ public class ReportController implements Initializable  {
         
         table.getColumns().addAll(nameCol, revenueCol);
         
-        for (Map.Entry<String, Map<String, Double>> entry : revenueData.entrySet()) {
-            double totalRevenue = entry.getValue().values().stream().mapToDouble(Double::doubleValue).sum();
-            table.getItems().add(new RestaurantRevenue(entry.getKey(), totalRevenue));
+        for (int restaurant = 0; restaurant < reportData.getRestaurantCount(); restaurant++) {
+            table.getItems().add(new RestaurantRevenue(reportData.getRestaurantName(restaurant),
+                    reportData.getRestaurantRevenue(restaurant)));
         }
         
         double totalBranchRevenue = table.getItems().stream()
@@ -779,21 +787,49 @@ public class ReportController implements Initializable  {
     * @param endDate The end date of the report period.
     */
     private void generateIncomeReport(LocalDate startDate, LocalDate endDate,String currentUser) {
-        Message<Object[]> request = new Message<>("IncomeReport", new Object[]{startDate, endDate,currentUser});
         String region = getBranch(currentUser);
-        clientController.accept(request);
-        Message<?> response = clientController.getResponse("IncomeReportResponse");
-        
-        if (response != null && response.getType() instanceof Map) {
-            @SuppressWarnings("unchecked")
-			Map<String, Object> reportData = (Map<String, Object>) response.getType();
-            displayIncomeReport(reportData, startDate, endDate,region);
-        } else {
-            showAlert("An error occurred in the income report","Error");
-
-        }
+        clientController.handleIncomeReport(startDate, endDate, currentUser).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error == null && response != null && response.getType() instanceof IncomeReport) {
+                displayIncomeReport((IncomeReport) response.getType(), startDate, endDate,region);
+            } else {
+                showAlert("An error occurred in the income report","Error");
+            }
+        }));
     }
     
+    /**
+     * Generates the same report for every branch with a single request; the server
+     * computes the branches side by side. Each branch's report is shown like a report
+     * of that branch alone.
+     *
+     * @param reportType The report: "income", "orders" or "performance".
+     * @param startDate The start date of the report period.
+     * @param endDate The end date of the report period.
+     */
+    private void generateBranchReports(String reportType, LocalDate startDate, LocalDate endDate) {
+        clientController.handleBranchReports(reportType, startDate, endDate, BRANCHES).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error == null && response != null && response.getType() instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> reports = (Map<String, Object>) response.getType();
+                for (Map.Entry<String, Object> entry : reports.entrySet()) {
+                    Object reportData = entry.getValue();
+                    String region = getBranch(entry.getKey());
+                    if (reportData instanceof IncomeReport) {
+                        displayIncomeReport((IncomeReport) reportData, startDate, endDate, region);
+                    } else if (reportData instanceof OrdersReport) {
+                        displayOrdersReport((OrdersReport) reportData, startDate, endDate, region);
+                    } else if (!(reportData instanceof PerformanceReport) || isReportDataEmpty((PerformanceReport) reportData)) {
+                        showAlert("No Data", "There is no " + reportType + " data available for the " + region + " in the selected period.");
+                    } else {
+                        displayGraphicalPerformanceReport((PerformanceReport) reportData, startDate, endDate, region);
+                    }
+                }
+            } else {
+                showAlert("Error", "An error occurred in the branch reports");
+            }
+        }));
+    }
+
     /**
      * Converts a branch ID to a readable branch name.
      *
@@ -831,22 +867,18 @@ public class ReportController implements Initializable  {
      * @throws ClientException if there's an error in communication with the server.
      * @throws IllegalArgumentException if the response from the server is not in the expected format.
      *
-     * Note: If the response is null or not of the expected type (Map), 
+     * Note: If the response is null or not of the expected type (OrdersReport), 
      * appropriate error handling should be implemented in the else block.
      */
     private void generateOrdersReport(LocalDate startDate, LocalDate endDate,String currentUser) {
-        Message<Object[]> request = new Message<>("OrdersReport", new Object[]{startDate, endDate,currentUser});
-        clientController.accept(request);
-        Message<?> response = clientController.getResponse("OrderReportResponse");
         String region = getBranch(currentUser);
-        if (response != null && response.getType() instanceof Map) {
-            @SuppressWarnings("unchecked")
-			Map<String, Object> reportData = (Map<String, Object>) response.getType();
-            displayOrdersReport(reportData, startDate, endDate,region);
-        } else {
-            showAlert("An error occurred in the orders report","Error");
-
-        }
+        clientController.handleOrdersReport(startDate, endDate, currentUser).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error == null && response != null && response.getType() instanceof OrdersReport) {
+                displayOrdersReport((OrdersReport) response.getType(), startDate, endDate,region);
+            } else {
+                showAlert("An error occurred in the orders report","Error");
+            }
+        }));
     }
     
     /**
@@ -858,67 +890,56 @@ public class ReportController implements Initializable  {
      * @param currentUser The identifier of the current user requesting the report.
      */
     private void generatePerformanceReport(LocalDate startDate, LocalDate endDate,String currentUser) {
-        Message<Object[]> request = new Message<>("PerformanceReport", new Object[]{startDate, endDate,currentUser});
-        clientController.accept(request);
-        Message<?> response = clientController.getResponse("PerformanceReportResponse");
         String region = getBranch(currentUser);
-
-        if (response != null && response.getType() instanceof Map) {
-            @SuppressWarnings("unchecked")
-			Map<String, Object> reportData = (Map<String, Object>) response.getType();
-            if (isReportDataEmpty(reportData)) {
-                showAlert("No Data", "There is no performance data available for the selected period.");
+        clientController.handlePerformanceReport(startDate, endDate, currentUser).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error == null && response != null && response.getType() instanceof PerformanceReport) {
+                PerformanceReport reportData = (PerformanceReport) response.getType();
+                if (isReportDataEmpty(reportData)) {
+                    showAlert("No Data", "There is no performance data available for the selected period.");
+                } else {
+                    displayGraphicalPerformanceReport(reportData, startDate, endDate, region);
+                }
             } else {
-                displayGraphicalPerformanceReport(reportData, startDate, endDate, region);
+                showAlert("Error", "An error occurred in the performance report");
             }
-        } else {
-            showAlert("Error", "An error occurred in the performance report");
-        }
+        }));
     }
     
     /**
      * Checks if the report data is empty or contains no significant information.
      *
-     * @param reportData A map containing the report data.
+     * @param reportData The performance report.
      * @return true if the report data is considered empty, false otherwise.
      */
-    private boolean isReportDataEmpty(Map<String, Object> reportData) {
-        return reportData.get("totalDeliveries") == null || 
-               ((Number) reportData.get("totalDeliveries")).intValue() == 0 ||
-               reportData.get("performanceByDay") == null || 
-               ((Map<?, ?>) reportData.get("performanceByDay")).isEmpty();
+    private boolean isReportDataEmpty(PerformanceReport reportData) {
+        return reportData.isEmpty();
     }
     
     /**
      * Displays the orders report data in a formatted dialog.
      *
-     * @param reportData A map containing the report data including total orders,
-     *                   orders by type and top items by type.
+     * @param reportData The report including total orders, orders by type and the ordered items.
      * @param startDate The start date of the report period.
      * @param endDate The end date of the report period.
      */
-    @SuppressWarnings("unchecked")
-	private void displayOrdersReport(Map<String, Object> reportData, LocalDate startDate, LocalDate endDate,String region) {
+	private void displayOrdersReport(OrdersReport reportData, LocalDate startDate, LocalDate endDate,String region) {
         StringBuilder reportContent = new StringBuilder();
         reportContent.append("Orders Report of "+region+"\n");
         reportContent.append("==============\n\n");
         reportContent.append(String.format("Report period: %s - %s\n\n", startDate, endDate));
 
-        int totalOrders = (int) reportData.get("totalOrders");
-        reportContent.append(String.format("Total orders: %d\n\n", totalOrders));
+        reportContent.append(String.format("Total orders: %d\n\n", reportData.getTotalOrders()));
 
-        Map<String, Integer> ordersByType = (Map<String, Integer>) reportData.get("ordersByType");
         reportContent.append("Orders by item type:\n");
-        for (Map.Entry<String, Integer> entry : ordersByType.entrySet()) {
-            reportContent.append(String.format("%s: %d orders\n", entry.getKey(), entry.getValue()));
+        for (int type = 0; type < reportData.getTypeCount(); type++) {
+            reportContent.append(String.format("%s: %d orders\n", reportData.getTypeName(type), reportData.getTypeQuantity(type)));
         }
         reportContent.append("\n");
 
-        List<Map<String, Object>> topItems = (List<Map<String, Object>>) reportData.get("topItems");
         reportContent.append("Top 5 ordered items:\n");
-        for (Map<String, Object> item : topItems) {
-            reportContent.append(String.format("%s: %d orders\n", 
-                item.get("itemName"), (int) item.get("orderCount")));
+        for (int item : reportData.getTopItems(5)) {
+            reportContent.append(String.format("%s: %d orders\n",
+                reportData.getItemName(item), reportData.getItemQuantity(item)));
         }
         reportContent.append("\n");
         showReportDialog("Orders Report", reportContent.toString());
@@ -927,12 +948,11 @@ public class ReportController implements Initializable  {
     /**
      * Displays the orders report data in a formatted dialog.
      *
-     * @param reportData A map containing the report data including total orders,
-     *                   orders by type, top items, and revenue by type.
+     * @param reportData The performance report.
      * @param startDate The start date of the report period.
      * @param endDate The end date of the report period.
      */
-    private void displayGraphicalPerformanceReport(Map<String, Object> reportData, LocalDate startDate, LocalDate endDate,String region) {
+    private void displayGraphicalPerformanceReport(PerformanceReport reportData,LocalDate startDate, LocalDate endDate,String region) {
     	Stage reportStage = new Stage();
         reportStage.setTitle("Graphical performance report of "+region+"\n");
 
@@ -961,26 +981,14 @@ public class ReportController implements Initializable  {
     /**
      * Creates a PieChart to visualize the distribution of deliveries that arrived on time versus late.
      *
-     * @param reportData A map containing report data, which should include:
-     *                   - "totalDeliveries": Total number of deliveries (Integer).
-     *                   - "onTimeDeliveries": Number of deliveries that arrived on time (Integer).
+     * @param reportData The performance report, with the total and on-time deliveries.
      * @return A {@link PieChart} object displaying the distribution of on-time versus late deliveries.
      */
-    private PieChart createDeliveryPieChart(Map<String, Object> reportData) {
-    	long totalDeliveries = 0;
-    	long onTimeDeliveries = 0;
-    	Object totalObj = reportData.get("totalDeliveries");
-        Object onTimeObj = reportData.get("totalOnTimeDeliveries");
-
-        if (totalObj instanceof Number) {
-            totalDeliveries = ((Number) totalObj).longValue();
-        }
-
-        if (onTimeObj instanceof Number) {
-            onTimeDeliveries = ((Number) onTimeObj).longValue();
-        }
+    private PieChart createDeliveryPieChart(PerformanceReport reportData) {
+    	long totalDeliveries = reportData.getTotalDeliveries();
+    	long onTimeDeliveries = reportData.getTotalOnTimeDeliveries();
 
-    	long lateDeliveries = totalDeliveries - onTimeDeliveries;
+    	long lateDeliveries= totalDeliveries - onTimeDeliveries;
 
         PieChart.Data slice1 = new PieChart.Data("On Time", onTimeDeliveries);
         PieChart.Data slice2 = new PieChart.Data("On Late", lateDeliveries);
@@ -995,11 +1003,10 @@ public class ReportController implements Initializable  {
     /**
      * Creates a BarChart to display the performance of deliveries by days of the week.
      *
-     * @param reportData A map containing report data, which should include:
-     *                   - "performanceByDay": A map where keys are days of the week (String) and values are percentages of deliveries on time (Double).
+     * @param reportData The performance report, giving the percentage of deliveries on time of each day of the week.
      * @return A {@link BarChart} object showing performance by days of the week.
      */
-    private BarChart<String, Number> createPerformanceByDayChart(Map<String, Object> reportData) {
+    private BarChart<String, Number> createPerformanceByDayChart(PerformanceReport reportData) {
         CategoryAxis xAxis = new CategoryAxis();
         NumberAxis yAxis = new NumberAxis();
         BarChart<String, Number> barChart = new BarChart<>(xAxis, yAxis);
@@ -1007,10 +1014,11 @@ public class ReportController implements Initializable  {
         xAxis.setLabel("Day in the week");
         yAxis.setLabel("Percentage of deliveries on time");
         XYChart.Series<String, Number> series = new XYChart.Series<>();
-        @SuppressWarnings("unchecked")
-		Map<String, BigDecimal> performanceByDay = (Map<String, BigDecimal>) reportData.get("performanceByDay");
-        for (Map.Entry<String, BigDecimal> entry : performanceByDay.entrySet()) {
-            series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
+        for (DayOfWeek day : DayOfWeek.values()) {
+            Double onTimePercentage = reportData.getOnTimePercentage(day);
+            if (onTimePercentage != null) {
+                series.getData().add(new XYChart.Data<>(day.getDisplayName(TextStyle.FULL, Locale.ENGLISH), onTimePercentage));
+            }
         }
 
         barChart.getData().add(series);
@@ -1020,30 +1028,17 @@ public class ReportController implements Initializable  {
     /**
      * Generates a summary text for the performance report.
      *
-     * @param reportData A map containing report data, which should include:
-     *                   - "totalDeliveries": Total number of deliveries (Integer).
-     *                   - "onTimeDeliveries": Number of deliveries that arrived on time (Integer).
-     *                   - "avgDeliveryTime": Average delivery time in minutes (Double).
-     *                   - "totalRevenue": Total revenue from deliveries (Double).
-     * @param startDate The start date of the reporting period (LocalDate).
+     * @param reportData The performance report, with the total and on-time deliveries,
+     *                   the average delivery time and the revenue from deliveries.
+     * @param startDateThe start date of the reporting period (LocalDate).
      * @param endDate The end date of the reporting period (LocalDate).
      * @return A string containing the summary of the performance report.
      */
-    private String createSummaryText(Map<String, Object> reportData, LocalDate startDate, LocalDate endDate) {
-    	 long totalDeliveries = 0;
-    	    long onTimeDeliveries = 0;
-    	    double avgDeliveryTime = 0.0;
-    	    double totalRevenue = 0.0;
-
-    	    Object totalObj = reportData.get("totalDeliveries");
-    	    Object onTimeObj = reportData.get("totalOnTimeDeliveries");
-    	    Object avgTimeObj = reportData.get("avgDeliveryTime");
-    	    Object revenueObj = reportData.get("totalRevenue");
-
-    	    if (totalObj instanceof Number) totalDeliveries = ((Number) totalObj).longValue();
-    	    if (onTimeObj instanceof Number) onTimeDeliveries = ((Number) onTimeObj).longValue();
-    	    if (avgTimeObj instanceof Number) avgDeliveryTime = ((Number) avgTimeObj).doubleValue();
-    	    if (revenueObj instanceof Number) totalRevenue = ((Number) revenueObj).doubleValue();
+    private String createSummaryText(PerformanceReport reportData, LocalDate startDate, LocalDate endDate) {
+    	    long totalDeliveries = reportData.getTotalDeliveries();
+    	    long onTimeDeliveries = reportData.getTotalOnTimeDeliveries();
+    	    double avgDeliveryTime = reportData.getAverageDeliveryTime();
+    	    double totalRevenue = reportData.getTotalRevenue();
 
     	    double onTimePercentage = totalDeliveries > 0 ? (double) onTimeDeliveries / totalDeliveries * 100 : 0;
 
@@ -1059,36 +1054,32 @@ public class ReportController implements Initializable  {
     /**
      * Displays an income report with detailed revenue information.
      *
-     * @param reportData A map containing report data, which should include:
-     *                   - "totalIncome": Total revenue (Double).
-     *                   - "incomeByRestaurant": A map where keys are restaurant names (String) and values are total income from each restaurant (Double).
-     *                   - "dailyIncome": A map where keys are dates (LocalDate) and values are daily income (Double).
-     * @param startDate The start date of the reporting period (LocalDate).
+     * @param reportData The income report, with the total income, the income of each
+     *                   restaurant and the income of each day.
+     * @param startDateThe start date of the reporting period (LocalDate).
      * @param endDate The end date of the reporting period (LocalDate).
      */
-    private void displayIncomeReport(Map<String, Object> reportData, LocalDate startDate, LocalDate endDate,String region) {
+    private void displayIncomeReport(IncomeReport reportData,LocalDate startDate, LocalDate endDate,String region) {
         StringBuilder reportContent = new StringBuilder();
         reportContent.append("Income Report of "+ region+"\n");
         reportContent.append("===========\n\n");
         reportContent.append(String.format("The period of report: %s - %s\n\n", startDate, endDate));
 
-        double totalIncome = (double) reportData.get("totalIncome");
+        double totalIncome = reportData.getTotalIncome();
         reportContent.append(String.format("Total revenue\r\n" + " : ₪%.2f\n\n", totalIncome));
 
-        @SuppressWarnings("unchecked")
-		Map<String, Double> incomeByRestaurant = (Map<String, Double>) reportData.get("incomeByRestaurant");
         reportContent.append("Revenues by restaurants:\n");
-        for (Map.Entry<String, Double> entry : incomeByRestaurant.entrySet()) {
-            reportContent.append(String.format("%s: ₪%.2f\n", entry.getKey(), entry.getValue()));
+        for (int restaurant = 0; restaurant < reportData.getRestaurantCount(); restaurant++) {
+            reportContent.append(String.format("%s: ₪%.2f\n", reportData.getRestaurantName(restaurant), reportData.getRestaurantIncome(restaurant)));
         }
         reportContent.append("\n");
 
-        
-        @SuppressWarnings("unchecked")
-		Map<LocalDate, Double> dailyIncome = (Map<LocalDate, Double>) reportData.get("dailyIncome");
+
         reportContent.append("Daily Revenues:\n");
-        for (Map.Entry<LocalDate, Double> entry : dailyIncome.entrySet()) {
-            reportContent.append(String.format("%s: ₪%.2f\n", entry.getKey(), entry.getValue()));
+        for (int day = 0; day < reportData.getDayCount(); day++) {
+            if (reportData.hasIncome(day)) {
+                reportContent.append(String.format("%s: ₪%.2f\n", reportData.getDay(day), reportData.getDailyIncome(day)));
+            }
         }
 
         //show report
@@ -132,6 +132,7 @@ public class RestaurantController implements Initializable {
 	            Stage orderManagementStage = new Stage();
 	            orderManagementStage.setTitle("Order Management");
 	            orderManagementStage.setScene(new Scene(root));
+	            orderManagementStage.setOnHidden(event -> orderManagementController.close());
 	            orderManagementStage.show();
 
 	        } catch (Exception e) {
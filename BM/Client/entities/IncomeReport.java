@@ -0,0 +1,215 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The income of a manager's restaurants over a period: the income of every restaurant
+ * and of every day. Amounts are kept in cents; restaurant names are stored once and the
+ * daily income is one array over the days of the period.
+ */
+@SuppressWarnings("serial")
+public class IncomeReport implements Serializable {
+
+    /**
+     * The first day of the period.
+     */
+    private LocalDate startDate;
+
+    /**
+     * The restaurant names, in order of first appearance.
+     */
+    private List<String> restaurantNames;
+
+    /**
+     * The income in cents of each restaurant, by index in {@link #restaurantNames}.
+     */
+    private long[] restaurantIncomeCents;
+
+    /**
+     * The income in cents of each day, by number of days after the start date.
+     */
+    private long[] dailyIncomeCents;
+
+    /**
+     * Index of every name in {@link #restaurantNames}, used while income is added.
+     */
+    private transient Map<String, Integer> nameLookup;
+
+    /**
+     * Creates an empty report over a period.
+     *
+     * @param startDate The first day of the period.
+     * @param endDate The last day of the period.
+     */
+    public IncomeReport(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.restaurantNames = new ArrayList<>();
+        this.restaurantIncomeCents = new long[8];
+        this.dailyIncomeCents = new long[(int) Math.max(0, ChronoUnit.DAYS.between(startDate, endDate) + 1)];
+    }
+
+    /**
+     * Creates a report with the specified details.
+     *
+     * @param startDate The first day of the period.
+     * @param restaurantNames The restaurant names.
+     * @param restaurantIncomeCents The income in cents of each restaurant.
+     * @param dailyIncomeCents The income in cents of each day of the period.
+     */
+    public IncomeReport(LocalDate startDate, List<String> restaurantNames, long[] restaurantIncomeCents,
+            long[] dailyIncomeCents) {
+        this.startDate = startDate;
+        this.restaurantNames = restaurantNames;
+        this.restaurantIncomeCents = restaurantIncomeCents;
+        this.dailyIncomeCents = dailyIncomeCents;
+    }
+
+    /**
+     * Adds the income of a restaurant on a day.
+     *
+     * @param restaurantName The restaurant name.
+     * @param day The day; days outside the period only count for the restaurant.
+     * @param cents The income in cents.
+     */
+    public void add(String restaurantName, LocalDate day, long cents) {
+        if (nameLookup == null) {
+            nameLookup = new HashMap<>();
+            for (int i = 0; i < restaurantNames.size(); i++) {
+                nameLookup.put(restaurantNames.get(i), i);
+            }
+        }
+        Integer index = nameLookup.get(restaurantName);
+        if (index == null) {
+            index = restaurantNames.size();
+            restaurantNames.add(restaurantName);
+            nameLookup.put(restaurantName, index);
+            if (index == restaurantIncomeCents.length) {
+                restaurantIncomeCents = Arrays.copyOf(restaurantIncomeCents, Math.max(8, index * 2));
+            }
+        }
+        restaurantIncomeCents[index] += cents;
+        long offset = ChronoUnit.DAYS.between(startDate, day);
+        if (offset >= 0 && offset < dailyIncomeCents.length) {
+            dailyIncomeCents[(int) offset] += cents;
+        }
+    }
+
+    /**
+     * Drops the unused capacity of the restaurant income, once every income is added.
+     */
+    public void trimToSize() {
+        restaurantIncomeCents = Arrays.copyOf(restaurantIncomeCents, restaurantNames.size());
+    }
+
+    /**
+     * Returns the total income of the period.
+     *
+     * @return The income.
+     */
+    public double getTotalIncome() {
+        long cents = 0;
+        for (int i = 0; i < restaurantNames.size(); i++) {
+            cents += restaurantIncomeCents[i];
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Returns the number of restaurants with income.
+     *
+     * @return The number of restaurants.
+     */
+    public int getRestaurantCount() {
+        return restaurantNames.size();
+    }
+
+    /**
+     * Returns the name of a restaurant.
+     *
+     * @param restaurant The restaurant index.
+     * @return The name.
+     */
+    public String getRestaurantName(int restaurant) {
+        return restaurantNames.get(restaurant);
+    }
+
+    /**
+     * Returns the income of a restaurant.
+     *
+     * @param restaurant The restaurant index.
+     * @return The income.
+     */
+    public double getRestaurantIncome(int restaurant) {
+        return restaurantIncomeCents[restaurant] / 100.0;
+    }
+
+    /**
+     * Returns the number of days of the period.
+     *
+     * @return The number of days.
+     */
+    public int getDayCount() {
+        return dailyIncomeCents.length;
+    }
+
+    /**
+     * Returns a day of the period.
+     *
+     * @param day The day index.
+     * @return The date.
+     */
+    public LocalDate getDay(int day) {
+        return startDate.plusDays(day);
+    }
+
+    /**
+     * Returns the income of a day.
+     *
+     * @param day The day index.
+     * @return The income.
+     */
+    public double getDailyIncome(int day) {
+        return dailyIncomeCents[day] / 100.0;
+    }
+
+    /**
+     * Returns whether a day had income.
+     *
+     * @param day The day index.
+     * @return true if the day had income.
+     */
+    public boolean hasIncome(int day) {
+        return dailyIncomeCents[day] != 0;
+    }
+
+    // Getters of the stored form, used by the message codec; the arrays are not copied
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public List<String> getRestaurantNames() {
+        return restaurantNames;
+    }
+
+    public long[] getRestaurantIncomeCents() {
+        return restaurantIncomeCents;
+    }
+
+    public long[] getDailyIncomeCents() {
+        return dailyIncomeCents;
+    }
+
+    @Override
+    public String toString() {
+        return "IncomeReport{startDate=" + startDate + ", restaurants=" + restaurantNames.size()
+                + ", days=" + dailyIncomeCents.length + ", totalIncome=" + getTotalIncome() + "}";
+    }
+}
@@ -0,0 +1,62 @@
+package entities;
+
+import java.io.Serializable;
+
+/**
+ * A request for the menu of a restaurant, carrying the version of the menu the
+ * client already holds. The server answers with a {@link MenuUpdate}: nothing if the
+ * menu did not change, only the changed items if it knows what changed since that
+ * version, and the whole menu otherwise.
+ */
+@SuppressWarnings("serial")
+public class MenuRequest implements Serializable {
+
+    /**
+     * The restaurant whose menu is requested.
+     */
+    private String restaurantId;
+
+    /**
+     * The version of the menu the client holds, or 0 if it holds none.
+     */
+    private long knownVersion;
+
+    /**
+     * Creates an empty MenuRequest object (no-argument constructor).
+     */
+    public MenuRequest() {}
+
+    /**
+     * Creates a MenuRequest object with the specified details.
+     *
+     * @param restaurantId The restaurant whose menu is requested.
+     * @param knownVersion The version of the menu the client holds, or 0 if it holds none.
+     */
+    public MenuRequest(String restaurantId, long knownVersion) {
+        this.restaurantId = restaurantId;
+        this.knownVersion = knownVersion;
+    }
+
+    // Getters and setters for all fields
+
+    public String getRestaurantId() {
+        return restaurantId;
+    }
+
+    public void setRestaurantId(String restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public long getKnownVersion() {
+        return knownVersion;
+    }
+
+    public void setKnownVersion(long knownVersion) {
+        this.knownVersion = knownVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "MenuRequest{restaurantId='" + restaurantId + "', knownVersion=" + knownVersion + "}";
+    }
+}
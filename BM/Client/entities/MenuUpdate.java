@@ -0,0 +1,133 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to a {@link MenuRequest}: the current version of a restaurant's menu
+ * and as much of the menu as the client needs to bring its copy up to date.
+ */
+@SuppressWarnings("serial")
+public class MenuUpdate implements Serializable {
+
+    /**
+     * What an update carries.
+     */
+    public enum Kind {
+        /** The client's menu is current; no items are sent */
+        NOT_MODIFIED,
+        /** Only the items changed since the client's version are sent */
+        CHANGES,
+        /** The whole menu is sent */
+        FULL
+    }
+
+    /**
+     * The restaurant whose menu this is.
+     */
+    private String restaurantId;
+
+    /**
+     * The version of the menu after applying this update.
+     */
+    private long version;
+
+    /**
+     * What this update carries.
+     */
+    private Kind kind;
+
+    /**
+     * The items sent: none, the changed items or the whole menu, depending on the kind.
+     */
+    private List<MenuItem> items;
+
+    /**
+     * Creates an empty MenuUpdate object (no-argument constructor).
+     */
+    public MenuUpdate() {
+        this.items = new ArrayList<>();
+    }
+
+    /**
+     * Creates a MenuUpdate object with the specified details.
+     *
+     * @param restaurantId The restaurant whose menu this is.
+     * @param version The version of the menu after applying this update.
+     * @param kind What this update carries.
+     * @param items The items sent.
+     */
+    public MenuUpdate(String restaurantId, long version, Kind kind, List<MenuItem> items) {
+        this.restaurantId = restaurantId;
+        this.version = version;
+        this.kind = kind;
+        this.items = items;
+    }
+
+    /**
+     * Applies this update to a menu held by the client.
+     *
+     * @param current The menu the client holds, or null if it holds none.
+     * @return The complete menu at this update's version; changed items replace the
+     *         items with the same ID and new items are added at the end.
+     */
+    public MenuUpdate applyTo(MenuUpdate current) {
+        if (kind == Kind.FULL || current == null) {
+            return new MenuUpdate(restaurantId, version, Kind.FULL, new ArrayList<>(items));
+        }
+        if (kind == Kind.NOT_MODIFIED) {
+            return new MenuUpdate(restaurantId, version, Kind.FULL, current.items);
+        }
+        Map<Integer, MenuItem> merged = new LinkedHashMap<>();
+        for (MenuItem item : current.items) {
+            merged.put(item.getItemId(), item);
+        }
+        for (MenuItem item : items) {
+            merged.put(item.getItemId(), item);
+        }
+        return new MenuUpdate(restaurantId, version, Kind.FULL, new ArrayList<>(merged.values()));
+    }
+
+    // Getters and setters for all fields
+
+    public String getRestaurantId() {
+        return restaurantId;
+    }
+
+    public void setRestaurantId(String restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public List<MenuItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<MenuItem> items) {
+        this.items = items;
+    }
+
+    @Override
+    public String toString() {
+        return "MenuUpdate{restaurantId='" + restaurantId + "', version=" + version + ", kind=" + kind
+                + ", items=" + (items == null ? 0 : items.size()) + "}";
+    }
+}
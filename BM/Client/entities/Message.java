@@ -6,6 +6,8 @@ import java.util.Objects;
 /**
  * Represents a generic message for system communication.
  * This class encapsulates a string message and a payload of any type.
+ * Requests carry a request id that the server copies to the matching response,
+ * so the client can tell which request a response belongs to.
  *
  * @param <T> The type of the object
  */
@@ -15,6 +17,9 @@ public class Message<T> implements Serializable {
     private final String message;
     private final T obj;
 
+    /** Id of the request this message belongs to, 0 when the message is not correlated */
+    private long requestId;
+
     /**
      * Constructs a Message with both a string message and a payload.
      *
@@ -55,6 +60,24 @@ public class Message<T> implements Serializable {
         return obj;
     }
 
+    /**
+     * Gets the id of the request this message belongs to.
+     *
+     * @return The request id, or 0 if the message is not correlated with a request
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the id of the request this message belongs to.
+     *
+     * @param requestId The request id
+     */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     /**
      * Checks if the message has object.
      *
@@ -0,0 +1,1326 @@
+package entities;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of {@link Message} and the entities it carries,
+ * used instead of Java serialization once both ends agreed on it.
+ * <p>
+ * A frame starts with {@link #MAGIC} and {@link #VERSION}, followed by the request id,
+ * the message name and the payload. Integers are written as variable length
+ * zig-zag numbers, money as a count of cents, timestamps as epoch seconds (UTC)
+ * and enums as ordinals. Every string is written once per frame; later occurrences
+ * refer back to it by index. Reports are written column by column, each column as
+ * its length followed by its values. Payload types the codec does not know are embedded
+ * with Java serialization, so any message can be encoded.
+ * <p>
+ * The codec is negotiated per connection: the client sends {@link #HELLO} carrying
+ * its version and the server answers {@link #HELLO_RESPONSE} with the version it
+ * accepted, or 0 to keep Java serialization.
+ */
+public final class MessageCodec {
+
+    /** First byte of every binary frame; differs from the first byte of a Java serialization stream */
+    public static final byte MAGIC = (byte) 0xB1;
+
+    /** Version of the frame layout written by this codec */
+    public static final int VERSION = 4;
+
+    /** Message sent by the client to offer the binary codec */
+    public static final String HELLO = "CODEC_HELLO";
+
+    /** Answer of the server to {@link #HELLO} */
+    public static final String HELLO_RESPONSE = "CODEC_HELLO_RESPONSE";
+
+    /** Deepest nesting of values a frame may hold; message bodies never come close */
+    private static final int MAX_DEPTH = 32;
+
+    /** Value tags */
+    private static final int T_NULL = 0;
+    private static final int T_STRING = 1;
+    private static final int T_INT = 2;
+    private static final int T_LONG = 3;
+    private static final int T_TRUE = 4;
+    private static final int T_FALSE = 5;
+    private static final int T_DOUBLE = 6;
+    private static final int T_MONEY = 7;
+    private static final int T_DECIMAL = 8;
+    private static final int T_DATE = 9;
+    private static final int T_DATE_TIME = 10;
+    private static final int T_LIST = 11;
+    private static final int T_ARRAY = 12;
+    private static final int T_MAP = 13;
+    private static final int T_USER = 14;
+    private static final int T_RESTAURANT = 15;
+    private static final int T_MENU_ITEM = 16;
+    private static final int T_ORDER = 17;
+    private static final int T_ORDER_ITEM = 18;
+    private static final int T_SERIALIZED = 19;
+    private static final int T_ORDER_PAGE = 20;
+    private static final int T_ORDER_PAGE_REQUEST = 21;
+    private static final int T_MENU_REQUEST = 22;
+    private static final int T_MENU_UPDATE = 23;
+    private static final int T_INCOME_REPORT = 24;
+    private static final int T_ORDERS_REPORT = 25;
+    private static final int T_ORDERS_REPORT_DETAIL = 26;
+    private static final int T_PERFORMANCE_REPORT = 27;
+    private static final int T_QUARTERLY_REPORT = 28;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private MessageCodec() {
+    }
+
+    /**
+     * Encodes a message into a binary frame.
+     *
+     * @param message The message to encode
+     * @return The encoded frame
+     * @throws IOException if a payload object has to be embedded and cannot be serialized
+     */
+    public static byte[] encode(Message<?> message) throws IOException {
+        Writer out = new Writer();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(message.getRequestId());
+        out.writeString(message.getMessage());
+        out.writeValue(message.getType());
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the part of a frame that follows the request id: the message name and the payload.
+     * A response sent to many clients can be encoded once this way and sent with the header
+     * of each request (see {@link #encodeHeader}); the header holds no string, so
+     * header and body together are exactly the frame {@link #encode} would write.
+     *
+     * @param name The message name
+     * @param payload The payload
+     * @return The encoded body
+     * @throws IOException if a payload object has to be embedded and cannot be serialized
+     */
+    public static byte[] encodeBody(String name, Object payload) throws IOException {
+        Writer out = new Writer();
+        out.writeString(name);
+        out.writeValue(payload);
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the start of a frame, up to and including the request id.
+     *
+     * @param requestId The request id of the message
+     * @return The encoded header
+     */
+    public static byte[] encodeHeader(long requestId) {
+        Writer out = new Writer();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(requestId);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a binary frame.
+     *
+     * @param frame The encoded frame
+     * @return The decoded message
+     * @throws IOException if the frame is malformed or of an unsupported version
+     */
+    public static Message<Object> decode(byte[] frame) throws IOException {
+        if (!isBinaryFrame(frame)) {
+            throw new IOException("Not a binary message frame");
+        }
+        Reader in = new Reader(frame, 1);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported codec version " + version);
+        }
+        long requestId = in.readVarLong();
+        String name = in.readString();
+        Message<Object> message = new Message<>(name, in.readValue());
+        message.setRequestId(requestId);
+        return message;
+    }
+
+    /**
+     * Checks whether a byte array holds a frame of this codec.
+     *
+     * @param frame The bytes to check
+     * @return true if the bytes start with the codec magic byte
+     */
+    public static boolean isBinaryFrame(byte[] frame) {
+        return frame != null && frame.length > 1 && frame[0] == MAGIC;
+    }
+
+    /**
+     * Builds the frame content of one message.
+     */
+    private static final class Writer {
+
+        /** The bytes written so far */
+        private byte[] buf = new byte[256];
+
+        /** Number of bytes written */
+        private int count;
+
+        /** Strings already written in this frame, with their index */
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        /**
+         * Makes room for more bytes.
+         *
+         * @param extra Number of bytes about to be written
+         */
+        private void ensure(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+
+        /**
+         * Writes one byte.
+         *
+         * @param b The byte, in the low 8 bits
+         */
+        void writeByte(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        /**
+         * Writes raw bytes.
+         *
+         * @param bytes The bytes to write
+         */
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        /**
+         * Writes an unsigned number in 7 bit groups, low group first.
+         *
+         * @param value The number, treated as unsigned
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[count++] = (byte) value;
+        }
+
+        /**
+         * Writes an unsigned int in 7 bit groups.
+         *
+         * @param value The number, treated as unsigned
+         */
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Writes a signed number so that small negative values stay short.
+         *
+         * @param value The number
+         */
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Writes a string, or a reference to it if it already appeared in the frame.
+         * The header is 0 for null, odd for a reference and even for a new string.
+         *
+         * @param s The string, may be null
+         */
+        void writeString(String s) {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarInt((index << 1) | 1);
+                return;
+            }
+            strings.put(s, strings.size());
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt((utf8.length + 1) << 1);
+            writeBytes(utf8);
+        }
+
+        /**
+         * Writes a nullable enum as its ordinal plus one.
+         *
+         * @param value The enum constant, may be null
+         */
+        void writeEnum(Enum<?> value) {
+            writeVarInt(value == null ? 0 : value.ordinal() + 1);
+        }
+
+        /**
+         * Writes any supported value preceded by its tag.
+         *
+         * @param value The value, may be null
+         * @throws IOException if the value has to be embedded and cannot be serialized
+         */
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writeByte(T_NULL);
+            } else if (value instanceof String) {
+                writeByte(T_STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                writeByte(T_INT);
+                writeZigZag((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(T_LONG);
+                writeZigZag((Long) value);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? T_TRUE : T_FALSE);
+            } else if (value instanceof Double) {
+                writeByte(T_DOUBLE);
+                writeFixedLong(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof BigDecimal && ((BigDecimal) value).unscaledValue().bitLength() < 63) {
+                BigDecimal decimal = (BigDecimal) value;
+                if (decimal.scale() == 2) {
+                    writeByte(T_MONEY);
+                    writeZigZag(decimal.unscaledValue().longValue());
+                } else {
+                    writeByte(T_DECIMAL);
+                    writeZigZag(decimal.scale());
+                    writeZigZag(decimal.unscaledValue().longValue());
+                }
+            } else if (value instanceof LocalDate) {
+                writeByte(T_DATE);
+                writeZigZag(((LocalDate) value).toEpochDay());
+            } else if (value instanceof LocalDateTime) {
+                writeByte(T_DATE_TIME);
+                writeDateTime((LocalDateTime) value);
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                writeByte(T_LIST);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Object[] && value.getClass() == Object[].class) {
+                Object[] array = (Object[]) value;
+                writeByte(T_ARRAY);
+                writeVarInt(array.length);
+                for (Object element : array) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeByte(T_MAP);
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (value.getClass() == User.class) {
+                writeByte(T_USER);
+                writeUser((User) value);
+            } else if (value.getClass() == Restaurant.class) {
+                writeByte(T_RESTAURANT);
+                writeRestaurant((Restaurant) value);
+            } else if (value.getClass() == MenuItem.class) {
+                writeByte(T_MENU_ITEM);
+                writeMenuItem((MenuItem) value);
+            } else if (value.getClass() == Order.class) {
+                writeByte(T_ORDER);
+                writeOrder((Order) value);
+            } else if (value.getClass() == OrderItem.class) {
+                writeByte(T_ORDER_ITEM);
+                writeOrderItem((OrderItem) value);
+            } else if (value.getClass() == OrderPage.class) {
+                writeByte(T_ORDER_PAGE);
+                writeOrderPage((OrderPage) value);
+            } else if (value.getClass() == OrderPageRequest.class) {
+                writeByte(T_ORDER_PAGE_REQUEST);
+                writeOrderPageRequest((OrderPageRequest) value);
+            } else if (value.getClass() == MenuRequest.class) {
+                writeByte(T_MENU_REQUEST);
+                writeMenuRequest((MenuRequest) value);
+            } else if (value.getClass() == MenuUpdate.class) {
+                writeByte(T_MENU_UPDATE);
+                writeMenuUpdate((MenuUpdate) value);
+            } else if (value.getClass() == IncomeReport.class) {
+                writeByte(T_INCOME_REPORT);
+                writeIncomeReport((IncomeReport) value);
+            } else if (value.getClass() == OrdersReport.class) {
+                writeByte(T_ORDERS_REPORT);
+                writeOrdersReport((OrdersReport) value);
+            } else if (value.getClass() == OrdersReportDetail.class) {
+                writeByte(T_ORDERS_REPORT_DETAIL);
+                writeOrdersReportDetail((OrdersReportDetail) value);
+            } else if (value.getClass() == PerformanceReport.class) {
+                writeByte(T_PERFORMANCE_REPORT);
+                writePerformanceReport((PerformanceReport) value);
+            } else if (value.getClass() == QuarterlyReport.class) {
+                writeByte(T_QUARTERLY_REPORT);
+                writeQuarterlyReport((QuarterlyReport) value);
+            } else if (value instanceof Serializable) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(value);
+                }
+                writeByte(T_SERIALIZED);
+                writeVarInt(bytes.size());
+                writeBytes(bytes.toByteArray());
+            } else {
+                throw new IOException("Cannot encode " + value.getClass().getName());
+            }
+        }
+
+        /**
+         * Writes a long as 8 big-endian bytes.
+         *
+         * @param value The number
+         */
+        void writeFixedLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[count++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * Writes a timestamp as UTC epoch seconds and nanoseconds.
+         *
+         * @param value The timestamp
+         */
+        void writeDateTime(LocalDateTime value) {
+            writeZigZag(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarInt(value.getNano());
+        }
+
+        /**
+         * Writes the fields of a user.
+         *
+         * @param user The user
+         * @throws IOException if the credit cannot be encoded
+         */
+        void writeUser(User user) throws IOException {
+            writeString(user.getUserId());
+            writeString(user.getPassword());
+            writeString(user.getFirstName());
+            writeString(user.getLastName());
+            writeString(user.getEmail());
+            writeString(user.getPhoneNumber());
+            writeString(user.getCreditCard());
+            writeValue(user.getCredit());
+            writeEnum(user.getRole());
+        }
+
+        /**
+         * Writes the fields of a restaurant.
+         *
+         * @param restaurant The restaurant
+         */
+        void writeRestaurant(Restaurant restaurant) {
+            writeString(restaurant.getRestaurantId());
+            writeString(restaurant.getPassword());
+            writeString(restaurant.getName());
+            writeString(restaurant.getPhoneNumber());
+            writeString(restaurant.getLocation());
+            writeEnum(restaurant.getBranch());
+        }
+
+        /**
+         * Writes the fields of a menu item.
+         *
+         * @param item The menu item
+         * @throws IOException if the price cannot be encoded
+         */
+        void writeMenuItem(MenuItem item) throws IOException {
+            writeZigZag(item.getItemId());
+            writeString(item.getRestaurantId());
+            writeString(item.getName());
+            writeZigZag(item.getQuantity());
+            writeString(item.getDescription());
+            writeValue(item.getPrice());
+            writeByte(item.isInStock() ? 1 : 0);
+            writeEnum(item.getType());
+        }
+
+        /**
+         * Writes the fields of an order item.
+         *
+         * @param item The order item
+         */
+        void writeOrderItem(OrderItem item) {
+            writeZigZag(item.getOrderItemId());
+            writeZigZag(item.getOrderId());
+            writeZigZag(item.getItemId());
+            writeZigZag(item.getQuantity());
+            writeString(item.getSpecialInstructions());
+        }
+
+        /**
+         * Writes the fields of an order, including its items.
+         * The three boolean flags share one byte.
+         *
+         * @param order The order
+         * @throws IOException if a field cannot be encoded
+         */
+        void writeOrder(Order order) throws IOException {
+            writeZigZag(order.getOrderId());
+            writeString(order.getCustomerId());
+            writeString(order.getRestaurantId());
+            writeValue(order.getTotalPrice());
+            writeEnum(order.getStatus());
+            writeEnum(order.getDeliveryType());
+            writeByte((order.isPayed() ? 1 : 0) | (order.isDiscountApplied() ? 2 : 0) | (order.getRobot() ? 4 : 0));
+            writeValue(order.getOrderTime());
+            writeValue(order.getRequiredTime());
+            writeValue(order.getActualArrivalTime());
+            writeString(order.getDeliveryAddress());
+            writeString(order.getRecipientName());
+            writeString(order.getRecipientPhone());
+            List<OrderItem> items = order.getOrderItems();
+            if (items == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(items.size() + 1);
+                for (OrderItem item : items) {
+                    writeOrderItem(item);
+                }
+            }
+        }
+
+        /**
+         * Writes a page of orders.
+         *
+         * @param page The page
+         * @throws IOException if an order cannot be encoded
+         */
+        void writeOrderPage(OrderPage page) throws IOException {
+            writeByte(page.hasMore() ? 1 : 0);
+            writeValue(page.getOrders());
+        }
+
+        /**
+         * Writes the fields of a page request.
+         *
+         * @param request The page request
+         * @throws IOException if a field cannot be encoded
+         */
+        void writeOrderPageRequest(OrderPageRequest request) throws IOException {
+            writeString(request.getOwnerId());
+            writeValue(request.getAfterTime());
+            writeZigZag(request.getAfterOrderId());
+            writeZigZag(request.getPageSize());
+        }
+
+        /**
+         * Writes the fields of a menu request.
+         *
+         * @param request The menu request
+         */
+        void writeMenuRequest(MenuRequest request) {
+            writeString(request.getRestaurantId());
+            writeZigZag(request.getKnownVersion());
+        }
+
+        /**
+         * Writes a menu update.
+         *
+         * @param update The menu update
+         * @throws IOException if an item cannot be encoded
+         */
+        void writeMenuUpdate(MenuUpdate update) throws IOException {
+            writeString(update.getRestaurantId());
+            writeZigZag(update.getVersion());
+            writeEnum(update.getKind());
+            writeValue(update.getItems());
+        }
+
+        /**
+         * Writes a dictionary of names: its size, then every name.
+         *
+         * @param names The names
+         */
+        void writeNames(List<String> names) {
+            writeVarInt(names.size());
+            for (String name : names) {
+                writeString(name);
+            }
+        }
+
+        /**
+         * Writes the first values of an int column: their count, then every value.
+         *
+         * @param values The column
+         * @param length Number of values to write
+         */
+        void writeInts(int[] values, int length) {
+            writeVarInt(length);
+            for (int i = 0; i < length; i++) {
+                writeZigZag(values[i]);
+            }
+        }
+
+        /**
+         * Writes the first values of a sorted int column as differences to the previous
+         * value, which keeps increasing IDs and days to one or two bytes each.
+         *
+         * @param values The column
+         * @param length Number of values to write
+         */
+        void writeDeltas(int[] values, int length) {
+            writeVarInt(length);
+            long previous = 0;
+            for (int i = 0; i < length; i++) {
+                writeZigZag(values[i] - previous);
+                previous = values[i];
+            }
+        }
+
+        /**
+         * Writes the first values of a long column: their count, then every value.
+         *
+         * @param values The column
+         * @param length Number of values to write
+         */
+        void writeLongs(long[] values, int length) {
+            writeVarInt(length);
+            for (int i = 0; i < length; i++) {
+                writeZigZag(values[i]);
+            }
+        }
+
+        /**
+         * Writes an income report.
+         *
+         * @param report The report
+         */
+        void writeIncomeReport(IncomeReport report) {
+            writeZigZag(report.getStartDate().toEpochDay());
+            writeNames(report.getRestaurantNames());
+            writeLongs(report.getRestaurantIncomeCents(), report.getRestaurantCount());
+            writeLongs(report.getDailyIncomeCents(), report.getDayCount());
+        }
+
+        /**
+         * Writes an orders report, including its item lines if present.
+         *
+         * @param report The report
+         * @throws IOException if the item lines cannot be encoded
+         */
+        void writeOrdersReport(OrdersReport report) throws IOException {
+            writeZigZag(report.getTotalOrders());
+            writeZigZag(report.getUniqueOrders());
+            writeNames(report.getTypeNames());
+            writeInts(report.getTypeQuantities(), report.getTypeCount());
+            writeNames(report.getItemNames());
+            writeInts(report.getItemQuantities(), report.getItemCount());
+            writeValue(report.getDetail());
+        }
+
+        /**
+         * Writes the item lines of an orders report, ordered by order ID.
+         *
+         * @param detail The item lines
+         */
+        void writeOrdersReportDetail(OrdersReportDetail detail) {
+            writeNames(detail.getNames());
+            writeDeltas(detail.getOrderIds(), detail.size());
+            writeInts(detail.getNameIndexes(), detail.size());
+            writeInts(detail.getQuantities(), detail.size());
+            writeInts(detail.getItemCounts(), detail.size());
+        }
+
+        /**
+         * Writes a performance report.
+         *
+         * @param report The report
+         */
+        void writePerformanceReport(PerformanceReport report) {
+            int days = report.getDayCount();
+            writeDeltas(report.getEpochDays(), days);
+            writeInts(report.getDeliveries(), days);
+            writeInts(report.getOnTimeDeliveries(), days);
+            writeLongs(report.getDeliveryMinutes(), days);
+            writeLongs(report.getRevenueCents(), days);
+        }
+
+        /**
+         * Writes a quarterly report.
+         *
+         * @param report The report
+         */
+        void writeQuarterlyReport(QuarterlyReport report) {
+            writeString(report.getBranch());
+            writeZigZag(report.getQuarter());
+            writeZigZag(report.getYear());
+            writeNames(report.getRestaurantNames());
+            int cells = report.getRestaurantCount() * QuarterlyReport.RANGES.size();
+            writeInts(report.getDays(), cells);
+            writeLongs(report.getRevenueCents(), cells);
+        }
+
+        /**
+         * Returns the bytes written so far.
+         *
+         * @return A copy of the frame content
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+
+    /**
+     * Reads the content of one frame.
+     */
+    private static final class Reader {
+
+        /** The frame being read */
+        private final byte[] buf;
+
+        /** Position of the next byte to read */
+        private int pos;
+
+        /** Strings read so far in this frame, by index */
+        private final List<String> strings = new ArrayList<>();
+
+        /** Number of values being read around the current one */
+        private int depth;
+
+        /**
+         * Creates a reader.
+         *
+         * @param buf The frame
+         * @param pos Position of the first byte to read
+         */
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        /**
+         * Reads one byte.
+         *
+         * @return The byte as an unsigned value
+         * @throws IOException if the frame ends
+         */
+        int readByte() throws IOException {
+            if (pos >= buf.length) {
+                throw new IOException("Truncated message frame");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        /**
+         * Reads a number written by writeVarLong.
+         *
+         * @return The number
+         * @throws IOException if the number is malformed
+         */
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable length number");
+        }
+
+        /**
+         * Reads a number written by writeVarInt.
+         *
+         * @return The number
+         * @throws IOException if the number is malformed
+         */
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        /**
+         * Reads a signed number written by writeZigZag.
+         *
+         * @return The number
+         * @throws IOException if the number is malformed
+         */
+        long readZigZag() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a signed int written by writeZigZag.
+         *
+         * @return The number
+         * @throws IOException if the number is malformed
+         */
+        int readZigZagInt() throws IOException {
+            return (int) readZigZag();
+        }
+
+        /**
+         * Reads 8 big-endian bytes.
+         *
+         * @return The number
+         * @throws IOException if the frame ends
+         */
+        long readFixedLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        /**
+         * Reads a string or a reference to a string read earlier in the frame.
+         *
+         * @return The string, may be null
+         * @throws IOException if the string is malformed
+         */
+        String readString() throws IOException {
+            int header = readVarInt();
+            if (header == 0) {
+                return null;
+            }
+            if ((header & 1) != 0) {
+                int index = header >>> 1;
+                if (index >= strings.size()) {
+                    throw new IOException("Unknown string reference " + index);
+                }
+                return strings.get(index);
+            }
+            int length = (header >>> 1) - 1;
+            if (length < 0 || length > buf.length - pos) {
+                throw new IOException("Truncated message frame");
+            }
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            strings.add(s);
+            return s;
+        }
+
+        /**
+         * Reads a nullable enum written as its ordinal plus one.
+         *
+         * @param values The constants of the enum
+         * @return The constant, or null
+         * @throws IOException if the ordinal is out of range
+         */
+        <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+            int ordinal = readVarInt();
+            if (ordinal == 0) {
+                return null;
+            }
+            if (ordinal < 0 || ordinal > values.length) {
+                throw new IOException("Unknown enum ordinal " + (ordinal - 1));
+            }
+            return values[ordinal - 1];
+        }
+
+        /**
+         * Reads a tagged value.
+         *
+         * @return The value, may be null
+         * @throws IOException if the frame is malformed or nests values deeper than MAX_DEPTH
+         */
+        Object readValue() throws IOException {
+            if (depth == MAX_DEPTH) {
+                throw new IOException("Message values nested deeper than " + MAX_DEPTH);
+            }
+            depth++;
+            try {
+                return readTaggedValue(readByte());
+            } finally {
+                depth--;
+            }
+        }
+
+        /**
+         * Reads the value following a tag.
+         *
+         * @param tag The tag
+         * @return The value, may be null
+         * @throws IOException if the frame is malformed
+         */
+        private Object readTaggedValue(int tag) throws IOException {
+            switch (tag) {
+                case T_NULL:
+                    return null;
+                case T_STRING:
+                    return readString();
+                case T_INT:
+                    return readZigZagInt();
+                case T_LONG:
+                    return readZigZag();
+                case T_TRUE:
+                    return Boolean.TRUE;
+                case T_FALSE:
+                    return Boolean.FALSE;
+                case T_DOUBLE:
+                    return Double.longBitsToDouble(readFixedLong());
+                case T_MONEY:
+                    return BigDecimal.valueOf(readZigZag(), 2);
+                case T_DECIMAL: {
+                    int scale = readZigZagInt();
+                    return new BigDecimal(BigInteger.valueOf(readZigZag()), scale);
+                }
+                case T_DATE:
+                    return LocalDate.ofEpochDay(readZigZag());
+                case T_DATE_TIME:
+                    return readDateTime();
+                case T_LIST: {
+                    int size = readSize();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case T_ARRAY: {
+                    Object[] array = new Object[readSize()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readValue();
+                    }
+                    return array;
+                }
+                case T_MAP: {
+                    int size = readSize();
+                    Map<Object, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = readValue();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                case T_USER:
+                    return readUser();
+                case T_RESTAURANT:
+                    return readRestaurant();
+                case T_MENU_ITEM:
+                    return readMenuItem();
+                case T_ORDER:
+                    return readOrder();
+                case T_ORDER_ITEM:
+                    return readOrderItem();
+                case T_SERIALIZED:
+                    return readSerialized();
+                case T_ORDER_PAGE:
+                    return readOrderPage();
+                case T_ORDER_PAGE_REQUEST:
+                    return readOrderPageRequest();
+                case T_MENU_REQUEST:
+                    return readMenuRequest();
+                case T_MENU_UPDATE:
+                    return readMenuUpdate();
+                case T_INCOME_REPORT:
+                    return readIncomeReport();
+                case T_ORDERS_REPORT:
+                    return readOrdersReport();
+                case T_ORDERS_REPORT_DETAIL:
+                    return readOrdersReportDetail();
+                case T_PERFORMANCE_REPORT:
+                    return readPerformanceReport();
+                case T_QUARTERLY_REPORT:
+                    return readQuarterlyReport();
+                default:
+                    throw new IOException("Unknown value tag " + tag);
+            }
+        }
+
+        /**
+         * Reads a collection size and checks it against the bytes left in the frame.
+         *
+         * @return The size
+         * @throws IOException if the size cannot be right
+         */
+        private int readSize() throws IOException {
+            int size = readVarInt();
+            if (size < 0 || size > buf.length - pos) {
+                throw new IOException("Invalid collection size " + size);
+            }
+            return size;
+        }
+
+        /**
+         * Reads a timestamp written by writeDateTime.
+         *
+         * @return The timestamp
+         * @throws IOException if the frame is malformed
+         */
+        LocalDateTime readDateTime() throws IOException {
+            long seconds = readZigZag();
+            return LocalDateTime.ofEpochSecond(seconds, readVarInt(), ZoneOffset.UTC);
+        }
+
+        /**
+         * Reads an object embedded with Java serialization.
+         *
+         * @return The object
+         * @throws IOException if the object cannot be deserialized
+         */
+        private Object readSerialized() throws IOException {
+            int length = readSize();
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf, pos, length))) {
+                pos += length;
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown embedded class: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Reads a user written by writeUser.
+         *
+         * @return The user
+         * @throws IOException if the frame is malformed
+         */
+        User readUser() throws IOException {
+            User user = new User();
+            user.setUserId(readString());
+            user.setPassword(readString());
+            user.setFirstName(readString());
+            user.setLastName(readString());
+            user.setEmail(readString());
+            user.setPhoneNumber(readString());
+            user.setCreditCard(readString());
+            user.setCredit((BigDecimal) readValue());
+            user.setRole(readEnum(User.UserRole.values()));
+            return user;
+        }
+
+        /**
+         * Reads a restaurant written by writeRestaurant.
+         *
+         * @return The restaurant
+         * @throws IOException if the frame is malformed
+         */
+        Restaurant readRestaurant() throws IOException {
+            Restaurant restaurant = new Restaurant();
+            restaurant.setRestaurantId(readString());
+            restaurant.setPassword(readString());
+            restaurant.setName(readString());
+            restaurant.setPhoneNumber(readString());
+            restaurant.setLocation(readString());
+            restaurant.setBranch(readEnum(Restaurant.branch.values()));
+            return restaurant;
+        }
+
+        /**
+         * Reads a menu item written by writeMenuItem.
+         *
+         * @return The menu item
+         * @throws IOException if the frame is malformed
+         */
+        MenuItem readMenuItem() throws IOException {
+            MenuItem item = new MenuItem();
+            item.setItemId(readZigZagInt());
+            item.setRestaurantId(readString());
+            item.setName(readString());
+            item.setQuantity(readZigZagInt());
+            item.setDescription(readString());
+            item.setPrice((BigDecimal) readValue());
+            item.setInStock(readByte() != 0);
+            item.setType(readEnum(MenuItem.ItemType.values()));
+            return item;
+        }
+
+        /**
+         * Reads an order item written by writeOrderItem.
+         *
+         * @return The order item
+         * @throws IOException if the frame is malformed
+         */
+        OrderItem readOrderItem() throws IOException {
+            OrderItem item = new OrderItem();
+            item.setOrderItemId(readZigZagInt());
+            item.setOrderId(readZigZagInt());
+            item.setItemId(readZigZagInt());
+            item.setQuantity(readZigZagInt());
+            item.setSpecialInstructions(readString());
+            return item;
+        }
+
+        /**
+         * Reads an order written by writeOrder.
+         *
+         * @return The order
+         * @throws IOException if the frame is malformed
+         */
+        Order readOrder() throws IOException {
+            Order order = new Order();
+            order.setOrderId(readZigZagInt());
+            order.setCustomerId(readString());
+            order.setRestaurantId(readString());
+            order.setTotalPrice((BigDecimal) readValue());
+            order.setStatus(readEnum(Order.OrderStatus.values()));
+            order.setDeliveryType(readEnum(Order.DeliveryType.values()));
+            int flags = readByte();
+            order.setPayed((flags & 1) != 0);
+            order.setDiscountApplied((flags & 2) != 0);
+            order.setRobot((flags & 4) != 0);
+            order.setOrderTime((LocalDateTime) readValue());
+            order.setRequiredTime((LocalDateTime) readValue());
+            order.setActualArrivalTime((LocalDateTime) readValue());
+            order.setDeliveryAddress(readString());
+            order.setRecipientName(readString());
+            order.setRecipientPhone(readString());
+            int items = readVarInt();
+            if (items < 0 || items - 1 > buf.length - pos) {
+                throw new IOException("Invalid collection size " + items);
+            }
+            if (items > 0) {
+                List<OrderItem> orderItems = new ArrayList<>(items - 1);
+                for (int i = 1; i < items; i++) {
+                    orderItems.add(readOrderItem());
+                }
+                order.setOrderItems(orderItems);
+            }
+            return order;
+        }
+
+        /**
+         * Reads a page of orders written by writeOrderPage.
+         *
+         * @return The page
+         * @throws IOException if the frame is malformed
+         */
+        @SuppressWarnings("unchecked")
+        OrderPage readOrderPage() throws IOException {
+            boolean hasMore = readByte() != 0;
+            Object orders = readValue();
+            if (orders != null && !(orders instanceof List)) {
+                throw new IOException("Invalid order page");
+            }
+            return new OrderPage((List<Order>) orders, hasMore);
+        }
+
+        /**
+         * Reads a page request written by writeOrderPageRequest.
+         *
+         * @return The page request
+         * @throws IOException if the frame is malformed
+         */
+        OrderPageRequest readOrderPageRequest() throws IOException {
+            String ownerId = readString();
+            LocalDateTime afterTime = (LocalDateTime) readValue();
+            int afterOrderId = readZigZagInt();
+            return new OrderPageRequest(ownerId, afterTime, afterOrderId, readZigZagInt());
+        }
+
+        /**
+         * Reads a menu request written by writeMenuRequest.
+         *
+         * @return The menu request
+         * @throws IOException if the frame is malformed
+         */
+        MenuRequest readMenuRequest() throws IOException {
+            String restaurantId = readString();
+            return new MenuRequest(restaurantId, readZigZag());
+        }
+
+        /**
+         * Reads a menu update written by writeMenuUpdate.
+         *
+         * @return The menu update
+         * @throws IOException if the frame is malformed
+         */
+        @SuppressWarnings("unchecked")
+        MenuUpdate readMenuUpdate() throws IOException {
+            String restaurantId = readString();
+            long version = readZigZag();
+            MenuUpdate.Kind kind = readEnum(MenuUpdate.Kind.values());
+            Object items = readValue();
+            if (items != null && !(items instanceof List)) {
+                throw new IOException("Invalid menu update");
+            }
+            return new MenuUpdate(restaurantId, version, kind, (List<MenuItem>) items);
+        }
+
+        /**
+         * Reads a dictionary of names written by writeNames.
+         *
+         * @return The names
+         * @throws IOException if the frame is malformed
+         */
+        List<String> readNames() throws IOException {
+            int size = readSize();
+            List<String> names = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                names.add(readString());
+            }
+            return names;
+        }
+
+        /**
+         * Reads an int column written by writeInts.
+         *
+         * @param length The expected number of values, or -1 for any
+         * @return The column
+         * @throws IOException if the frame is malformed or the column has another length
+         */
+        int[] readInts(int length) throws IOException {
+            int[] values = new int[readColumnSize(length)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readZigZagInt();
+            }
+            return values;
+        }
+
+        /**
+         * Reads an int column written by writeDeltas.
+         *
+         * @param length The expected number of values, or -1 for any
+         * @return The column
+         * @throws IOException if the frame is malformed or the column has another length
+         */
+        int[] readDeltas(int length) throws IOException {
+            int[] values = new int[readColumnSize(length)];
+            long previous = 0;
+            for (int i = 0; i < values.length; i++) {
+                previous += readZigZag();
+                values[i] = (int) previous;
+            }
+            return values;
+        }
+
+        /**
+         * Reads a long column written by writeLongs.
+         *
+         * @param length The expected number of values, or -1 for any
+         * @return The column
+         * @throws IOException if the frame is malformed or the column has another length
+         */
+        long[] readLongs(int length) throws IOException {
+            long[] values = new long[readColumnSize(length)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readZigZag();
+            }
+            return values;
+        }
+
+        /**
+         * Reads the size of a column and checks it against the expected one.
+         *
+         * @param length The expected number of values, or -1 for any
+         * @return The size
+         * @throws IOException if the size is invalid or differs from the expected one
+         */
+        private int readColumnSize(int length) throws IOException {
+            int size = readSize();
+            if (length >= 0 && size != length) {
+                throw new IOException("Column of " + size + " values, expected " + length);
+            }
+            return size;
+        }
+
+        /**
+         * Reads an income report written by writeIncomeReport.
+         *
+         * @return The report
+         * @throws IOException if the frame is malformed
+         */
+        IncomeReport readIncomeReport() throws IOException {
+            LocalDate startDate = LocalDate.ofEpochDay(readZigZag());
+            List<String> names = readNames();
+            long[] restaurantIncome = readLongs(names.size());
+            return new IncomeReport(startDate, names, restaurantIncome, readLongs(-1));
+        }
+
+        /**
+         * Reads an orders report written by writeOrdersReport.
+         *
+         * @return The report
+         * @throws IOException if the frame is malformed
+         */
+        OrdersReport readOrdersReport() throws IOException {
+            int totalOrders = readZigZagInt();
+            int uniqueOrders = readZigZagInt();
+            List<String> typeNames = readNames();
+            int[] typeQuantities = readInts(typeNames.size());
+            List<String> itemNames = readNames();
+            int[] itemQuantities = readInts(itemNames.size());
+            Object detail = readValue();
+            if (detail != null && !(detail instanceof OrdersReportDetail)) {
+                throw new IOException("Invalid orders report");
+            }
+            return new OrdersReport(totalOrders, uniqueOrders, typeNames, typeQuantities, itemNames,
+                    itemQuantities, (OrdersReportDetail) detail);
+        }
+
+        /**
+         * Reads the item lines of an orders report written by writeOrdersReportDetail.
+         *
+         * @return The item lines
+         * @throws IOException if the frame is malformed
+         */
+        OrdersReportDetail readOrdersReportDetail() throws IOException {
+            List<String> names = readNames();
+            int[] orderIds = readDeltas(-1);
+            int[] nameIndexes = readInts(orderIds.length);
+            for (int nameIndex : nameIndexes) {
+                if (nameIndex < 0 || nameIndex >= names.size()) {
+                    throw new IOException("Unknown item name index " + nameIndex);
+                }
+            }
+            int[] quantities = readInts(orderIds.length);
+            return new OrdersReportDetail(names, orderIds, nameIndexes, quantities, readInts(orderIds.length));
+        }
+
+        /**
+         * Reads a performance report written by writePerformanceReport.
+         *
+         * @return The report
+         * @throws IOException if the frame is malformed
+         */
+        PerformanceReport readPerformanceReport() throws IOException {
+            int[] epochDays = readDeltas(-1);
+            int[] deliveries = readInts(epochDays.length);
+            int[] onTime = readInts(epochDays.length);
+            long[] minutes = readLongs(epochDays.length);
+            return new PerformanceReport(epochDays, deliveries, onTime, minutes, readLongs(epochDays.length),
+                    epochDays.length);
+        }
+
+        /**
+         * Reads a quarterly report written by writeQuarterlyReport.
+         *
+         * @return The report
+         * @throws IOException if the frame is malformed
+         */
+        QuarterlyReport readQuarterlyReport() throws IOException {
+            String branch = readString();
+            int quarter = readZigZagInt();
+            int year = readZigZagInt();
+            List<String> names = readNames();
+            int cells = names.size() * QuarterlyReport.RANGES.size();
+            int[] days = readInts(cells);
+            return new QuarterlyReport(branch, quarter, year, names, days, readLongs(cells));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of orders, as answered to an {@link OrderPageRequest}.
+ */
+@SuppressWarnings("serial")
+public class OrderPage implements Serializable {
+
+    /**
+     * The orders of the page, in list order.
+     */
+    private List<Order> orders;
+
+    /**
+     * Whether more orders follow this page.
+     */
+    private boolean hasMore;
+
+    /**
+     * Creates an empty OrderPage object (no-argument constructor).
+     */
+    public OrderPage() {
+        this.orders = new ArrayList<>();
+    }
+
+    /**
+     * Creates an OrderPage object with the specified details.
+     *
+     * @param orders The orders of the page, in list order.
+     * @param hasMore Whether more orders follow this page.
+     */
+    public OrderPage(List<Order> orders, boolean hasMore) {
+        this.orders = orders;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and setters for all fields
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public void setOrders(List<Order> orders) {
+        this.orders = orders;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderPage{orders=" + (orders == null ? 0 : orders.size()) + ", hasMore=" + hasMore + "}";
+    }
+}
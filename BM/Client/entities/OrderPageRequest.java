@@ -0,0 +1,130 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A request for one page of a customer's or a restaurant's orders.
+ * Pages are keyed on the (orderTime, orderId) of the last order already received,
+ * so the server seeks straight to the next page instead of skipping rows,
+ * and a page costs the same however deep into the list it is.
+ */
+@SuppressWarnings("serial")
+public class OrderPageRequest implements Serializable {
+
+    /**
+     * The customer or restaurant whose orders are listed.
+     */
+    private String ownerId;
+
+    /**
+     * The order time of the last order already received, or null for the first page.
+     */
+    private LocalDateTime afterTime;
+
+    /**
+     * The ID of the last order already received, used to order orders placed at the same time.
+     */
+    private int afterOrderId;
+
+    /**
+     * The maximum number of orders in the page.
+     */
+    private int pageSize;
+
+    /**
+     * Creates an empty OrderPageRequest object (no-argument constructor).
+     */
+    public OrderPageRequest() {}
+
+    /**
+     * Creates an OrderPageRequest object with the specified details.
+     *
+     * @param ownerId The customer or restaurant whose orders are listed.
+     * @param afterTime The order time of the last order already received, or null for the first page.
+     * @param afterOrderId The ID of the last order already received.
+     * @param pageSize The maximum number of orders in the page.
+     */
+    public OrderPageRequest(String ownerId, LocalDateTime afterTime, int afterOrderId, int pageSize) {
+        this.ownerId = ownerId;
+        this.afterTime = afterTime;
+        this.afterOrderId = afterOrderId;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Creates a request for the first page of orders.
+     *
+     * @param ownerId The customer or restaurant whose orders are listed.
+     * @param pageSize The maximum number of orders in the page.
+     * @return The request.
+     */
+    public static OrderPageRequest firstPage(String ownerId, int pageSize) {
+        return new OrderPageRequest(ownerId, null, 0, pageSize);
+    }
+
+    /**
+     * Creates the request for the page that follows a page received for this request.
+     *
+     * @param page The page received.
+     * @return The request for the next page, or this request if the page was empty.
+     */
+    public OrderPageRequest next(OrderPage page) {
+        List<Order> orders = page.getOrders();
+        if (orders == null || orders.isEmpty()) {
+            return this;
+        }
+        Order last = orders.get(orders.size() - 1);
+        return new OrderPageRequest(ownerId, last.getOrderTime(), last.getOrderId(), pageSize);
+    }
+
+    /**
+     * Checks whether this request is for the first page.
+     *
+     * @return true if no order was received yet.
+     */
+    public boolean isFirstPage() {
+        return afterTime == null;
+    }
+
+    // Getters and setters for all fields
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(String ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public LocalDateTime getAfterTime() {
+        return afterTime;
+    }
+
+    public void setAfterTime(LocalDateTime afterTime) {
+        this.afterTime = afterTime;
+    }
+
+    public int getAfterOrderId() {
+        return afterOrderId;
+    }
+
+    public void setAfterOrderId(int afterOrderId) {
+        this.afterOrderId = afterOrderId;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderPageRequest{ownerId='" + ownerId + "', afterTime=" + afterTime
+                + ", afterOrderId=" + afterOrderId + ", pageSize=" + pageSize + "}";
+    }
+}
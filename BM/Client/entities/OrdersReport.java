@@ -0,0 +1,303 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The items ordered from a manager's restaurants over a period: the quantity ordered
+ * of every item type and of every item, and optionally the item lines themselves.
+ * Type and item names are stored once, with the quantities in parallel arrays.
+ */
+@SuppressWarnings("serial")
+public class OrdersReport implements Serializable {
+
+    /**
+     * The total quantity ordered.
+     */
+    private int totalOrders;
+
+    /**
+     * The number of distinct orders.
+     */
+    private int uniqueOrders;
+
+    /**
+     * The item types, in order of first appearance.
+     */
+    private List<String> typeNames;
+
+    /**
+     * The quantity ordered of each type, by index in {@link #typeNames}.
+     */
+    private int[] typeQuantities;
+
+    /**
+     * The item names, in order of first appearance.
+     */
+    private List<String> itemNames;
+
+    /**
+     * The quantity ordered of each item, by index in {@link #itemNames}.
+     */
+    private int[] itemQuantities;
+
+    /**
+     * The item lines, or null unless they were asked for.
+     */
+    private OrdersReportDetail detail;
+
+    /**
+     * Index of every type in {@link #typeNames}, used while quantities are added.
+     */
+    private transient Map<String, Integer> typeLookup;
+
+    /**
+     * Index of every item in {@link #itemNames}, used while quantities are added.
+     */
+    private transient Map<String, Integer> itemLookup;
+
+    /**
+     * Creates an empty OrdersReport object (no-argument constructor).
+     */
+    public OrdersReport() {
+        this.typeNames = new ArrayList<>();
+        this.typeQuantities = new int[8];
+        this.itemNames = new ArrayList<>();
+        this.itemQuantities = new int[16];
+    }
+
+    /**
+     * Creates an OrdersReport object with the specified details.
+     *
+     * @param totalOrders The total quantity ordered.
+     * @param uniqueOrders The number of distinct orders.
+     * @param typeNames The item types.
+     * @param typeQuantities The quantity ordered of each type.
+     * @param itemNames The item names.
+     * @param itemQuantities The quantity ordered of each item.
+     * @param detail The item lines, or null.
+     */
+    public OrdersReport(int totalOrders, int uniqueOrders, List<String> typeNames, int[] typeQuantities,
+            List<String> itemNames, int[] itemQuantities, OrdersReportDetail detail) {
+        this.totalOrders = totalOrders;
+        this.uniqueOrders = uniqueOrders;
+        this.typeNames = typeNames;
+        this.typeQuantities = typeQuantities;
+        this.itemNames = itemNames;
+        this.itemQuantities = itemQuantities;
+        this.detail = detail;
+    }
+
+    /**
+     * Adds an ordered quantity of an item.
+     *
+     * @param type The item type.
+     * @param itemName The item name.
+     * @param quantity The quantity.
+     */
+    public void add(String type, String itemName, int quantity) {
+        addTypeQuantity(type, quantity);
+        addItemQuantity(itemName, quantity);
+    }
+
+    /**
+     * Adds an ordered quantity of an item type, counted in the total quantity.
+     *
+     * @param type The item type.
+     * @param quantity The quantity.
+     */
+    public void addTypeQuantity(String type, int quantity) {
+        if (typeLookup == null) {
+            typeLookup = lookup(typeNames);
+        }
+        int typeIndex = indexOf(typeLookup, typeNames, type);
+        if (typeIndex == typeQuantities.length) {
+            typeQuantities = Arrays.copyOf(typeQuantities, Math.max(8, typeIndex * 2));
+        }
+        typeQuantities[typeIndex] += quantity;
+        totalOrders += quantity;
+    }
+
+    /**
+     * Adds an ordered quantity of an item, without counting it in the total quantity,
+     * which follows the types.
+     *
+     * @param itemName The item name.
+     * @param quantity The quantity.
+     */
+    public void addItemQuantity(String itemName, int quantity) {
+        if (itemLookup == null) {
+            itemLookup = lookup(itemNames);
+        }
+        int itemIndex = indexOf(itemLookup, itemNames, itemName);
+        if (itemIndex == itemQuantities.length) {
+            itemQuantities = Arrays.copyOf(itemQuantities, Math.max(16, itemIndex * 2));
+        }
+        itemQuantities[itemIndex] += quantity;
+    }
+
+    /**
+     * Drops the unused capacity of the quantities, once every quantity is added.
+     */
+    public void trimToSize() {
+        typeQuantities = Arrays.copyOf(typeQuantities, typeNames.size());
+        itemQuantities = Arrays.copyOf(itemQuantities, itemNames.size());
+    }
+
+    /**
+     * Returns the most ordered items.
+     *
+     * @param limit The largest number of items returned.
+     * @return The item indexes, most ordered first.
+     */
+    public int[] getTopItems(int limit) {
+        Integer[] indexes = new Integer[itemNames.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, (a, b) -> Integer.compare(itemQuantities[b], itemQuantities[a]));
+        int[] top = new int[Math.min(limit, indexes.length)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = indexes[i];
+        }
+        return top;
+    }
+
+    /**
+     * Builds the index of a dictionary.
+     *
+     * @param names The dictionary.
+     * @return The index of every name.
+     */
+    private static Map<String, Integer> lookup(List<String> names) {
+        Map<String, Integer> lookup = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            lookup.put(names.get(i), i);
+        }
+        return lookup;
+    }
+
+    /**
+     * Returns the index of a name in a dictionary, adding it if needed.
+     *
+     * @param lookup The index of the dictionary.
+     * @param names The dictionary.
+     * @param name The name.
+     * @return The index of the name.
+     */
+    private static int indexOf(Map<String, Integer> lookup, List<String> names, String name) {
+        Integer index = lookup.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            lookup.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of item types ordered.
+     *
+     * @return The number of types.
+     */
+    public int getTypeCount() {
+        return typeNames.size();
+    }
+
+    /**
+     * Returns an item type.
+     *
+     * @param type The type index.
+     * @return The type name.
+     */
+    public String getTypeName(int type) {
+        return typeNames.get(type);
+    }
+
+    /**
+     * Returns the quantity ordered of an item type.
+     *
+     * @param type The type index.
+     * @return The quantity.
+     */
+    public int getTypeQuantity(int type) {
+        return typeQuantities[type];
+    }
+
+    /**
+     * Returns the number of items ordered.
+     *
+     * @return The number of items.
+     */
+    public int getItemCount() {
+        return itemNames.size();
+    }
+
+    /**
+     * Returns an item name.
+     *
+     * @param item The item index.
+     * @return The item name.
+     */
+    public String getItemName(int item) {
+        return itemNames.get(item);
+    }
+
+    /**
+     * Returns the quantity ordered of an item.
+     *
+     * @param item The item index.
+     * @return The quantity.
+     */
+    public int getItemQuantity(int item) {
+        return itemQuantities[item];
+    }
+
+    // Getters and setters of the stored form; the arrays are not copied
+
+    public int getTotalOrders() {
+        return totalOrders;
+    }
+
+    public int getUniqueOrders() {
+        return uniqueOrders;
+    }
+
+    public void setUniqueOrders(int uniqueOrders) {
+        this.uniqueOrders = uniqueOrders;
+    }
+
+    public List<String> getTypeNames() {
+        return typeNames;
+    }
+
+    public int[] getTypeQuantities() {
+        return typeQuantities;
+    }
+
+    public List<String> getItemNames() {
+        return itemNames;
+    }
+
+    public int[] getItemQuantities() {
+        return itemQuantities;
+    }
+
+    public OrdersReportDetail getDetail() {
+        return detail;
+    }
+
+    public void setDetail(OrdersReportDetail detail) {
+        this.detail = detail;
+    }
+
+    @Override
+    public String toString() {
+        return "OrdersReport{totalOrders=" + totalOrders + ", uniqueOrders=" + uniqueOrders
+                + ", types=" + typeNames.size() + ", items=" + itemNames.size() + ", detail=" + detail + "}";
+    }
+}
@@ -0,0 +1,209 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The item lines of an orders report, sent only when the client asks for them.
+ * Lines are stored column by column in parallel arrays, and each item name is stored
+ * once in a dictionary the lines refer to by index, so a report of many thousands of
+ * lines costs a few arrays instead of one map per line.
+ */
+@SuppressWarnings("serial")
+public class OrdersReportDetail implements Serializable {
+
+    /**
+     * The distinct item names, referred to by index from {@link #nameIndexes}.
+     */
+    private List<String> names;
+
+    /**
+     * The order of each line.
+     */
+    private int[] orderIds;
+
+    /**
+     * The index in {@link #names} of the item name of each line.
+     */
+    private int[] nameIndexes;
+
+    /**
+     * The quantity of each line.
+     */
+    private int[] quantities;
+
+    /**
+     * The number of order items merged into each line.
+     */
+    private int[] itemCounts;
+
+    /**
+     * The number of lines.
+     */
+    private int size;
+
+    /**
+     * Index of every name in {@link #names}, used while lines are added.
+     */
+    private transient Map<String, Integer> nameLookup;
+
+    /**
+     * Creates an empty OrdersReportDetail object (no-argument constructor).
+     */
+    public OrdersReportDetail() {
+        this.names = new ArrayList<>();
+        this.orderIds = new int[16];
+        this.nameIndexes = new int[16];
+        this.quantities = new int[16];
+        this.itemCounts = new int[16];
+    }
+
+    /**
+     * Creates an OrdersReportDetail object with the specified lines.
+     *
+     * @param names The distinct item names.
+     * @param orderIds The order of each line.
+     * @param nameIndexes The index in names of the item name of each line.
+     * @param quantities The quantity of each line.
+     * @param itemCounts The number of order items merged into each line.
+     */
+    public OrdersReportDetail(List<String> names, int[] orderIds, int[] nameIndexes, int[] quantities,
+            int[] itemCounts) {
+        this.names = names;
+        this.orderIds = orderIds;
+        this.nameIndexes = nameIndexes;
+        this.quantities = quantities;
+        this.itemCounts = itemCounts;
+        this.size = orderIds.length;
+    }
+
+    /**
+     * Appends a line.
+     *
+     * @param orderId The order of the line.
+     * @param itemName The item name.
+     * @param quantity The quantity.
+     * @param itemCount The number of order items merged into the line.
+     */
+    public void add(int orderId, String itemName, int quantity, int itemCount) {
+        if (nameLookup == null) {
+            nameLookup = new HashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                nameLookup.put(names.get(i), i);
+            }
+        }
+        Integer nameIndex = nameLookup.get(itemName);
+        if (nameIndex == null) {
+            nameIndex = names.size();
+            names.add(itemName);
+            nameLookup.put(itemName, nameIndex);
+        }
+        if (size == orderIds.length) {
+            int capacity = Math.max(16, size * 2);
+            orderIds = Arrays.copyOf(orderIds, capacity);
+            nameIndexes = Arrays.copyOf(nameIndexes, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            itemCounts = Arrays.copyOf(itemCounts, capacity);
+        }
+        orderIds[size] = orderId;
+        nameIndexes[size] = nameIndex;
+        quantities[size] = quantity;
+        itemCounts[size] = itemCount;
+        size++;
+    }
+
+    /**
+     * Drops the unused capacity of the columns, once every line is added.
+     */
+    public void trimToSize() {
+        orderIds = Arrays.copyOf(orderIds, size);
+        nameIndexes = Arrays.copyOf(nameIndexes, size);
+        quantities = Arrays.copyOf(quantities, size);
+        itemCounts = Arrays.copyOf(itemCounts, size);
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return The number of lines.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the order of a line.
+     *
+     * @param line The line index.
+     * @return The order ID.
+     */
+    public int getOrderId(int line) {
+        return orderIds[line];
+    }
+
+    /**
+     * Returns the item name of a line.
+     *
+     * @param line The line index.
+     * @return The item name.
+     */
+    public String getItemName(int line) {
+        return names.get(nameIndexes[line]);
+    }
+
+    /**
+     * Returns the quantity of a line.
+     *
+     * @param line The line index.
+     * @return The quantity.
+     */
+    public int getQuantity(int line) {
+        return quantities[line];
+    }
+
+    /**
+     * Returns the number of order items merged into a line.
+     *
+     * @param line The line index.
+     * @return The item count.
+     */
+    public int getItemCount(int line) {
+        return itemCounts[line];
+    }
+
+    /**
+     * Returns the distinct item names.
+     *
+     * @return The names, in order of first appearance.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    // Getters of the stored form, used by the message codec; the arrays are not copied
+
+    public int[] getOrderIds() {
+        return orderIds;
+    }
+
+    public int[] getNameIndexes() {
+        return nameIndexes;
+    }
+
+    public int[] getQuantities() {
+        return quantities;
+    }
+
+    public int[] getItemCounts() {
+        return itemCounts;
+    }
+
+    @Override
+    public String toString() {
+        return "OrdersReportDetail{lines=" + size + ", names=" + names.size() + "}";
+    }
+}
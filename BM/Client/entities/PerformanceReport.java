@@ -0,0 +1,257 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The delivery performance of a manager's restaurants over a period, one entry per
+ * day with deliveries. Each column of the days is a primitive array; totals, averages
+ * and on-time percentages are derived from them.
+ */
+@SuppressWarnings("serial")
+public class PerformanceReport implements Serializable {
+
+    /**
+     * The day of each entry, as days since the epoch, in increasing order.
+     */
+    private int[] epochDays;
+
+    /**
+     * The number of deliveries of each day.
+     */
+    private int[] deliveries;
+
+    /**
+     * The number of deliveries of each day that arrived on time.
+     */
+    private int[] onTimeDeliveries;
+
+    /**
+     * The total delivery time in minutes of each day.
+     */
+    private long[] deliveryMinutes;
+
+    /**
+     * The delivery revenue in cents of each day.
+     */
+    private long[] revenueCents;
+
+    /**
+     * The number of days with deliveries.
+     */
+    private int size;
+
+    /**
+     * Creates an empty PerformanceReport object (no-argument constructor).
+     */
+    public PerformanceReport() {
+        this(new int[32], new int[32], new int[32], new long[32], new long[32], 0);
+    }
+
+    /**
+     * Creates a PerformanceReport object with the specified details.
+     *
+     * @param epochDays The day of each entry, as days since the epoch.
+     * @param deliveries The number of deliveries of each day.
+     * @param onTimeDeliveries The number of deliveries of each day that arrived on time.
+     * @param deliveryMinutes The total delivery time in minutes of each day.
+     * @param revenueCents The delivery revenue in cents of each day.
+     * @param size The number of days.
+     */
+    public PerformanceReport(int[] epochDays, int[] deliveries, int[] onTimeDeliveries, long[] deliveryMinutes,
+            long[] revenueCents, int size) {
+        this.epochDays = epochDays;
+        this.deliveries = deliveries;
+        this.onTimeDeliveries = onTimeDeliveries;
+        this.deliveryMinutes = deliveryMinutes;
+        this.revenueCents = revenueCents;
+        this.size = size;
+    }
+
+    /**
+     * Appends a day. Days are appended in increasing order.
+     *
+     * @param day The day.
+     * @param dayDeliveries The number of deliveries.
+     * @param dayOnTime The number of deliveries that arrived on time.
+     * @param dayMinutes The total delivery time in minutes.
+     * @param dayRevenueCents The delivery revenue in cents.
+     */
+    public void addDay(LocalDate day, int dayDeliveries, int dayOnTime, long dayMinutes, long dayRevenueCents) {
+        if (size == epochDays.length) {
+            int capacity = Math.max(32, size * 2);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            deliveries = Arrays.copyOf(deliveries, capacity);
+            onTimeDeliveries = Arrays.copyOf(onTimeDeliveries, capacity);
+            deliveryMinutes = Arrays.copyOf(deliveryMinutes, capacity);
+            revenueCents = Arrays.copyOf(revenueCents, capacity);
+        }
+        epochDays[size] = (int) day.toEpochDay();
+        deliveries[size] = dayDeliveries;
+        onTimeDeliveries[size] = dayOnTime;
+        deliveryMinutes[size] = dayMinutes;
+        revenueCents[size] = dayRevenueCents;
+        size++;
+    }
+
+    /**
+     * Drops the unused capacity of the columns, once every day is added.
+     */
+    public void trimToSize() {
+        epochDays = Arrays.copyOf(epochDays, size);
+        deliveries = Arrays.copyOf(deliveries, size);
+        onTimeDeliveries = Arrays.copyOf(onTimeDeliveries, size);
+        deliveryMinutes = Arrays.copyOf(deliveryMinutes, size);
+        revenueCents = Arrays.copyOf(revenueCents, size);
+    }
+
+    /**
+     * Returns whether the period had no deliveries.
+     *
+     * @return true if there is nothing to show.
+     */
+    public boolean isEmpty() {
+        return getTotalDeliveries() == 0;
+    }
+
+    /**
+     * Returns the number of deliveries of the period.
+     *
+     * @return The number of deliveries.
+     */
+    public long getTotalDeliveries() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += deliveries[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of deliveries of the period that arrived on time.
+     *
+     * @return The number of deliveries on time.
+     */
+    public long getTotalOnTimeDeliveries() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += onTimeDeliveries[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the average delivery time of the period.
+     *
+     * @return The average in minutes, 0 without deliveries.
+     */
+    public double getAverageDeliveryTime() {
+        long minutes = 0;
+        for (int i = 0; i < size; i++) {
+            minutes += deliveryMinutes[i];
+        }
+        long total = getTotalDeliveries();
+        return total == 0 ? 0 : (double) minutes / total;
+    }
+
+    /**
+     * Returns the delivery revenue of the period.
+     *
+     * @return The revenue.
+     */
+    public double getTotalRevenue() {
+        long cents = 0;
+        for (int i = 0; i < size; i++) {
+            cents += revenueCents[i];
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Returns the percentage of deliveries on time over the days of the period falling
+     * on a day of the week.
+     *
+     * @param dayOfWeek The day of the week.
+     * @return The percentage, or null if there was no delivery on that day of the week.
+     */
+    public Double getOnTimePercentage(DayOfWeek dayOfWeek) {
+        long total = 0;
+        long onTime = 0;
+        for (int i = 0; i < size; i++) {
+            if (getDay(i).getDayOfWeek() == dayOfWeek) {
+                total += deliveries[i];
+                onTime += onTimeDeliveries[i];
+            }
+        }
+        return total == 0 ? null : onTime * 100.0 / total;
+    }
+
+    /**
+     * Returns the number of days with deliveries.
+     *
+     * @return The number of days.
+     */
+    public int getDayCount() {
+        return size;
+    }
+
+    /**
+     * Returns a day.
+     *
+     * @param day The day index.
+     * @return The date.
+     */
+    public LocalDate getDay(int day) {
+        return LocalDate.ofEpochDay(epochDays[day]);
+    }
+
+    /**
+     * Returns the number of deliveries of a day.
+     *
+     * @param day The day index.
+     * @return The number of deliveries.
+     */
+    public int getDeliveries(int day) {
+        return deliveries[day];
+    }
+
+    /**
+     * Returns the number of deliveries of a day that arrived on time.
+     *
+     * @param day The day index.
+     * @return The number of deliveries on time.
+     */
+    public int getOnTimeDeliveries(int day) {
+        return onTimeDeliveries[day];
+    }
+
+    // Getters of the stored form, used by the message codec; the arrays are not copied
+
+    public int[] getEpochDays() {
+        return epochDays;
+    }
+
+    public int[] getDeliveries() {
+        return deliveries;
+    }
+
+    public int[] getOnTimeDeliveries() {
+        return onTimeDeliveries;
+    }
+
+    public long[] getDeliveryMinutes() {
+        return deliveryMinutes;
+    }
+
+    public long[] getRevenueCents() {
+        return revenueCents;
+    }
+
+    @Override
+    public String toString() {
+        return "PerformanceReport{days=" + size + ", deliveries=" + getTotalDeliveries()
+                + ", onTime=" + getTotalOnTimeDeliveries() + "}";
+    }
+}
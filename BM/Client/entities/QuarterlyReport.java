@@ -0,0 +1,217 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The quarterly report of a branch: for every restaurant and every range of daily
+ * order counts, the number of days whose order count fell in the range and their
+ * revenue. Restaurant names are stored once; days and revenue are arrays with one
+ * row of {@link #RANGES} per restaurant.
+ */
+@SuppressWarnings("serial")
+public class QuarterlyReport implements Serializable {
+
+    /**
+     * The ranges of daily order counts, in display order.
+     */
+    public static final List<String> RANGES = List.of("0-20", "21-40", "41-60", "61-80", "81+");
+
+    /**
+     * The branch of the report.
+     */
+    private String branch;
+
+    /**
+     * The quarter of the report (1-4).
+     */
+    private int quarter;
+
+    /**
+     * The year of the report.
+     */
+    private int year;
+
+    /**
+     * The restaurant names, in order of first appearance.
+     */
+    private List<String> restaurantNames;
+
+    /**
+     * The number of days of each restaurant and range, at restaurant * RANGES.size() + range.
+     */
+    private int[] days;
+
+    /**
+     * The revenue in cents of each restaurant and range, laid out like {@link #days}.
+     */
+    private long[] revenueCents;
+
+    /**
+     * Creates an empty report.
+     *
+     * @param branch The branch of the report.
+     * @param quarter The quarter of the report (1-4).
+     * @param year The year of the report.
+     */
+    public QuarterlyReport(String branch, int quarter, int year) {
+        this(branch, quarter, year, new ArrayList<>(), new int[0], new long[0]);
+    }
+
+    /**
+     * Creates a report with the specified details.
+     *
+     * @param branch The branch of the report.
+     * @param quarter The quarter of the report (1-4).
+     * @param year The year of the report.
+     * @param restaurantNames The restaurant names.
+     * @param days The number of days of each restaurant and range.
+     * @param revenueCents The revenue in cents of each restaurant and range.
+     */
+    public QuarterlyReport(String branch, int quarter, int year, List<String> restaurantNames, int[] days,
+            long[] revenueCents) {
+        this.branch = branch;
+        this.quarter = quarter;
+        this.year = year;
+        this.restaurantNames = restaurantNames;
+        this.days = days;
+        this.revenueCents = revenueCents;
+    }
+
+    /**
+     * Adds the days of a restaurant in a range. Rows arrive grouped by restaurant.
+     *
+     * @param restaurantName The restaurant name.
+     * @param range One of {@link #RANGES}.
+     * @param rangeDays The number of days.
+     * @param rangeRevenueCents The revenue in cents of these days.
+     * @throws IllegalArgumentException If the range is unknown.
+     */
+    public void add(String restaurantName, String range, int rangeDays, long rangeRevenueCents) {
+        int rangeIndex = RANGES.indexOf(range);
+        if (rangeIndex < 0) {
+            throw new IllegalArgumentException("Unknown order range " + range);
+        }
+        int restaurant = restaurantNames.lastIndexOf(restaurantName);
+        if (restaurant < 0) {
+            restaurant = restaurantNames.size();
+            restaurantNames.add(restaurantName);
+            days = Arrays.copyOf(days, restaurantNames.size() * RANGES.size());
+            revenueCents = Arrays.copyOf(revenueCents, restaurantNames.size() * RANGES.size());
+        }
+        days[restaurant * RANGES.size() + rangeIndex] += rangeDays;
+        revenueCents[restaurant * RANGES.size() + rangeIndex] += rangeRevenueCents;
+    }
+
+    /**
+     * Returns whether the quarter had no orders.
+     *
+     * @return true if there is nothing to show.
+     */
+    public boolean isEmpty() {
+        return restaurantNames.isEmpty();
+    }
+
+    /**
+     * Returns the number of restaurants.
+     *
+     * @return The number of restaurants.
+     */
+    public int getRestaurantCount() {
+        return restaurantNames.size();
+    }
+
+    /**
+     * Returns the name of a restaurant.
+     *
+     * @param restaurant The restaurant index.
+     * @return The name.
+     */
+    public String getRestaurantName(int restaurant) {
+        return restaurantNames.get(restaurant);
+    }
+
+    /**
+     * Returns the number of days of a restaurant in a range.
+     *
+     * @param restaurant The restaurant index.
+     * @param range The index in {@link #RANGES}.
+     * @return The number of days.
+     */
+    public int getDays(int restaurant, int range) {
+        return days[restaurant * RANGES.size() + range];
+    }
+
+    /**
+     * Returns the revenue of a restaurant in a range.
+     *
+     * @param restaurant The restaurant index.
+     * @param range The index in {@link #RANGES}.
+     * @return The revenue.
+     */
+    public double getRevenue(int restaurant, int range) {
+        return revenueCents[restaurant * RANGES.size() + range] / 100.0;
+    }
+
+    /**
+     * Returns the revenue of a restaurant over the quarter.
+     *
+     * @param restaurant The restaurant index.
+     * @return The revenue.
+     */
+    public double getRestaurantRevenue(int restaurant) {
+        long cents = 0;
+        for (int range = 0; range < RANGES.size(); range++) {
+            cents += revenueCents[restaurant * RANGES.size() + range];
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Returns the revenue of every restaurant in a range.
+     *
+     * @param range The index in {@link #RANGES}.
+     * @return The revenue.
+     */
+    public double getRangeRevenue(int range) {
+        long cents = 0;
+        for (int restaurant = 0; restaurant < restaurantNames.size(); restaurant++) {
+            cents += revenueCents[restaurant * RANGES.size() + range];
+        }
+        return cents / 100.0;
+    }
+
+    // Getters of the stored form; the arrays are not copied
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public int getQuarter() {
+        return quarter;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public List<String> getRestaurantNames() {
+        return restaurantNames;
+    }
+
+    public int[] getDays() {
+        return days;
+    }
+
+    public long[] getRevenueCents() {
+        return revenueCents;
+    }
+
+    @Override
+    public String toString() {
+        return "QuarterlyReport{branch='" + branch + "', quarter=" + quarter + ", year=" + year
+                + ", restaurants=" + restaurantNames.size() + "}";
+    }
+}
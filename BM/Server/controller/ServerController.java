@@ -93,7 +93,7 @@ public class ServerController implements Initializable {
             EchoServer.serverController = this;
 
             if (JDBC.connectionToDB(dbUsername, dbPassword, this)) {
-                server.listen();
+                server.start();
                 startButton.setDisable(true);
                 stopButton.setDisable(false);
                 logToConsole("Server started on port " + port);
@@ -113,7 +113,7 @@ public class ServerController implements Initializable {
     private void handleStopServer() {
         if (server != null) {
             try {
-                server.close();
+                server.stop();
                 startButton.setDisable(false);
                 stopButton.setDisable(true);
                 logToConsole("Server stopped");
@@ -133,6 +133,34 @@ public class ServerController implements Initializable {
         Platform.runLater(() -> consoleTextArea.appendText(message + "\n"));
     }
 
+    /**
+     * Logs a message to the console of a controller, or to the standard output when the
+     * server runs without one.
+     *
+     * @param controller The controller, may be null.
+     * @param message The message to be logged.
+     */
+    public static void log(ServerController controller, String message) {
+        if (controller != null) {
+            controller.logToConsole(message);
+        } else {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Logs a failure to the console of a controller, or to the standard output when the
+     * server runs without one. The stack trace goes to the standard error.
+     *
+     * @param controller The controller, may be null.
+     * @param message What failed.
+     * @param error The cause of the failure.
+     */
+    public static void log(ServerController controller, String message, Throwable error) {
+        log(controller, message + ": " + error);
+        error.printStackTrace();
+    }
+
     /**
      * Updates the list of connected clients in the UI.
      * This method is thread-safe and can be called from any thread.
@@ -142,7 +170,10 @@ public class ServerController implements Initializable {
             // Clear existing items
             connectedClientsListView.getItems().clear();
             // Add all connected clients to the ListView
-            for (ConnectedClients client : EchoServer.connectedClients) {
+            if (server == null) {
+                return;
+            }
+            for (ConnectedClients client : server.getSessions().getConnectedClients()) {
                 connectedClientsListView.getItems().add(
                     String.format("%s (%s) - %s", client.getHostName(), client.getIp(), client.getRole())
                 );
@@ -0,0 +1,431 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import controller.ServerController;
+
+/**
+ * A bounded pool of database connections shared by all server worker threads.
+ * Connections are validated when borrowed, evicted after being idle for too long
+ * and reported when a caller holds one longer than the leak threshold.
+ * Borrowed connections are handed out as proxies, so calling close() on them
+ * returns the physical connection to the pool instead of closing it.
+ */
+public class ConnectionPool {
+
+    /** The JDBC url used to open new physical connections */
+    private final String url;
+
+    /** The database username */
+    private final String username;
+
+    /** The database password */
+    private final String password;
+
+    /** Number of connections kept open even when the pool is idle */
+    private final int minSize;
+
+    /** Upper bound on the number of open physical connections */
+    private final int maxSize;
+
+    /** Maximum time in milliseconds a caller waits for a free connection */
+    private final long waitTimeoutMillis;
+
+    /** Time in milliseconds after which an idle connection above minSize is closed */
+    private final long idleTimeoutMillis;
+
+    /** Time in milliseconds after which a borrowed connection is reported as a possible leak */
+    private final long leakThresholdMillis;
+
+    /** Whether the stack trace of every borrow is kept for the leak warnings */
+    private final boolean traceBorrows;
+
+    /** Controller used to log pool events to the server console */
+    private final ServerController controller;
+
+    /** Connections that are open and waiting to be borrowed, most recently returned first */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    /** Connections that are currently borrowed by callers */
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+
+    /** Number of open physical connections, idle and borrowed together */
+    private int totalConnections;
+
+    /** Indicates whether the pool was shut down */
+    private boolean closed;
+
+    /** Background task that evicts idle connections and reports leaks */
+    private final ScheduledExecutorService housekeeper;
+
+    /**
+     * Creates a connection pool and opens the minimum number of connections.
+     *
+     * @param url The JDBC url of the database
+     * @param username The database username
+     * @param password The database password
+     * @param minSize Number of connections kept open at all times
+     * @param maxSize Maximum number of open connections
+     * @param waitTimeoutMillis Maximum time to wait for a free connection
+     * @param idleTimeoutMillis Idle time after which surplus connections are closed
+     * @param leakThresholdMillis Borrow time after which a leak warning is logged
+     * @param traceBorrows Whether to keep the stack trace of every borrow for the leak warnings
+     * @param controller The server controller used for logging
+     * @throws SQLException if the initial connections cannot be opened
+     */
+    public ConnectionPool(String url, String username, String password, int minSize, int maxSize,
+                          long waitTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          boolean traceBorrows, ServerController controller) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.traceBorrows = traceBorrows;
+        this.controller = controller;
+
+        synchronized (this) {
+            try {
+                for (int i = 0; i < minSize; i++) {
+                    idle.push(new PooledConnection(openPhysicalConnection()));
+                    totalConnections++;
+                }
+            } catch (SQLException | RuntimeException e) {
+                // The pool is never returned to the caller, so nobody else would close these
+                while (!idle.isEmpty()) {
+                    closeQuietly(idle.pop().physical);
+                }
+                totalConnections = 0;
+                throw e;
+            }
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleAtFixedRate(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if the pool is below its
+     * maximum size, or waiting for one to be returned otherwise.
+     * The returned connection must be closed by the caller to give it back to the pool.
+     *
+     * @return A validated connection
+     * @throws SQLException if no connection becomes available within the wait timeout
+     */
+    public Connection getConnection() throws SQLException {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (true) {
+            PooledConnection candidate = null;
+            boolean openNew = false;
+            synchronized (this) {
+                while (candidate == null && !openNew) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed.");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pop();
+                    } else if (totalConnections < maxSize) {
+                        totalConnections++;
+                        openNew = true;
+                    } else {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SQLException("Timed out after " + waitTimeoutMillis
+                                    + " ms waiting for a database connection (pool size " + maxSize + ").");
+                        }
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection.", e);
+                        }
+                    }
+                }
+            }
+
+            if (openNew) {
+                try {
+                    candidate = new PooledConnection(openPhysicalConnection());
+                } catch (SQLException e) {
+                    discard();
+                    throw e;
+                }
+            } else if (!isValid(candidate)) {
+                closeQuietly(candidate.physical);
+                discard();
+                continue;
+            }
+
+            Connection handle = candidate.borrow();
+            borrowed.add(candidate);
+            return handle;
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     * Any open transaction is rolled back and auto-commit is restored so the next
+     * borrower always starts from a clean session.
+     *
+     * @param pooled The connection being returned
+     */
+    private void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+        boolean reusable = true;
+        try {
+            if (pooled.physical.isClosed()) {
+                reusable = false;
+            } else if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        synchronized (this) {
+            if (reusable && !closed) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.push(pooled);
+                notifyAll();
+                return;
+            }
+        }
+        closeQuietly(pooled.physical);
+        discard();
+    }
+
+    /**
+     * Decrements the connection count after a connection was closed and wakes up
+     * a waiting caller so it can open a replacement.
+     */
+    private synchronized void discard() {
+        totalConnections--;
+        notifyAll();
+    }
+
+    /**
+     * Checks whether a connection taken from the idle list is still usable.
+     * Connections returned very recently are trusted without a round trip.
+     *
+     * @param pooled The connection to validate
+     * @return true if the connection can be handed out
+     */
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            if (System.currentTimeMillis() - pooled.lastUsed < 500) {
+                return !pooled.physical.isClosed();
+            }
+            return pooled.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Periodic task: closes connections that stayed idle longer than the idle timeout
+     * (never going below minSize) and logs connections borrowed for longer than the leak threshold.
+     */
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalConnections > minSize) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed > idleTimeoutMillis) {
+                    it.remove();
+                    totalConnections--;
+                    closeQuietly(pooled.physical);
+                }
+            }
+        }
+
+        for (PooledConnection pooled : borrowed) {
+            long heldFor = now - pooled.borrowedAt;
+            if (heldFor > leakThresholdMillis && !pooled.leakReported) {
+                pooled.leakReported = true;
+                ServerController.log(controller, "Possible connection leak: connection held for " + heldFor + " ms by thread "
+                        + pooled.borrowerThread);
+                if (pooled.borrowTrace != null) {
+                    pooled.borrowTrace.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the housekeeping task.
+     * Connections that are still borrowed are closed when they are returned.
+     */
+    public void shutdown() {
+        housekeeper.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            for (PooledConnection pooled : idle) {
+                closeQuietly(pooled.physical);
+                totalConnections--;
+            }
+            idle.clear();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns a short description of the pool state for the server console.
+     *
+     * @return The pool statistics as a string
+     */
+    public synchronized String getStatistics() {
+        return "open=" + totalConnections + ", idle=" + idle.size() + ", borrowed=" + borrowed.size()
+                + ", min=" + minSize + ", max=" + maxSize;
+    }
+
+    /**
+     * Opens a new physical connection to the database.
+     *
+     * @return The new connection
+     * @throws SQLException if the connection cannot be opened
+     */
+    private Connection openPhysicalConnection() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    /**
+     * Closes a physical connection, ignoring any error.
+     *
+     * @param connection The connection to close
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // The connection is being discarded anyway
+        }
+    }
+
+    /**
+     * A physical connection together with its bookkeeping data.
+     */
+    private class PooledConnection {
+
+        /** The underlying JDBC connection */
+        private final Connection physical;
+
+        /** Time the connection was last returned to the pool */
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        /** Time the connection was last borrowed */
+        private volatile long borrowedAt;
+
+        /** Name of the thread that borrowed the connection */
+        private volatile String borrowerThread;
+
+        /** Stack trace of the borrow call, used to locate leaks; null unless borrows are traced */
+        private volatile Throwable borrowTrace;
+
+        /** Whether a leak warning was already logged for the current borrow */
+        private volatile boolean leakReported;
+
+        /**
+         * Wraps a physical connection.
+         *
+         * @param physical The connection to wrap
+         */
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Records the borrower of this connection and creates the handle given to it.
+         *
+         * @return A proxy that is only usable until the borrower closes it
+         */
+        Connection borrow() {
+            borrowedAt = System.currentTimeMillis();
+            borrowerThread = Thread.currentThread().getName();
+            borrowTrace = traceBorrows ? new Throwable("Connection borrowed here") : null;
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Handle(this));
+        }
+    }
+
+    /**
+     * The handler of the proxy given to one borrower. Once closed it stays closed, so a
+     * handle kept after close can never reach the session of a later borrower.
+     */
+    private class Handle implements InvocationHandler {
+
+        /** The borrowed connection */
+        private final PooledConnection pooled;
+
+        /** Whether the borrower already closed this handle */
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        /**
+         * Creates the handle of one borrow.
+         *
+         * @param pooled The borrowed connection
+         */
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+            Connection physical = pooled.physical;
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || physical.isClosed();
+                case "equals":
+                    return proxyInstance == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxyInstance);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    if (returned.get()) {
+                        throw new SQLException("Connection was already returned to the pool.");
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Per restaurant, per day totals of the delivered and paid orders, kept in the
+ * DailyRestaurantStats table so the income, performance and quarterly reports read
+ * one row per restaurant and day instead of every order of the period.
+ * <p>
+ * A row belongs to the day the order was placed, like the reports that group by
+ * DATE(orderTime). The table is filled from the existing orders by a schema migration
+ * and then maintained with every status change: the contribution of an order is
+ * retracted before its row changes and recorded again afterwards, in the same
+ * transaction, so delivering an order twice or cancelling a delivered order keeps
+ * the totals exact. Every day is therefore covered once the table exists.
+ */
+final class DailyRollups {
+
+    /** The rollup table */
+    static final String TABLE = "DailyRestaurantStats";
+
+    /** Creates the rollup table */
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+            + "restaurantId VARCHAR(50) NOT NULL, "
+            + "statDate DATE NOT NULL, "
+            + "revenueCents BIGINT NOT NULL DEFAULT 0, "
+            + "orderCount INT NOT NULL DEFAULT 0, "
+            + "deliveryCount INT NOT NULL DEFAULT 0, "
+            + "deliveryRevenueCents BIGINT NOT NULL DEFAULT 0, "
+            + "onTimeCount INT NOT NULL DEFAULT 0, "
+            + "deliveryMinutes BIGINT NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (restaurantId, statDate))";
+
+    /** The rollup columns, in the order the contribution expressions produce them */
+    private static final String COLUMNS = "restaurantId, statDate, revenueCents, orderCount, deliveryCount, "
+            + "deliveryRevenueCents, onTimeCount, deliveryMinutes";
+
+    /** The orders counted by the reports */
+    private static final String COUNTED = "o.status = 'DELIVERED' AND o.isPayed = 1 "
+            + "AND o.restaurantId IS NOT NULL AND o.orderTime IS NOT NULL";
+
+    /** The delivery types counted by the performance report */
+    private static final String IS_DELIVERY = "o.deliveryType IN ('DELIVERY', 'EARLY_DELIVERY', 'ROBOT', 'SHARED_DELIVERY')";
+
+    /** Adds a contribution to the existing row of its day */
+    private static final String ACCUMULATE = " ON DUPLICATE KEY UPDATE "
+            + "revenueCents = revenueCents + VALUES(revenueCents), "
+            + "orderCount = orderCount + VALUES(orderCount), "
+            + "deliveryCount = deliveryCount + VALUES(deliveryCount), "
+            + "deliveryRevenueCents = deliveryRevenueCents + VALUES(deliveryRevenueCents), "
+            + "onTimeCount = onTimeCount + VALUES(onTimeCount), "
+            + "deliveryMinutes = deliveryMinutes + VALUES(deliveryMinutes)";
+
+    /** Adds the contribution of one order */
+    private static final String RECORD_ORDER = contributionQuery(1);
+
+    /** Removes the contribution of one order */
+    private static final String RETRACT_ORDER = contributionQuery(-1);
+
+    /** Recomputes the rows of a period from the orders */
+    private static final String REBUILD_PERIOD = "INSERT INTO " + TABLE + " (" + COLUMNS + ") "
+            + "SELECT o.restaurantId, DATE(o.orderTime), " + contribution("SUM", 1) + " "
+            + "FROM Orders o "
+            + "WHERE " + COUNTED + " AND o.orderTime >= ? AND o.orderTime < ? "
+            + "GROUP BY o.restaurantId, DATE(o.orderTime)";
+
+    /**
+     * Daily income of a set of restaurants over a period, with the columns of
+     * DataBaseController.incomeReportQuery.
+     *
+     * @param restaurants The number of restaurant IDs bound first
+     * @return The query
+     */
+    static String incomeReportQuery(int restaurants) {
+        return "SELECT s.restaurantId, s.statDate AS order_date, s.revenueCents / 100 AS daily_income "
+                + "FROM " + TABLE + " s "
+                + "WHERE s.restaurantId IN (" + DataBaseController.placeholders(restaurants) + ") "
+                + "AND s.statDate BETWEEN ? AND ? AND s.orderCount > 0 "
+                + "ORDER BY s.restaurantId, s.statDate";
+    }
+
+    /**
+     * Daily delivery performance of a set of restaurants over a period, with the
+     * columns of DataBaseController.performanceReportQuery.
+     *
+     * @param restaurants The number of restaurant IDs bound first
+     * @return The query
+     */
+    static String performanceReportQuery(int restaurants) {
+        return "SELECT s.statDate AS deliveryDate, "
+                + "SUM(s.deliveryCount) AS totalDeliveries, "
+                + "SUM(s.onTimeCount) AS onTimeDeliveries, "
+                + "SUM(s.deliveryMinutes) AS deliveryMinutes, "
+                + "CAST(SUM(s.deliveryRevenueCents) / 100 AS DECIMAL(14, 2)) AS totalRevenue "
+                + "FROM " + TABLE + " s "
+                + "WHERE s.restaurantId IN (" + DataBaseController.placeholders(restaurants) + ") "
+                + "AND s.statDate BETWEEN ? AND ? "
+                + "GROUP BY s.statDate "
+                + "HAVING SUM(s.deliveryCount) > 0 "
+                + "ORDER BY s.statDate";
+    }
+
+    /**
+     * Days of each order count range per restaurant of a branch over a period, with the
+     * columns and parameters of DataBaseController.QUARTERLY_REPORT_QUERY.
+     */
+    static final String QUARTERLY_REPORT_QUERY = "SELECT restaurant_name, order_range, "
+            + "COUNT(*) AS days_count, "
+            + "SUM(daily_revenue) AS total_revenue "
+            + "FROM ("
+            + "    SELECT r.name AS restaurant_name, "
+            + "           s.revenueCents / 100 AS daily_revenue, "
+            + "           CASE "
+            + "               WHEN s.orderCount BETWEEN 0 AND 20 THEN '0-20' "
+            + "               WHEN s.orderCount BETWEEN 21 AND 40 THEN '21-40' "
+            + "               WHEN s.orderCount BETWEEN 41 AND 60 THEN '41-60' "
+            + "               WHEN s.orderCount BETWEEN 61 AND 80 THEN '61-80' "
+            + "               ELSE '81+' "
+            + "           END AS order_range "
+            + "    FROM restaurants r "
+            + "    JOIN " + TABLE + " s ON s.restaurantId = r.restaurantId "
+            + "    WHERE s.statDate >= ? AND s.statDate < ? AND r.branch = ? AND s.orderCount > 0"
+            + ") AS daily_orders "
+            + "GROUP BY restaurant_name, order_range "
+            + "ORDER BY restaurant_name, order_range";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DailyRollups() {
+    }
+
+    /**
+     * Builds the contribution of the counted orders to the rollup columns after the key.
+     *
+     * @param aggregate The aggregate applied to each expression, or an empty string for one order
+     * @param sign 1 to add the contribution, -1 to remove it
+     * @return The select list
+     */
+    private static String contribution(String aggregate, int sign) {
+        String cents = "ROUND(COALESCE(o.totalPrice, 0) * 100)";
+        String[] expressions = {
+            cents,
+            "1",
+            "CASE WHEN " + IS_DELIVERY + " THEN 1 ELSE 0 END",
+            "CASE WHEN " + IS_DELIVERY + " THEN " + cents + " ELSE 0 END",
+            "CASE WHEN " + IS_DELIVERY + " AND o.actualArrivalTime <= o.requiredTime THEN 1 ELSE 0 END",
+            "CASE WHEN " + IS_DELIVERY + " THEN COALESCE(TIMESTAMPDIFF(MINUTE, o.orderTime, o.actualArrivalTime), 0) ELSE 0 END"
+        };
+        StringBuilder sql = new StringBuilder();
+        for (String expression : expressions) {
+            if (sql.length() > 0) {
+                sql.append(", ");
+            }
+            sql.append(aggregate).append(sign < 0 ? "(-" : "(").append(expression).append(")");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Builds the statement adding or removing the contribution of one order, if it is counted.
+     *
+     * @param sign 1 to add the contribution, -1 to remove it
+     * @return The statement, taking the order ID
+     */
+    private static String contributionQuery(int sign) {
+        return "INSERT INTO " + TABLE + " (" + COLUMNS + ") "
+                + "SELECT o.restaurantId, DATE(o.orderTime), " + contribution("", sign) + " "
+                + "FROM Orders o WHERE o.orderId = ? AND " + COUNTED
+                + ACCUMULATE;
+    }
+
+    /**
+     * Checks whether the rollup table exists in the current database.
+     *
+     * @param connection The connection to use
+     * @return true if the table exists
+     * @throws SQLException if the catalog cannot be read
+     */
+    static boolean exists(Connection connection) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.TABLES "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND LOWER(TABLE_NAME) = LOWER(?) LIMIT 1";
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, TABLE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Removes the contribution of orders before their rows change. Must run in the
+     * transaction that changes them, after their rows are locked.
+     *
+     * @param connection The connection to use
+     * @param orderIds The IDs of the orders; orders not counted are ignored
+     * @throws SQLException if the rollups cannot be updated
+     */
+    static void retract(Connection connection, Collection<Integer> orderIds) throws SQLException {
+        apply(connection, RETRACT_ORDER, orderIds);
+    }
+
+    /**
+     * Adds the contribution of orders after their rows changed, in the same transaction.
+     *
+     * @param connection The connection to use
+     * @param orderIds The IDs of the orders; orders not counted are ignored
+     * @throws SQLException if the rollups cannot be updated
+     */
+    static void record(Connection connection, Collection<Integer> orderIds) throws SQLException {
+        apply(connection, RECORD_ORDER, orderIds);
+    }
+
+    /**
+     * Runs a contribution statement for each order, as one batch.
+     *
+     * @param connection The connection to use
+     * @param query The contribution statement
+     * @param orderIds The IDs of the orders
+     * @throws SQLException if the statement fails
+     */
+    private static void apply(Connection connection, String query, Collection<Integer> orderIds) throws SQLException {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (int orderId : orderIds) {
+                pstmt.setInt(1, orderId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Recomputes the rollups of a period from the orders, in one transaction. Used to
+     * fill the table from the existing orders and to repair it after orders were changed
+     * outside the server.
+     *
+     * @param connection The connection to use
+     * @param from The first day
+     * @param to The last day
+     * @return The number of rollup rows written
+     * @throws SQLException if the rollups cannot be rebuilt; they are left unchanged
+     */
+    static int rebuild(Connection connection, LocalDate from, LocalDate to) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM " + TABLE + " WHERE statDate BETWEEN ? AND ?");
+             PreparedStatement insert = connection.prepareStatement(REBUILD_PERIOD)) {
+            delete.setDate(1, Date.valueOf(from));
+            delete.setDate(2, Date.valueOf(to));
+            delete.executeUpdate();
+            insert.setDate(1, Date.valueOf(from));
+            insert.setDate(2, Date.valueOf(to.plusDays(1)));
+            int rows = insert.executeUpdate();
+            connection.commit();
+            return rows;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Recomputes the rollups of every day that has orders, one month per transaction
+     * so the orders are never locked for long.
+     *
+     * @param connection The connection to use
+     * @return The number of rollup rows written
+     * @throws SQLException if a month cannot be rebuilt; the months before it stay rebuilt
+     */
+    static int backfill(Connection connection) throws SQLException {
+        LocalDate first;
+        LocalDate last;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(DATE(orderTime)), MAX(DATE(orderTime)) FROM Orders")) {
+            if (!rs.next() || rs.getDate(1) == null) {
+                return 0;
+            }
+            first = rs.getDate(1).toLocalDate();
+            last = rs.getDate(2).toLocalDate();
+        }
+        int rows = 0;
+        for (LocalDate month = first.withDayOfMonth(1); !month.isAfter(last); month = month.plusMonths(1)) {
+            rows += rebuild(connection, month, month.plusMonths(1).minusDays(1));
+        }
+        return rows;
+    }
+}
@@ -1,5 +1,7 @@
 package database;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -8,27 +10,48 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
 import entities.Order;
 import entities.OrderItem;
+import entities.OrderPage;
+import entities.OrderPageRequest;
+import entities.IncomeReport;
+import entities.OrdersReport;
+import entities.OrdersReportDetail;
+import entities.PerformanceReport;
+import entities.QuarterlyReport;
 import entities.Restaurant;
 import entities.MenuItem;
+import entities.MenuRequest;
+import entities.MenuUpdate;
 import entities.Message;
 
 import entities.User;
 import entities.User.UserRole;
+import controller.ServerController;
+import server.ServerConfig;
 
 /**
  * DatabaseController is responsible for handling database operations.
  * It uses the Singleton pattern to ensure only one instance exists.
+ * Every operation borrows its own connection from the JDBC connection pool,
+ * so concurrent requests run on separate database sessions.
  */
 public class DataBaseController {
 
@@ -38,20 +61,219 @@ public class DataBaseController {
     private static DataBaseController instance;
 
     /**
-     * The database connection object.
+     * Listeners notified of committed order changes.
      */
-    private Connection connection;
-    
+    private final List<OrderEventListener> orderEventListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Stores concurrently placed orders in shared transactions; null until started
+     * or when group commit is disabled.
+     */
+    private volatile OrderIngestor orderIngestor;
+
+    /**
+     * Records order status changes for later writing; null unless the write-behind mode is started.
+     */
+    private volatile StatusWriteBehind statusWriteBehind;
+
+    /**
+     * Whether the daily rollup table exists and is maintained with the order status changes.
+     */
+    private volatile boolean rollupsAvailable;
+
+    /**
+     * Restaurants, menus and managers, read far more often than they change.
+     */
+    private final ReferenceDataCache referenceData = new ReferenceDataCache(ServerConfig.REFERENCE_CACHE_TTL_SECONDS);
+
+    /**
+     * Runs the reports of several branches side by side; created on first use.
+     */
+    private ExecutorService reportExecutor;
+
+    /**
+     * Results of the reports, dropped when an order of their period changes status.
+     */
+    private final ReportCache reportCache = new ReportCache(ServerConfig.REPORT_CACHE_MAX_BYTES);
+
+    /**
+     * In-memory copy of the delivered orders, answering the reports once it is loaded.
+     */
+    private final ReportStore reportStore = new ReportStore();
+
+    /**
+     * The columns of an order insert, bound by bindOrder.
+     */
+    static final String ORDER_INSERT_COLUMNS = "customerId, restaurantId, totalPrice, status, deliveryType, isPayed, " +
+            "orderTime, requiredTime, actualArrivalTime, deliveryAddress, recipientName, recipientPhone, discountApplied, robot";
+
+    /**
+     * The placeholders of one row of an order insert.
+     */
+    static final String ORDER_INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Loads all the orders of a customer with their items, in one round trip.
+     */
+    static final String CUSTOMER_ORDERS_QUERY = "SELECT o.*, oi.orderItemId, oi.itemId, oi.quantity, oi.specialInstructions " +
+            "FROM Orders o LEFT JOIN OrderItems oi ON oi.orderId = o.orderId " +
+            "WHERE o.customerId = ? ORDER BY o.orderId, oi.orderItemId";
+
+    /**
+     * Loads the orders of a restaurant that are in one of two statuses.
+     */
+    static final String RESTAURANT_OPEN_ORDERS_QUERY = "SELECT * FROM orders WHERE restaurantId = ? AND status IN (?, ?)";
+
+    /**
+     * Daily income of a set of restaurants over a period.
+     * The restaurants of a manager come from the reference data cache instead of a join with Managers.
+     *
+     * @param restaurants The number of restaurant IDs bound first.
+     * @return The query.
+     */
+    static String incomeReportQuery(int restaurants) {
+        return "SELECT " +
+            "o.restaurantId, " +
+            "DATE(o.orderTime) AS order_date, " +
+            "SUM(o.totalPrice) AS daily_income " +
+            "FROM Orders o " +
+            "WHERE o.restaurantId IN (" + placeholders(restaurants) + ") " +
+            "AND o.orderTime BETWEEN ? AND ? " +
+            "AND o.status = 'DELIVERED' " +
+            "AND o.isPayed = 1 " +
+            "GROUP BY o.restaurantId, DATE(o.orderTime) " +
+            "ORDER BY o.restaurantId, order_date";
+    }
+
+    /**
+     * Items ordered from a set of restaurants over a period.
+     *
+     * @param restaurants The number of restaurant IDs bound first.
+     * @return The query.
+     */
+    static String ordersReportQuery(int restaurants) {
+        return "SELECT " +
+            "    o.orderId, " +
+            "    i.type, " +
+            "    i.name, " +
+            "    oi.quantity, " +
+            "    COUNT(oi.orderItemId) AS itemCount " +
+            "FROM " +
+            "    biteme.Orders o " +
+            "JOIN " +
+            "    biteme.OrderItems oi ON o.orderId = oi.orderId " +
+            "JOIN " +
+            "    biteme.MenuItems i ON oi.itemId = i.itemId " +
+            "WHERE " +
+            "    o.restaurantId IN (" + placeholders(restaurants) + ") " +
+            "    AND o.orderTime BETWEEN ? AND ? " +
+            "    AND o.status = 'DELIVERED' AND o.isPayed = 1 " +
+            "GROUP BY " +
+            "    o.orderId, i.type, i.name, oi.quantity " +
+            "ORDER BY " +
+            "    o.orderId, i.type, itemCount DESC";
+    }
+
+    /**
+     * Daily delivery performance of a set of restaurants over a period.
+     *
+     * @param restaurants The number of restaurant IDs bound first.
+     * @return The query.
+     */
+    static String performanceReportQuery(int restaurants) {
+        return "SELECT " +
+            "    DATE(o.orderTime) AS deliveryDate, " +
+            "    COUNT(*) AS totalDeliveries, " +
+            "    SUM(CASE WHEN o.actualArrivalTime <= o.requiredTime THEN 1 ELSE 0 END) AS onTimeDeliveries, " +
+            "    COALESCE(SUM(TIMESTAMPDIFF(MINUTE, o.orderTime, o.actualArrivalTime)), 0) AS deliveryMinutes, " +
+            "    SUM(o.totalPrice) AS totalRevenue " +
+            "FROM " +
+            "    biteme.Orders o " +
+            "WHERE " +
+            "    o.restaurantId IN (" + placeholders(restaurants) + ") " +
+            "    AND o.status = 'DELIVERED' " +
+            "    AND o.deliveryType IN ('DELIVERY', 'EARLY_DELIVERY', 'ROBOT', 'SHARED_DELIVERY') " +
+            "    AND o.orderTime BETWEEN ? AND ? " +
+            "    AND o.isPayed = 1 " +
+            "GROUP BY " +
+            "    DATE(o.orderTime) " +
+            "ORDER BY " +
+            "    deliveryDate";
+    }
+
+    /**
+     * Prepares a query whose rows are streamed from the database as they are read,
+     * instead of being fetched into memory as a whole before the first row.
+     *
+     * @param connection The connection to use.
+     * @param query The query.
+     * @return The statement, forward only and read only.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    static PreparedStatement prepareStreaming(Connection connection, String query) throws SQLException {
+        PreparedStatement pstmt = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // MySQL sends the rows one by one, instead of the whole result at once, only with this fetch size
+        pstmt.setFetchSize(Integer.MIN_VALUE);
+        return pstmt;
+    }
+
+    /**
+     * Builds the placeholders of an IN list.
+     *
+     * @param count The number of values.
+     * @return The placeholders, or NULL (matching nothing) for an empty list.
+     */
+    static String placeholders(int count) {
+        return count == 0 ? "NULL" : String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Binds the restaurant IDs of an IN list built with placeholders.
+     *
+     * @param pstmt The statement.
+     * @param restaurantIds The restaurant IDs.
+     * @return The index of the parameter after the list.
+     * @throws SQLException If a parameter cannot be bound.
+     */
+    private static int bindRestaurants(PreparedStatement pstmt, List<String> restaurantIds) throws SQLException {
+        int index = 1;
+        for (String restaurantId : restaurantIds) {
+            pstmt.setString(index++, restaurantId);
+        }
+        return index;
+    }
+
+    /**
+     * Daily revenue of the restaurants of a branch over a quarter, grouped by order count range.
+     */
+    static final String QUARTERLY_REPORT_QUERY = "SELECT restaurant_name, order_range, " +
+            "COUNT(DISTINCT order_date) AS days_count, " +
+            "SUM(daily_revenue) AS total_revenue " +
+            "FROM (" +
+            "    SELECT r.name AS restaurant_name, " +
+            "           DATE(o.orderTime) AS order_date, " +
+            "           SUM(o.totalPrice) AS daily_revenue, " +
+            "           CASE " +
+            "               WHEN COUNT(o.orderId) BETWEEN 0 AND 20 THEN '0-20' " +
+            "               WHEN COUNT(o.orderId) BETWEEN 21 AND 40 THEN '21-40' " +
+            "               WHEN COUNT(o.orderId) BETWEEN 41 AND 60 THEN '41-60' " +
+            "               WHEN COUNT(o.orderId) BETWEEN 61 AND 80 THEN '61-80' " +
+            "               ELSE '81+' " +
+            "           END AS order_range " +
+            "    FROM restaurants r " +
+            "    LEFT JOIN orders o ON r.restaurantId = o.restaurantId " +
+            "    WHERE o.orderTime >= ? AND o.orderTime < ? AND r.branch = ? AND o.status = 'DELIVERED' AND o.isPayed = 1" +
+            "    GROUP BY r.restaurantId, r.name, DATE(o.orderTime)" +
+            ") AS daily_orders " +
+            "GROUP BY restaurant_name, order_range " +
+            "ORDER BY restaurant_name, order_range";
+
     /**
      * Private constructor to prevent instantiation.
-     * Establishes a database connection using the JDBC utility class.
+     * Database connections are borrowed from the JDBC connection pool for every operation.
      */
     private DataBaseController() {
-    	try {
-    		this.connection = JDBC.getConnection();
-    	} catch (SQLException e) {
-    		e.printStackTrace();
-    	}
+        addOrderEventListener(reportCache);
     }
     
     /**
@@ -59,13 +281,164 @@ public class DataBaseController {
      *
      * @return The singleton instance of DatabaseController
      */
-    public static DataBaseController getInstance() {
+    public static synchronized DataBaseController getInstance() {
     	if (instance == null) {
     		instance = new DataBaseController();
     	}
     	return instance;
     }
     
+    /**
+     * Returns the cache of restaurants, menus and managers.
+     *
+     * @return The reference data cache
+     */
+    public ReferenceDataCache getReferenceData() {
+        return referenceData;
+    }
+
+    /**
+     * Returns the cache of report results.
+     *
+     * @return The report cache
+     */
+    public ReportCache getReportCache() {
+        return reportCache;
+    }
+
+    /**
+     * Returns the in-memory copy of the delivered orders.
+     *
+     * @return The report store
+     */
+    public ReportStore getReportStore() {
+        return reportStore;
+    }
+
+    /**
+     * Starts loading the delivered orders into the report store in the background. The
+     * reports query the database until the store is loaded.
+     *
+     * @param serverController Controller used to log to the server console, may be null.
+     */
+    public synchronized void startReportStore(ServerController serverController) {
+        stopReportStore();
+        addOrderEventListener(reportStore);
+        reportStore.start(serverController);
+    }
+
+    /**
+     * Drops the report store; the reports query the database again.
+     */
+    public synchronized void stopReportStore() {
+        removeOrderEventListener(reportStore);
+        reportStore.stop();
+    }
+
+    /**
+     * Registers a listener for committed order changes.
+     *
+     * @param listener The listener to add
+     */
+    public void addOrderEventListener(OrderEventListener listener) {
+        orderEventListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addOrderEventListener.
+     *
+     * @param listener The listener to remove
+     */
+    public void removeOrderEventListener(OrderEventListener listener) {
+        orderEventListeners.remove(listener);
+    }
+
+    /**
+     * Looks for the daily rollup table. While it exists, every status change keeps it up
+     * to date and the reports read it unless disabled in the server configuration.
+     *
+     * @param connection The connection to use.
+     * @return true if the rollups are available.
+     * @throws SQLException If the catalog cannot be read.
+     */
+    public boolean detectRollups(Connection connection) throws SQLException {
+        rollupsAvailable = DailyRollups.exists(connection);
+        return rollupsAvailable;
+    }
+
+    /**
+     * Returns whether status changes must keep the daily rollups up to date.
+     *
+     * @return true if the rollup table exists.
+     */
+    boolean maintainsRollups() {
+        return rollupsAvailable;
+    }
+
+    /**
+     * Returns whether the reports read the daily rollups instead of the orders.
+     *
+     * @return true if the rollups exist and are enabled.
+     */
+    private boolean readsRollups() {
+        return rollupsAvailable && ServerConfig.REPORT_ROLLUPS;
+    }
+
+    /**
+     * Binds the period of a report: whole days for the rollups, the first and last
+     * instant of the period for the orders.
+     *
+     * @param pstmt The statement.
+     * @param index The index of the first period parameter.
+     * @param startDate The first day of the period.
+     * @param endDate The last day of the period.
+     * @param rollups Whether the statement reads the rollups.
+     * @throws SQLException If a parameter cannot be bound.
+     */
+    private static void bindPeriod(PreparedStatement pstmt, int index, LocalDate startDate, LocalDate endDate,
+            boolean rollups) throws SQLException {
+        if (rollups) {
+            pstmt.setDate(index, Date.valueOf(startDate));
+            pstmt.setDate(index + 1, Date.valueOf(endDate));
+        } else {
+            pstmt.setTimestamp(index, Timestamp.valueOf(startDate.atStartOfDay()));
+            pstmt.setTimestamp(index + 1, Timestamp.valueOf(endDate.atTime(LocalTime.MAX)));
+        }
+    }
+
+    /**
+     * Starts the write-behind mode of order status changes: changes are acknowledged once
+     * recorded in a local journal and written to the database in batches. The changes left
+     * in the journal by a previous run are written first.
+     *
+     * @param journalPath The journal file.
+     * @param flushIntervalMs Time in milliseconds between flushes to the database.
+     * @param flushBatch Number of pending changes that triggers an early flush.
+     * @param serverController Controller used to log to the server console, may be null.
+     * @throws IOException If the journal cannot be read or opened.
+     * @throws SQLException If the changes of the previous run cannot be written.
+     */
+    public synchronized void startStatusWriteBehind(Path journalPath, long flushIntervalMs, int flushBatch,
+            ServerController serverController) throws IOException, SQLException {
+        stopStatusWriteBehind();
+        StatusWriteBehind writeBehind = new StatusWriteBehind(this, journalPath, flushIntervalMs, flushBatch, serverController);
+        addOrderEventListener(writeBehind);
+        statusWriteBehind = writeBehind;
+    }
+
+    /**
+     * Writes the pending order status changes to the database and leaves the write-behind mode.
+     * Does nothing if the mode is not started.
+     */
+    public synchronized void stopStatusWriteBehind() {
+        StatusWriteBehind writeBehind = statusWriteBehind;
+        if (writeBehind != null) {
+            statusWriteBehind = null;
+            removeOrderEventListener(writeBehind);
+            writeBehind.close();
+        }
+    }
+
     /**
      * Checks user login credentials against the database and updates connection status.
      *
@@ -76,7 +449,8 @@ public class DataBaseController {
      */
     public Message<User> checkUserLogin(String userId, String password) {
         String query = "SELECT * FROM Users WHERE userId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -98,7 +472,7 @@ public class DataBaseController {
                             return new Message<>("User is already logged in", null);
                         }
                         
-                        if (updateUserConnectionStatus(userId, true)) {
+                        if (updateUserConnectionStatus(connection, userId, true)) {
                             return new Message<>("LOGIN_SUCCESS", user);
                         } else {
                             return new Message<>("LOGIN_SUCCESS, but failed to update connection status", user);
@@ -124,6 +498,23 @@ public class DataBaseController {
      * @return true if the update was successful, false otherwise
      */
     public boolean updateUserConnectionStatus(String userId, boolean isConnected) {
+        try (Connection connection = JDBC.getConnection()) {
+            return updateUserConnectionStatus(connection, userId, isConnected);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Updates the user's connection status using an already borrowed connection.
+     *
+     * @param connection The connection to run the update on
+     * @param userId The ID of the user
+     * @param isConnected The connection status to set
+     * @return true if the update was successful, false otherwise
+     */
+    private boolean updateUserConnectionStatus(Connection connection, String userId, boolean isConnected) {
         String query = "UPDATE Users SET connected = ? WHERE userId = ?";
         try (PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setBoolean(1, isConnected);
@@ -168,7 +559,8 @@ public class DataBaseController {
     public Message<String> handleNewCustomerRegistration(User newUser) {
         String query = "INSERT INTO Users (userId, firstName, lastName, email, phoneNumber, password, role, creditCard, credit) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, newUser.getUserId());
             pstmt.setString(2, newUser.getFirstName());
             pstmt.setString(3, newUser.getLastName());
@@ -181,6 +573,7 @@ public class DataBaseController {
 
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
+                referenceData.userRegistered(newUser.getRole());
                 return new Message<>("NEW_CUSTOMER_REGISTRATION_SUCCESS");
             } else {
                 return new Message<>("NEW_CUSTOMER_REGISTRATION_FAILED");
@@ -191,99 +584,291 @@ public class DataBaseController {
         }
     }
     
+    /**
+     * Places a new order. When group commit is enabled the order is handed to the
+     * order ingestor, which stores it together with the orders placed at the same moment
+     * in one transaction; otherwise it is stored on its own by newOrder.
+     * Either way the call returns once the order is committed or refused.
+     *
+     * @param newOrder The Order object containing the details of the new order.
+     * @return A Message object containing the result of the operation, as newOrder does.
+     */
+    public Message<String> placeOrder(Order newOrder) {
+        OrderIngestor ingestor = orderIngestor;
+        return ingestor != null ? ingestor.submit(newOrder).join() : newOrder(newOrder);
+    }
+
+    /**
+     * Starts storing concurrently placed orders together, see {@link #placeOrder}.
+     * Does nothing if the order ingestor is already running.
+     *
+     * @param windowMicros Time in microseconds to wait for more orders to join a batch.
+     * @param maxOrders The largest number of orders in one batch.
+     * @param serverController Controller used to log to the server console, may be null.
+     */
+    public synchronized void startOrderIngestor(long windowMicros, int maxOrders, ServerController serverController) {
+        if (orderIngestor == null) {
+            orderIngestor = new OrderIngestor(this, windowMicros, maxOrders, serverController);
+        }
+    }
+
     /**
      * Inserts a new order into the database.
+     * The stock of the ordered items is decremented, the order and its items are inserted
+     * in a single transaction, so an order is either stored whole or not at all and costs
+     * one commit. Stock is taken with conditional updates that only succeed while enough
+     * is left, so concurrent orders can never oversell an item; items without a tracked
+     * quantity are not limited.
      * 
      * @param newOrder The Order object containing the details of the new order.
-     * @return A Message object containing the result of the operation.
+     * @return A Message object containing the result of the operation; its text starts with
+     *         "Out of stock" when an item does not have the ordered quantity left.
      */
     public Message<String> newOrder(Order newOrder) {
-        String query = "INSERT INTO Orders (customerId, restaurantId, totalPrice, status, deliveryType, isPayed, orderTime, requiredTime, actualArrivalTime, deliveryAddress, recipientName, recipientPhone, discountApplied, robot) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, newOrder.getCustomerId());
-            pstmt.setString(2, newOrder.getRestaurantId());
-            pstmt.setBigDecimal(3, newOrder.getTotalPrice());
-            pstmt.setString(4, newOrder.getStatus().name());
-            pstmt.setString(5, newOrder.getDeliveryType().name());
-            pstmt.setBoolean(6, newOrder.isPayed());
-            pstmt.setTimestamp(7, Timestamp.valueOf(newOrder.getOrderTime()));
-            pstmt.setTimestamp(8, Timestamp.valueOf(newOrder.getRequiredTime()));
-            pstmt.setTimestamp(9, newOrder.getActualArrivalTime() != null ? Timestamp.valueOf(newOrder.getActualArrivalTime()) : null);
-            pstmt.setString(10, newOrder.getDeliveryAddress());
-            pstmt.setString(11, newOrder.getRecipientName());
-            pstmt.setString(12, newOrder.getRecipientPhone());
-            pstmt.setBoolean(13, newOrder.isDiscountApplied());
-            pstmt.setBoolean(14, newOrder.getRobot());
-
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int orderId = generatedKeys.getInt(1);
-                        newOrder.setOrderId(orderId);
-                        return insertOrderItems(newOrder);
+        String query = "INSERT INTO Orders (" + ORDER_INSERT_COLUMNS + ") VALUES " + ORDER_INSERT_ROW;
+        try (Connection connection = JDBC.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Map<Integer, Integer> shortages = decrementStock(connection, newOrder);
+                if (!shortages.isEmpty()) {
+                    connection.rollback();
+                    return new Message<>(describeShortages(connection, shortages));
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                    bindOrder(pstmt, 1, newOrder);
+                    pstmt.executeUpdate();
+                    try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                        if (!generatedKeys.next()) {
+                            connection.rollback();
+                            return new Message<>("Failed to register new order");
+                        }
+                        newOrder.setOrderId(generatedKeys.getInt(1));
                     }
                 }
-                return new Message<>("New order registered successfully");
-            } else {
-                return new Message<>("Failed to register new order");
+                insertOrderItems(connection, Collections.singletonList(newOrder));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
             return new Message<>("Error registering new order: " + e.getMessage());
         }
+        referenceData.stockChanged(newOrder);
+        fireOrderCreated(newOrder);
+        return orderPlaced(newOrder);
+    }
+
+    /**
+     * Binds the columns of an order to an insert of {@link #ORDER_INSERT_COLUMNS}.
+     *
+     * @param pstmt The insert statement.
+     * @param index The index of the first parameter of the order's row.
+     * @param order The order.
+     * @return The index of the parameter after the order's row.
+     * @throws SQLException If a parameter cannot be bound.
+     */
+    int bindOrder(PreparedStatement pstmt, int index, Order order) throws SQLException {
+        pstmt.setString(index++, order.getCustomerId());
+        pstmt.setString(index++, order.getRestaurantId());
+        pstmt.setBigDecimal(index++, order.getTotalPrice());
+        pstmt.setString(index++, order.getStatus().name());
+        pstmt.setString(index++, order.getDeliveryType().name());
+        pstmt.setBoolean(index++, order.isPayed());
+        pstmt.setTimestamp(index++, Timestamp.valueOf(order.getOrderTime()));
+        pstmt.setTimestamp(index++, Timestamp.valueOf(order.getRequiredTime()));
+        pstmt.setTimestamp(index++, order.getActualArrivalTime() != null ? Timestamp.valueOf(order.getActualArrivalTime()) : null);
+        pstmt.setString(index++, order.getDeliveryAddress());
+        pstmt.setString(index++, order.getRecipientName());
+        pstmt.setString(index++, order.getRecipientPhone());
+        pstmt.setBoolean(index++, order.isDiscountApplied());
+        pstmt.setBoolean(index++, order.getRobot());
+        return index;
+    }
+
+    /**
+     * Creates the result of a committed order.
+     *
+     * @param order The order, with its generated order ID.
+     * @return A message starting with "New order registered successfully" that names the order ID.
+     */
+    static Message<String> orderPlaced(Order order) {
+        return new Message<>("New order registered successfully with items, order #" + order.getOrderId());
+    }
+
+    /**
+     * Notifies the order event listeners of a committed order.
+     *
+     * @param order The new order.
+     */
+    void fireOrderCreated(Order order) {
+        for (OrderEventListener listener : orderEventListeners) {
+            listener.orderCreated(order);
+        }
+    }
+
+    /**
+     * Adds up the ordered quantity of every item of an order, in item id order.
+     *
+     * @param order The order.
+     * @return The ordered quantities by item id.
+     */
+    private static Map<Integer, Integer> orderedQuantities(Order order) {
+        Map<Integer, Integer> ordered = new TreeMap<>();
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                ordered.merge(item.getItemId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Takes the ordered quantities out of stock, within the caller's transaction.
+     * Quantities of the same item are added up, and items are updated in id order so
+     * concurrent orders lock the menu rows in the same order and cannot deadlock.
+     * An update only matches while enough stock is left; isInStock is cleared when the
+     * last unit is taken.
+     *
+     * @param connection The connection of the order transaction.
+     * @param order The order being placed.
+     * @return The ordered quantity of every item that did not have enough stock, by item id;
+     *         empty if all the stock was taken.
+     * @throws SQLException If the update fails.
+     */
+    Map<Integer, Integer> decrementStock(Connection connection, Order order) throws SQLException {
+        Map<Integer, Integer> ordered = orderedQuantities(order);
+        Map<Integer, Integer> shortages = new TreeMap<>();
+        if (ordered.isEmpty()) {
+            return shortages;
+        }
+        String query = "UPDATE MenuItems SET quantity = quantity - ?, isInStock = (quantity IS NULL OR quantity > 0) " +
+                       "WHERE itemId = ? AND restaurantId = ? AND (quantity IS NULL OR quantity >= ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setInt(2, entry.getKey());
+                pstmt.setString(3, order.getRestaurantId());
+                pstmt.setInt(4, entry.getValue());
+                pstmt.addBatch();
+            }
+            int[] counts = pstmt.executeBatch();
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+                if (counts[i++] == 0) {
+                    shortages.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return shortages;
+    }
+
+    /**
+     * Gives back the stock decrementStock took for an order that is refused while the
+     * transaction goes on with other orders.
+     *
+     * @param connection The connection of the transaction.
+     * @param order The refused order.
+     * @param shortages The items decrementStock reported short; their stock was not taken.
+     * @throws SQLException If the update fails.
+     */
+    void restoreStock(Connection connection, Order order, Map<Integer, Integer> shortages) throws SQLException {
+        String query = "UPDATE MenuItems SET quantity = quantity + ?, isInStock = (quantity IS NULL OR quantity > 0) " +
+                       "WHERE itemId = ? AND restaurantId = ?";
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            boolean any = false;
+            for (Map.Entry<Integer, Integer> entry : orderedQuantities(order).entrySet()) {
+                if (!shortages.containsKey(entry.getKey())) {
+                    pstmt.setInt(1, entry.getValue());
+                    pstmt.setInt(2, entry.getKey());
+                    pstmt.setString(3, order.getRestaurantId());
+                    pstmt.addBatch();
+                    any = true;
+                }
+            }
+            if (any) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Describes the items an order could not get, with the quantity still available.
+     *
+     * @param connection The connection to use.
+     * @param shortages The ordered quantity of every item short of stock, by item id.
+     * @return A message starting with "Out of stock".
+     * @throws SQLException If the menu items cannot be read.
+     */
+    String describeShortages(Connection connection, Map<Integer, Integer> shortages) throws SQLException {
+        String placeholders = shortages.keySet().stream().map(id -> "?").collect(Collectors.joining(", "));
+        Map<Integer, String> details = new TreeMap<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT itemId, name, quantity FROM MenuItems WHERE itemId IN (" + placeholders + ")")) {
+            int index = 1;
+            for (Integer itemId : shortages.keySet()) {
+                pstmt.setInt(index++, itemId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int itemId = rs.getInt("itemId");
+                    details.put(itemId, rs.getString("name") + " (ordered " + shortages.get(itemId)
+                            + ", available " + Math.max(0, rs.getInt("quantity")) + ")");
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder("Out of stock: ");
+        boolean first = true;
+        for (Integer itemId : shortages.keySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(details.getOrDefault(itemId, "item " + itemId + " (not on this restaurant's menu)"));
+            first = false;
+        }
+        return sb.toString();
     }
     
     /**
-     * Inserts order items associated with an order into the database.
+     * Inserts the items of orders that already have their order id, as one batch.
+     * With rewriteBatchedStatements the batch reaches MySQL as a single multi-row insert.
      * 
-     * @param order The Order object containing the items to be inserted.
-     * @return A Message object containing the result of the operation.
+     * @param connection The connection of the order transaction.
+     * @param orders The orders whose items are to be inserted.
+     * @throws SQLException If the insert fails.
      */
-    private Message<String> insertOrderItems(Order order) {
+    void insertOrderItems(Connection connection, List<Order> orders) throws SQLException {
         String query = "INSERT INTO OrderItems (orderId, itemId, quantity, specialInstructions) VALUES (?, ?, ?, ?)";
         try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            for (OrderItem item : order.getOrderItems()) {
-                pstmt.setInt(1, order.getOrderId());
-                pstmt.setInt(2, item.getItemId());
-                pstmt.setInt(3, item.getQuantity());
-                pstmt.setString(4, item.getSpecialInstructions());
-                pstmt.addBatch();
+            boolean any = false;
+            for (Order order : orders) {
+                if (order.getOrderItems() == null) {
+                    continue;
+                }
+                for (OrderItem item : order.getOrderItems()) {
+                    pstmt.setInt(1, order.getOrderId());
+                    pstmt.setInt(2, item.getItemId());
+                    pstmt.setInt(3, item.getQuantity());
+                    pstmt.setString(4, item.getSpecialInstructions());
+                    pstmt.addBatch();
+                    any = true;
+                }
+            }
+            if (any) {
+                pstmt.executeBatch();
             }
-            pstmt.executeBatch();
-            return new Message<>("New order registered successfully with items");
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return new Message<>("Error inserting order items: " + e.getMessage());
         }
     }
     
     /**
-     * Loads all restaurants from the database.
+     * Loads all restaurants, served from the reference data cache.
      * 
      * @return A Message object containing a list of Restaurant objects if successful, or an error message if not.
      */
     public Message<List<Restaurant>> loadRestaurants() {
-        List<Restaurant> restaurants = new ArrayList<>();
-        String query = "SELECT r.restaurantId, r.name, r.location, r.branch, u.phoneNumber " +
-                       "FROM Restaurants r " +
-                       "JOIN Users u ON r.restaurantId = u.userId";
-        
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            while (rs.next()) {
-                Restaurant restaurant = new Restaurant(
-                    rs.getString("restaurantId"),
-                    null,
-                    rs.getString("name"),
-                    rs.getString("phoneNumber"),
-                    rs.getString("location"),
-                    Restaurant.branch.valueOf(rs.getString("branch"))
-                );
-                restaurants.add(restaurant);
-            }
-            
+        try {
+            List<Restaurant> restaurants = referenceData.getRestaurants();
             System.out.println("Total restaurants loaded: " + restaurants.size());
             return new Message<>("Restaurants loaded successfully", restaurants);
         } catch (SQLException e) {
@@ -293,33 +878,14 @@ public class DataBaseController {
     }
     
     /**
-     * Loads menu items for a specific restaurant from the database.
+     * Loads menu items for a specific restaurant, served from the reference data cache.
      * 
      * @param restaurant The Restaurant object for which to load menu items.
      * @return A Message object containing a list of MenuItem objects if successful, or an error message if not.
      */
     public Message<List<MenuItem>> loadItems(Restaurant restaurant) {
-        List<MenuItem> menuItems = new ArrayList<>();
-        String query = "SELECT * FROM MenuItems WHERE restaurantId = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, restaurant.getRestaurantId());
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    MenuItem item = new MenuItem(
-                        rs.getInt("itemId"),
-                        rs.getString("restaurantId"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        rs.getBigDecimal("price"),
-                        rs.getBoolean("isInStock"),
-                        MenuItem.ItemType.valueOf(rs.getString("type").toUpperCase()),
-                        rs.getInt("quantity")
-                    );
-                    menuItems.add(item);
-                }
-            }
-            
+        try {
+            List<MenuItem> menuItems = referenceData.getMenu(restaurant.getRestaurantId());
             return new Message<>("Menu items loaded successfully", menuItems);
         } catch (SQLException e) {
             System.out.println("DataBaseController: Error loading menu items: " + e.getMessage());
@@ -332,56 +898,41 @@ public class DataBaseController {
         }
     }
 
+    /**
+     * Loads what a client needs to bring its copy of a restaurant's menu up to date,
+     * served from the reference data cache.
+     *
+     * @param request The restaurant and the menu version the client holds.
+     * @return A Message object containing the MenuUpdate if successful, or an error message if not.
+     */
+    public Message<MenuUpdate> loadMenuUpdate(MenuRequest request) {
+        try {
+            MenuUpdate update = referenceData.getMenuUpdate(request.getRestaurantId(), request.getKnownVersion());
+            return new Message<>("Menu items loaded successfully", update);
+        } catch (SQLException e) {
+            System.out.println("DataBaseController: Error loading menu items: " + e.getMessage());
+            return new Message<>("Error loading menu items: " + e.getMessage(), null);
+        }
+    }
+
     /**
      * Retrieves a list of orders for the specified customer from the database.
+     * Orders and their items are read with a single join, in one round trip however
+     * long the customer's history is; the rows of an order are adjacent, so the
+     * order graph is assembled in one pass over the result.
      * 
      * @param customerId the ID of the customer whose orders are to be retrieved.
      * @return a `Message` object containing a list of `Order` objects and a status message.
      */
     public Message<List<Order>> getCustomerOrders(String customerId) {
-        List<Order> orders = new ArrayList<>();
-        String orderQuery = "SELECT * FROM Orders WHERE customerId = ?";
-        String itemQuery = "SELECT * FROM OrderItems WHERE orderId = ?";
+        List<Order> orders;
         
-        try (PreparedStatement orderStmt = connection.prepareStatement(orderQuery);
-             PreparedStatement itemStmt = connection.prepareStatement(itemQuery)) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(CUSTOMER_ORDERS_QUERY)) {
             
-            orderStmt.setString(1, customerId);
-            try (ResultSet orderRs = orderStmt.executeQuery()) {
-                while (orderRs.next()) {
-                    Order order = new Order();
-                    order.setOrderId(orderRs.getInt("orderId"));
-                    order.setCustomerId(orderRs.getString("customerId"));
-                    order.setRestaurantId(orderRs.getString("restaurantId"));
-                    order.setTotalPrice(orderRs.getBigDecimal("totalPrice"));
-                    order.setStatus(Order.OrderStatus.valueOf(orderRs.getString("status")));
-                    order.setDeliveryType(Order.DeliveryType.valueOf(orderRs.getString("deliveryType")));
-                    order.setPayed(orderRs.getBoolean("isPayed"));
-                    order.setOrderTime(orderRs.getTimestamp("orderTime").toLocalDateTime());
-                    order.setRequiredTime(orderRs.getTimestamp("requiredTime").toLocalDateTime());
-                    order.setDeliveryAddress(orderRs.getString("deliveryAddress"));
-                    order.setRecipientName(orderRs.getString("recipientName"));
-                    order.setRecipientPhone(orderRs.getString("recipientPhone"));
-                    order.setDiscountApplied(orderRs.getBoolean("discountApplied"));
-                    order.setRobot(orderRs.getBoolean("robot"));
-
-                    // Load order items
-                    List<OrderItem> orderItems = new ArrayList<>();
-                    itemStmt.setInt(1, order.getOrderId());
-                    try (ResultSet itemRs = itemStmt.executeQuery()) {
-                        while (itemRs.next()) {
-                            OrderItem item = new OrderItem();
-                            item.setOrderItemId(itemRs.getInt("orderItemId"));
-                            item.setOrderId(itemRs.getInt("orderId"));
-                            item.setItemId(itemRs.getInt("itemId"));
-                            item.setQuantity(itemRs.getInt("quantity"));
-                            item.setSpecialInstructions(itemRs.getString("specialInstructions"));
-                            orderItems.add(item);
-                        }
-                    }
-                    order.setOrderItems(orderItems);
-                    orders.add(order);
-                }
+            pstmt.setString(1, customerId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                orders = mapOrdersWithItems(rs);
             }
             
             if (orders.isEmpty()) {
@@ -394,6 +945,165 @@ public class DataBaseController {
             return new Message<>("Error loading customer orders: " + e.getMessage(), null);
         }
     }
+
+    /**
+     * Retrieves one page of a customer's orders with their items, most recent first.
+     * The page is sought by its (orderTime, orderId) cursor rather than skipped to with
+     * an offset, and its items are joined in the same query, so every page costs one
+     * round trip and the same time however long the history is.
+     *
+     * @param request The customer, the cursor of the last order received and the page size.
+     * @return A Message containing the page, or null content on error.
+     */
+    public Message<OrderPage> getCustomerOrdersPage(OrderPageRequest request) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(customerOrdersPageQuery(request.isFirstPage()))) {
+            int index = bindPageCursor(pstmt, request);
+            pstmt.setInt(index, request.getPageSize() + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return new Message<>("Customer orders loaded successfully", toPage(mapOrdersWithItems(rs), request));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new Message<>("Error loading customer orders: " + e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Retrieves one page of a restaurant's pending and preparing orders, oldest first,
+     * sought by its (orderTime, orderId) cursor.
+     *
+     * @param request The restaurant, the cursor of the last order received and the page size.
+     * @return A Message containing the page, or null content on error.
+     */
+    public Message<OrderPage> getRestaurantOrdersPage(OrderPageRequest request) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(restaurantOrdersPageQuery(request.isFirstPage()))) {
+            int index = bindPageCursor(pstmt, request);
+            pstmt.setInt(index, request.getPageSize() + 1);
+            List<Order> orders = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapOrder(rs));
+                }
+            }
+            return new Message<>("Orders loaded successfully", toPage(orders, request));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new Message<>("Error loading orders: " + e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Builds the query of a page of a customer's orders with their items, most recent first.
+     * Parameters: customer id, then after the first page the cursor time twice and the
+     * cursor order id, then the page size plus one.
+     *
+     * @param firstPage Whether the query is for the first page, which has no cursor.
+     * @return The query.
+     */
+    static String customerOrdersPageQuery(boolean firstPage) {
+        return "SELECT o.*, oi.orderItemId, oi.itemId, oi.quantity, oi.specialInstructions " +
+               "FROM (SELECT * FROM Orders WHERE customerId = ? " +
+               (firstPage ? "" : "AND (orderTime < ? OR (orderTime = ? AND orderId < ?)) ") +
+               "ORDER BY orderTime DESC, orderId DESC LIMIT ?) o " +
+               "LEFT JOIN OrderItems oi ON oi.orderId = o.orderId " +
+               "ORDER BY o.orderTime DESC, o.orderId DESC, oi.orderItemId";
+    }
+
+    /**
+     * Builds the query of a page of a restaurant's pending and preparing orders, oldest first.
+     * Parameters: restaurant id, then after the first page the cursor time twice and the
+     * cursor order id, then the page size plus one.
+     *
+     * @param firstPage Whether the query is for the first page, which has no cursor.
+     * @return The query.
+     */
+    static String restaurantOrdersPageQuery(boolean firstPage) {
+        return "SELECT * FROM orders WHERE restaurantId = ? " +
+               (firstPage ? "" : "AND (orderTime > ? OR (orderTime = ? AND orderId > ?)) ") +
+               "AND status IN ('PENDING', 'PREPARING') " +
+               "ORDER BY orderTime, orderId LIMIT ?";
+    }
+
+    /**
+     * Binds the owner and, after the first page, the cursor of a page query.
+     *
+     * @param pstmt The page query.
+     * @param request The page request.
+     * @return The index of the next parameter to bind.
+     * @throws SQLException If a parameter cannot be bound.
+     */
+    private int bindPageCursor(PreparedStatement pstmt, OrderPageRequest request) throws SQLException {
+        int index = 1;
+        pstmt.setString(index++, request.getOwnerId());
+        if (!request.isFirstPage()) {
+            Timestamp afterTime = Timestamp.valueOf(request.getAfterTime());
+            pstmt.setTimestamp(index++, afterTime);
+            pstmt.setTimestamp(index++, afterTime);
+            pstmt.setInt(index++, request.getAfterOrderId());
+        }
+        return index;
+    }
+
+    /**
+     * Turns the rows of a page query, fetched with one extra row, into a page.
+     *
+     * @param orders The orders read, at most one more than the page size.
+     * @param request The page request.
+     * @return The page, telling whether more orders follow.
+     */
+    private OrderPage toPage(List<Order> orders, OrderPageRequest request) {
+        boolean hasMore = orders.size() > request.getPageSize();
+        if (hasMore) {
+            orders = new ArrayList<>(orders.subList(0, request.getPageSize()));
+        }
+        return new OrderPage(orders, hasMore);
+    }
+
+    /**
+     * Assembles orders and their items from a join of orders with order items,
+     * in one pass. The rows of each order must be adjacent.
+     *
+     * @param rs The result set over the joined rows.
+     * @return The orders, in row order, each with its items.
+     * @throws SQLException If a column cannot be read.
+     */
+    private List<Order> mapOrdersWithItems(ResultSet rs) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        Order order = null;
+        while (rs.next()) {
+            int orderId = rs.getInt("orderId");
+            if (order == null || order.getOrderId() != orderId) {
+                order = mapOrder(rs);
+                order.setOrderItems(new ArrayList<>());
+                orders.add(order);
+            }
+            rs.getInt("orderItemId");
+            if (!rs.wasNull()) {
+                order.getOrderItems().add(mapOrderItem(rs, orderId));
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Builds an OrderItem from the item columns of the current row of a result set.
+     *
+     * @param rs The result set, positioned on a row with item columns.
+     * @param orderId The ID of the order the item belongs to.
+     * @return The order item.
+     * @throws SQLException If a column cannot be read.
+     */
+    private OrderItem mapOrderItem(ResultSet rs, int orderId) throws SQLException {
+        return new OrderItem(
+            rs.getInt("orderItemId"),
+            orderId,
+            rs.getInt("itemId"),
+            rs.getInt("quantity"),
+            rs.getString("specialInstructions")
+        );
+    }
     
     /**
      * Retrieves orders for a specific restaurant that are in PENDING status.
@@ -403,39 +1113,17 @@ public class DataBaseController {
      */
     public Message<List<Order>> handleGetRestaurantOrders(Restaurant restaurant) {
         List<Order> orderList = new ArrayList<>();
-        String query = "SELECT * FROM orders WHERE restaurantId = ? AND status IN (?, ?)";
-        try {
-            PreparedStatement pstmt = connection.prepareStatement(query);
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(RESTAURANT_OPEN_ORDERS_QUERY)) {
             pstmt.setString(1, restaurant.getRestaurantId());
             pstmt.setString(2, "PENDING");
             pstmt.setString(3, "PREPARING");
-            try {
-                ResultSet rs = pstmt.executeQuery();
-                System.out.println(rs.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Order order = new Order(
-                        rs.getInt("orderId"),
-                        rs.getString("customerId"),
-                        rs.getString("restaurantId"),
-                        rs.getBigDecimal("totalPrice"),
-                        Order.OrderStatus.valueOf(rs.getString("status").toUpperCase()),
-                        Order.DeliveryType.valueOf(rs.getString("deliveryType").toUpperCase()),
-                        rs.getBoolean("isPayed"),
-                        rs.getTimestamp("orderTime").toLocalDateTime(),
-                        rs.getTimestamp("requiredTime").toLocalDateTime(),
-                        rs.getTimestamp("actualArrivalTime") != null ? rs.getTimestamp("actualArrivalTime").toLocalDateTime() : null,
-                        rs.getString("deliveryAddress"),
-                        rs.getString("recipientName"),
-                        rs.getString("recipientPhone"),
-                        rs.getBoolean("discountApplied")
-                    );
-                    order.setRobot(rs.getBoolean("robot"));
+                    Order order = mapOrder(rs);
                     orderList.add(order);
                     System.out.println(order.toString());
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                return new Message<>("Error loading orders: " + e.getMessage(), null);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -463,100 +1151,249 @@ public class DataBaseController {
      * @return A Message object containing the result of the update operation.
      */
     public Message<String> handleUpdateOrderStatus(int orderId, String status) {
+        StatusWriteBehind writeBehind = statusWriteBehind;
+        if (writeBehind != null) {
+            return writeBehind.submit(orderId, status);
+        }
+        Order.OrderStatus next;
+        try {
+            next = Order.OrderStatus.valueOf(status);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return new Message<>("Error updating order status: unknown status " + status);
+        }
         String query;
         LocalDateTime now = LocalDateTime.now();
+        Order updated = null;
 
-        if ("DELIVERED".equals(status)) {
+        if (next == Order.OrderStatus.DELIVERED) {
             query = "UPDATE orders SET status = ?, actualArrivalTime = ? WHERE orderId = ?";
         } else {
             query = "UPDATE orders SET status = ? WHERE orderId = ?";
         }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, status);
-            if ("DELIVERED".equals(status)) {
+            if (next == Order.OrderStatus.DELIVERED) {
                 pstmt.setTimestamp(2, Timestamp.valueOf(now));
                 pstmt.setInt(3, orderId);
             } else {
                 pstmt.setInt(2, orderId);
             }
 
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                System.out.println("Order ID " + orderId + " updated to status: " + status);
-                return new Message<>("Order status updated successfully");
-            } else {
+            Order.OrderStatus current = updateStatusChecked(connection, pstmt, orderId, next);
+            if (current == null) {
                 System.out.println("Failed to update order ID " + orderId + ". No rows affected.");
                 return new Message<>("Failed to update order status: No rows affected");
             }
+            if (current == next) {
+                return new Message<>("Order status updated successfully");
+            }
+            if (!OrderStatusTransitions.isAllowed(current, next)) {
+                return new Message<>(OrderStatusTransitions.refusal(current, next));
+            }
+            System.out.println("Order ID " + orderId + " updated to status: " + status);
+            if (!orderEventListeners.isEmpty()) {
+                updated = loadOrder(connection, orderId);
+            }
         } catch (SQLException e) {
             System.out.println("SQL Error updating order status for order ID " + orderId + ": " + e.getMessage());
             return new Message<>("Error updating order status: " + e.getMessage());
         }
+        // Notified once the connection is back in the pool
+        if (updated != null) {
+            fireOrderStatusChanged(updated);
+        }
+        return new Message<>("Order status updated successfully");
     }
 
-	
     /**
-     * Generates an income report for the specified date range.
-     * This method queries the database to retrieve income data and compile it into a report.
+     * Runs a status update in one transaction with the read of the current status, so the
+     * change is checked against {@link OrderStatusTransitions} while the order is locked.
+     * An order reaching DELIVERED is added to the daily rollups in the same transaction;
+     * orders never leave DELIVERED, so no contribution is ever retracted here.
      *
-     * @param startDate The start date of the report period.
-     * @param endDate The end date of the report period.
-     * @return A Map containing the income report data, including total income,
-     *         income by restaurant, and daily income breakdown.
-     * @throws SQLException If there's an error executing the database queries.
-     */
-    public Map<String, Object> generateIncomeReport(LocalDate startDate, LocalDate endDate,String managerId) {
-        Map<String, Object> reportData = new HashMap<>();
-     
-        String query = "SELECT " +
-        	    "r.name AS restaurant_name, " +
-        	    "DATE(o.orderTime) AS order_date, " +
-        	    "SUM(o.totalPrice) AS daily_income " +
-        	"FROM Orders o " +
-        	"JOIN Restaurants r ON o.restaurantId = r.restaurantId " +
-        	"JOIN Managers m ON r.restaurantId = m.restaurantId " +
-        	"WHERE m.managerId = ? " +
-        	    "AND o.orderTime BETWEEN ? AND ? " +
-        	    "AND o.status = 'DELIVERED' " +
-        	    "AND o.isPayed = 1 " +
-        	"GROUP BY r.restaurantId,r.name, DATE(o.orderTime) " +
-        	"ORDER BY r.name, order_date";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-        	pstmt.setString(1, managerId);
-        	pstmt.setTimestamp(2, Timestamp.valueOf(startDate.atStartOfDay()));
-        	pstmt.setTimestamp(3, Timestamp.valueOf(endDate.atTime(LocalTime.MAX)));
-            System.out.println("Executing query with parameters: " +
-                    "startDate=" + startDate + ", endDate=" + endDate + ", managerId=" + managerId);
+     * @param connection The connection to use.
+     * @param update The bound status update.
+     * @param orderId The ID of the order.
+     * @param next The new status.
+     * @return The status of the order before the update, or null if it does not exist.
+     *         The update only ran if the change is allowed and not to the same status.
+     * @throws SQLException If the update fails; nothing is changed.
+     */
+    private Order.OrderStatus updateStatusChecked(Connection connection, PreparedStatement update, int orderId,
+            Order.OrderStatus next) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement lock = connection.prepareStatement("SELECT status FROM orders WHERE orderId = ? FOR UPDATE")) {
+            lock.setInt(1, orderId);
+            Order.OrderStatus current;
+            try (ResultSet rs = lock.executeQuery()) {
+                if (!rs.next()) {
+                    connection.rollback();
+                    return null;
+                }
+                current = Order.OrderStatus.valueOf(rs.getString("status").toUpperCase());
+            }
+            if (current == next || !OrderStatusTransitions.isAllowed(current, next)) {
+                connection.rollback();
+                return current;
+            }
+            update.executeUpdate();
+            if (rollupsAvailable && next == Order.OrderStatus.DELIVERED) {
+                DailyRollups.record(connection, Collections.singletonList(orderId));
+            }
+            connection.commit();
+            return current;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
 
-            
-            double totalIncome = 0;
-            Map<String, Double> incomeByRestaurant = new HashMap<>();
-            Map<LocalDate, Double> dailyIncome = new TreeMap<>();
+    /**
+     * Loads a single order, without its items.
+     *
+     * @param connection The connection to use.
+     * @param orderId The ID of the order.
+     * @return The order, or null if it does not exist.
+     * @throws SQLException If the query fails.
+     */
+    private Order loadOrder(Connection connection, int orderId) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT * FROM orders WHERE orderId = ?")) {
+            pstmt.setInt(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapOrder(rs) : null;
+            }
+        }
+    }
 
+    /**
+     * Loads several orders, without their items.
+     *
+     * @param connection The connection to use.
+     * @param orderIds The IDs of the orders.
+     * @return The orders that exist, in no particular order.
+     * @throws SQLException If the query fails.
+     */
+    List<Order> loadOrders(Connection connection, List<Integer> orderIds) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        if (orderIds.isEmpty()) {
+            return orders;
+        }
+        String placeholders = orderIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT * FROM orders WHERE orderId IN (" + placeholders + ")")) {
+            int index = 1;
+            for (Integer orderId : orderIds) {
+                pstmt.setInt(index++, orderId);
+            }
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    String restaurantName = rs.getString("restaurant_name");
-                    LocalDate orderDate = rs.getDate("order_date").toLocalDate();
-                    double income = rs.getDouble("daily_income");
+                    orders.add(mapOrder(rs));
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Notifies the order event listeners of a stored status change.
+     *
+     * @param order The order as stored after the update.
+     */
+    void fireOrderStatusChanged(Order order) {
+        for (OrderEventListener listener : orderEventListeners) {
+            listener.orderStatusChanged(order);
+        }
+    }
 
-                    totalIncome += income;
+    /**
+     * Builds an Order from the current row of a result set over the orders table.
+     * In write-behind mode, a status change not yet written to the database is shown.
+     *
+     * @param rs The result set, positioned on an order row.
+     * @return The order, without its items.
+     * @throws SQLException If a column cannot be read.
+     */
+    private Order mapOrder(ResultSet rs) throws SQLException {
+        Order order = new Order(
+            rs.getInt("orderId"),
+            rs.getString("customerId"),
+            rs.getString("restaurantId"),
+            rs.getBigDecimal("totalPrice"),
+            Order.OrderStatus.valueOf(rs.getString("status").toUpperCase()),
+            Order.DeliveryType.valueOf(rs.getString("deliveryType").toUpperCase()),
+            rs.getBoolean("isPayed"),
+            rs.getTimestamp("orderTime").toLocalDateTime(),
+            rs.getTimestamp("requiredTime").toLocalDateTime(),
+            rs.getTimestamp("actualArrivalTime") != null ? rs.getTimestamp("actualArrivalTime").toLocalDateTime() : null,
+            rs.getString("deliveryAddress"),
+            rs.getString("recipientName"),
+            rs.getString("recipientPhone"),
+            rs.getBoolean("discountApplied")
+        );
+        order.setRobot(rs.getBoolean("robot"));
+        StatusWriteBehind writeBehind = statusWriteBehind;
+        if (writeBehind != null) {
+            writeBehind.overlay(order);
+        }
+        return order;
+    }
 
-                    incomeByRestaurant.merge(restaurantName, income, Double::sum);
-                    dailyIncome.merge(orderDate, income, Double::sum);
+	
+    /**
+     * Generates an income report for the specified date range.
+     * This method queries the database to retrieve income data and compile it into a report.
+     *
+     * @param startDate The start date of the report period.
+     * @param endDate The end date of the report period.
+     * @return The income report: total income, income by restaurant and daily income,
+     *         empty if the data cannot be read.
+     */
+    public IncomeReport generateIncomeReport(LocalDate startDate, LocalDate endDate,String managerId) {
+        IncomeReport cached = (IncomeReport) reportCache.get(ReportCache.INCOME, managerId, startDate, endDate);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = reportCache.generation();
+        IncomeReport report = new IncomeReport(startDate, endDate);
+        
+        try {
+            List<String> restaurantIds = referenceData.getManagedRestaurants(managerId);
+            if (reportStore.isReady()) {
+                try {
+                    report = reportStore.incomeReport(startDate, endDate, restaurantIds, restaurantNames(restaurantIds));
+                    reportCache.put(ReportCache.INCOME, managerId, startDate, endDate, report, generation);
+                    return report;
+                } catch (SQLException e) {
+                    reportStore.logFallback("income", e);
                 }
             }
+            boolean rollups = readsRollups();
+            String query = rollups ? DailyRollups.incomeReportQuery(restaurantIds.size())
+                    : incomeReportQuery(restaurantIds.size());
+            try (Connection connection = JDBC.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                bindPeriod(pstmt, bindRestaurants(pstmt, restaurantIds), startDate, endDate, rollups);
+                System.out.println("Executing query with parameters: " +
+                        "startDate=" + startDate + ", endDate=" + endDate + ", managerId=" + managerId);
 
-            reportData.put("totalIncome", totalIncome);
-            reportData.put("incomeByRestaurant", incomeByRestaurant);
-            reportData.put("dailyIncome", dailyIncome);
-
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String restaurantName = referenceData.getRestaurantName(rs.getString("restaurantId"));
+                        LocalDate orderDate = rs.getDate("order_date").toLocalDate();
+                        report.add(restaurantName, orderDate, cents(rs.getBigDecimal("daily_income")));
+                    }
+                }
+                report.trimToSize();
+            }
+            reportCache.put(ReportCache.INCOME, managerId, startDate, endDate, report, generation);
         } catch (SQLException e) {
             e.printStackTrace();
+            return new IncomeReport(startDate, endDate);
         }
 
-        return reportData;
+        return report;
     }
     
     /**
@@ -566,102 +1403,87 @@ public class DataBaseController {
      * @param startDate The start date of the report period (inclusive).
      * @param endDate The end date of the report period (inclusive).
      * @param managerId The ID of the manager for whom the report is being generated.
-     * @return A Map containing the following report data:
-     *         - "totalOrders": (Integer) Total number of orders in the period.
-     *         - "ordersByType": (Map<String, Integer>) Number of orders for each item type.
-     *         - "topItems": (List<Map<String, Object>>) Top 5 most ordered items, each containing:
-     *           - "itemName": (String) Name of the item.
-     *           - "orderCount": (Integer) Number of times the item was ordered.
+     * @return The orders report: the total quantity and number of distinct orders, and the
+     *         quantity ordered of every item type and every item.
      * @throws SQLException if there's an error executing the database query.
      */
-    public Map<String, Object> generateOrdersReport(LocalDate startDate, LocalDate endDate, String managerId) throws SQLException {
-        Map<String, Object> reportData = new HashMap<>();
-
-        String query = "SELECT " +
-                "    o.orderId, " +
-                "    i.type, " +
-                "    i.name, " +
-                "    oi.quantity, " +
-                "    COUNT(oi.orderItemId) AS itemCount " +
-                "FROM " +
-                "    biteme.Orders o " +
-                "JOIN " +
-                "    biteme.Restaurants r ON o.restaurantId = r.restaurantId " +
-                "JOIN " +
-                "    biteme.Managers m ON r.restaurantId = m.restaurantId " +
-                "JOIN " +
-                "    biteme.OrderItems oi ON o.orderId = oi.orderId " +
-                "JOIN " +
-                "    biteme.MenuItems i ON oi.itemId = i.itemId " +
-                "WHERE " +
-                "    m.managerId = ? " +
-                "    AND o.orderTime BETWEEN ? AND ? " +
-                "    AND o.status = 'DELIVERED' AND o.isPayed = 1 " +
-                "GROUP BY " +
-                "    o.orderId, i.type, i.name, oi.quantity " +
-                "ORDER BY " +
-                "    o.orderId, i.type, itemCount DESC";
+    public OrdersReport generateOrdersReport(LocalDate startDate, LocalDate endDate, String managerId) throws SQLException {
+        return generateOrdersReport(startDate, endDate, managerId, false);
+    }
 
+    /**
+     * Generates an orders report, with its item lines if asked for.
+     * The rows are streamed from the database and folded into per type and per item
+     * totals as they arrive, so without the item lines the memory used depends on the
+     * size of the menus, not on the number of orders.
+     *
+     * @param startDate The start date of the report period (inclusive).
+     * @param endDate The end date of the report period (inclusive).
+     * @param managerId The ID of the manager for whom the report is being generated.
+     * @param detail Whether to add the item lines to the report.
+     * @return The orders report.
+     * @throws SQLException if there's an error executing the database query.
+     */
+    public OrdersReport generateOrdersReport(LocalDate startDate, LocalDate endDate, String managerId,
+            boolean detail) throws SQLException {
+        String reportType = detail ? ReportCache.ORDERS_DETAIL : ReportCache.ORDERS;
+        OrdersReport cached = (OrdersReport) reportCache.get(reportType, managerId, startDate, endDate);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = reportCache.generation();
+        OrdersReport report = new OrdersReport();
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, managerId);
-            pstmt.setObject(2, startDate.atStartOfDay());
-            pstmt.setObject(3, endDate.atTime(LocalTime.MAX));
+        List<String> restaurantIds = referenceData.getManagedRestaurants(managerId);
+        if (reportStore.isReady()) {
+            try {
+                report = reportStore.ordersReport(startDate, endDate, restaurantIds, detail);
+                reportCache.put(reportType, managerId, startDate, endDate, report, generation);
+                return report;
+            } catch (SQLException e) {
+                reportStore.logFallback("orders", e);
+            }
+        }
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = prepareStreaming(connection, ordersReportQuery(restaurantIds.size()))) {
+            int index = bindRestaurants(pstmt, restaurantIds);
+            pstmt.setObject(index++, startDate.atStartOfDay());
+            pstmt.setObject(index, endDate.atTime(LocalTime.MAX));
 
+            OrdersReportDetail lines = detail ? new OrdersReportDetail() : null;
+            int uniqueOrders = 0;
+            int previousOrderId = 0;
             try (ResultSet rs = pstmt.executeQuery()) {
-            	 Map<String, Integer> ordersByType = new HashMap<>();
-                 Map<String, Integer> itemTotalCounts = new HashMap<>();
-                 List<Map<String, Object>> allItems = new ArrayList<>();
-                 Set<Integer> uniqueOrderIds = new HashSet<>();
-                 int totalOrders = 0;
-
-                 while (rs.next()) {
-                     int orderId = rs.getInt("orderId");
-                     String type = rs.getString("type");
-                     String name = rs.getString("name");
-                     int quantity = rs.getInt("quantity");
-                     int itemCount = rs.getInt("itemCount");
-
-                     uniqueOrderIds.add(orderId);
-                     ordersByType.merge(type, quantity, Integer::sum);
-                     itemTotalCounts.merge(name, quantity, Integer::sum);
-                     totalOrders += quantity;
-
-                     Map<String, Object> itemData = new HashMap<>();
-                     itemData.put("orderId", orderId);
-                     itemData.put("itemName", name);
-                     itemData.put("quantity", quantity);
-                     itemData.put("itemCount", itemCount);
-                     allItems.add(itemData);
-                 }
-
-                 reportData.put("totalOrders", totalOrders);
-                 reportData.put("uniqueOrders", uniqueOrderIds.size());
-                 reportData.put("ordersByType", ordersByType);
-                 reportData.put("allItems", allItems);
-
-                 List<Map.Entry<String, Integer>> topItems = itemTotalCounts.entrySet().stream()
-                     .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-                     .limit(5)
-                     .collect(Collectors.toList());
-
-                 List<Map<String, Object>> formattedTopItems = topItems.stream()
-                     .map(entry -> {
-                         Map<String, Object> item = new HashMap<>();
-                         item.put("itemName", entry.getKey());
-                         item.put("orderCount", entry.getValue());
-                         return item;
-                     })
-                     .collect(Collectors.toList());
-
-                 reportData.put("topItems", formattedTopItems);
-             }
+                while (rs.next()) {
+                    int orderId = rs.getInt("orderId");
+                    String name = rs.getString("name");
+                    int quantity = rs.getInt("quantity");
+
+                    // Rows come ordered by order, so each order starts a new run
+                    if (uniqueOrders == 0 || orderId != previousOrderId) {
+                        uniqueOrders++;
+                        previousOrderId = orderId;
+                    }
+                    report.add(rs.getString("type"), name, quantity);
+                    if (lines != null) {
+                        lines.add(orderId, name, quantity, rs.getInt("itemCount"));
+                    }
+                }
+            }
+
+            report.setUniqueOrders(uniqueOrders);
+            report.trimToSize();
+            if (lines != null) {
+                lines.trimToSize();
+                report.setDetail(lines);
+            }
+            reportCache.put(reportType, managerId, startDate, endDate, report, generation);
         } catch (SQLException e) {
             System.err.println("Error generating orders report: " + e.getMessage());
             throw e;
         }
         
-        return reportData;
+        return report;
     }
   
     /*
@@ -670,113 +1492,142 @@ public class DataBaseController {
      * @param startDate The start date of the report period (inclusive).
      * @param endDate The end date of the report period (inclusive).
      * @param managerId The ID of the manager for whom the report is being generated.
-     * @return A Map containing the performance report data.
-     * @throws SQLException if there's an error executing the database query.
+     * @return The performance report, one entry per day with deliveries, empty if the
+     *         data cannot be read.
      */
-    public Map<String, Object> generatePerformanceReport(LocalDate startDate, LocalDate endDate, String managerId) {
-        Map<String, Object> reportData = new HashMap<>();
+    public PerformanceReport generatePerformanceReport(LocalDate startDate, LocalDate endDate, String managerId) {
+        PerformanceReport cached = (PerformanceReport) reportCache.get(ReportCache.PERFORMANCE, managerId, startDate, endDate);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = reportCache.generation();
+        PerformanceReport report = new PerformanceReport();
         System.out.println("Got to generatePerformanceReport");
 
-        String query = "SELECT " +
-        	    "    DATE(o.orderTime) AS deliveryDate, " +
-        	    "    DAYNAME(o.orderTime) AS dayOfWeek, " +
-        	    "    COUNT(*) AS totalDeliveries, " +
-        	    "    SUM(CASE WHEN o.actualArrivalTime <= o.requiredTime THEN 1 ELSE 0 END) AS onTimeDeliveries, " +
-        	    "    AVG(TIMESTAMPDIFF(MINUTE, o.orderTime, o.actualArrivalTime)) AS avgDeliveryTime, " +
-        	    "    SUM(o.totalPrice) AS totalRevenue, " +
-        	    "    (SUM(CASE WHEN o.actualArrivalTime <= o.requiredTime THEN 1 ELSE 0 END) / COUNT(*) * 100) AS onTimePercentage " +
-        	    "FROM " +
-        	    "    biteme.Orders o " +
-        	    "JOIN " +
-        	    "    biteme.Restaurants r ON o.restaurantId = r.restaurantId " +
-        	    "JOIN " +
-        	    "    biteme.Managers m ON r.restaurantId = m.restaurantId " +
-        	    "WHERE " +
-        	    "    o.status = 'DELIVERED' " +
-        	    "    AND o.deliveryType IN ('DELIVERY', 'EARLY_DELIVERY', 'ROBOT', 'SHARED_DELIVERY') " +
-        	    "    AND o.orderTime BETWEEN ? AND ? " +
-        	    "    AND m.managerId = ? " +
-        	    "    AND o.isPayed = 1 " +
-        	    "GROUP BY " +
-        	    "    DATE(o.orderTime), DAYNAME(o.orderTime) " +
-        	    "ORDER BY " +
-        	    "    deliveryDate;";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-        	pstmt.setObject(1, startDate.atStartOfDay());
-            pstmt.setObject(2, endDate.atTime(LocalTime.MAX));
-            pstmt.setString(3, managerId);
-            System.out.println("Got to resultset");
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-            	long totalDeliveries = 0;
-            	boolean isEmpty=true;
-                BigDecimal totalOnTimeDeliveries = BigDecimal.ZERO;
-                BigDecimal totalDeliveryTime = BigDecimal.ZERO;
-                BigDecimal totalRevenue = BigDecimal.ZERO;
-                Map<String, BigDecimal> performanceByDay = new HashMap<>();
-                List<Map<String, Object>> dailyData = new ArrayList<>();
-                while (rs.next()) {
-                	isEmpty=false;
-                    long dailyDeliveries = rs.getLong("totalDeliveries");
-                    totalDeliveries += dailyDeliveries;
-                    System.out.println("Pass field 1");
-
-                    BigDecimal dailyOnTimeDeliveries = rs.getBigDecimal("onTimeDeliveries");
-                    totalOnTimeDeliveries = totalOnTimeDeliveries.add(dailyOnTimeDeliveries);                    
-                    System.out.println("Pass field 2");
-
-                    BigDecimal avgDeliveryTime = rs.getBigDecimal("avgDeliveryTime");
-                    totalDeliveryTime = totalDeliveryTime.add(avgDeliveryTime.multiply(BigDecimal.valueOf(dailyDeliveries)));
-                    System.out.println("Pass field 3");
-
-                    BigDecimal dailyRevenue = rs.getBigDecimal("totalRevenue");
-                    totalRevenue = totalRevenue.add(dailyRevenue);
-                    System.out.println("Pass field 4");
-
-                    String dayOfWeek = rs.getString("dayOfWeek");
-
-                    BigDecimal onTimePercentage = rs.getBigDecimal("onTimePercentage");
-                    performanceByDay.put(dayOfWeek, onTimePercentage);
-                    System.out.println("Pass field 5");
-
-                    Map<String, Object> dayData = new HashMap<>(); 
-                    dayData.put("date", rs.getDate("deliveryDate").toLocalDate()); 
-                    dayData.put("dayOfWeek", dayOfWeek);
-                    dayData.put("totalDeliveries", dailyDeliveries);
-                    dayData.put("onTimeDeliveries", dailyOnTimeDeliveries);
-                    dayData.put("avgDeliveryTime", rs.getDouble("avgDeliveryTime"));
-                    dayData.put("totalRevenue", dailyRevenue);
-                    dayData.put("onTimePercentage", onTimePercentage);
-                    dailyData.add(dayData);
+        try {
+            List<String> restaurantIds = referenceData.getManagedRestaurants(managerId);
+            if (reportStore.isReady()) {
+                try {
+                    report = reportStore.performanceReport(startDate, endDate, restaurantIds);
+                    reportCache.put(ReportCache.PERFORMANCE, managerId, startDate, endDate, report, generation);
+                    return report;
+                } catch (SQLException e) {
+                    reportStore.logFallback("performance", e);
                 }
-                if(!isEmpty) {
-                long tempTotalDeliveryTime =totalDeliveryTime.longValue();
-                reportData.put("totalDeliveries", totalDeliveries);
-                reportData.put("totalOnTimeDeliveries", totalOnTimeDeliveries);
-                reportData.put("avgDeliveryTime", tempTotalDeliveryTime/totalDeliveries);
-                reportData.put("totalRevenue", totalRevenue);
-                reportData.put("performanceByDay", performanceByDay);
-                reportData.put("dailyData", dailyData);
+            }
+            boolean rollups = readsRollups();
+            String query = rollups ? DailyRollups.performanceReportQuery(restaurantIds.size())
+                    : performanceReportQuery(restaurantIds.size());
+            try (Connection connection = JDBC.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                bindPeriod(pstmt, bindRestaurants(pstmt, restaurantIds), startDate, endDate, rollups);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        report.addDay(rs.getDate("deliveryDate").toLocalDate(),
+                                rs.getInt("totalDeliveries"),
+                                rs.getInt("onTimeDeliveries"),
+                                rs.getLong("deliveryMinutes"),
+                                cents(rs.getBigDecimal("totalRevenue")));
+                    }
                 }
+                report.trimToSize();
             }
+            reportCache.put(ReportCache.PERFORMANCE, managerId, startDate, endDate, report, generation);
         } catch (SQLException e) {
             e.printStackTrace();
+            return new PerformanceReport();
         }
         
-        //pie chart
-        @SuppressWarnings("unchecked")
-		Map<String, Double>  s=(Map<String, Double>) reportData.get("onTimeDeliveries");
-        System.out.println(reportData.get("totalOnTimeDeliveries"));
+        return report;
+    }
+    
+    /**
+     * Generates the same report for several branches at once. Each branch is computed
+     * on the report executor with its own pooled connection, so the whole request takes
+     * about as long as the slowest branch.
+     *
+     * @param reportType The report: ReportCache.INCOME, ReportCache.ORDERS or ReportCache.PERFORMANCE.
+     * @param startDate The start date of the report period (inclusive).
+     * @param endDate The end date of the report period (inclusive).
+     * @param branches The branches (the IDs of their managers), in the order of the result.
+     * @return The report of every branch, by branch, in the requested order.
+     * @throws SQLException If a report cannot be generated.
+     * @throws IllegalArgumentException If the report type is unknown.
+     */
+    public Map<String, Object> generateBranchReports(String reportType, LocalDate startDate, LocalDate endDate,
+            List<String> branches) throws SQLException {
+        if (!ReportCache.INCOME.equals(reportType) && !ReportCache.ORDERS.equals(reportType)
+                && !ReportCache.PERFORMANCE.equals(reportType)) {
+            throw new IllegalArgumentException("Unknown report type " + reportType);
+        }
+        Map<String, Future<Object>> futures = new LinkedHashMap<>();
+        ExecutorService executor = reportExecutor();
+        for (String branch : new LinkedHashSet<>(branches)) {
+            futures.put(branch, executor.submit(() -> generateReport(reportType, startDate, endDate, branch)));
+        }
+        Map<String, Object> reports = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Future<Object>> entry : futures.entrySet()) {
+                reports.put(entry.getKey(), entry.getValue().get());
+            }
+            return reports;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while generating the branch reports", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Error generating the branch reports: " + cause, cause);
+        } finally {
+            for (Future<Object> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+    }
 
-        
-        
-        System.out.println(reportData.get("performanceByDay"));
+    /**
+     * Generates one report of one branch.
+     *
+     * @param reportType The report: ReportCache.INCOME, ReportCache.ORDERS or ReportCache.PERFORMANCE.
+     * @param startDate The start date of the report period (inclusive).
+     * @param endDate The end date of the report period (inclusive).
+     * @param managerId The ID of the manager of the branch.
+     * @return The report: an IncomeReport, OrdersReport or PerformanceReport.
+     * @throws SQLException If the orders report cannot be generated.
+     */
+    private Object generateReport(String reportType, LocalDate startDate, LocalDate endDate, String managerId)
+            throws SQLException {
+        switch (reportType) {
+            case ReportCache.INCOME:
+                return generateIncomeReport(startDate, endDate, managerId);
+            case ReportCache.ORDERS:
+                return generateOrdersReport(startDate, endDate, managerId);
+            default:
+                return generatePerformanceReport(startDate, endDate, managerId);
+        }
+    }
 
-        System.out.println(reportData.get("dailyData"));
-        System.out.println(reportData.get("totalRevenue"));
-        return reportData;
+    /**
+     * Returns the executor of the branch reports, starting it on first use. Its threads
+     * are bounded so a few wide reports cannot take every pooled connection.
+     *
+     * @return The executor.
+     */
+    private synchronized ExecutorService reportExecutor() {
+        if (reportExecutor == null) {
+            AtomicInteger threads = new AtomicInteger();
+            reportExecutor = Executors.newFixedThreadPool(Math.max(1, ServerConfig.REPORT_THREADS), r -> {
+                Thread thread = new Thread(r, "report-worker-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return reportExecutor;
     }
-    
+
     /**
      * Retrieves quarterly report data for a specific branch, quarter, and year.
      * 
@@ -787,72 +1638,90 @@ public class DataBaseController {
      * @param quarter The quarter for which to retrieve data (1-4)
      * @param year The year for which to retrieve data
      * @param branch The branch name for which to retrieve data
-     * @return A Map containing the following keys:
-     *         - "branchData": Map<String, Map<String, Integer>> where the outer key is the restaurant name,
-     *                         the inner key is the order range, and the value is the number of days in that range
-     *         - "revenueData": Map<String, Map<String, Double>> where the outer key is the restaurant name,
-     *                          the inner key is the order range, and the value is the total revenue for that range
-     *         - "branch": String representing the branch name
-     *         - "quarter": Integer representing the quarter
-     *         - "year": Integer representing the year
-     * @throws SQLException if a database access error occurs or this method is called on a closed connection
-     */
-    public Map<String, Object> getQuarterlyReportData(int quarter, int year, String branch) {
-        Map<String, Object> reportData = new HashMap<>();
+     * @return The quarterly report: for every restaurant and order count range, the number
+     *         of days in that range and their revenue; empty if the data cannot be read.
+     */
+    public QuarterlyReport getQuarterlyReportData(int quarter, int year, String branch) {
+        LocalDate quarterStart = LocalDate.of(year, (quarter - 1) * 3 + 1, 1);
+        LocalDate quarterEnd = quarterStart.plusMonths(3).minusDays(1);
+        QuarterlyReport cached = (QuarterlyReport) reportCache.get(ReportCache.QUARTERLY, branch, quarterStart, quarterEnd);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = reportCache.generation();
+        QuarterlyReport report = new QuarterlyReport(branch, quarter, year);
+        boolean rollups = readsRollups();
+
+        if (reportStore.isReady()) {
+            try {
+                // Ordered by name, like the rows of the query
+                List<Restaurant> restaurants = new ArrayList<>();
+                for (Restaurant restaurant : referenceData.getRestaurants()) {
+                    if (restaurant.getBranch() != null && restaurant.getBranch().name().equalsIgnoreCase(branch)) {
+                        restaurants.add(restaurant);
+                    }
+                }
+                restaurants.sort(Comparator.comparing(Restaurant::getName, String.CASE_INSENSITIVE_ORDER));
+                List<String> restaurantIds = restaurants.stream().map(Restaurant::getRestaurantId).collect(Collectors.toList());
+                report = reportStore.quarterlyReport(quarter, year, branch, restaurantIds, restaurantNames(restaurantIds));
+                reportCache.put(ReportCache.QUARTERLY, branch, quarterStart, quarterEnd, report, generation);
+                return report;
+            } catch (SQLException e) {
+                reportStore.logFallback("quarterly", e);
+            }
+        }
         
-        String query = "SELECT restaurant_name, order_range, " +
-                "COUNT(DISTINCT order_date) AS days_count, " +
-                "SUM(daily_revenue) AS total_revenue " +
-                "FROM (" +
-                "    SELECT r.name AS restaurant_name, " +
-                "           DATE(o.orderTime) AS order_date, " +
-                "           SUM(o.totalPrice) AS daily_revenue, " +
-                "           CASE " +
-                "               WHEN COUNT(o.orderId) BETWEEN 0 AND 20 THEN '0-20' " +
-                "               WHEN COUNT(o.orderId) BETWEEN 21 AND 40 THEN '21-40' " +
-                "               WHEN COUNT(o.orderId) BETWEEN 41 AND 60 THEN '41-60' " +
-                "               WHEN COUNT(o.orderId) BETWEEN 61 AND 80 THEN '61-80' " +
-                "               ELSE '81+' " +
-                "           END AS order_range " +
-                "    FROM restaurants r " +
-                "    LEFT JOIN orders o ON r.restaurantId = o.restaurantId " +
-                "    WHERE YEAR(o.orderTime) = ? AND QUARTER(o.orderTime) = ? AND r.branch = ? AND o.status = 'DELIVERED' AND  o.isPayed=1" +
-                "    GROUP BY r.restaurantId, r.name, DATE(o.orderTime)" +
-                ") AS daily_orders " +
-                "GROUP BY restaurant_name, order_range " +
-                "ORDER BY restaurant_name, order_range";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)){
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(rollups ? DailyRollups.QUARTERLY_REPORT_QUERY : QUARTERLY_REPORT_QUERY)){
             
-            pstmt.setInt(1, year);
-            pstmt.setInt(2, quarter);
+            if (rollups) {
+                pstmt.setDate(1, Date.valueOf(quarterStart));
+                pstmt.setDate(2, Date.valueOf(quarterStart.plusMonths(3)));
+            } else {
+                pstmt.setTimestamp(1, Timestamp.valueOf(quarterStart.atStartOfDay()));
+                pstmt.setTimestamp(2, Timestamp.valueOf(quarterStart.plusMonths(3).atStartOfDay()));
+            }
             pstmt.setString(3, branch);
             
-            ResultSet rs = pstmt.executeQuery();
-            
-            Map<String, Map<String, Integer>> branchData = new HashMap<>();
-            Map<String, Map<String, Double>> revenueData = new HashMap<>();
-            
-            while (rs.next()) {
-                String restaurantName = rs.getString("restaurant_name");
-                String orderRange = rs.getString("order_range");
-                int daysCount = rs.getInt("days_count");
-                double revenue = rs.getDouble("total_revenue");
-                
-                branchData.computeIfAbsent(restaurantName, k -> new HashMap<>()).put(orderRange, daysCount);
-                revenueData.computeIfAbsent(restaurantName, k -> new HashMap<>()).put(orderRange, revenue);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    report.add(rs.getString("restaurant_name"), rs.getString("order_range"),
+                            rs.getInt("days_count"), cents(rs.getBigDecimal("total_revenue")));
+                }
             }
-            
-            reportData.put("branchData", branchData);
-            reportData.put("revenueData", revenueData);
-            reportData.put("branch", branch);
-            reportData.put("quarter", quarter);
-            reportData.put("year", year);
+            reportCache.put(ReportCache.QUARTERLY, branch, quarterStart, quarterEnd, report, generation);
             
         } catch (SQLException e) {
             e.printStackTrace();
+            return new QuarterlyReport(branch, quarter, year);
         }
         
-        return reportData;
+        return report;
+    }
+
+    /**
+     * Returns the names of restaurants.
+     *
+     * @param restaurantIds The restaurant IDs.
+     * @return The name of each restaurant, in the same order.
+     * @throws SQLException If the restaurants cannot be read.
+     */
+    private List<String> restaurantNames(List<String> restaurantIds) throws SQLException {
+        List<String> names = new ArrayList<>(restaurantIds.size());
+        for (String restaurantId : restaurantIds) {
+            names.add(referenceData.getRestaurantName(restaurantId));
+        }
+        return names;
+    }
+
+    /**
+     * Converts an amount read from the database to cents.
+     *
+     * @param amount The amount, may be null for an empty sum.
+     * @return The amount in cents, rounded half up.
+     */
+    static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
     }
     
     /**
@@ -863,7 +1732,8 @@ public class DataBaseController {
      */
     public Message<String> updateMenuItem(MenuItem item) {
         String query = "UPDATE MenuItems SET price = ?, quantity = ? WHERE itemId = ? AND restaurantId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setBigDecimal(1, item.getPrice());
             pstmt.setInt(2, item.getQuantity());
             pstmt.setInt(3, item.getItemId());
@@ -871,6 +1741,7 @@ public class DataBaseController {
 
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
+                referenceData.menuItemsChanged(item.getRestaurantId(), Collections.singletonList(item.getItemId()));
                 return new Message<>("ITEM_UPDATED", "Menu item updated successfully");
             } else {
                 return new Message<>("ITEM_NOT_FOUND", "No matching item found");
@@ -1,22 +1,29 @@
 package database;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 
 import controller.ServerController;
 import server.EchoServer;
+import server.ServerConfig;
 
 /**
  * Class JDBC For Connecting to Database
  */
 public class JDBC {
 
-    /** Static entity for the connection to database */
-    public static Connection connection;
+    /** The JDBC url of the BiteMe database; batches are rewritten into multi-row statements */
+    private static final String DB_URL = "jdbc:mysql://localhost/biteme?serverTimezone=UTC&rewriteBatchedStatements=true";
+
+    /** Static pool of connections to the database, shared by all request handlers */
+    private static volatile ConnectionPool pool;
 
     /**
-     * Method to connect to db
+     * Method to connect to db.
+     * Creates the connection pool used by all the database operations.
      *
      * @param db_username username for database
      * @param db_password password for database
@@ -33,9 +40,49 @@ public class JDBC {
         }
 
         try {
-            connection = DriverManager.getConnection("jdbc:mysql://localhost/biteme?serverTimezone=UTC", db_username, db_password);
-            controller.logToConsole("SQL connection succeed");
+            closeConnection();
+            pool = new ConnectionPool(DB_URL, db_username, db_password,
+                    ServerConfig.DB_POOL_MIN, ServerConfig.DB_POOL_MAX,
+                    ServerConfig.DB_POOL_WAIT_TIMEOUT_MS, ServerConfig.DB_POOL_IDLE_TIMEOUT_MS,
+                    ServerConfig.DB_POOL_LEAK_THRESHOLD_MS, ServerConfig.DB_POOL_LEAK_TRACE, controller);
+            // Make sure the credentials work even when the pool starts empty
+            try (Connection connection = pool.getConnection()) {
+                controller.logToConsole("SQL connection succeed (pool: " + pool.getStatistics() + ")");
+                if (ServerConfig.DB_MIGRATE) {
+                    int version = new SchemaMigrator(controller).migrate(connection);
+                    controller.logToConsole("Database schema version " + version);
+                }
+                boolean rollups = DataBaseController.getInstance().detectRollups(connection);
+                if (!checkQueryPlans(connection, rollups && ServerConfig.REPORT_ROLLUPS, controller)) {
+                    closeConnection();
+                    return false;
+                }
+                if (rollups) {
+                    controller.logToConsole("Daily report rollups maintained"
+                            + (ServerConfig.REPORT_ROLLUPS ? " and used by the reports" : ", reports read the orders"));
+                }
+            }
+            DataBaseController.getInstance().getReferenceData().warmUp();
+            controller.logToConsole(DataBaseController.getInstance().getReferenceData().formatStatistics());
+            if (ServerConfig.REPORT_STORE) {
+                DataBaseController.getInstance().startReportStore(controller);
+                controller.logToConsole("Loading the report store, reports query the database until it is ready");
+            }
+            if (ServerConfig.ORDER_GROUP_COMMIT) {
+                DataBaseController.getInstance().startOrderIngestor(ServerConfig.ORDER_GROUP_WINDOW_MICROS,
+                        ServerConfig.ORDER_GROUP_MAX_ORDERS, controller);
+            }
+            if (ServerConfig.STATUS_WRITE_BEHIND) {
+                DataBaseController.getInstance().startStatusWriteBehind(Paths.get(ServerConfig.STATUS_JOURNAL_PATH),
+                        ServerConfig.STATUS_FLUSH_INTERVAL_MS, ServerConfig.STATUS_FLUSH_BATCH, controller);
+                controller.logToConsole("Order status write-behind enabled, journal " + ServerConfig.STATUS_JOURNAL_PATH);
+            }
+        } catch (IOException ex) {
+            closeConnection();
+            controller.logToConsole("Order status journal could not be opened: " + ex.getMessage());
+            return false;
         } catch (SQLException ex) {
+            closeConnection();
             controller.logToConsole("SQL connection Failed");
             controller.logToConsole("SQLException: " + ex.getMessage());
             controller.logToConsole("SQLState: " + ex.getSQLState());
@@ -46,29 +93,58 @@ public class JDBC {
     }
 
     /**
-     * Method to get the database connection
+     * Runs the EXPLAIN check of the hot queries, as configured by ServerConfig.DB_PLAN_CHECK.
+     *
+     * @param connection The connection to use
+     * @param rollups Whether the reports read the daily rollups
+     * @param controller The server controller used for logging
+     * @return false if a query fully scans a large table and the check is set to "fail"
+     * @throws SQLException if a query cannot be explained
+     */
+    private static boolean checkQueryPlans(Connection connection, boolean rollups, ServerController controller) throws SQLException {
+        if ("off".equalsIgnoreCase(ServerConfig.DB_PLAN_CHECK)) {
+            return true;
+        }
+        List<String> violations = QueryPlanVerifier.forHotQueries(rollups).verify(connection);
+        for (String violation : violations) {
+            controller.logToConsole("Query plan check: " + violation);
+        }
+        if (violations.isEmpty()) {
+            controller.logToConsole("Query plan check passed");
+            return true;
+        }
+        return !"fail".equalsIgnoreCase(ServerConfig.DB_PLAN_CHECK);
+    }
+
+    /**
+     * Method to borrow a database connection from the pool.
+     * The caller must close the returned connection (preferably with try-with-resources)
+     * to give it back to the pool.
      *
      * @return Connection object
-     * @throws SQLException if connection is null or closed
+     * @throws SQLException if the pool is not initialized or no connection is available in time
      */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+        ConnectionPool currentPool = pool;
+        if (currentPool == null) {
             throw new SQLException("Database connection is not established.");
         }
-        return connection;
+        return currentPool.getConnection();
     }
 
     /**
-     * Method to close the database connection
+     * Method to close all the pooled database connections
      */
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                EchoServer.serverController.logToConsole("Database connection closed successfully");
+        ConnectionPool currentPool = pool;
+        if (currentPool != null) {
+            DataBaseController.getInstance().stopStatusWriteBehind();
+            DataBaseController.getInstance().stopReportStore();
+            pool = null;
+            currentPool.shutdown();
+            if (EchoServer.serverController != null) {
+                EchoServer.serverController.logToConsole("Database connections closed successfully");
             }
-        } catch (SQLException e) {
-            EchoServer.serverController.logToConsole("Error closing database connection: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package database;
+
+import entities.Order;
+
+/**
+ * Receives the order changes committed by DataBaseController.
+ * Listeners are called on the thread that made the change, after the commit and once
+ * its database connection is released, so they must not block for long.
+ */
+public interface OrderEventListener {
+
+    /**
+     * Called after a new order and its items were stored.
+     *
+     * @param order The new order, with its generated id
+     */
+    void orderCreated(Order order);
+
+    /**
+     * Called after the status of an order was updated.
+     *
+     * @param order The order as stored after the update
+     */
+    void orderStatusChanged(Order order);
+}
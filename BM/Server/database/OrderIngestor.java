@@ -0,0 +1,232 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import controller.ServerController;
+import entities.Message;
+import entities.Order;
+
+/**
+ * Stores concurrently placed orders together: the orders that arrive within a short
+ * window of each other are written in one transaction, with one multi-row insert
+ * for their Orders rows and one for their OrderItems rows, so a burst of orders costs
+ * one commit instead of one per order.
+ * <p>
+ * Every order still takes its own stock: an order that cannot get all of its items
+ * gets its stock back and is refused with the same "Out of stock" result as
+ * {@link DataBaseController#newOrder}, while the others of the batch are stored.
+ * If the batch transaction fails as a whole, its orders are retried one by one
+ * with newOrder, so one bad order does not fail the orders placed next to it.
+ */
+class OrderIngestor {
+
+    /**
+     * The controller whose order helpers store the batches.
+     */
+    private final DataBaseController controller;
+
+    /**
+     * Time in nanoseconds the ingestor waits for more orders after the first order of a batch.
+     */
+    private final long windowNanos;
+
+    /**
+     * The largest number of orders in one batch.
+     */
+    private final int maxOrders;
+
+    /**
+     * The orders waiting to be stored.
+     */
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Controller used to log to the server console, may be null.
+     */
+    private final ServerController serverController;
+
+    /**
+     * Creates an ingestor and starts its thread.
+     *
+     * @param controller The controller whose order helpers store the batches.
+     * @param windowMicros Time in microseconds to wait for more orders to join a batch.
+     * @param maxOrders The largest number of orders in one batch.
+     * @param serverController Controller used to log to the server console, may be null.
+     */
+    OrderIngestor(DataBaseController controller, long windowMicros, int maxOrders, ServerController serverController) {
+        this.controller = controller;
+        this.serverController = serverController;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+        this.maxOrders = Math.max(1, maxOrders);
+        Thread thread = new Thread(this::run, "order-ingestor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues an order to be stored with the next batch.
+     *
+     * @param order The order to store; its order ID is set once it is stored.
+     * @return A future completed with the result newOrder would have returned, never exceptionally.
+     */
+    CompletableFuture<Message<String>> submit(Order order) {
+        PendingOrder pending = new PendingOrder(order);
+        queue.add(pending);
+        return pending.result;
+    }
+
+    /**
+     * Collects and stores batches until the thread is interrupted.
+     */
+    private void run() {
+        List<PendingOrder> batch = new ArrayList<>(maxOrders);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxOrders) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                store(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                ServerController.log(serverController, "Order ingestor failed", e);
+                // Answered like a failed newOrder; futures already completed keep their result
+                Message<String> failure = new Message<>("Error registering new order: " + e.getMessage());
+                for (PendingOrder pending : batch) {
+                    pending.result.complete(failure);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stores a batch of orders and completes their futures.
+     *
+     * @param batch The orders, in arrival order.
+     */
+    private void store(List<PendingOrder> batch) {
+        if (batch.size() == 1) {
+            PendingOrder pending = batch.get(0);
+            pending.result.complete(controller.newOrder(pending.order));
+            return;
+        }
+        List<Order> accepted = new ArrayList<>(batch.size());
+        try (Connection connection = JDBC.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (PendingOrder pending : batch) {
+                    Map<Integer, Integer> shortages = controller.decrementStock(connection, pending.order);
+                    if (shortages.isEmpty()) {
+                        accepted.add(pending.order);
+                    } else {
+                        controller.restoreStock(connection, pending.order, shortages);
+                        pending.refusal = new Message<>(controller.describeShortages(connection, shortages));
+                    }
+                }
+                if (!accepted.isEmpty()) {
+                    insertOrders(connection, accepted);
+                    controller.insertOrderItems(connection, accepted);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            ServerController.log(serverController, "Group commit of " + batch.size() + " orders failed, storing them one by one", e);
+            for (PendingOrder pending : batch) {
+                pending.order.setOrderId(0);
+                pending.result.complete(controller.newOrder(pending.order));
+            }
+            return;
+        }
+        for (Order order : accepted) {
+            controller.getReferenceData().stockChanged(order);
+        }
+        for (PendingOrder pending : batch) {
+            pending.result.complete(pending.refusal != null ? pending.refusal : DataBaseController.orderPlaced(pending.order));
+        }
+        // Every caller of the batch is answered before the listeners run on this thread
+        for (Order order : accepted) {
+            controller.fireOrderCreated(order);
+        }
+    }
+
+    /**
+     * Inserts the Orders rows of a batch with one multi-row insert and sets their generated order IDs.
+     *
+     * @param connection The connection of the batch transaction.
+     * @param orders The orders to insert.
+     * @throws SQLException If the insert fails or does not return a key per order.
+     */
+    private void insertOrders(Connection connection, List<Order> orders) throws SQLException {
+        String query = "INSERT INTO Orders (" + DataBaseController.ORDER_INSERT_COLUMNS + ") VALUES "
+                + String.join(", ", Collections.nCopies(orders.size(), DataBaseController.ORDER_INSERT_ROW));
+        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            int index = 1;
+            for (Order order : orders) {
+                index = controller.bindOrder(pstmt, index, order);
+            }
+            pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                for (Order order : orders) {
+                    if (!keys.next()) {
+                        throw new SQLException("Creating orders failed, fewer IDs than orders returned.");
+                    }
+                    order.setOrderId(keys.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * An order waiting in the queue, with the future of its result.
+     */
+    private static final class PendingOrder {
+
+        /**
+         * The order to store.
+         */
+        private final Order order;
+
+        /**
+         * Completed with the result once the batch of the order is committed.
+         */
+        private final CompletableFuture<Message<String>> result = new CompletableFuture<>();
+
+        /**
+         * The out of stock result if the order was refused, null otherwise.
+         */
+        private Message<String> refusal;
+
+        /**
+         * Creates a pending order.
+         *
+         * @param order The order to store.
+         */
+        PendingOrder(Order order) {
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package database;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import entities.Order.OrderStatus;
+
+/**
+ * The order status changes the server accepts, in both the synchronous and the
+ * write-behind mode. Orders move forward through the order life cycle, may skip
+ * steps (a picked up order is never in delivery), may be cancelled until they are
+ * delivered, and never leave DELIVERED or CANCELLED.
+ */
+final class OrderStatusTransitions {
+
+    /**
+     * The statuses each status may change to.
+     */
+    private static final Map<OrderStatus, EnumSet<OrderStatus>> ALLOWED = new EnumMap<>(OrderStatus.class);
+
+    static {
+        ALLOWED.put(OrderStatus.PENDING, EnumSet.of(OrderStatus.CONFIRMED, OrderStatus.PREPARING, OrderStatus.READY,
+                OrderStatus.IN_DELIVERY, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        ALLOWED.put(OrderStatus.CONFIRMED, EnumSet.of(OrderStatus.PREPARING, OrderStatus.READY,
+                OrderStatus.IN_DELIVERY, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        ALLOWED.put(OrderStatus.PREPARING, EnumSet.of(OrderStatus.READY,
+                OrderStatus.IN_DELIVERY, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        ALLOWED.put(OrderStatus.READY, EnumSet.of(OrderStatus.IN_DELIVERY, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        ALLOWED.put(OrderStatus.IN_DELIVERY, EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        ALLOWED.put(OrderStatus.DELIVERED, EnumSet.noneOf(OrderStatus.class));
+        ALLOWED.put(OrderStatus.CANCELLED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private OrderStatusTransitions() {
+    }
+
+    /**
+     * Checks whether an order may move from one status to another.
+     *
+     * @param from The current status.
+     * @param to The requested status.
+     * @return true if the change is allowed.
+     */
+    static boolean isAllowed(OrderStatus from, OrderStatus to) {
+        return ALLOWED.get(from).contains(to);
+    }
+
+    /**
+     * Builds the answer to a change that is not allowed.
+     *
+     * @param from The current status.
+     * @param to The requested status.
+     * @return The failure message sent to the client.
+     */
+    static String refusal(OrderStatus from, OrderStatus to) {
+        return "Failed to update order status: cannot change order from " + from + " to " + to;
+    }
+}
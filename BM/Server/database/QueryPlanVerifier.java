@@ -0,0 +1,145 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks with EXPLAIN that the hot queries of the server are served by an index.
+ * Each registered query names the tables (by the alias used in the query) that must
+ * never be read with a full scan; small lookup tables may be left out, since the
+ * optimizer rightly scans a table of a few rows. The check is run at startup, after
+ * the schema migrations, so a missing or unusable index shows up before a report
+ * that reads a year of orders does.
+ * <p>
+ * The optimizer bases its choice on table statistics: on a nearly empty development
+ * database it may prefer a scan even where an index exists.
+ */
+public class QueryPlanVerifier {
+
+    /** The queries to check */
+    private final List<PlanCheck> checks = new ArrayList<>();
+
+    /**
+     * Creates a verifier for the hot queries of DataBaseController.
+     *
+     * @param rollups Whether the reports read the daily rollups, whose queries are checked too
+     * @return The verifier
+     */
+    public static QueryPlanVerifier forHotQueries(boolean rollups) {
+        QueryPlanVerifier verifier = new QueryPlanVerifier();
+        Timestamp from = Timestamp.valueOf(LocalDateTime.now().minusYears(1));
+        Timestamp to = Timestamp.valueOf(LocalDateTime.now());
+        verifier.register("customer orders", DataBaseController.CUSTOMER_ORDERS_QUERY,
+                new Object[] { "" }, "o", "oi");
+        verifier.register("customer orders page", DataBaseController.customerOrdersPageQuery(false),
+                new Object[] { "", to, to, 0, 26 }, "Orders", "oi");
+        verifier.register("restaurant open orders", DataBaseController.RESTAURANT_OPEN_ORDERS_QUERY,
+                new Object[] { "", "PENDING", "PREPARING" }, "orders");
+        verifier.register("restaurant orders page", DataBaseController.restaurantOrdersPageQuery(false),
+                new Object[] { "", from, from, 0, 26 }, "orders");
+        verifier.register("income report", DataBaseController.incomeReportQuery(1),
+                new Object[] { "", from, to }, "o");
+        verifier.register("orders report", DataBaseController.ordersReportQuery(1),
+                new Object[] { "", from, to }, "o", "oi");
+        verifier.register("performance report", DataBaseController.performanceReportQuery(1),
+                new Object[] { "", from, to }, "o");
+        verifier.register("quarterly report", DataBaseController.QUARTERLY_REPORT_QUERY,
+                new Object[] { from, to, "NORTH" }, "o");
+        if (rollups) {
+            Date fromDay = Date.valueOf(LocalDate.now().minusYears(1));
+            Date toDay = Date.valueOf(LocalDate.now());
+            verifier.register("income report (rollups)", DailyRollups.incomeReportQuery(1),
+                    new Object[] { "", fromDay, toDay }, "s");
+            verifier.register("performance report (rollups)", DailyRollups.performanceReportQuery(1),
+                    new Object[] { "", fromDay, toDay }, "s");
+            verifier.register("quarterly report (rollups)", DailyRollups.QUARTERLY_REPORT_QUERY,
+                    new Object[] { fromDay, toDay, "NORTH" }, "s");
+        }
+        return verifier;
+    }
+
+    /**
+     * Registers a query to check.
+     *
+     * @param name A name used in the report
+     * @param sql The query
+     * @param parameters Sample values for the query parameters
+     * @param guardedTables The aliases of the tables that must not be fully scanned
+     */
+    public void register(String name, String sql, Object[] parameters, String... guardedTables) {
+        checks.add(new PlanCheck(name, sql, parameters, new HashSet<>(Arrays.asList(guardedTables))));
+    }
+
+    /**
+     * Explains every registered query.
+     *
+     * @param connection The connection to use
+     * @return One line per guarded table read with a full scan; empty if every query uses an index
+     * @throws SQLException if a query cannot be explained
+     */
+    public List<String> verify(Connection connection) throws SQLException {
+        List<String> violations = new ArrayList<>();
+        for (PlanCheck check : checks) {
+            try (PreparedStatement pstmt = connection.prepareStatement("EXPLAIN " + check.sql)) {
+                for (int i = 0; i < check.parameters.length; i++) {
+                    pstmt.setObject(i + 1, check.parameters[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String table = rs.getString("table");
+                        if ("ALL".equalsIgnoreCase(rs.getString("type")) && table != null
+                                && check.guardedTables.stream().anyMatch(table::equalsIgnoreCase)) {
+                            violations.add(check.name + ": full scan of " + table
+                                    + " (about " + rs.getLong("rows") + " rows)");
+                        }
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * A query to check together with its sample parameters.
+     */
+    private static final class PlanCheck {
+
+        /** The name used in the report */
+        private final String name;
+
+        /** The query */
+        private final String sql;
+
+        /** Sample values for the query parameters */
+        private final Object[] parameters;
+
+        /** The aliases of the tables that must not be fully scanned */
+        private final Set<String> guardedTables;
+
+        /**
+         * Creates a check.
+         *
+         * @param name The name used in the report
+         * @param sql The query
+         * @param parameters Sample values for the query parameters
+         * @param guardedTables The aliases of the tables that must not be fully scanned
+         */
+        PlanCheck(String name, String sql, Object[] parameters, Set<String> guardedTables) {
+            this.name = name;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.guardedTables = guardedTables;
+        }
+    }
+}
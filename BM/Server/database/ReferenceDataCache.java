@@ -0,0 +1,703 @@
+package database;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import entities.MenuItem;
+import entities.MenuUpdate;
+import entities.Order;
+import entities.OrderItem;
+import entities.Restaurant;
+import entities.User.UserRole;
+
+/**
+ * In-process cache of the reference data the server reads far more often than it
+ * changes: the restaurant list, the menu of every restaurant and the restaurants of
+ * every manager. Everything is loaded at startup by {@link #warmUp}; after that the
+ * order screen and the reports are served without a query until a write invalidates
+ * exactly the entries it changed:
+ * <ul>
+ * <li>a menu item update, or an order taking limited stock, drops the restaurant's menu;</li>
+ * <li>registering a restaurant drops the restaurant list, registering a manager the manager entries.</li>
+ * </ul>
+ * Changes made directly in the database are picked up when the entries expire.
+ * <p>
+ * A value is only stored if its own entry was not invalidated while it was loading,
+ * so a load racing with a write never puts back the old data, while writes to other
+ * entries do not waste the loads running meanwhile. Cached lists are unmodifiable and
+ * shared by every request.
+ * <p>
+ * Every menu also has a version, so clients holding a copy of it get only what changed
+ * (see {@link #getMenuUpdate}). Versions are taken from a counter seeded with the clock,
+ * so the versions of a previous run are always older than those of this one; a client
+ * holding such a version, or any version from before a reload the cache cannot account
+ * for (an expired entry, a new warm-up), gets the whole menu.
+ */
+public class ReferenceDataCache {
+
+    /** Key of the single entry of the restaurant list */
+    private static final String ALL = "*";
+
+    /** Time in nanoseconds an entry is used before it is loaded again, 0 for no expiry */
+    private final long ttlNanos;
+
+    /** The restaurant list, under the key ALL */
+    private final Dimension<List<Restaurant>> restaurants = new Dimension<>("restaurants");
+
+    /** The menus, by restaurant ID */
+    private final Dimension<Menu> menus = new Dimension<>("menus");
+
+    /** The restaurant IDs of every manager, by manager ID */
+    private final Dimension<List<String>> managers = new Dimension<>("managers");
+
+    /** The menu versions, by restaurant ID */
+    private final Map<String, MenuVersion> menuVersions = new ConcurrentHashMap<>();
+
+    /** Source of menu versions, in microseconds since the epoch when the cache was created */
+    private final AtomicLong menuVersionClock = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param ttlSeconds Time in seconds an entry is used before it is loaded again, 0 for no expiry
+     */
+    public ReferenceDataCache(long ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+    }
+
+    /**
+     * Drops every entry and loads all restaurants, menus and managers, with one query each.
+     *
+     * @throws SQLException if the reference data cannot be read
+     */
+    public void warmUp() throws SQLException {
+        invalidateAll();
+        // Every entry is missing now, so any invalidation from here on refuses the values loaded below
+        Stamp restaurantsStamp = restaurants.stamp(ALL);
+        Stamp menusStamp = menus.emptyStamp();
+        Stamp managersStamp = managers.emptyStamp();
+        try (Connection connection = JDBC.getConnection()) {
+            List<Restaurant> restaurantList = queryRestaurants(connection);
+            restaurants.put(ALL, restaurantList, restaurantsStamp);
+
+            Map<String, List<MenuItem>> items = new HashMap<>();
+            Map<String, Set<Integer>> limited = new HashMap<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM MenuItems")) {
+                while (rs.next()) {
+                    MenuItem item = mapMenuItem(rs);
+                    items.computeIfAbsent(item.getRestaurantId(), k -> new ArrayList<>()).add(item);
+                    if (!rs.wasNull()) {
+                        limited.computeIfAbsent(item.getRestaurantId(), k -> new HashSet<>()).add(item.getItemId());
+                    }
+                }
+            }
+            for (Restaurant restaurant : restaurantList) {
+                String restaurantId = restaurant.getRestaurantId();
+                menus.put(restaurantId, new Menu(items.getOrDefault(restaurantId, new ArrayList<>()),
+                        limited.getOrDefault(restaurantId, new HashSet<>())), menusStamp);
+                menuLoaded(restaurantId);
+            }
+
+            Map<String, List<String>> managed = new HashMap<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT managerId, restaurantId FROM Managers")) {
+                while (rs.next()) {
+                    managed.computeIfAbsent(rs.getString("managerId"), k -> new ArrayList<>()).add(rs.getString("restaurantId"));
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : managed.entrySet()) {
+                managers.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()), managersStamp);
+            }
+        }
+    }
+
+    /**
+     * Returns every restaurant with the phone number of its user.
+     *
+     * @return The restaurants, unmodifiable
+     * @throws SQLException if the restaurants are not cached and cannot be read
+     */
+    public List<Restaurant> getRestaurants() throws SQLException {
+        return restaurants.get(ALL, () -> {
+            try (Connection connection = JDBC.getConnection()) {
+                return queryRestaurants(connection);
+            }
+        });
+    }
+
+    /**
+     * Returns the name of a restaurant.
+     *
+     * @param restaurantId The restaurant ID
+     * @return The name, or the ID if the restaurant is unknown
+     * @throws SQLException if the restaurants are not cached and cannot be read
+     */
+    public String getRestaurantName(String restaurantId) throws SQLException {
+        for (Restaurant restaurant : getRestaurants()) {
+            if (restaurant.getRestaurantId().equals(restaurantId)) {
+                return restaurant.getName();
+            }
+        }
+        return restaurantId;
+    }
+
+    /**
+     * Returns the menu of a restaurant.
+     *
+     * @param restaurantId The restaurant ID
+     * @return The menu items, unmodifiable
+     * @throws SQLException if the menu is not cached and cannot be read
+     */
+    public List<MenuItem> getMenu(String restaurantId) throws SQLException {
+        return loadMenu(restaurantId).items;
+    }
+
+    /**
+     * Returns what a client holding a given version of a restaurant's menu needs to bring it
+     * up to date: nothing if the version is current, the items changed since that version
+     * if they are known, and the whole menu otherwise.
+     *
+     * @param restaurantId The restaurant ID
+     * @param knownVersion The version the client holds, or 0 if it holds none
+     * @return The update
+     * @throws SQLException if the menu is not cached and cannot be read
+     */
+    public MenuUpdate getMenuUpdate(String restaurantId, long knownVersion) throws SQLException {
+        MenuVersion state = menuVersions.computeIfAbsent(restaurantId, k -> new MenuVersion(nextMenuVersion()));
+        // Take the version before reading the menu: the items sent are never older than the version claimed
+        long version;
+        Set<Integer> changed = null;
+        synchronized (state) {
+            version = state.version;
+            if (knownVersion == version) {
+                return new MenuUpdate(restaurantId, version, MenuUpdate.Kind.NOT_MODIFIED, new ArrayList<>());
+            }
+            if (knownVersion >= state.floor && knownVersion < version) {
+                changed = new HashSet<>();
+                for (Map.Entry<Integer, Long> entry : state.itemVersions.entrySet()) {
+                    if (entry.getValue() > knownVersion) {
+                        changed.add(entry.getKey());
+                    }
+                }
+            }
+        }
+        List<MenuItem> items = loadMenu(restaurantId).items;
+        if (changed == null) {
+            return new MenuUpdate(restaurantId, version, MenuUpdate.Kind.FULL, items);
+        }
+        List<MenuItem> changedItems = new ArrayList<>();
+        for (MenuItem item : items) {
+            if (changed.contains(item.getItemId())) {
+                changedItems.add(item);
+            }
+        }
+        return new MenuUpdate(restaurantId, version, MenuUpdate.Kind.CHANGES, changedItems);
+    }
+
+    /**
+     * Returns the menu of a restaurant, loading it if needed.
+     *
+     * @param restaurantId The restaurant ID
+     * @return The menu
+     * @throws SQLException if the menu is not cached and cannot be read
+     */
+    private Menu loadMenu(String restaurantId) throws SQLException {
+        return menus.get(restaurantId, () -> {
+            Menu menu = queryMenu(restaurantId);
+            menuLoaded(restaurantId);
+            return menu;
+        });
+    }
+
+    /**
+     * Returns the restaurants of a manager.
+     *
+     * @param managerId The manager ID
+     * @return The restaurant IDs, unmodifiable; empty for an unknown manager
+     * @throws SQLException if the manager is not cached and cannot be read
+     */
+    public List<String> getManagedRestaurants(String managerId) throws SQLException {
+        return managers.get(managerId, () -> {
+            List<String> restaurantIds = new ArrayList<>();
+            try (Connection connection = JDBC.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement("SELECT restaurantId FROM Managers WHERE managerId = ?")) {
+                pstmt.setString(1, managerId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        restaurantIds.add(rs.getString("restaurantId"));
+                    }
+                }
+            }
+            return Collections.unmodifiableList(restaurantIds);
+        });
+    }
+
+    /**
+     * Drops the menu of a restaurant after some of its items were changed, and gives
+     * those items a new menu version.
+     *
+     * @param restaurantId The restaurant ID
+     * @param itemIds The IDs of the changed items
+     */
+    public void menuItemsChanged(String restaurantId, Collection<Integer> itemIds) {
+        MenuVersion state = menuVersions.computeIfAbsent(restaurantId, k -> new MenuVersion(nextMenuVersion()));
+        synchronized (state) {
+            state.reloadExpected = true;
+            // Drop the menu before publishing the version, so a reader seeing the new version reads the new items
+            menus.invalidate(restaurantId);
+            long version = nextMenuVersion();
+            for (Integer itemId : itemIds) {
+                state.itemVersions.put(itemId, version);
+            }
+            state.version = version;
+        }
+    }
+
+    /**
+     * Drops the menu of the restaurant of a committed order if the order took stock
+     * of an item with a limited quantity. Items with unlimited stock do not change,
+     * so orders of those alone keep the menu cached.
+     *
+     * @param order The committed order
+     */
+    public void stockChanged(Order order) {
+        if (order.getOrderItems() == null || order.getOrderItems().isEmpty()) {
+            return;
+        }
+        Menu menu = menus.peek(order.getRestaurantId());
+        List<Integer> changed = new ArrayList<>();
+        for (OrderItem item : order.getOrderItems()) {
+            // Without a cached menu it is unknown which items are limited; a load may also be running
+            if (menu == null || menu.limitedItems.contains(item.getItemId())) {
+                changed.add(item.getItemId());
+            }
+        }
+        if (!changed.isEmpty()) {
+            menuItemsChanged(order.getRestaurantId(), changed);
+        }
+    }
+
+    /**
+     * Drops the entries a newly registered user can change.
+     *
+     * @param role The role of the new user
+     */
+    public void userRegistered(UserRole role) {
+        if (role == UserRole.RESTAURANT) {
+            restaurants.invalidate(ALL);
+        } else if (role == UserRole.MANAGER || role == UserRole.CEO) {
+            managers.invalidateAll();
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void invalidateAll() {
+        restaurants.invalidateAll();
+        menus.invalidateAll();
+        managers.invalidateAll();
+    }
+
+    /**
+     * Formats the size, hits, misses and invalidations of every kind of entry.
+     *
+     * @return One line per kind of entry
+     */
+    public String formatStatistics() {
+        StringBuilder sb = new StringBuilder("Reference data cache:");
+        for (Dimension<?> dimension : List.of(restaurants, menus, managers)) {
+            long hits = dimension.hits.sum();
+            long misses = dimension.misses.sum();
+            sb.append(String.format("%n  %-30s size=%d hits=%d misses=%d hitRate=%.1f%% invalidations=%d",
+                    dimension.name, dimension.size(), hits, misses,
+                    hits + misses == 0 ? 0.0 : hits * 100.0 / (hits + misses), dimension.invalidations.sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records that the menu of a restaurant was read from the database. Unless the reload
+     * follows changes the cache recorded, the menu may have changed in ways it does not
+     * know, so clients holding an older version get the whole menu.
+     *
+     * @param restaurantId The restaurant ID
+     */
+    private void menuLoaded(String restaurantId) {
+        MenuVersion state = menuVersions.computeIfAbsent(restaurantId, k -> new MenuVersion(nextMenuVersion()));
+        synchronized (state) {
+            if (!state.reloadExpected) {
+                state.version = nextMenuVersion();
+                state.floor = state.version;
+                state.itemVersions.clear();
+            }
+            state.reloadExpected = false;
+        }
+    }
+
+    /**
+     * Takes a new menu version.
+     *
+     * @return A version greater than every version taken before, in this run or an earlier one
+     */
+    private long nextMenuVersion() {
+        return menuVersionClock.updateAndGet(v -> Math.max(v + 1, System.currentTimeMillis() * 1000));
+    }
+
+    /**
+     * Reads every restaurant with the phone number of its user.
+     *
+     * @param connection The connection to use
+     * @return The restaurants, unmodifiable
+     * @throws SQLException if the query fails
+     */
+    private static List<Restaurant> queryRestaurants(Connection connection) throws SQLException {
+        List<Restaurant> restaurantList = new ArrayList<>();
+        String query = "SELECT r.restaurantId, r.name, r.location, r.branch, u.phoneNumber " +
+                       "FROM Restaurants r " +
+                       "JOIN Users u ON r.restaurantId = u.userId";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                restaurantList.add(new Restaurant(
+                    rs.getString("restaurantId"),
+                    null,
+                    rs.getString("name"),
+                    rs.getString("phoneNumber"),
+                    rs.getString("location"),
+                    Restaurant.branch.valueOf(rs.getString("branch"))
+                ));
+            }
+        }
+        return Collections.unmodifiableList(restaurantList);
+    }
+
+    /**
+     * Reads the menu of a restaurant.
+     *
+     * @param restaurantId The restaurant ID
+     * @return The menu
+     * @throws SQLException if the query fails
+     */
+    private static Menu queryMenu(String restaurantId) throws SQLException {
+        List<MenuItem> items = new ArrayList<>();
+        Set<Integer> limited = new HashSet<>();
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT * FROM MenuItems WHERE restaurantId = ?")) {
+            pstmt.setString(1, restaurantId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    MenuItem item = mapMenuItem(rs);
+                    items.add(item);
+                    if (!rs.wasNull()) {
+                        limited.add(item.getItemId());
+                    }
+                }
+            }
+        }
+        return new Menu(items, limited);
+    }
+
+    /**
+     * Builds a MenuItem from the current row of a result set over the MenuItems table.
+     * The quantity column is read last, so wasNull tells whether the item has unlimited stock.
+     *
+     * @param rs The result set, positioned on a menu item row
+     * @return The menu item
+     * @throws SQLException if a column cannot be read
+     */
+    private static MenuItem mapMenuItem(ResultSet rs) throws SQLException {
+        int itemId = rs.getInt("itemId");
+        String restaurantId = rs.getString("restaurantId");
+        String name = rs.getString("name");
+        String description = rs.getString("description");
+        BigDecimal price = rs.getBigDecimal("price");
+        boolean inStock = rs.getBoolean("isInStock");
+        MenuItem.ItemType type = MenuItem.ItemType.valueOf(rs.getString("type").toUpperCase());
+        int quantity = rs.getInt("quantity");
+        return new MenuItem(itemId, restaurantId, name, description, price, inStock, type, quantity);
+    }
+
+    /**
+     * Loads a value missing from the cache.
+     *
+     * @param <V> The type of the value
+     */
+    @FunctionalInterface
+    interface Loader<V> {
+
+        /**
+         * Loads the value.
+         *
+         * @return The value
+         * @throws SQLException if the value cannot be read
+         */
+        V load() throws SQLException;
+    }
+
+    /**
+     * The menu of a restaurant.
+     */
+    private static final class Menu {
+
+        /** The menu items, unmodifiable */
+        private final List<MenuItem> items;
+
+        /** The IDs of the items with a limited quantity */
+        private final Set<Integer> limitedItems;
+
+        /**
+         * Creates a menu.
+         *
+         * @param items The menu items
+         * @param limitedItems The IDs of the items with a limited quantity
+         */
+        Menu(List<MenuItem> items, Set<Integer> limitedItems) {
+            this.items = Collections.unmodifiableList(items);
+            this.limitedItems = limitedItems;
+        }
+    }
+
+    /**
+     * The version of a restaurant's menu and of the items changed in it, guarded by itself.
+     */
+    private static final class MenuVersion {
+
+        /** The current version of the menu */
+        private long version;
+
+        /** The oldest version from which the changed items are known */
+        private long floor;
+
+        /** The version at which each item last changed, for the items changed since floor */
+        private final Map<Integer, Long> itemVersions = new HashMap<>();
+
+        /** Whether the next load of the menu follows changes recorded here */
+        private boolean reloadExpected;
+
+        /**
+         * Creates the version of a menu about to be loaded for the first time.
+         *
+         * @param version The first version
+         */
+        MenuVersion(long version) {
+            this.version = version;
+            this.floor = version;
+            this.reloadExpected = true;
+        }
+    }
+
+    /**
+     * A cached value with the time it was loaded and the version of its key.
+     * An invalidated key keeps an entry without a value, so its version is not lost.
+     *
+     * @param <V> The type of the value
+     */
+    private static final class Entry<V> {
+
+        /** The value, null once the entry was invalidated */
+        private final V value;
+
+        /** System.nanoTime() when the value was loaded */
+        private final long loadedAt;
+
+        /** Number of times the key was invalidated since its dimension was last cleared */
+        private final long version;
+
+        /**
+         * Creates an entry loaded now.
+         *
+         * @param value The value, null for an invalidated entry
+         * @param version The version of the key
+         */
+        Entry(V value, long version) {
+            this.value = value;
+            this.loadedAt = System.nanoTime();
+            this.version = version;
+        }
+    }
+
+    /**
+     * The state of one key of a dimension, read before its value is loaded.
+     * The value is only stored while the key is still in that state.
+     */
+    private static final class Stamp {
+
+        /** The epoch of the dimension */
+        private final long epoch;
+
+        /** The version of the key */
+        private final long version;
+
+        /**
+         * Creates a stamp.
+         *
+         * @param epoch The epoch of the dimension
+         * @param version The version of the key
+         */
+        Stamp(long epoch, long version) {
+            this.epoch = epoch;
+            this.version = version;
+        }
+    }
+
+    /**
+     * One kind of cached entries, with its statistics.
+     *
+     * @param <V> The type of the values
+     */
+    private final class Dimension<V> {
+
+        /** The name used in the statistics */
+        private final String name;
+
+        /** The entries, by key */
+        private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+        /** Increased when every entry is dropped; a load only stores its value if it did not change */
+        private final AtomicLong epoch = new AtomicLong();
+
+        /** Number of lookups served from the cache */
+        private final LongAdder hits = new LongAdder();
+
+        /** Number of lookups that had to load the value */
+        private final LongAdder misses = new LongAdder();
+
+        /** Number of invalidations */
+        private final LongAdder invalidations = new LongAdder();
+
+        /**
+         * Creates an empty dimension.
+         *
+         * @param name The name used in the statistics
+         */
+        Dimension(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns a cached value, loading it if it is missing or expired.
+         *
+         * @param key The key
+         * @param loader Loads the value
+         * @return The value
+         * @throws SQLException if the value has to be loaded and cannot be read
+         */
+        V get(String key, Loader<V> loader) throws SQLException {
+            V value = peek(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+            misses.increment();
+            Stamp stamp = stamp(key);
+            value = loader.load();
+            put(key, value, stamp);
+            return value;
+        }
+
+        /**
+         * Reads the state of a key before its value is loaded.
+         *
+         * @param key The key
+         * @return The stamp to pass to put
+         */
+        Stamp stamp(String key) {
+            long currentEpoch = epoch.get();
+            Entry<V> entry = entries.get(key);
+            return new Stamp(currentEpoch, entry == null ? 0 : entry.version);
+        }
+
+        /**
+         * Reads the state every key has right after the dimension is cleared.
+         *
+         * @return The stamp to pass to put for a key that was missing since the last invalidateAll
+         */
+        Stamp emptyStamp() {
+            return new Stamp(epoch.get(), 0);
+        }
+
+        /**
+         * Returns a cached value without loading it or counting the lookup.
+         *
+         * @param key The key
+         * @return The value, or null if it is missing or expired
+         */
+        V peek(String key) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || (ttlNanos > 0 && System.nanoTime() - entry.loadedAt > ttlNanos)) {
+                return null;
+            }
+            return entry.value;
+        }
+
+        /**
+         * Stores a loaded value unless its key was invalidated since the load started.
+         *
+         * @param key The key
+         * @param value The value
+         * @param stamp The state of the key read before the load started
+         */
+        void put(String key, V value, Stamp stamp) {
+            entries.compute(key, (k, current) -> {
+                long version = current == null ? 0 : current.version;
+                if (epoch.get() != stamp.epoch || version != stamp.version) {
+                    return current;
+                }
+                return new Entry<>(value, version);
+            });
+        }
+
+        /**
+         * Drops one entry.
+         *
+         * @param key The key
+         */
+        void invalidate(String key) {
+            entries.compute(key, (k, current) -> new Entry<>(null, current == null ? 1 : current.version + 1));
+            invalidations.increment();
+        }
+
+        /**
+         * Drops every entry.
+         */
+        void invalidateAll() {
+            // Raised before clearing, so a put that sees the old epoch stores before its entry is cleared
+            epoch.incrementAndGet();
+            entries.clear();
+            invalidations.increment();
+        }
+
+        /**
+         * Counts the entries holding a value.
+         *
+         * @return The number of cached values
+         */
+        int size() {
+            int size = 0;
+            for (Entry<V> entry : entries.values()) {
+                if (entry.value != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package database;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import entities.IncomeReport;
+import entities.Order;
+import entities.OrdersReport;
+import entities.OrdersReportDetail;
+import entities.PerformanceReport;
+import entities.QuarterlyReport;
+
+/**
+ * Results of the income, orders, performance and quarterly reports, by report type,
+ * manager or branch, and period. The reports only count delivered orders, by the day
+ * they were placed, so a result stays valid until the status of an order placed within
+ * its period changes: such a change drops exactly the results whose period contains the
+ * day of the order. Results of closed past periods are therefore kept until evicted,
+ * while results covering today are dropped as today's orders are delivered.
+ * <p>
+ * The cache is bounded by an estimate of the memory its results use and evicts the
+ * least recently used results first. A result is only stored if no order of its period
+ * changed while it was computed, so a report racing with a delivery never stores the
+ * old totals. Cached results are shared by every request and must not be modified.
+ */
+public class ReportCache implements OrderEventListener {
+
+    /** Report type of the income report */
+    public static final String INCOME = "income";
+
+    /** Report type of the orders report */
+    public static final String ORDERS = "orders";
+
+    /** Report type of the orders report with its item lines */
+    public static final String ORDERS_DETAIL = "ordersDetail";
+
+    /** Report type of the performance report */
+    public static final String PERFORMANCE = "performance";
+
+    /** Report type of the quarterly report */
+    public static final String QUARTERLY = "quarterly";
+
+    /** Largest estimated size in bytes of the cached results, 0 to disable the cache */
+    private final long maxBytes;
+
+    /** The results, least recently used first, guarded by this object */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** The generation of the last change of each day's orders, guarded by this object */
+    private final TreeMap<LocalDate, Long> dayGenerations = new TreeMap<>();
+
+    /** Increased by every change, guarded by this object */
+    private long generation;
+
+    /** Generation of the last change of orders without an order time, guarded by this object */
+    private long undatedGeneration;
+
+    /** Estimated size in bytes of the cached results, guarded by this object */
+    private long bytes;
+
+    /** Number of results served from the cache, guarded by this object */
+    private long hits;
+
+    /** Number of results computed, guarded by this object */
+    private long misses;
+
+    /** Number of results dropped because an order of their period changed, guarded by this object */
+    private long invalidations;
+
+    /** Number of results dropped to stay within the size limit, guarded by this object */
+    private long evictions;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxBytes Largest estimated size in bytes of the cached results, 0 to disable the cache
+     */
+    public ReportCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Returns a cached result.
+     *
+     * @param type The report type
+     * @param owner The manager ID or branch the report is for
+     * @param from The first day of the period
+     * @param to The last day of the period
+     * @return The result, or null if it has to be computed
+     */
+    public synchronized Object get(String type, String owner, LocalDate from, LocalDate to) {
+        Entry entry = entries.get(key(type, owner, from, to));
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.report;
+    }
+
+    /**
+     * Returns the current generation, to be passed to {@link #put} once the report is computed.
+     *
+     * @return The generation
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores a computed result, unless an order of its period changed since the report
+     * started or the result alone exceeds the size limit.
+     *
+     * @param type The report type
+     * @param owner The manager ID or branch the report is for
+     * @param from The first day of the period
+     * @param to The last day of the period
+     * @param report The result
+     * @param startGeneration The generation returned by {@link #generation} before the report started
+     */
+    public synchronized void put(String type, String owner, LocalDate from, LocalDate to,
+            Object report, long startGeneration) {
+        if (maxBytes == 0 || from.isAfter(to) || undatedGeneration > startGeneration) {
+            return;
+        }
+        for (long changed : dayGenerations.subMap(from, true, to, true).values()) {
+            if (changed > startGeneration) {
+                return;
+            }
+        }
+        long size = estimateBytes(report);
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key(type, owner, from, to), new Entry(from, to, report, size));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every result.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        undatedGeneration = generation;
+        invalidations += entries.size();
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Nothing to do: new orders are not delivered yet, so no report counts them.
+     *
+     * @param order The new order
+     */
+    @Override
+    public void orderCreated(Order order) {
+    }
+
+    /**
+     * Drops the results whose period contains the day the order was placed.
+     *
+     * @param order The order as stored after the update
+     */
+    @Override
+    public synchronized void orderStatusChanged(Order order) {
+        if (order.getOrderTime() == null) {
+            invalidateAll();
+            return;
+        }
+        LocalDate day = order.getOrderTime().toLocalDate();
+        generation++;
+        dayGenerations.put(day, generation);
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!day.isBefore(entry.from) && !day.isAfter(entry.to)) {
+                bytes -= entry.bytes;
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Formats the size of the cache, hits, misses, invalidations and evictions.
+     *
+     * @return One line of statistics
+     */
+    public synchronized String formatStatistics() {
+        return String.format("Report cache: size=%d bytes=%d hits=%d misses=%d hitRate=%.1f%% invalidations=%d evictions=%d",
+                entries.size(), bytes, hits, misses,
+                hits + misses == 0 ? 0.0 : hits * 100.0 / (hits + misses), invalidations, evictions);
+    }
+
+    /**
+     * Builds the key of a result.
+     *
+     * @param type The report type
+     * @param owner The manager ID or branch the report is for
+     * @param from The first day of the period
+     * @param to The last day of the period
+     * @return The key
+     */
+    private static String key(String type, String owner, LocalDate from, LocalDate to) {
+        return type + '|' + owner + '|' + from + '|' + to;
+    }
+
+    /**
+     * Estimates the memory used by a report result: reports, maps, collections and
+     * strings are measured, other values are counted as small objects.
+     *
+     * @param value The value
+     * @return The estimated size in bytes
+     */
+    static long estimateBytes(Object value) {
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 40;
+            for (Object element : (Collection<?>) value) {
+                size += 8 + estimateBytes(element);
+            }
+            return size;
+        }
+        if (value instanceof String) {
+            return 40 + ((String) value).length();
+        }
+        if (value instanceof OrdersReportDetail) {
+            OrdersReportDetail detail = (OrdersReportDetail) value;
+            return 96 + 16L * detail.size() + estimateBytes(detail.getNames());
+        }
+        if (value instanceof IncomeReport) {
+            IncomeReport report = (IncomeReport) value;
+            return 96 + 8L * (report.getRestaurantCount() + report.getDayCount())
+                    + estimateBytes(report.getRestaurantNames());
+        }
+        if (value instanceof OrdersReport) {
+            OrdersReport report = (OrdersReport) value;
+            return 112 + 4L * (report.getTypeCount() + report.getItemCount()) + estimateBytes(report.getTypeNames())
+                    + estimateBytes(report.getItemNames()) + estimateBytes(report.getDetail());
+        }
+        if (value instanceof PerformanceReport) {
+            return 128 + 32L * ((PerformanceReport) value).getDayCount();
+        }
+        if (value instanceof QuarterlyReport) {
+            QuarterlyReport report = (QuarterlyReport) value;
+            return 96 + 12L * QuarterlyReport.RANGES.size() * report.getRestaurantCount()
+                    + estimateBytes(report.getRestaurantNames());
+        }
+        return value == null ? 0 : 24;
+    }
+
+    /**
+     * A cached result with its period.
+     */
+    private static final class Entry {
+
+        /** The first day of the period */
+        private final LocalDate from;
+
+        /** The last day of the period */
+        private final LocalDate to;
+
+        /** The result */
+        private final Object report;
+
+        /** The estimated size of the result */
+        private final long bytes;
+
+        /**
+         * Creates an entry.
+         *
+         * @param from The first day of the period
+         * @param to The last day of the period
+         * @param report The result
+         * @param bytes The estimated size of the result
+         */
+        Entry(LocalDate from, LocalDate to, Object report, long bytes) {
+            this.from = from;
+            this.to = to;
+            this.report = report;
+            this.bytes = bytes;
+        }
+    }
+}
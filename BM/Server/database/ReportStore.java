@@ -0,0 +1,980 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import controller.ServerController;
+import entities.IncomeReport;
+import entities.Order;
+import entities.OrdersReport;
+import entities.OrdersReportDetail;
+import entities.PerformanceReport;
+import entities.QuarterlyReport;
+
+/**
+ * An in-memory copy of the delivered and paid orders and their item lines, from which
+ * the income, orders, performance and quarterly reports are computed without querying
+ * the database.
+ * <p>
+ * The orders are kept in one partition per month of their order time. A partition holds
+ * every attribute the reports read in its own primitive array, with restaurants, item
+ * names and item types replaced by their index in a dictionary. A report scans the
+ * partitions of its period in parallel, each into an array of partial totals, and adds
+ * the partial totals up.
+ * <p>
+ * The store is loaded once in the background when the database is connected; until then
+ * the reports query the database. It follows the order status changes: the orders that
+ * changed are read again, with their items, shortly after the change on the store's
+ * thread, and at the latest before the next report, so a report never misses a change
+ * that was committed before it started.
+ * <p>
+ * The database is never read under the lock: the load and the refreshes read into
+ * columns of their own, which are then swapped in or merged under a short write lock.
+ */
+public class ReportStore implements OrderEventListener {
+
+    /**
+     * The delivered and paid orders with their item lines merged like the orders report
+     * query, one row per order without items. The placeholder takes an optional condition.
+     */
+    static final String ORDERS_QUERY = "SELECT o.orderId, o.restaurantId, o.orderTime, o.requiredTime, "
+            + "o.actualArrivalTime, o.totalPrice, o.deliveryType, i.type, i.name, oi.quantity, "
+            + "COUNT(oi.orderItemId) AS itemCount "
+            + "FROM Orders o "
+            + "LEFT JOIN OrderItems oi ON oi.orderId = o.orderId "
+            + "LEFT JOIN MenuItems i ON i.itemId = oi.itemId "
+            + "WHERE o.status = 'DELIVERED' AND o.isPayed = 1 %s"
+            + "GROUP BY o.orderId, i.type, i.name, oi.quantity "
+            + "ORDER BY o.orderId, i.type, itemCount DESC";
+
+    /** Largest number of changed orders read again by one query */
+    private static final int REFRESH_BATCH = 500;
+
+    /** Delivery types counted by the performance report */
+    private static final Set<String> DELIVERY_TYPES = Set.of("DELIVERY", "EARLY_DELIVERY", "ROBOT", "SHARED_DELIVERY");
+
+    /** Flag of an order delivered to the customer */
+    private static final byte DELIVERY = 1;
+
+    /** Flag of a delivery that arrived by its required time */
+    private static final byte ON_TIME = 2;
+
+    /** Guards the stored columns */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The stored orders, guarded by the lock */
+    private Columns columns = new Columns();
+
+    /** Increased by every stop, so a load or refresh that outlives it is not applied; guarded by the lock */
+    private long epoch;
+
+    /** The orders whose status changed since they were last read, with the number of their last change */
+    private final Map<Integer, Long> pending = new ConcurrentHashMap<>();
+
+    /** Numbers the status changes */
+    private final AtomicLong changes = new AtomicLong();
+
+    /** Held while changed orders are read and merged, so an older read never replaces a newer one */
+    private final Object refreshLock = new Object();
+
+    /** Whether a refresh of the changed orders is already queued */
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    /** Number of reports computed */
+    private final AtomicLong scans = new AtomicLong();
+
+    /** Total time in nanoseconds spent computing reports */
+    private final AtomicLong scanNanos = new AtomicLong();
+
+    /** Whether the store is loaded and answers the reports */
+    private volatile boolean ready;
+
+    /** Loads the store and reads the changed orders; null while stopped */
+    private ExecutorService worker;
+
+    /** Controller used to log to the server console, may be null */
+    private volatile ServerController serverController;
+
+    /** Time in milliseconds the last load took, guarded by the lock */
+    private long loadMillis;
+
+    /** Number of changed orders read again, guarded by the lock */
+    private long refreshedOrders;
+
+    /**
+     * Starts loading the store in the background. The store must already receive the
+     * order events, so that no change made during the load is lost.
+     *
+     * @param serverController Controller used to log to the server console, may be null
+     */
+    public synchronized void start(ServerController serverController) {
+        stop();
+        this.serverController = serverController;
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "report-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.execute(() -> {
+            try {
+                load();
+                ServerController.log(serverController, formatStatistics());
+            } catch (SQLException e) {
+                ServerController.log(serverController, "Report store could not be loaded, reports query the database: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops following the orders and drops the stored orders; the reports query the
+     * database again.
+     */
+    public synchronized void stop() {
+        ready = false;
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+        lock.writeLock().lock();
+        try {
+            // Again under the lock, in case a load was finishing
+            ready = false;
+            epoch++;
+            columns = new Columns();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pending.clear();
+    }
+
+    /**
+     * Returns whether the store is loaded and answers the reports.
+     *
+     * @return true if the reports can be computed from the store
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Logs a report the store failed to compute; the caller queries the database instead.
+     *
+     * @param report The name of the report
+     * @param error Why the store failed
+     */
+    public void logFallback(String report, SQLException error) {
+        ServerController.log(serverController, "Report store failed on the " + report + " report, querying the database", error);
+    }
+
+    /**
+     * Nothing to do: new orders are not delivered yet, so no report counts them.
+     *
+     * @param order The new order
+     */
+    @Override
+    public void orderCreated(Order order) {
+    }
+
+    /**
+     * Queues the order to be read again.
+     *
+     * @param order The order as stored after the update
+     */
+    @Override
+    public void orderStatusChanged(Order order) {
+        pending.put(order.getOrderId(), changes.incrementAndGet());
+        ExecutorService current = worker;
+        if (ready && current != null && refreshQueued.compareAndSet(false, true)) {
+            try {
+                current.execute(() -> {
+                    refreshQueued.set(false);
+                    try {
+                        refresh();
+                    } catch (SQLException e) {
+                        ServerController.log(serverController, "Report store could not read the changed orders: " + e.getMessage());
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Stopped meanwhile
+                refreshQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * Loads every delivered and paid order. The orders are read into new columns without
+     * the lock, which are then swapped in, unless the store was stopped meanwhile.
+     *
+     * @throws SQLException If the orders cannot be read
+     */
+    private void load() throws SQLException {
+        long start = System.nanoTime();
+        long loadEpoch = currentEpoch();
+        Columns loaded = new Columns();
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = DataBaseController.prepareStreaming(connection, String.format(ORDERS_QUERY, ""));
+             ResultSet rs = pstmt.executeQuery()) {
+            loaded.append(rs);
+        }
+        lock.writeLock().lock();
+        try {
+            if (epoch != loadEpoch) {
+                return;
+            }
+            columns = loaded;
+            loadMillis = (System.nanoTime() - start) / 1_000_000;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        refresh();
+    }
+
+    /**
+     * Reads again the orders whose status changed, dropping those no longer delivered
+     * and paid. The orders are read without the lock; only merging them takes the write lock.
+     *
+     * @throws SQLException If the orders cannot be read; they stay queued
+     */
+    void refresh() throws SQLException {
+        if (pending.isEmpty() || !ready) {
+            return;
+        }
+        synchronized (refreshLock) {
+            // The changes stay pending until they are merged, so a report starting meanwhile waits for them
+            Map<Integer, Long> taken = new HashMap<>(pending);
+            if (taken.isEmpty()) {
+                return;
+            }
+            long refreshEpoch = currentEpoch();
+            List<Integer> orderIds = new ArrayList<>(taken.keySet());
+            Columns changed = new Columns();
+            try (Connection connection = JDBC.getConnection()) {
+                for (int from = 0; from < orderIds.size(); from += REFRESH_BATCH) {
+                    List<Integer> batch = orderIds.subList(from, Math.min(orderIds.size(), from + REFRESH_BATCH));
+                    String condition = "AND o.orderId IN (" + DataBaseController.placeholders(batch.size()) + ") ";
+                    try (PreparedStatement pstmt = connection.prepareStatement(String.format(ORDERS_QUERY, condition))) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            pstmt.setInt(i + 1, batch.get(i));
+                        }
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            changed.append(rs);
+                        }
+                    }
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                if (epoch != refreshEpoch) {
+                    return;
+                }
+                for (Integer orderId : orderIds) {
+                    columns.remove(orderId);
+                }
+                columns.merge(changed);
+                refreshedOrders += orderIds.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Map.Entry<Integer, Long> entry : taken.entrySet()) {
+                // An order that changed again meanwhile stays pending
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the current epoch.
+     *
+     * @return The number of stops so far
+     */
+    private long currentEpoch() {
+        lock.readLock().lock();
+        try {
+            return epoch;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes an income report.
+     *
+     * @param startDate The first day of the period
+     * @param endDate The last day of the period
+     * @param restaurantIds The restaurants of the report
+     * @param restaurantNames The name of each restaurant
+     * @return The report
+     * @throws SQLException If changed orders have to be read and cannot be
+     */
+    public IncomeReport incomeReport(LocalDate startDate, LocalDate endDate, List<String> restaurantIds,
+            List<String> restaurantNames) throws SQLException {
+        int firstDay = (int) startDate.toEpochDay();
+        int days = dayCount(startDate, endDate);
+        IncomeReport report = new IncomeReport(startDate, endDate);
+        long[] totals = scan(startDate, endDate, slots -> {
+            int cells = restaurantIds.size() * days;
+            return partition -> {
+                // Income in cents, then number of orders, of each restaurant and day
+                long[] partial = new long[cells * 2];
+                for (int row = 0; row < partition.size; row++) {
+                    int slot = slots[partition.restaurants[row]];
+                    int day = partition.days[row] - firstDay;
+                    if (slot >= 0 && day >= 0 && day < days && !partition.removed.get(row)) {
+                        partial[slot * days + day] += partition.prices[row];
+                        partial[cells + slot * days + day]++;
+                    }
+                }
+                return partial;
+            };
+        }, restaurantIds, restaurantIds.size() * days * 2);
+        int cells = restaurantIds.size() * days;
+        for (int slot = 0; slot < restaurantIds.size(); slot++) {
+            for (int day = 0; day < days; day++) {
+                if (totals[cells + slot * days + day] > 0) {
+                    report.add(restaurantNames.get(slot), startDate.plusDays(day), totals[slot * days + day]);
+                }
+            }
+        }
+        report.trimToSize();
+        return report;
+    }
+
+    /**
+     * Computes an orders report.
+     *
+     * @param startDate The first day of the period
+     * @param endDate The last day of the period
+     * @param restaurantIds The restaurants of the report
+     * @param detail Whether to add the item lines to the report
+     * @return The report
+     * @throws SQLException If changed orders have to be read and cannot be
+     */
+    public OrdersReport ordersReport(LocalDate startDate, LocalDate endDate, List<String> restaurantIds,
+            boolean detail) throws SQLException {
+        int firstDay = (int) startDate.toEpochDay();
+        int lastDay = (int) endDate.toEpochDay();
+        OrdersReport report = new OrdersReport();
+        refresh();
+        lock.readLock().lock();
+        try {
+            Dictionary itemTypes = columns.itemTypes;
+            Dictionary itemNames = columns.itemNames;
+            int types = itemTypes.size();
+            int items = itemNames.size();
+            int[] slots = slots(restaurantIds);
+            // Number of orders with items, then quantity and number of lines of each type, then of each item
+            long[] totals = scan(startDate, endDate, partition -> {
+                long[] partial = new long[1 + 2 * types + 2 * items];
+                for (int row = 0; row < partition.size; row++) {
+                    int day = partition.days[row];
+                    int end = partition.itemEnds[row];
+                    int line = partition.itemStart(row);
+                    if (slots[partition.restaurants[row]] < 0 || day < firstDay || day > lastDay
+                            || line == end || partition.removed.get(row)) {
+                        continue;
+                    }
+                    partial[0]++;
+                    for (; line < end; line++) {
+                        int quantity = partition.itemQuantities[line];
+                        partial[1 + 2 * partition.itemTypes[line]] += quantity;
+                        partial[2 + 2 * partition.itemTypes[line]]++;
+                        partial[1 + 2 * types + 2 * partition.itemNames[line]] += quantity;
+                        partial[2 + 2 * types + 2 * partition.itemNames[line]]++;
+                    }
+                }
+                return partial;
+            }, 1 + 2 * types + 2 * items);
+            for (int type = 0; type < types; type++) {
+                if (totals[2 + 2 * type] > 0) {
+                    report.addTypeQuantity(itemTypes.get(type), (int) totals[1 + 2 * type]);
+                }
+            }
+            for (int item = 0; item < items; item++) {
+                if (totals[2 + 2 * types + 2 * item] > 0) {
+                    report.addItemQuantity(itemNames.get(item), (int) totals[1 + 2 * types + 2 * item]);
+                }
+            }
+            report.setUniqueOrders((int) totals[0]);
+            report.trimToSize();
+            if (detail) {
+                report.setDetail(detail(firstDay, lastDay, slots));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return report;
+    }
+
+    /**
+     * Collects the item lines of the orders of a period, ordered by order ID like the
+     * orders report query. Called with the read lock held.
+     *
+     * @param firstDay The first day of the period, in days since the epoch
+     * @param lastDay The last day of the period, in days since the epoch
+     * @param slots The slot of every restaurant, -1 for restaurants outside the report
+     * @return The item lines
+     */
+    private OrdersReportDetail detail(int firstDay, int lastDay, int[] slots) {
+        Dictionary itemNames = columns.itemNames;
+        List<Partition> selected = new ArrayList<>(columns.partitions.subMap(monthIndex(LocalDate.ofEpochDay(firstDay)), true,
+                monthIndex(LocalDate.ofEpochDay(lastDay)), true).values());
+        // Order ID in the high half, position in matches in the low half
+        long[] keys = new long[16];
+        int[] matches = new int[32];
+        int count = 0;
+        for (int p = 0; p < selected.size(); p++) {
+            Partition partition = selected.get(p);
+            for (int row = 0; row < partition.size; row++) {
+                int day = partition.days[row];
+                if (slots[partition.restaurants[row]] >= 0 && day >= firstDay && day <= lastDay
+                        && !partition.removed.get(row)) {
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                        matches = Arrays.copyOf(matches, count * 4);
+                    }
+                    keys[count] = ((long) partition.orderIds[row] << 32) | count;
+                    matches[2 * count] = p;
+                    matches[2 * count + 1] = row;
+                    count++;
+                }
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        OrdersReportDetail detail = new OrdersReportDetail();
+        for (int i = 0; i < count; i++) {
+            int match = (int) keys[i];
+            Partition partition = selected.get(matches[2 * match]);
+            int row = matches[2 * match + 1];
+            for (int line = partition.itemStart(row); line < partition.itemEnds[row]; line++) {
+                detail.add(partition.orderIds[row], itemNames.get(partition.itemNames[line]),
+                        partition.itemQuantities[line], partition.itemCounts[line]);
+            }
+        }
+        detail.trimToSize();
+        return detail;
+    }
+
+    /**
+     * Computes a performance report.
+     *
+     * @param startDate The first day of the period
+     * @param endDate The last day of the period
+     * @param restaurantIds The restaurants of the report
+     * @return The report
+     * @throws SQLException If changed orders have to be read and cannot be
+     */
+    public PerformanceReport performanceReport(LocalDate startDate, LocalDate endDate, List<String> restaurantIds)
+            throws SQLException {
+        int firstDay = (int) startDate.toEpochDay();
+        int days = dayCount(startDate, endDate);
+        // Deliveries, deliveries on time, delivery minutes and revenue in cents of each day
+        long[] totals = scan(startDate, endDate, slots -> partition -> {
+            long[] partial = new long[days * 4];
+            for (int row = 0; row < partition.size; row++) {
+                int day = partition.days[row] - firstDay;
+                byte flags = partition.flags[row];
+                if ((flags & DELIVERY) != 0 && slots[partition.restaurants[row]] >= 0 && day >= 0 && day < days
+                        && !partition.removed.get(row)) {
+                    partial[day * 4]++;
+                    if ((flags & ON_TIME) != 0) {
+                        partial[day * 4 + 1]++;
+                    }
+                    partial[day * 4 + 2] += partition.minutes[row];
+                    partial[day * 4 + 3] += partition.prices[row];
+                }
+            }
+            return partial;
+        }, restaurantIds, days * 4);
+        PerformanceReport report = new PerformanceReport();
+        for (int day = 0; day < days; day++) {
+            if (totals[day * 4] > 0) {
+                report.addDay(startDate.plusDays(day), (int) totals[day * 4], (int) totals[day * 4 + 1],
+                        totals[day * 4 + 2], totals[day * 4 + 3]);
+            }
+        }
+        report.trimToSize();
+        return report;
+    }
+
+    /**
+     * Computes a quarterly report.
+     *
+     * @param quarter The quarter (1-4)
+     * @param year The year
+     * @param branch The branch
+     * @param restaurantIds The restaurants of the branch, in report order
+     * @param restaurantNames The name of each restaurant
+     * @return The report
+     * @throws SQLException If changed orders have to be read and cannot be
+     */
+    public QuarterlyReport quarterlyReport(int quarter, int year, String branch, List<String> restaurantIds,
+            List<String> restaurantNames) throws SQLException {
+        LocalDate startDate = LocalDate.of(year, (quarter - 1) * 3 + 1, 1);
+        LocalDate endDate = startDate.plusMonths(3).minusDays(1);
+        int firstDay = (int) startDate.toEpochDay();
+        int days = dayCount(startDate, endDate);
+        int cells = restaurantIds.size() * days;
+        // Revenue in cents, then number of orders, of each restaurant and day
+        long[] totals = scan(startDate, endDate, slots -> partition -> {
+            long[] partial = new long[cells * 2];
+            for (int row = 0; row < partition.size; row++) {
+                int slot = slots[partition.restaurants[row]];
+                int day = partition.days[row] - firstDay;
+                if (slot >= 0 && day >= 0 && day < days && !partition.removed.get(row)) {
+                    partial[slot * days + day] += partition.prices[row];
+                    partial[cells + slot * days + day]++;
+                }
+            }
+            return partial;
+        }, restaurantIds, cells * 2);
+        QuarterlyReport report = new QuarterlyReport(branch, quarter, year);
+        for (int slot = 0; slot < restaurantIds.size(); slot++) {
+            for (int day = 0; day < days; day++) {
+                long orders = totals[cells + slot * days + day];
+                if (orders > 0) {
+                    int range = (int) Math.min(QuarterlyReport.RANGES.size() - 1, (orders - 1) / 20);
+                    report.add(restaurantNames.get(slot), QuarterlyReport.RANGES.get(range), 1,
+                            totals[slot * days + day]);
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Reads the changed orders, then scans the partitions of a period under the read lock.
+     *
+     * @param startDate The first day of the period
+     * @param endDate The last day of the period
+     * @param scanner Builds the scan of one partition from the restaurant slots
+     * @param restaurantIds The restaurants of the report
+     * @param length The length of the partial totals
+     * @return The sum of the partial totals of every partition
+     * @throws SQLException If changed orders have to be read and cannot be
+     */
+    private long[] scan(LocalDate startDate, LocalDate endDate, Function<int[], Function<Partition, long[]>> scanner,
+            List<String> restaurantIds, int length) throws SQLException {
+        refresh();
+        lock.readLock().lock();
+        try {
+            return scan(startDate, endDate, scanner.apply(slots(restaurantIds)), length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the partitions of a period in parallel and adds up their partial totals.
+     * Called with the read lock held.
+     *
+     * @param startDate The first day of the period
+     * @param endDate The last day of the period
+     * @param scanner The scan of one partition
+     * @param length The length of the partial totals
+     * @return The sum of the partial totals of every partition
+     */
+    private long[] scan(LocalDate startDate, LocalDate endDate, Function<Partition, long[]> scanner, int length) {
+        long start = System.nanoTime();
+        List<Partition> selected = startDate.isAfter(endDate) ? Collections.emptyList()
+                : new ArrayList<>(columns.partitions.subMap(monthIndex(startDate), true, monthIndex(endDate), true).values());
+        long[] totals = selected.parallelStream().map(scanner).reduce((a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }).orElseGet(() -> new long[length]);
+        scans.incrementAndGet();
+        scanNanos.addAndGet(System.nanoTime() - start);
+        return totals;
+    }
+
+    /**
+     * Maps every stored restaurant to its position in a report. Called with the read lock held.
+     *
+     * @param restaurantIds The restaurants of the report
+     * @return The position of every restaurant by dictionary index, -1 for restaurants outside the report
+     */
+    private int[] slots(List<String> restaurantIds) {
+        int[] slots = new int[columns.restaurants.size()];
+        Arrays.fill(slots, -1);
+        for (int slot = 0; slot < restaurantIds.size(); slot++) {
+            int index = columns.restaurants.find(restaurantIds.get(slot));
+            if (index >= 0 && slots[index] < 0) {
+                slots[index] = slot;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Formats the size of the store, the load time and the report times.
+     *
+     * @return One line of statistics
+     */
+    public String formatStatistics() {
+        lock.readLock().lock();
+        try {
+            int orders = 0;
+            long lines = 0;
+            for (Partition partition : columns.partitions.values()) {
+                orders += partition.size - partition.removed.cardinality();
+                lines += partition.itemSize;
+            }
+            long count = scans.get();
+            return String.format("Report store: ready=%b orders=%d itemLines=%d partitions=%d loadMs=%d refreshed=%d scans=%d avgScanMs=%.2f",
+                    ready, orders, lines, columns.partitions.size(), loadMillis, refreshedOrders, count,
+                    count == 0 ? 0.0 : scanNanos.get() / 1e6 / count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Returns the partition key of a day.
+     *
+     * @param day The day
+     * @return The month index (year * 12 + month - 1)
+     */
+    private static int monthIndex(LocalDate day) {
+        return day.getYear() * 12 + day.getMonthValue() - 1;
+    }
+
+    /**
+     * Returns the number of days of a period.
+     *
+     * @param startDate The first day
+     * @param endDate The last day
+     * @return The number of days, 0 if the period is empty
+     */
+    private static int dayCount(LocalDate startDate, LocalDate endDate) {
+        return (int) Math.max(0, ChronoUnit.DAYS.between(startDate, endDate) + 1);
+    }
+
+    /**
+     * A set of stored orders: their partitions with the order locations and the dictionaries.
+     * The store's columns are guarded by its lock; columns being read from the database
+     * belong to the thread reading them.
+     */
+    private static final class Columns {
+
+        /** The partitions, by month index (year * 12 + month - 1) */
+        private final TreeMap<Integer, Partition> partitions = new TreeMap<>();
+
+        /** Month index and row of every order, by order ID */
+        private final Map<Integer, Long> locations = new HashMap<>();
+
+        /** The restaurant IDs */
+        private final Dictionary restaurants = new Dictionary();
+
+        /** The item names */
+        private final Dictionary itemNames = new Dictionary();
+
+        /** The item types */
+        private final Dictionary itemTypes = new Dictionary();
+
+        /**
+         * Appends the orders of a result of ORDERS_QUERY.
+         *
+         * @param rs The result, ordered by order
+         * @throws SQLException If a column cannot be read
+         */
+        void append(ResultSet rs) throws SQLException {
+            Partition partition = null;
+            int previousOrderId = 0;
+            boolean first = true;
+            while (rs.next()) {
+                int orderId = rs.getInt("orderId");
+                if (first || orderId != previousOrderId) {
+                    first = false;
+                    previousOrderId = orderId;
+                    partition = appendOrder(orderId, rs);
+                }
+                String name = rs.getString("name");
+                // Orders without items, or items no longer on the menu, only count for the order totals
+                if (partition != null && name != null) {
+                    partition.appendItem(itemNames.indexOf(name), itemTypes.indexOf(rs.getString("type")),
+                            rs.getInt("quantity"), rs.getInt("itemCount"));
+                }
+            }
+        }
+
+        /**
+         * Appends the order of the current row.
+         *
+         * @param orderId The order ID
+         * @param rs The result, positioned on the first row of the order
+         * @return The partition the order was added to, or null if it has no order time
+         * @throws SQLException If a column cannot be read
+         */
+        private Partition appendOrder(int orderId, ResultSet rs) throws SQLException {
+            Timestamp orderTimestamp = rs.getTimestamp("orderTime");
+            if (orderTimestamp == null) {
+                return null;
+            }
+            LocalDateTime orderTime = orderTimestamp.toLocalDateTime();
+            Timestamp required = rs.getTimestamp("requiredTime");
+            Timestamp arrival = rs.getTimestamp("actualArrivalTime");
+            byte flags = 0;
+            if (DELIVERY_TYPES.contains(rs.getString("deliveryType"))) {
+                flags |= DELIVERY;
+            }
+            int minutes = 0;
+            if (arrival != null) {
+                minutes = (int) Duration.between(orderTime, arrival.toLocalDateTime()).toMinutes();
+                if (required != null && !arrival.after(required)) {
+                    flags |= ON_TIME;
+                }
+            }
+            int month = monthIndex(orderTime.toLocalDate());
+            Partition partition = partitions.computeIfAbsent(month, m -> new Partition());
+            int row = partition.appendOrder(orderId, restaurants.indexOf(rs.getString("restaurantId")),
+                    (int) orderTime.toLocalDate().toEpochDay(), DataBaseController.cents(rs.getBigDecimal("totalPrice")),
+                    flags, minutes);
+            locations.put(orderId, ((long) month << 32) | row);
+            return partition;
+        }
+
+        /**
+         * Appends every order of other columns, with its item lines.
+         *
+         * @param other The columns to append, none of whose orders is stored here
+         */
+        void merge(Columns other) {
+            for (Map.Entry<Integer, Partition> entry : other.partitions.entrySet()) {
+                int month = entry.getKey();
+                Partition from = entry.getValue();
+                Partition partition = partitions.computeIfAbsent(month, m -> new Partition());
+                for (int row = 0; row < from.size; row++) {
+                    int appended = partition.appendOrder(from.orderIds[row],
+                            restaurants.indexOf(other.restaurants.get(from.restaurants[row])),
+                            from.days[row], from.prices[row], from.flags[row], from.minutes[row]);
+                    for (int line = from.itemStart(row); line < from.itemEnds[row]; line++) {
+                        partition.appendItem(itemNames.indexOf(other.itemNames.get(from.itemNames[line])),
+                                itemTypes.indexOf(other.itemTypes.get(from.itemTypes[line])),
+                                from.itemQuantities[line], from.itemCounts[line]);
+                    }
+                    locations.put(from.orderIds[row], ((long) month << 32) | appended);
+                }
+            }
+        }
+
+        /**
+         * Drops a stored order.
+         *
+         * @param orderId The order ID
+         */
+        void remove(int orderId) {
+            Long location = locations.remove(orderId);
+            if (location != null) {
+                partitions.get((int) (location >>> 32)).remove((int) (long) location);
+            }
+        }
+    }
+
+    /**
+     * The orders of one month, one array per attribute, and their item lines.
+     * Rows are only appended; a dropped order is marked removed.
+     */
+    private static final class Partition {
+
+        /** Number of orders, including removed ones */
+        private int size;
+
+        /** The order IDs */
+        private int[] orderIds = new int[64];
+
+        /** The restaurant of each order, as a dictionary index */
+        private int[] restaurants = new int[64];
+
+        /** The day of each order, in days since the epoch */
+        private int[] days = new int[64];
+
+        /** The total price of each order, in cents */
+        private long[] prices = new long[64];
+
+        /** The DELIVERY and ON_TIME flags of each order */
+        private byte[] flags = new byte[64];
+
+        /** The delivery time of each order in minutes, 0 if it did not arrive */
+        private int[] minutes = new int[64];
+
+        /** The end of the item lines of each order, in the item columns */
+        private int[] itemEnds = new int[64];
+
+        /** The removed orders */
+        private final BitSet removed = new BitSet();
+
+        /** Number of item lines */
+        private int itemSize;
+
+        /** The item name of each line, as a dictionary index */
+        private int[] itemNames = new int[128];
+
+        /** The item type of each line, as a dictionary index */
+        private int[] itemTypes = new int[128];
+
+        /** The quantity of each line */
+        private int[] itemQuantities = new int[128];
+
+        /** The number of order items merged into each line */
+        private int[] itemCounts = new int[128];
+
+        /**
+         * Appends an order without item lines.
+         *
+         * @param orderId The order ID
+         * @param restaurant The restaurant, as a dictionary index
+         * @param day The day, in days since the epoch
+         * @param priceCents The total price in cents
+         * @param orderFlags The DELIVERY and ON_TIME flags
+         * @param deliveryMinutes The delivery time in minutes
+         * @return The row of the order
+         */
+        int appendOrder(int orderId, int restaurant, int day, long priceCents, byte orderFlags, int deliveryMinutes) {
+            if (size == orderIds.length) {
+                int capacity = size * 2;
+                orderIds = Arrays.copyOf(orderIds, capacity);
+                restaurants = Arrays.copyOf(restaurants, capacity);
+                days = Arrays.copyOf(days, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                minutes = Arrays.copyOf(minutes, capacity);
+                itemEnds = Arrays.copyOf(itemEnds, capacity);
+            }
+            orderIds[size] = orderId;
+            restaurants[size] = restaurant;
+            days[size] = day;
+            prices[size] = priceCents;
+            flags[size] = orderFlags;
+            minutes[size] = deliveryMinutes;
+            itemEnds[size] = itemSize;
+            return size++;
+        }
+
+        /**
+         * Appends an item line to the last order.
+         *
+         * @param name The item name, as a dictionary index
+         * @param type The item type, as a dictionary index
+         * @param quantity The quantity
+         * @param count The number of order items merged into the line
+         */
+        void appendItem(int name, int type, int quantity, int count) {
+            if (itemSize == itemNames.length) {
+                int capacity = itemSize * 2;
+                itemNames = Arrays.copyOf(itemNames, capacity);
+                itemTypes = Arrays.copyOf(itemTypes, capacity);
+                itemQuantities = Arrays.copyOf(itemQuantities, capacity);
+                itemCounts = Arrays.copyOf(itemCounts, capacity);
+            }
+            itemNames[itemSize] = name;
+            itemTypes[itemSize] = type;
+            itemQuantities[itemSize] = quantity;
+            itemCounts[itemSize] = count;
+            itemSize++;
+            itemEnds[size - 1] = itemSize;
+        }
+
+        /**
+         * Returns the start of the item lines of an order.
+         *
+         * @param row The row of the order
+         * @return The first line, in the item columns
+         */
+        int itemStart(int row) {
+            return row == 0 ? 0 : itemEnds[row - 1];
+        }
+
+        /**
+         * Marks an order removed.
+         *
+         * @param row The row of the order
+         */
+        void remove(int row) {
+            removed.set(row);
+        }
+    }
+
+    /**
+     * Strings replaced by their index in the columns. Only grows.
+     */
+    private static final class Dictionary {
+
+        /** The strings, by index */
+        private final List<String> values = new ArrayList<>();
+
+        /** The index of every string */
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        /**
+         * Returns the index of a string, adding it if needed.
+         *
+         * @param value The string, may be null
+         * @return The index
+         */
+        int indexOf(String value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = values.size();
+                values.add(value);
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        /**
+         * Returns the index of a string without adding it.
+         *
+         * @param value The string
+         * @return The index, or -1 if the string is unknown
+         */
+        int find(String value) {
+            Integer index = indexes.get(value);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * Returns a string.
+         *
+         * @param index The index
+         * @return The string
+         */
+        String get(int index) {
+            return values.get(index);
+        }
+
+        /**
+         * Returns the number of strings.
+         *
+         * @return The number of strings
+         */
+        int size() {
+            return values.size();
+        }
+    }
+}
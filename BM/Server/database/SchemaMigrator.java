@@ -0,0 +1,225 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import controller.ServerController;
+
+/**
+ * Brings the database schema up to date when the server starts.
+ * Every change to the schema after database/BiteMe.sql is a numbered migration;
+ * the migrations already applied are recorded in the schema_version table, so each
+ * runs exactly once per database, in order. MySQL commits DDL implicitly, so the steps
+ * of a migration are written to be safely repeated if the server stops half way.
+ */
+public class SchemaMigrator {
+
+    /** The table recording the applied migrations */
+    static final String VERSION_TABLE = "schema_version";
+
+    /** The migrations, in version order */
+    private final List<Migration> migrations = new ArrayList<>();
+
+    /** Controller used to log the migrations to the server console */
+    private final ServerController controller;
+
+    /**
+     * Creates a migrator with every migration the server knows.
+     *
+     * @param controller The server controller used for logging, may be null
+     */
+    public SchemaMigrator(ServerController controller) {
+        this.controller = controller;
+
+        migration(1, "Indexes for order lists, order history and reports",
+                // getCustomerOrders and customer history pages: customerId, then the keyset cursor
+                index("Orders", "idx_orders_customer_time", "customerId", "orderTime", "orderId"),
+                // Open orders of a restaurant and their pages
+                index("Orders", "idx_orders_restaurant_status_time", "restaurantId", "status", "orderTime", "orderId"),
+                // Income, performance and quarterly reports read only these columns
+                index("Orders", "idx_orders_reporting", "restaurantId", "status", "isPayed", "orderTime",
+                        "totalPrice", "deliveryType", "requiredTime", "actualArrivalTime"),
+                // Report joins start from the manager
+                index("Managers", "idx_managers_manager", "managerId", "restaurantId"),
+                // Quarterly report filters restaurants by branch
+                index("Restaurants", "idx_restaurants_branch", "branch", "restaurantId", "name"),
+                // Orders report reads the items of each order
+                index("OrderItems", "idx_orderitems_order", "orderId", "itemId", "quantity"));
+
+        migration(2, "Daily restaurant rollups for the income, performance and quarterly reports",
+                statement(DailyRollups.CREATE_TABLE),
+                // Rebuilding replaces the rows of each month, so a repeated backfill is harmless
+                connection -> DailyRollups.backfill(connection));
+    }
+
+    /**
+     * Registers a migration. Versions must be registered in increasing order.
+     *
+     * @param version The version the schema has after the migration
+     * @param description A short description recorded with the version
+     * @param steps The changes, applied in order
+     */
+    private void migration(int version, String description, MigrationStep... steps) {
+        if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version >= version) {
+            throw new IllegalStateException("Migration " + version + " registered out of order");
+        }
+        migrations.add(new Migration(version, description, Arrays.asList(steps)));
+    }
+
+    /**
+     * Applies every migration newer than the version of the database.
+     *
+     * @param connection The connection to use
+     * @return The schema version after migrating
+     * @throws SQLException if a migration fails; the versions before it stay applied
+     */
+    public int migrate(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(255), "
+                    + "appliedAt DATETIME)");
+        }
+        int current = currentVersion(connection);
+        for (Migration migration : migrations) {
+            if (migration.version <= current) {
+                continue;
+            }
+            ServerController.log(controller, "Applying schema migration " + migration.version + ": " + migration.description);
+            long start = System.currentTimeMillis();
+            for (MigrationStep step : migration.steps) {
+                step.apply(connection);
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO " + VERSION_TABLE + " (version, description, appliedAt) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, migration.version);
+                pstmt.setString(2, migration.description);
+                pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.executeUpdate();
+            }
+            ServerController.log(controller, "Schema migration " + migration.version + " applied in " + (System.currentTimeMillis() - start) + " ms");
+            current = migration.version;
+        }
+        return current;
+    }
+
+    /**
+     * Reads the version of the database.
+     *
+     * @param connection The connection to use
+     * @return The highest applied migration, or 0 if none was applied
+     * @throws SQLException if the version table cannot be read
+     */
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM " + VERSION_TABLE)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Creates a step that adds an index unless an index with the same name already exists.
+     *
+     * @param table The table to index
+     * @param name The index name
+     * @param columns The indexed columns, in order
+     * @return The step
+     */
+    static MigrationStep index(String table, String name, String... columns) {
+        return connection -> {
+            if (!indexExists(connection, table, name)) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("CREATE INDEX " + name + " ON " + table + " (" + String.join(", ", columns) + ")");
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a step that runs a statement as is. The statement must be safe to repeat,
+     * for example CREATE TABLE IF NOT EXISTS.
+     *
+     * @param sql The statement
+     * @return The step
+     */
+    static MigrationStep statement(String sql) {
+        return connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(sql);
+            }
+        };
+    }
+
+    /**
+     * Checks whether a table of the current database has an index with the given name.
+     *
+     * @param connection The connection to use
+     * @param table The table name
+     * @param name The index name
+     * @return true if the index exists
+     * @throws SQLException if the catalog cannot be read
+     */
+    private static boolean indexExists(Connection connection, String table, String name) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.STATISTICS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND LOWER(TABLE_NAME) = LOWER(?) AND INDEX_NAME = ? LIMIT 1";
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+
+    /**
+     * One change to the schema.
+     */
+    @FunctionalInterface
+    interface MigrationStep {
+
+        /**
+         * Applies the change.
+         *
+         * @param connection The connection to use
+         * @throws SQLException if the change fails
+         */
+        void apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * A numbered set of schema changes.
+     */
+    private static final class Migration {
+
+        /** The version the schema has after the migration */
+        private final int version;
+
+        /** A short description recorded with the version */
+        private final String description;
+
+        /** The changes, applied in order */
+        private final List<MigrationStep> steps;
+
+        /**
+         * Creates a migration.
+         *
+         * @param version The version the schema has after the migration
+         * @param description A short description recorded with the version
+         * @param steps The changes, applied in order
+         */
+        Migration(int version, String description, List<MigrationStep> steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = steps;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import entities.Order.OrderStatus;
+
+/**
+ * Local append-only file holding the order status changes that were acknowledged
+ * but not yet written to the database. An entry is written with {@link #write} and
+ * acknowledged once {@link #sync} returns, so an acknowledged change survives a crash
+ * of the server and is written to the database when the server starts again. Writers
+ * waiting in {@link #sync} at the same time share one force of the file.
+ * <p>
+ * The file holds one line per change: the order ID, the new status and the arrival
+ * time of a delivered order ("-" for other statuses). A line cut short by a crash
+ * was never acknowledged and is skipped when the journal is read.
+ */
+class StatusJournal {
+
+    /**
+     * The journal file.
+     */
+    private final Path path;
+
+    /**
+     * The open journal file, positioned at its end.
+     */
+    private FileChannel channel;
+
+    /**
+     * Number of entries written so far, guarded by this object.
+     */
+    private long written;
+
+    /**
+     * Number of entries known to be on disk, guarded by this object.
+     */
+    private long synced;
+
+    /**
+     * Held while the file is forced, so writers waiting meanwhile are covered by the next force.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Opens a journal, creating the file if it does not exist.
+     *
+     * @param path The journal file.
+     * @throws IOException If the file cannot be opened.
+     */
+    StatusJournal(Path path) throws IOException {
+        this.path = path;
+        this.channel = open(path);
+    }
+
+    /**
+     * Reads the entries of a journal file.
+     *
+     * @param path The journal file.
+     * @return The entries in the order they were written; empty if the file does not exist.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<Entry> read(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            Entry entry = Entry.parse(line);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Appends an entry without forcing it to disk.
+     *
+     * @param entry The status change.
+     * @return The ticket to pass to {@link #sync} before the change is acknowledged.
+     * @throws IOException If the entry cannot be written.
+     */
+    synchronized long write(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((entry.toLine() + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return ++written;
+    }
+
+    /**
+     * Waits until an entry is on disk. The first waiter forces every entry written so
+     * far; the ones arriving meanwhile find their entries covered and return at once.
+     *
+     * @param ticket The ticket returned by {@link #write}.
+     * @throws IOException If the file cannot be forced.
+     */
+    void sync(long ticket) throws IOException {
+        synchronized (syncLock) {
+            long upTo;
+            FileChannel target;
+            synchronized (this) {
+                if (synced >= ticket) {
+                    return;
+                }
+                upTo = written;
+                target = channel;
+            }
+            target.force(false);
+            synchronized (this) {
+                synced = Math.max(synced, upTo);
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the journal file. Taken together with a snapshot of the
+     * pending entries, it marks where the entries appended after the snapshot begin.
+     *
+     * @return The length in bytes.
+     * @throws IOException If the length cannot be read.
+     */
+    synchronized long length() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Replaces the content of the journal with the entries still to be written
+     * to the database, keeping the entries appended after the given mark. An empty
+     * journal is truncated in place; otherwise the remaining entries are written to a
+     * new file that atomically replaces the journal.
+     * <p>
+     * The remaining entries are written and forced without holding the journal, so
+     * {@link #write} only waits while the few entries written meanwhile are copied.
+     *
+     * @param remaining The entries not yet in the database, as of the mark.
+     * @param mark The length of the journal when the remaining entries were taken.
+     * @throws IOException If the journal cannot be rewritten.
+     */
+    void rewrite(Collection<Entry> remaining, long mark) throws IOException {
+        if (remaining.isEmpty()) {
+            synchronized (syncLock) {
+                synchronized (this) {
+                    if (channel.size() == mark) {
+                        channel.truncate(0);
+                        channel.force(true);
+                        synced = written;
+                        return;
+                    }
+                }
+            }
+        }
+        Path next = path.resolveSibling(path.getFileName() + ".next");
+        try (FileChannel out = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder sb = new StringBuilder();
+            for (Entry entry : remaining) {
+                sb.append(entry.toLine()).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        // The forced copy covers every entry written so far, so waiting writers may return
+        synchronized (syncLock) {
+            synchronized (this) {
+                long end = channel.size();
+                if (end > mark) {
+                    try (FileChannel out = FileChannel.open(next, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                        long position = mark;
+                        while (position < end) {
+                            position += channel.transferTo(position, end - position, out);
+                        }
+                        out.force(true);
+                    }
+                }
+                channel.close();
+                Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = open(path);
+                synced = written;
+            }
+        }
+    }
+
+    /**
+     * Closes the journal file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Opens a journal file for appending.
+     *
+     * @param path The journal file.
+     * @return The channel, readable for rewrite and positioned at the end of the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static FileChannel open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    /**
+     * One acknowledged status change.
+     */
+    static final class Entry {
+
+        /**
+         * The ID of the order.
+         */
+        final int orderId;
+
+        /**
+         * The new status.
+         */
+        final OrderStatus status;
+
+        /**
+         * The arrival time of a delivered order, null for other statuses.
+         */
+        final LocalDateTime arrivalTime;
+
+        /**
+         * Creates an entry.
+         *
+         * @param orderId The ID of the order.
+         * @param status The new status.
+         * @param arrivalTime The arrival time of a delivered order, null for other statuses.
+         */
+        Entry(int orderId, OrderStatus status, LocalDateTime arrivalTime) {
+            this.orderId = orderId;
+            this.status = status;
+            this.arrivalTime = arrivalTime;
+        }
+
+        /**
+         * Formats the entry as a journal line, without the line break.
+         *
+         * @return The line.
+         */
+        String toLine() {
+            return orderId + " " + status.name() + " " + (arrivalTime != null ? arrivalTime.toString() : "-");
+        }
+
+        /**
+         * Parses a journal line.
+         *
+         * @param line The line.
+         * @return The entry, or null if the line is incomplete.
+         */
+        static Entry parse(String line) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                LocalDateTime arrivalTime = "-".equals(parts[2]) ? null : LocalDateTime.parse(parts[2]);
+                return new Entry(Integer.parseInt(parts[0]), OrderStatus.valueOf(parts[1]), arrivalTime);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package database;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import controller.ServerController;
+import entities.Message;
+import entities.Order;
+import entities.Order.OrderStatus;
+
+/**
+ * Write-behind mode for order status changes. A change is checked against the
+ * current status of the order, recorded in a {@link StatusJournal} and acknowledged
+ * at once; a background thread then writes the pending changes to the database in one
+ * batched transaction every flush interval, or sooner when enough changes are pending.
+ * Several changes of the same order between two flushes reach the database as one update.
+ * <p>
+ * Until a change is flushed, orders read from the database are shown with their pending
+ * status (see {@link #overlay}), and the order event listeners are told about the change
+ * once it is flushed. On startup the journal left by the previous run is written to the
+ * database before any request is served.
+ */
+class StatusWriteBehind implements OrderEventListener {
+
+    /**
+     * The controller used to load the flushed orders and notify the listeners.
+     */
+    private final DataBaseController controller;
+
+    /**
+     * The journal of the acknowledged changes.
+     */
+    private final StatusJournal journal;
+
+    /**
+     * Maximum number of orders whose status is remembered.
+     */
+    private static final int MAX_KNOWN_STATUSES = 10000;
+
+    /**
+     * Number of pending changes that triggers a flush before the interval elapses.
+     */
+    private final int flushBatch;
+
+    /**
+     * The last known status of the orders that were placed or changed recently, least
+     * recently used first, guarded by this object. An order that is not here is read
+     * from the database, or from its pending change, on its next change.
+     */
+    private final Map<Integer, OrderStatus> statuses = new LinkedHashMap<Integer, OrderStatus>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, OrderStatus> eldest) {
+            return size() > MAX_KNOWN_STATUSES;
+        }
+    };
+
+    /**
+     * The acknowledged changes not yet in the database, by order ID, guarded by this object.
+     */
+    private final Map<Integer, StatusJournal.Entry> pending = new LinkedHashMap<>();
+
+    /**
+     * Whether an early flush was requested and has not started yet, guarded by this object.
+     */
+    private boolean flushRequested;
+
+    /**
+     * Runs the periodic flushes.
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Held while a flush runs, so flushes never overlap.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Controller used to log to the server console, may be null.
+     */
+    private final ServerController serverController;
+
+    /**
+     * Writes the changes left in the journal by the previous run to the database,
+     * then starts acknowledging changes.
+     *
+     * @param controller The controller used to load the flushed orders and notify the listeners.
+     * @param journalPath The journal file.
+     * @param flushIntervalMs Time in milliseconds between flushes.
+     * @param flushBatch Number of pending changes that triggers an early flush.
+     * @param serverController Controller used to log to the server console, may be null.
+     * @throws IOException If the journal cannot be read or opened.
+     * @throws SQLException If the changes of the previous run cannot be written.
+     */
+    StatusWriteBehind(DataBaseController controller, Path journalPath, long flushIntervalMs, int flushBatch,
+            ServerController serverController) throws IOException, SQLException {
+        this.controller = controller;
+        this.flushBatch = Math.max(1, flushBatch);
+        this.serverController = serverController;
+
+        Map<Integer, StatusJournal.Entry> recovered = new LinkedHashMap<>();
+        for (StatusJournal.Entry entry : StatusJournal.read(journalPath)) {
+            recovered.put(entry.orderId, entry);
+        }
+        if (!recovered.isEmpty()) {
+            try (Connection connection = JDBC.getConnection()) {
+                write(connection, recovered.values(), controller.maintainsRollups());
+            }
+            ServerController.log(serverController, "Recovered " + recovered.size() + " order status changes from " + journalPath);
+        }
+        this.journal = new StatusJournal(journalPath);
+        journal.rewrite(new ArrayList<>(), journal.length());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "order-status-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, flushIntervalMs);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks and acknowledges a status change. The change is durable when this returns,
+     * but reaches the database with the next flush.
+     * <p>
+     * The change is written to the journal while holding this object, so changes of one
+     * order are journaled in the order they were checked, but forced to disk outside it:
+     * submitters arriving while the journal is forced share the next force. If the force
+     * fails the client is told so, although the change stays pending and may still reach
+     * the database.
+     *
+     * @param orderId The ID of the order.
+     * @param status The new status.
+     * @return The same results as DataBaseController.handleUpdateOrderStatus.
+     */
+    Message<String> submit(int orderId, String status) {
+        OrderStatus next;
+        try {
+            next = OrderStatus.valueOf(status);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return new Message<>("Error updating order status: unknown status " + status);
+        }
+        try {
+            OrderStatus stored = null;
+            boolean flushNow;
+            long ticket;
+            while (true) {
+                synchronized (this) {
+                    OrderStatus current = knownStatus(orderId);
+                    if (current == null) {
+                        current = stored;
+                    }
+                    if (current != null) {
+                        if (current == next) {
+                            return new Message<>("Order status updated successfully");
+                        }
+                        if (!OrderStatusTransitions.isAllowed(current, next)) {
+                            return new Message<>(OrderStatusTransitions.refusal(current, next));
+                        }
+                        StatusJournal.Entry entry = new StatusJournal.Entry(orderId, next,
+                                next == OrderStatus.DELIVERED ? LocalDateTime.now() : null);
+                        ticket = journal.write(entry);
+                        pending.put(orderId, entry);
+                        statuses.put(orderId, next);
+                        flushNow = pending.size() >= flushBatch && !flushRequested;
+                        flushRequested |= flushNow;
+                        break;
+                    }
+                }
+                stored = loadStatus(orderId);
+                if (stored == null) {
+                    return new Message<>("Failed to update order status: No rows affected");
+                }
+            }
+            if (flushNow) {
+                flusher.execute(this::flushQuietly);
+            }
+            journal.sync(ticket);
+            return new Message<>("Order status updated successfully");
+        } catch (SQLException | IOException e) {
+            ServerController.log(serverController, "Error recording status of order ID " + orderId, e);
+            return new Message<>("Error updating order status: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the status of an order if it is known without reading the database.
+     * Must be called while holding this object.
+     *
+     * @param orderId The ID of the order.
+     * @return The remembered or pending status, or null if neither is known.
+     */
+    private OrderStatus knownStatus(int orderId) {
+        OrderStatus status = statuses.get(orderId);
+        if (status == null) {
+            StatusJournal.Entry entry = pending.get(orderId);
+            status = entry != null ? entry.status : null;
+        }
+        return status;
+    }
+
+    /**
+     * Shows the pending status of an order read from the database.
+     *
+     * @param order The order as stored; updated in place.
+     */
+    synchronized void overlay(Order order) {
+        StatusJournal.Entry entry = pending.get(order.getOrderId());
+        if (entry != null) {
+            order.setStatus(entry.status);
+            if (entry.arrivalTime != null) {
+                order.setActualArrivalTime(entry.arrivalTime);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes to the database in one transaction, then shortens the
+     * journal to the changes acknowledged meanwhile and notifies the order event listeners.
+     *
+     * @throws SQLException If the changes cannot be written; they stay pending.
+     * @throws IOException If the journal cannot be rewritten.
+     */
+    void flush() throws SQLException, IOException {
+        synchronized (flushLock) {
+            List<StatusJournal.Entry> batch;
+            synchronized (this) {
+                flushRequested = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+            }
+            List<Order> flushed;
+            try (Connection connection = JDBC.getConnection()) {
+                write(connection, batch, controller.maintainsRollups());
+                List<Integer> orderIds = new ArrayList<>(batch.size());
+                for (StatusJournal.Entry entry : batch) {
+                    orderIds.add(entry.orderId);
+                }
+                List<StatusJournal.Entry> remaining;
+                long mark;
+                synchronized (this) {
+                    for (StatusJournal.Entry entry : batch) {
+                        if (pending.remove(entry.orderId, entry)
+                                && (entry.status == OrderStatus.DELIVERED || entry.status == OrderStatus.CANCELLED)) {
+                            statuses.remove(entry.orderId);
+                        }
+                    }
+                    remaining = new ArrayList<>(pending.values());
+                    mark = journal.length();
+                }
+                // Forced to disk outside this object, so changes are acknowledged meanwhile
+                journal.rewrite(remaining, mark);
+                flushed = controller.loadOrders(connection, orderIds);
+            }
+            for (Order order : flushed) {
+                controller.fireOrderStatusChanged(order);
+            }
+        }
+    }
+
+    /**
+     * Flushes and stops the background thread. Changes that cannot be written stay in
+     * the journal and are written when the server starts again.
+     */
+    void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException | IOException e) {
+            ServerController.log(serverController, "Pending order status changes kept in the journal: " + e.getMessage());
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            ServerController.log(serverController, "Error closing the order status journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remembers the status of a new order, so its first change needs no database read.
+     *
+     * @param order The new order.
+     */
+    @Override
+    public synchronized void orderCreated(Order order) {
+        statuses.putIfAbsent(order.getOrderId(), order.getStatus());
+    }
+
+    /**
+     * Nothing to do: the changes of this mode are the ones being notified.
+     *
+     * @param order The order as stored after the update.
+     */
+    @Override
+    public void orderStatusChanged(Order order) {
+    }
+
+    /**
+     * Runs a flush from the background thread, logging failures; the changes stay
+     * pending and are retried with the next flush.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | IOException e) {
+            ServerController.log(serverController, "Flushing order status changes failed, retrying later: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes status changes to the database as one batched transaction.
+     * Orders never leave DELIVERED in this mode, so only the delivered orders change the
+     * daily rollups; their contribution is retracted first, in case a change recovered
+     * from the journal had already been written.
+     *
+     * @param connection The connection to use.
+     * @param entries The changes, at most one per order.
+     * @param rollups Whether the daily rollups must be kept up to date.
+     * @throws SQLException If the changes cannot be written.
+     */
+    private static void write(Connection connection, Collection<StatusJournal.Entry> entries, boolean rollups)
+            throws SQLException {
+        String query = "UPDATE orders SET status = ?, actualArrivalTime = COALESCE(?, actualArrivalTime) WHERE orderId = ?";
+        List<Integer> delivered = new ArrayList<>();
+        if (rollups) {
+            for (StatusJournal.Entry entry : entries) {
+                if (entry.status == OrderStatus.DELIVERED) {
+                    delivered.add(entry.orderId);
+                }
+            }
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            DailyRollups.retract(connection, delivered);
+            for (StatusJournal.Entry entry : entries) {
+                pstmt.setString(1, entry.status.name());
+                pstmt.setTimestamp(2, entry.arrivalTime != null ? Timestamp.valueOf(entry.arrivalTime) : null);
+                pstmt.setInt(3, entry.orderId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            DailyRollups.record(connection, delivered);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the stored status of an order.
+     *
+     * @param orderId The ID of the order.
+     * @return The status, or null if the order does not exist.
+     * @throws SQLException If the query fails.
+     */
+    private static OrderStatus loadStatus(int orderId) throws SQLException {
+        try (Connection connection = JDBC.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT status FROM orders WHERE orderId = ?")) {
+            pstmt.setInt(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? OrderStatus.valueOf(rs.getString("status").toUpperCase()) : null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct byte buffers of one size.
+ * The NIO transport borrows a buffer only while a connection has bytes to read,
+ * so idle connections hold no buffer at all.
+ */
+public class BufferPool {
+
+    /** Size in bytes of every buffer of the pool */
+    private final int bufferSize;
+
+    /** Maximum number of idle buffers kept for reuse */
+    private final int maxPooled;
+
+    /** Buffers waiting to be reused */
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /** Number of buffers in the queue, tracked separately because ConcurrentLinkedQueue.size() is linear */
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Creates an empty buffer pool.
+     *
+     * @param bufferSize Size in bytes of every buffer
+     * @param maxPooled Maximum number of idle buffers kept for reuse
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if the pool is empty.
+     *
+     * @return A buffer ready for writing
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer The buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            buffers.add(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the size of the buffers of this pool.
+     *
+     * @return The buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
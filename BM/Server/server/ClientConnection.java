@@ -0,0 +1,35 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * A connection to one client, independent of the transport that carries it.
+ * EchoServer answers requests through this interface, so the same request handlers
+ * serve clients connected through OCSF and through the NIO transport.
+ */
+public interface ClientConnection {
+
+    /**
+     * Sends an object to the client.
+     * Implementations must allow several threads to call this method at the same time.
+     *
+     * @param msg The object to send
+     * @throws IOException if the object cannot be sent
+     */
+    void sendToClient(Object msg) throws IOException;
+
+    /**
+     * Returns the address of the client.
+     *
+     * @return The client address, or null if the connection is closed
+     */
+    InetAddress getInetAddress();
+
+    /**
+     * Closes the connection to the client.
+     *
+     * @throws IOException if the connection cannot be closed cleanly
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,24 @@
+package server;
+
+/**
+ * Receives the messages and connection events of a server transport.
+ * EchoServer implements it for its own OCSF connections and for the NIO transport.
+ */
+public interface ClientMessageHandler {
+
+    /**
+     * Called by the transport's reader thread for every message received from a client.
+     * Implementations must return quickly and run the actual work elsewhere.
+     *
+     * @param msg The message received from the client
+     * @param client The connection the message came from
+     */
+    void handleMessageFromClient(Object msg, ClientConnection client);
+
+    /**
+     * Called once when a client connection is closed, by either side or because of an error.
+     *
+     * @param client The connection that was closed
+     */
+    void connectionClosed(ClientConnection client);
+}
@@ -5,16 +5,29 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import ocsf.server.AbstractServer;
 import ocsf.server.ConnectionToClient;
 import controller.ServerController;
-import entities.ConnectedClients;
+import entities.IncomeReport;
 import entities.MenuItem;
 import entities.Message;
+import entities.MessageCodec;
 import entities.Order;
+import entities.MenuRequest;
+import entities.MenuUpdate;
+import entities.OrderPage;
+import entities.OrderPageRequest;
+import entities.OrdersReport;
+import entities.PerformanceReport;
+import entities.QuarterlyReport;
 import entities.Restaurant;
 import entities.User;
 import database.DataBaseController;
@@ -23,14 +36,44 @@ import database.DataBaseController;
  * The EchoServer class extends AbstractServer to handle client-server communication
  * for the Bite Me system. It processes incoming messages from clients and manages
  * connected users.
+ * Clients are accepted either by OCSF itself or by the NIO transport, as selected by
+ * {@link ServerConfig#TRANSPORT}; both deliver their messages through the
+ * {@link ClientMessageHandler} methods of this class.
  */
-public class EchoServer extends AbstractServer {
+public class EchoServer extends AbstractServer implements ClientMessageHandler {
 	
     /** Reference to the ServerController for logging and UI updates */
     public static ServerController serverController;
     
-    /** List of currently connected clients */
-    public static ArrayList<ConnectedClients> connectedClients = new ArrayList<>();
+    /** The users logged in to this server, indexed for constant time lookups */
+    private final SessionRegistry sessions = new SessionRegistry(
+            ServerConfig.HOSTNAME_CACHE_TTL_SECONDS * 1000, ServerConfig.HOSTNAME_RESOLVER_THREADS,
+            EchoServer::refreshConnectedClients);
+
+    /** Runs the client requests on worker threads, keeping each client's requests in order */
+    private final RequestDispatcher dispatcher;
+
+    /** The OCSF connections of this server, wrapped as transport independent connections */
+    private final Map<ConnectionToClient, ClientConnection> ocsfConnections = new ConcurrentHashMap<>();
+
+    /** Pushes order changes to the subscribed restaurant terminals */
+    private final OrderEventBroadcaster orderEvents = new OrderEventBroadcaster(this, ServerConfig.ORDER_EVENT_QUEUE_LIMIT,
+            ServerConfig.ORDER_EVENT_SENDER_THREADS);
+
+    /** Connections whose client accepted the binary message codec */
+    private final Set<ClientConnection> binaryCodecClients = ConcurrentHashMap.newKeySet();
+
+    /** Encoded bodies of the restaurant list and the menus, shared by the binary codec clients */
+    private final ResponseFrameCache responseFrames = new ResponseFrameCache();
+
+    /** The NIO transport, when the server was started with it */
+    private NioServer nioServer;
+
+    /** The handlers of the requests, by operation, with their statistics */
+    private final HandlerRegistry handlers = new HandlerRegistry();
+
+    /** Periodically logs the request statistics, while the server is running */
+    private ScheduledExecutorService statisticsLogger;
 
     /**
      * Constructs an EchoServer that listens on the specified port.
@@ -39,6 +82,72 @@ public class EchoServer extends AbstractServer {
      */
     public EchoServer(int port) {
         super(port);
+        dispatcher = new RequestDispatcher(ServerConfig.DISPATCH_MODE, ServerConfig.DISPATCH_THREADS,
+                ServerConfig.PIPELINE_WINDOW, ServerConfig.MAX_QUEUED_PER_CONNECTION,
+                ServerConfig.MAX_IN_FLIGHT_REQUESTS, ServerConfig.SHED_SHEDDABLE_AT);
+        DataBaseController.getInstance().addOrderEventListener(orderEvents);
+        registerHandlers();
+    }
+
+    /**
+     * Registers the handler of every operation the server supports.
+     */
+    private void registerHandlers() {
+        handlers.register(OpCode.CODEC_HELLO, this::handleCodecHello);
+        handlers.register(OpCode.LOGIN, this::handleLogin);
+        handlers.register(OpCode.LOGOUT, this::handleLogout);
+        handlers.register(OpCode.REPORT_MANAGEMENT, this::handleManageReport);
+        handlers.register(OpCode.NEW_CUSTOMER_REGISTRATION, this::handleNewCustomerRegistration);
+        handlers.register(OpCode.GET_RESTAURANTS, this::handleGetRestaurants);
+        handlers.register(OpCode.GET_MENU_ITEMS, this::handleGetMenuItems);
+        handlers.register(OpCode.PLACE_ORDER, this::handlePlaceOrder);
+        handlers.register(OpCode.GET_CUSTOMER_ORDERS, this::handleGetCustomerOrders);
+        handlers.register(OpCode.RESTAURANT_ORDERS, this::handleGetRestaurantOrders);
+        handlers.register(OpCode.GET_CUSTOMER_ORDERS_PAGE, this::handleGetCustomerOrdersPage);
+        handlers.register(OpCode.RESTAURANT_ORDERS_PAGE, this::handleGetRestaurantOrdersPage);
+        handlers.register(OpCode.UPDATE_ORDER_STATUS, this::handleUpdateOrderStatus);
+        handlers.register(OpCode.INCOME_REPORT, this::handleIncomeReport);
+        handlers.register(OpCode.ORDERS_REPORT, this::handleOrderReport);
+        handlers.register(OpCode.PERFORMANCE_REPORT, this::handlePerformenceReport);
+        handlers.register(OpCode.QUARTERLY_REPORT, this::handleQuarterlyReport);
+        handlers.register(OpCode.BRANCH_REPORTS, this::handleBranchReports);
+        handlers.register(OpCode.UPDATE_MENU_ITEM, this::handleUpdateMenuItem);
+        handlers.register(OpCode.SUBSCRIBE_RESTAURANT_ORDERS, this::handleSubscribeRestaurantOrders);
+        handlers.register(OpCode.UNSUBSCRIBE_RESTAURANT_ORDERS, this::handleUnsubscribeRestaurantOrders);
+    }
+
+    /**
+     * Starts accepting clients with the transport selected in the server configuration.
+     *
+     * @throws IOException if the server socket cannot be opened.
+     */
+    public void start() throws IOException {
+        if (NioServer.TRANSPORT_NIO.equalsIgnoreCase(ServerConfig.TRANSPORT)) {
+            nioServer = new NioServer(getPort(), ServerConfig.NIO_EVENT_LOOPS, this);
+            nioServer.start();
+            serverStarted();
+        } else {
+            listen();
+        }
+    }
+
+    /**
+     * Stops the server and disconnects all clients, whichever transport is in use.
+     *
+     * @throws IOException if the server socket cannot be closed cleanly.
+     */
+    public void stop() throws IOException {
+        if (nioServer != null) {
+            try {
+                nioServer.close();
+            } finally {
+                nioServer = null;
+                serverStopped();
+                serverClosed();
+            }
+        } else {
+            close();
+        }
     }
     
     /**
@@ -47,7 +156,47 @@ public class EchoServer extends AbstractServer {
      */
     @Override
     protected void serverStarted() {
-        serverController.logToConsole("Server listening for connections on port " + getPort());
+        serverController.logToConsole("Server listening for connections on port " + getPort()
+                + (nioServer != null ? " (NIO transport, " + nioServer.getEventLoopCount() + " event loops)" : ""));
+        serverController.logToConsole("Requests are dispatched on " + dispatcher.getMode()
+                + " threads, pipelining window " + dispatcher.getWindow()
+                + ", at most " + ServerConfig.MAX_IN_FLIGHT_REQUESTS + " requests in flight");
+        long interval = ServerConfig.STATISTICS_LOG_INTERVAL_SECONDS;
+        if (interval > 0 && statisticsLogger == null) {
+            statisticsLogger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "request-statistics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            statisticsLogger.scheduleAtFixedRate(this::logStatistics, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Returns the users logged in to this server.
+     *
+     * @return The session registry
+     */
+    public SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Refreshes the connected clients list of the server window, if there is one.
+     */
+    private static void refreshConnectedClients() {
+        if (serverController != null) {
+            serverController.updateConnectedClients();
+        }
+    }
+
+    /**
+     * Returns the per-operation request statistics.
+     *
+     * @return One line per operation that was called
+     */
+    public String getRequestStatistics() {
+        return handlers.formatStatistics();
     }
 
     /**
@@ -60,65 +209,333 @@ public class EchoServer extends AbstractServer {
     }
 
     /**
-     * Handles messages received from the client.
+     * Method called when the server is closed.
+     * Stops the request workers once the requests already running are done.
+     */
+    @Override
+    protected void serverClosed() {
+        DataBaseController.getInstance().removeOrderEventListener(orderEvents);
+        orderEvents.shutdown();
+        dispatcher.shutdown();
+        sessions.shutdown();
+        if (statisticsLogger != null) {
+            statisticsLogger.shutdownNow();
+            statisticsLogger = null;
+        }
+        logStatistics();
+    }
+
+    /**
+     * Logs the request statistics and the cache statistics to the server console.
+     */
+    private void logStatistics() {
+        serverController.logToConsole(handlers.formatStatistics());
+        serverController.logToConsole(DataBaseController.getInstance().getReferenceData().formatStatistics());
+        serverController.logToConsole(DataBaseController.getInstance().getReportCache().formatStatistics());
+        serverController.logToConsole(DataBaseController.getInstance().getReportStore().formatStatistics());
+        serverController.logToConsole(responseFrames.formatStatistics());
+    }
+
+    /**
+     * Method called when a client disconnects.
+     * Releases the request queue of the connection.
+     *
+     * @param client The connection that was closed.
+     */
+    @Override
+    protected synchronized void clientDisconnected(ConnectionToClient client) {
+        ClientConnection connection = ocsfConnections.remove(client);
+        if (connection != null) {
+            connectionClosed(connection);
+        }
+    }
+
+    /**
+     * Method called when the connection of a client fails.
+     * Releases the request queue of the connection.
+     *
+     * @param client The connection that failed.
+     * @param exception The exception raised by the connection.
+     */
+    @Override
+    protected synchronized void clientException(ConnectionToClient client, Throwable exception) {
+        clientDisconnected(client);
+    }
+
+    /**
+     * Handles messages received from an OCSF client by passing them on with
+     * the transport independent view of the connection.
      *
      * @param msg The message received from the client.
      * @param client The connection from which the message originated.
      */
     @Override
     public void handleMessageFromClient(Object msg, ConnectionToClient client) {
-        System.out.println("Received message from client: " + msg);
-        serverController.logToConsole("Message received: " + msg + " from " + client);
+        handleMessageFromClient(msg, ocsfConnections.computeIfAbsent(client, OcsfClientConnection::new));
+    }
+
+    /**
+     * Handles messages received from the client.
+     * The message is handed to a worker thread so the connection reader thread
+     * can go straight back to reading from the socket. When the client or the server
+     * already has too much work queued, the request is answered at once with SERVER_BUSY.
+     *
+     * @param msg The message received from the client.
+     * @param client The connection from which the message originated.
+     */
+    @Override
+    public void handleMessageFromClient(Object msg, ClientConnection client) {
+        int requestBytes = -1;
+        try {
+            if (msg instanceof byte[]) {
+                requestBytes = ((byte[]) msg).length;
+                msg = MessageCodec.decode((byte[]) msg);
+            }
+            Object request = msg;
+            int size = requestBytes;
+            System.out.println("Received message from client: " + msg);
+            serverController.logToConsole("Message received: " + msg + " from " + client);
+            OpCode opCode = request instanceof Message ? OpCode.fromMessage(((Message<?>) request).getMessage()) : null;
+            boolean sheddable = opCode != null && opCode.isSheddable();
+            if (!dispatcher.dispatch(client, () -> processMessage(request, client, size), isPipelined(request), sheddable)) {
+                rejectBusy(request, opCode, client);
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            // A malformed request only costs its own connection, never the transport thread
+            ServerController.log(serverController, "Invalid message from " + client + ", closing the connection", e);
+            try {
+                client.close();
+            } catch (IOException closeError) {
+                // The connection is being dropped anyway
+            }
+        }
+    }
+
+    /**
+     * Refuses a request the server has no room for, telling the client how long to wait
+     * before sending it again. Sheddable requests are asked to wait longer, so that
+     * order traffic gets the capacity first when the load drops.
+     *
+     * @param msg The refused message.
+     * @param opCode The operation of the message, or null if unknown.
+     * @param client The connection from which the message originated.
+     */
+    private void rejectBusy(Object msg, OpCode opCode, ClientConnection client) {
+        handlers.recordRejected(opCode);
+        if (!(msg instanceof Message)) {
+            return;
+        }
+        long retryAfter = ServerConfig.BUSY_RETRY_AFTER_MS;
+        if (opCode != null && opCode.isSheddable()) {
+            retryAfter *= 4;
+        }
+        serverController.logToConsole("Server busy (" + dispatcher.getInFlight() + " requests in flight), refused "
+                + opCode + " from " + client);
+        try {
+            sendResponse((Message<?>) msg, client, new Message<>("SERVER_BUSY", retryAfter));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending response to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the request queue of a closed connection.
+     * A user still logged in on the connection is logged out, so a client that crashed
+     * or lost its network can log in again. The database update runs off the transport
+     * thread, which may be serving other connections.
+     *
+     * @param client The connection that was closed.
+     */
+    @Override
+    public void connectionClosed(ClientConnection client) {
+        orderEvents.connectionClosed(client);
+        binaryCodecClients.remove(client);
+        dispatcher.connectionClosed(client);
+        Session session = sessions.connectionClosed(client);
+        if (session != null) {
+            CompletableFuture.runAsync(() -> {
+                DataBaseController.getInstance().logoutUser(session.getUserId());
+                serverController.logToConsole("User " + session.getUserId() + " disconnected and was logged out");
+            });
+        }
+    }
+
+    /**
+     * Checks whether a message may run alongside the other pipelined requests of its client.
+     * Only read-only requests carrying a request id qualify, because the client needs the id
+     * to match responses that arrive out of order.
+     *
+     * @param msg The message received from the client.
+     * @return true if the message may be pipelined.
+     */
+    private static boolean isPipelined(Object msg) {
+        if (!(msg instanceof Message)) {
+            return false;
+        }
+        Message<?> message = (Message<?>) msg;
+        OpCode opCode = OpCode.fromMessage(message.getMessage());
+        return message.getRequestId() != 0 && opCode != null && opCode.isReadOnly();
+    }
+
+    /**
+     * Processes a message received from the client on a worker thread,
+     * by running the handler registered for its operation.
+     *
+     * @param msg The message received from the client.
+     * @param client The connection from which the message originated.
+     * @param requestBytes Encoded size of the message, or -1 if unknown.
+     */
+    private void processMessage(Object msg, ClientConnection client, int requestBytes) {
         if (msg instanceof Message) {
             Message<?> message = (Message<?>) msg;
-            switch (message.getMessage()) {
-                case "LOGIN":
-                    handleLogin(message, client);
-                    break;
-                case "LOGOUT":
-                    handleLogout(message, client);
-                    break;
-                case "REPORT_MANAGEMENT":
-                    handleManageReport(message, client);
-                    break;
-                case "NEW_CUSTOMER_REGISTRATION":
-                    handleNewCustomerRegistration(message, client);
-                case "GET_RESTAURANTS":
-                    handleGetRestaurants(client);
-                    break;
-                case "GET_MENU_ITEMS":
-                    handleGetMenuItems(message, client);
-                    break;
-                case "PLACE_ORDER":
-                    handlePlaceOrder(message, client);
-                    break;
-                case "GET_CUSTOMER_ORDERS":
-                    handleGetCustomerOrders(message, client);
-                    break;
-				case "RESTAURANT_ORDERS":
-                	handleGetRestaurantOrders(message, client);
-                    break;
-				case "UPDATE_ORDER_STATUS":
-					handleUpdateOrderStatus(message, client);
-                    break;
-                case "IncomeReport":
-                	handleIncomeReport(message,client);
-                	break;
-                case "OrdersReport":
-                	handleOrderReport(message,client);
-                	break;
-                case "PerformanceReport":
-                	handlePerformenceReport(message,client);
-                	break;
-                case "QuarterlyReport":
-                	handleQuarterlyReport(message,client);
-                	break;
-				case "UPDATE_MENU_ITEM":
-                    handleUpdateMenuItem(message, client);
-                    break;
-                default:
-                    serverController.logToConsole("Unknown message type: " + message.getMessage());
+            if (!handlers.dispatch(OpCode.fromMessage(message.getMessage()), message, client, requestBytes)) {
+                handleUnknownRequest(message, client);
+            }
+        }
+    }
+
+    /**
+     * Answers a request the server does not know, so the client does not wait for it
+     * until its timeout.
+     *
+     * @param message The unknown request.
+     * @param client The connection from which the request originated.
+     */
+    private void handleUnknownRequest(Message<?> message, ClientConnection client) {
+        serverController.logToConsole("Unknown message type: " + message.getMessage());
+        try {
+            sendResponse(message, client, new Message<>("UNKNOWN_REQUEST", message.getMessage()));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending response to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a response to the client, tagged with the request id of the message it answers
+     * so the client can hand it to the caller waiting for it.
+     * Pipelined requests of one client may answer at the same time; every
+     * ClientConnection accepts concurrent writers.
+     *
+     * @param request The message being answered.
+     * @param client The connection to send the response to.
+     * @param response The response message.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void sendResponse(Message<?> request, ClientConnection client, Message<?> response) throws IOException {
+        response.setRequestId(request.getRequestId());
+        OpCode opCode = OpCode.fromMessage(request.getMessage());
+        try {
+            int bytes = push(client, response);
+            if (bytes >= 0) {
+                handlers.recordResponseBytes(opCode, bytes);
+            }
+        } catch (IOException e) {
+            handlers.recordError(opCode);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a read-only response many clients ask for. For a binary codec client the
+     * body is encoded once per version of the data and only the request id header is
+     * encoded per request; other clients get the response like any other.
+     *
+     * @param request The message being answered.
+     * @param client The connection to send the response to.
+     * @param response The response message.
+     * @param key The response key in the frame cache.
+     * @param source The data the response is built from; a different object means the data changed.
+     * @param version The version of the data, or 0 if it has none.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void sendCachedResponse(Message<?> request, ClientConnection client, Message<?> response,
+            String key, Object source, long version) throws IOException {
+        if (!ServerConfig.RESPONSE_FRAME_CACHE || source == null || !binaryCodecClients.contains(client)) {
+            sendResponse(request, client, response);
+            return;
+        }
+        OpCode opCode = OpCode.fromMessage(request.getMessage());
+        try {
+            PreEncodedFrame frame = new PreEncodedFrame(MessageCodec.encodeHeader(request.getRequestId()),
+                    responseFrames.body(key, source, version, response));
+            client.sendToClient(frame);
+            handlers.recordResponseBytes(opCode, frame.length());
+        } catch (IOException e) {
+            handlers.recordError(opCode);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a message to the client in the codec the client negotiated.
+     * Used directly for messages the server sends on its own, which carry no request id.
+     *
+     * @param client The connection to send the message to.
+     * @param message The message to send.
+     * @return The encoded size of the message, or -1 if it was sent with Java serialization.
+     * @throws IOException if the message cannot be sent.
+     */
+    int push(ClientConnection client, Message<?> message) throws IOException {
+        if (binaryCodecClients.contains(client)) {
+            byte[] encoded = MessageCodec.encode(message);
+            client.sendToClient(encoded);
+            return encoded.length;
+        }
+        client.sendToClient(message);
+        return -1;
+    }
+
+    /**
+     * Subscribes the client to the order changes of a restaurant.
+     * From now on the client receives ORDER_CREATED and ORDER_STATUS_CHANGED messages
+     * for the restaurant, instead of having to poll RESTAURANT_ORDERS.
+     *
+     * @param message The message containing the restaurant ID.
+     * @param client The connection from which the request originated.
+     */
+    private void handleSubscribeRestaurantOrders(Message<?> message, ClientConnection client) {
+        String restaurantId = (String) message.getType();
+        orderEvents.subscribe(restaurantId, client);
+        try {
+            sendResponse(message, client, new Message<>("SUBSCRIBE_RESTAURANT_ORDERS_RESPONSE", restaurantId));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending response to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels the subscription of the client to the order changes of a restaurant.
+     *
+     * @param message The message containing the restaurant ID.
+     * @param client The connection from which the request originated.
+     */
+    private void handleUnsubscribeRestaurantOrders(Message<?> message, ClientConnection client) {
+        String restaurantId = (String) message.getType();
+        orderEvents.unsubscribe(restaurantId, client);
+        try {
+            sendResponse(message, client, new Message<>("UNSUBSCRIBE_RESTAURANT_ORDERS_RESPONSE", restaurantId));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending response to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles the codec negotiation of a client.
+     * The answer itself still uses Java serialization; every later response to this
+     * client uses the binary codec if the server accepted the client's version.
+     *
+     * @param message The hello message carrying the codec version of the client.
+     * @param client The connection from which the request originated.
+     */
+    private void handleCodecHello(Message<?> message, ClientConnection client) {
+        boolean accepted = ServerConfig.BINARY_CODEC && Integer.valueOf(MessageCodec.VERSION).equals(message.getType());
+        try {
+            sendResponse(message, client, new Message<>(MessageCodec.HELLO_RESPONSE, accepted ? MessageCodec.VERSION : 0));
+            if (accepted) {
+                binaryCodecClients.add(client);
             }
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending response to client: " + e.getMessage());
         }
     }
 
@@ -128,7 +545,7 @@ public class EchoServer extends AbstractServer {
      * @param message The login message from the client.
      * @param client The connection from which the login request originated.
      */
-    private void handleLogin(Message<?> message, ConnectionToClient client) {
+    private void handleLogin(Message<?> message, ClientConnection client) {
     	System.out.println("In handleLogin");
         User user = (User) message.getType();
         System.out.println("Attempting to validate user: " + user.getUserId());
@@ -136,15 +553,9 @@ public class EchoServer extends AbstractServer {
         System.out.println("Database response: " + response.getMessage());
 
         if (response.getMessage().equals("LOGIN_SUCCESS")){
-            ConnectedClients connectedClient = new ConnectedClients(
-                    client.getInetAddress().getHostAddress(),
-                    client.getInetAddress().getHostName(),
-                    user.getUserId(),
-                    user.getRole()
-                );
-                connectedClients.add(connectedClient);
-                serverController.updateConnectedClients();
-                response = new Message<>("LOGIN_SUCCESS", response.getType());
+            User loggedIn = response.getType();
+            sessions.login(user.getUserId(), loggedIn != null ? loggedIn.getRole() : user.getRole(), client);
+            response = new Message<>("LOGIN_SUCCESS", response.getType());
            }
         else if (response.getMessage().equals("User is already logged in")) {
             response = new Message<>("USER_ALREADY_LOGGED_IN", null);
@@ -155,7 +566,7 @@ public class EchoServer extends AbstractServer {
         
         try {
         	System.out.println("Send to client the response "+response);
-            client.sendToClient(response);
+            sendResponse(message, client, response);
         } catch (IOException e) {
             serverController.logToConsole("Error sending response to client: " + e.getMessage());
         }
@@ -167,17 +578,16 @@ public class EchoServer extends AbstractServer {
      * @param message The logout message from the client.
      * @param client The connection from which the logout request originated.
      */
-    private void handleLogout(Message<?> message, ConnectionToClient client) {
+    private void handleLogout(Message<?> message, ClientConnection client) {
         User user = (User) message.getType();
         System.out.println("Handling logout for user: " + user.getUserId());
         Message<Void> dbResponse = DataBaseController.getInstance().logoutUser(user.getUserId());
         if (dbResponse.getMessage().equals("User logged out successfully")) {
-            connectedClients.removeIf(c -> c.getId().equals(user.getUserId()));
-            serverController.updateConnectedClients();
+            sessions.logout(user.getUserId());
             try {
                 Message<String> response = new Message<>("LOGOUT_SUCCESS", "User logged out successfully");
                 System.out.println("Sending logout response: " + response);
-                client.sendToClient(response);
+                sendResponse(message, client, response);
             } catch (IOException e) {
                 System.out.println("Error sending response to client: " + e.getMessage());
                 serverController.logToConsole("Error sending response to client: " + e.getMessage());
@@ -186,7 +596,7 @@ public class EchoServer extends AbstractServer {
             try {
                 Message<String> response = new Message<>("LOGOUT_FAILED", "Failed to log out user");
                 System.out.println("Sending logout response: " + response);
-                client.sendToClient(response);
+                sendResponse(message, client, response);
             } catch (IOException e) {
                 System.out.println("Error sending response to client: " + e.getMessage());
                 serverController.logToConsole("Error sending response to client: " + e.getMessage());
@@ -198,13 +608,13 @@ public class EchoServer extends AbstractServer {
      * Handles a report management request from a client.
      * This method processes the request and sends the response back to the client.
      * @param message The Message object containing the report management request
-     * @param client The ConnectionToClient object representing the client connection
+     * @param client The ClientConnection object representing the client connection
      */
-    private void handleManageReport(Message<?> message, ConnectionToClient client) {
+    private void handleManageReport(Message<?> message, ClientConnection client) {
         String reportType = (String) message.getType();
         Message<String> response = DataBaseController.getInstance().handleReportManagement(reportType);
         try {
-            client.sendToClient(response);
+            sendResponse(message, client, response);
         } catch (IOException e) {
             serverController.logToConsole("Error sending response to client: " + e.getMessage());
         }
@@ -214,13 +624,13 @@ public class EchoServer extends AbstractServer {
      * Handles a new customer registration request from a client.
      * This method processes the registration request and sends the response back to the client.
      * @param message The Message object containing the new customer details
-     * @param client The ConnectionToClient object representing the client connection
+     * @param client The ClientConnection object representing the client connection
      */
-    private void handleNewCustomerRegistration(Message<?> message, ConnectionToClient client) {
+    private void handleNewCustomerRegistration(Message<?> message, ClientConnection client) {
     	User newUser = (User) message.getType();
         Message<String> response = DataBaseController.getInstance().handleNewCustomerRegistration(newUser);
         try {
-            client.sendToClient(response);
+            sendResponse(message, client, response);
         } catch (IOException e) {
             serverController.logToConsole("Error sending response to client: " + e.getMessage());
         }
@@ -230,13 +640,15 @@ public class EchoServer extends AbstractServer {
      * Handles a request to get all restaurants.
      * This method retrieves all restaurants from the database and sends them back to the client.
      *
-     * @param client The ConnectionToClient object representing the client connection
+     * @param message The Message object containing the request
+     * @param client The ClientConnection object representing the client connection
      */
-    private void handleGetRestaurants(ConnectionToClient client) {
+    private void handleGetRestaurants(Message<?> message, ClientConnection client) {
         Message<List<Restaurant>> response = DataBaseController.getInstance().loadRestaurants();
         System.out.println("Server: Loaded restaurants: " + response.getType());
         try {
-            client.sendToClient(new Message<>("GET_RESTAURANTS_RESPONSE", response.getType()));
+            sendCachedResponse(message, client, new Message<>("GET_RESTAURANTS_RESPONSE", response.getType()),
+                    "GET_RESTAURANTS", response.getType(), 0);
             System.out.println("Server: Sent restaurants to client");
         } catch (IOException e) {
             System.out.println("Server: Error sending response to client: " + e.getMessage());
@@ -247,14 +659,29 @@ public class EchoServer extends AbstractServer {
     /**
      * Handles a request to get menu items for a specific restaurant.
      * This method retrieves all menu items for the given restaurant from the database 
-     * and sends them back to the client.
+     * and sends them back to the client. A request carrying a MenuRequest is answered
+     * with a MenuUpdate holding only what changed since the version the client has.
      *
      * @param message The Message object containing the restaurant details
-     * @param client The ConnectionToClient object representing the client connection
+     * @param client The ClientConnection object representing the client connection
      */
-    private void handleGetMenuItems(Message<?> message, ConnectionToClient client) {
+    private void handleGetMenuItems(Message<?> message, ClientConnection client) {
         System.out.println("EchoServer: Handling GET_MENU_ITEMS request");
-        if (message.getType() instanceof String) {
+        if (message.getType() instanceof MenuRequest) {
+            Message<MenuUpdate> response = DataBaseController.getInstance().loadMenuUpdate((MenuRequest) message.getType());
+            MenuUpdate update = response.getType();
+            try {
+                if (update != null && update.getKind() == MenuUpdate.Kind.FULL) {
+                    // Full menus are the same for every client at a version; deltas depend on the client's version
+                    sendCachedResponse(message, client, new Message<>("GET_MENU_ITEMS_RESPONSE", update),
+                            "GET_MENU_ITEMS:" + update.getRestaurantId(), update.getItems(), update.getVersion());
+                } else {
+                    sendResponse(message, client, new Message<>("GET_MENU_ITEMS_RESPONSE", update));
+                }
+            } catch (IOException e) {
+                serverController.logToConsole("Error sending response to client: " + e.getMessage());
+            }
+        } else if (message.getType() instanceof String) {
             String restaurantId = (String) message.getType();
             System.out.println("EchoServer: Fetching menu items for restaurant ID: " + restaurantId);
             Message<List<MenuItem>> response = DataBaseController.getInstance().loadItems(new Restaurant(restaurantId, null, null, null, null, null));
@@ -263,10 +690,11 @@ public class EchoServer extends AbstractServer {
             try {
                 if (response.getType() != null) {
                     System.out.println("EchoServer: Sending " + response.getType().size() + " menu items to client");
-                    client.sendToClient(new Message<>("GET_MENU_ITEMS_RESPONSE", response.getType()));
+                    sendCachedResponse(message, client, new Message<>("GET_MENU_ITEMS_RESPONSE", response.getType()),
+                            "GET_MENU_ITEMS_LIST:" + restaurantId, response.getType(), 0);
                 } else {
                     System.out.println("EchoServer: No menu items found or error occurred, sending null to client");
-                    client.sendToClient(new Message<>("GET_MENU_ITEMS_RESPONSE", null));
+                    sendResponse(message, client, new Message<>("GET_MENU_ITEMS_RESPONSE", null));
                 }
             } catch (IOException e) {
                 System.out.println("EchoServer: Error sending menu items to client: " + e.getMessage());
@@ -285,17 +713,19 @@ public class EchoServer extends AbstractServer {
      * and sends a confirmation or failure message back to the client.
      *
      * @param message The Message object containing the new order details
-     * @param client The ConnectionToClient object representing the client connection
+     * @param client The ClientConnection object representing the client connection
      */
-    private void handlePlaceOrder(Message<?> message, ConnectionToClient client) {
+    private void handlePlaceOrder(Message<?> message, ClientConnection client) {
         if (message.getType() instanceof Order) {
             Order newOrder = (Order) message.getType();
-            Message<String> response = DataBaseController.getInstance().newOrder(newOrder);
+            Message<String> response = DataBaseController.getInstance().placeOrder(newOrder);
             try {
                 if (response.getMessage().startsWith("New order registered successfully")) {
-                    client.sendToClient(new Message<>("ORDER_PLACED_SUCCESSFULLY", response.getMessage()));
+                    sendResponse(message, client, new Message<>("ORDER_PLACED_SUCCESSFULLY", response.getMessage()));
+                } else if (response.getMessage().startsWith("Out of stock")) {
+                    sendResponse(message, client, new Message<>("ORDER_OUT_OF_STOCK", response.getMessage()));
                 } else {
-                    client.sendToClient(new Message<>("ORDER_PLACEMENT_FAILED", response.getMessage()));
+                    sendResponse(message, client, new Message<>("ORDER_PLACEMENT_FAILED", response.getMessage()));
                 }
             } catch (IOException e) {
                 serverController.logToConsole("Error sending response to client: " + e.getMessage());
@@ -317,16 +747,62 @@ public class EchoServer extends AbstractServer {
      * @param message the message containing the customer ID for which to retrieve orders.
      * @param client  the client connection to which the response should be sent.
      */
-    private void handleGetCustomerOrders(Message<?> message, ConnectionToClient client) {
+    private void handleGetCustomerOrders(Message<?> message, ClientConnection client) {
         String customerId = (String) message.getType();
         Message<List<Order>> response = DataBaseController.getInstance().getCustomerOrders(customerId);
         try {
-            client.sendToClient(new Message<>("GET_CUSTOMER_ORDERS_RESPONSE", response.getType()));
+            sendResponse(message, client, new Message<>("GET_CUSTOMER_ORDERS_RESPONSE", response.getType()));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending customer orders to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles a request for one page of a customer's order history, most recent first.
+     *
+     * @param message The message containing the OrderPageRequest.
+     * @param client The connection from which the request originated.
+     */
+    private void handleGetCustomerOrdersPage(Message<?> message, ClientConnection client) {
+        OrderPageRequest request = limitPageSize((OrderPageRequest) message.getType());
+        Message<OrderPage> response = DataBaseController.getInstance().getCustomerOrdersPage(request);
+        try {
+            sendResponse(message, client, new Message<>("GET_CUSTOMER_ORDERS_PAGE_RESPONSE", response.getType()));
         } catch (IOException e) {
             serverController.logToConsole("Error sending customer orders to client: " + e.getMessage());
         }
     }
 
+    /**
+     * Handles a request for one page of a restaurant's open orders, oldest first.
+     *
+     * @param message The message containing the OrderPageRequest.
+     * @param client The connection from which the request originated.
+     */
+    private void handleGetRestaurantOrdersPage(Message<?> message, ClientConnection client) {
+        OrderPageRequest request = limitPageSize((OrderPageRequest) message.getType());
+        Message<OrderPage> response = DataBaseController.getInstance().getRestaurantOrdersPage(request);
+        try {
+            sendResponse(message, client, new Message<>("RESTAURANT_ORDERS_PAGE_RESPONSE", response.getType()));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending response to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the page size of a page request between 1 and the configured maximum.
+     *
+     * @param request The page request sent by the client.
+     * @return The request with its page size limited.
+     */
+    private static OrderPageRequest limitPageSize(OrderPageRequest request) {
+        int pageSize = Math.max(1, Math.min(request.getPageSize(), ServerConfig.MAX_ORDER_PAGE_SIZE));
+        if (pageSize != request.getPageSize()) {
+            request.setPageSize(pageSize);
+        }
+        return request;
+    }
+
 	 /**
 	 * Handles a request to retrieve a list of orders for a given restaurant.
 	 * This method expects the message type to be an integer representing the restaurant ID.
@@ -335,14 +811,14 @@ public class EchoServer extends AbstractServer {
 	 * @param message The incoming message containing the restaurant ID as an integer.
 	 * @param client The connection to the client.
 	 */
-	private void handleGetRestaurantOrders(Message<?> message, ConnectionToClient client) {
+	private void handleGetRestaurantOrders(Message<?> message, ClientConnection client) {
 	    String restaurantId = (String) message.getType();
 	    System.out.println("Fetching orders for restaurant ID: " + restaurantId);
 	    Restaurant restaurant = new Restaurant(restaurantId,null,null,null,null,null);
 		Message<List<Order>> response = DataBaseController.getInstance().handleGetRestaurantOrders(restaurant);
 		System.out.println("restaurant orders response: " + response);
 		try {
-	        client.sendToClient(new Message<>("RESTAURANT_ORDERS_RESPONSE",response.getType()));
+	        sendResponse(message, client, new Message<>("RESTAURANT_ORDERS_RESPONSE",response.getType()));
 	        System.out.println("Sent restaurant orders to client for restaurant ID: " + restaurantId);
 	    } catch (IOException e) {
 	        serverController.logToConsole("Error sending response to client: " + e.getMessage());
@@ -354,9 +830,9 @@ public class EchoServer extends AbstractServer {
 	 * This method updates the status of an order in the database and sends the result back to the client.
 	 *
 	 * @param message The Message object containing the order ID and new status
-	 * @param client The ConnectionToClient object representing the client connection
+	 * @param client The ClientConnection object representing the client connection
 	 */
-	private void handleUpdateOrderStatus(Message<?> message, ConnectionToClient client) {
+	private void handleUpdateOrderStatus(Message<?> message, ClientConnection client) {
 	    try {
 	        // Extract parameters from the message
 	        Object[] params = (Object[]) message.getType();
@@ -367,11 +843,11 @@ public class EchoServer extends AbstractServer {
 	        Message<String> response = DataBaseController.getInstance().handleUpdateOrderStatus(orderId, status);
 
 	        // Send the response back to the client
-	        client.sendToClient(new Message<>("UPDATE_ORDER_STATUS_RESPONSE", response.getMessage()));
+	        sendResponse(message, client, new Message<>("UPDATE_ORDER_STATUS_RESPONSE", response.getMessage()));
 	    } catch (ClassCastException e) {
 	        serverController.logToConsole("Error: Invalid data types in order status update request - " + e.getMessage());
 	        try {
-	            client.sendToClient(new Message<>("UPDATE_ORDER_STATUS_RESPONSE", "Invalid data types in the request."));
+	            sendResponse(message, client, new Message<>("UPDATE_ORDER_STATUS_RESPONSE", "Invalid data types in the request."));
 	        } catch (IOException ioException) {
 	            serverController.logToConsole("Error sending error message to client: " + ioException.getMessage());
 	        }
@@ -380,7 +856,7 @@ public class EchoServer extends AbstractServer {
 	    } catch (Exception e) {
 	        serverController.logToConsole("Unexpected error while updating order status: " + e.getMessage());
 	        try {
-	            client.sendToClient(new Message<>("UPDATE_ORDER_STATUS_RESPONSE", "Unexpected error occurred."));
+	            sendResponse(message, client, new Message<>("UPDATE_ORDER_STATUS_RESPONSE", "Unexpected error occurred."));
 	        } catch (IOException ioException) {
 	            serverController.logToConsole("Error sending error message to client: " + ioException.getMessage());
 	        }
@@ -396,23 +872,23 @@ public class EchoServer extends AbstractServer {
      * @param message The message containing the request details, including date range.
      * @param client The connection to the client that sent the request.
      */
-     private void handleQuarterlyReport(Message<?> message, ConnectionToClient client) {
+     private void handleQuarterlyReport(Message<?> message, ClientConnection client) {
      	Object[] params = (Object[]) message.getType();
          int quarter = (int) params[0];
          int year = (int) params[1];
          String branch = (String)params[2];
        
  		try {
- 			Map<String, Object>  reportData = DataBaseController.getInstance().getQuarterlyReportData(quarter, year,branch);
+ 			QuarterlyReport reportData = DataBaseController.getInstance().getQuarterlyReportData(quarter, year,branch);
  			
- 	        Message<Map<String, Object>> response = new Message<>("QuarterlyReportResponse", reportData);
+ 	        Message<QuarterlyReport> response = new Message<>("QuarterlyReportResponse", reportData);
  	        if(response!=null){
  	        	System.out.println("The Quarterly respone is not null ");
  	        }
  	       if(response.getType()!=null){
 	        	System.out.println("The Quarterly respone type is not null ");
 	        }
- 			client.sendToClient(response);
+ 			sendResponse(message, client, response);
 
  		} catch (IOException e) {
  	        serverController.logToConsole("Error sending income report to client: " + e.getMessage());
@@ -427,19 +903,19 @@ public class EchoServer extends AbstractServer {
     * @param message The message containing the request details, including date range.
     * @param client The connection to the client that sent the request.
     */
-    private void handlePerformenceReport(Message<?> message, ConnectionToClient client) {
+    private void handlePerformenceReport(Message<?> message, ClientConnection client) {
     	Object[] params = (Object[]) message.getType();
         LocalDate startDate = (LocalDate) params[0];
         LocalDate endDate = (LocalDate) params[1];
         String currentUser = (String)params[2];
         
 		try {
-			Map<String, Object>  reportData = DataBaseController.getInstance().generatePerformanceReport(startDate, endDate,currentUser);
-	        Message<Map<String, Object>> response = new Message<>("PerformanceReportResponse", reportData);
+			PerformanceReport reportData = DataBaseController.getInstance().generatePerformanceReport(startDate, endDate,currentUser);
+	        Message<PerformanceReport> response = new Message<>("PerformanceReportResponse", reportData);
 	        System.out.println("Got to send to client the response");
 
 	        System.out.println(reportData);
-			client.sendToClient(response);
+			sendResponse(message, client, response);
 
 		} catch (IOException e) {
 	        serverController.logToConsole("Error sending income report to client: " + e.getMessage());
@@ -455,16 +931,18 @@ public class EchoServer extends AbstractServer {
      * @param message The message containing the request details, including date range.
      * @param client The connection to the client that sent the request.
      */
-    private void handleOrderReport(Message<?> message, ConnectionToClient client) {
+    private void handleOrderReport(Message<?> message, ClientConnection client) {
     	Object[] params = (Object[]) message.getType();
         LocalDate startDate = (LocalDate) params[0];
         LocalDate endDate = (LocalDate) params[1];
         String currentUser = (String)params[2];
+        // Item lines are only sent to clients asking for them
+        boolean detail = params.length > 3 && Boolean.TRUE.equals(params[3]);
 
         // Generate the report
 		try {
-			Map<String, Object>  reportData = DataBaseController.getInstance().generateOrdersReport(startDate, endDate,currentUser);
-	        Message<Map<String, Object>> response = new Message<>("OrderReportResponse", reportData);
+			OrdersReport reportData = DataBaseController.getInstance().generateOrdersReport(startDate, endDate,currentUser, detail);
+	        Message<OrdersReport> response = new Message<>("OrderReportResponse", reportData);
 	        if(response!=null) {
 	        	System.out.println("The order report is not null");
 	        	
@@ -473,7 +951,7 @@ public class EchoServer extends AbstractServer {
 	        	System.out.println("The order report data is not null");
 
 	        }
-			client.sendToClient(response);
+			sendResponse(message, client, response);
 
 		} catch (SQLException e) {
 			  serverController.logToConsole("Error handling in SQL");
@@ -484,6 +962,35 @@ public class EchoServer extends AbstractServer {
 		}
     }
     
+    /**
+     * Handles a request for the same report of several branches, used by the CEO to
+     * compare branches. The branches are computed side by side and answered together;
+     * the response carries null if a branch could not be generated.
+     *
+     * @param message The message containing the report type, the date range and the branches.
+     * @param client The connection to the client that sent the request.
+     */
+    private void handleBranchReports(Message<?> message, ClientConnection client) {
+        Object[] params = (Object[]) message.getType();
+        String reportType = (String) params[0];
+        LocalDate startDate = (LocalDate) params[1];
+        LocalDate endDate = (LocalDate) params[2];
+        @SuppressWarnings("unchecked")
+        List<String> branches = (List<String>) params[3];
+
+        Map<String, Object> reports = null;
+        try {
+            reports = DataBaseController.getInstance().generateBranchReports(reportType, startDate, endDate, branches);
+        } catch (SQLException | IllegalArgumentException e) {
+            serverController.logToConsole("Error generating " + reportType + " reports of " + branches + ": " + e.getMessage());
+        }
+        try {
+            sendResponse(message, client, new Message<>("BranchReportsResponse", reports));
+        } catch (IOException e) {
+            serverController.logToConsole("Error sending branch reports to client: " + e.getMessage());
+        }
+    }
+
     /*
     * Handles the income report request from a client.
     * This method processes the request, retrieves the necessary data from the database,
@@ -492,17 +999,17 @@ public class EchoServer extends AbstractServer {
     * @param message The message containing the request details, including date range.
     * @param client The connection to the client that sent the request.
     */
-    private void handleIncomeReport(Message<?> message, ConnectionToClient client) {
+    private void handleIncomeReport(Message<?> message, ClientConnection client) {
     	 Object[] params = (Object[]) message.getType();
          LocalDate startDate = (LocalDate) params[0];
          LocalDate endDate = (LocalDate) params[1];
          String currentUser = (String)params[2];
 
          // Generate the report
-         Map<String, Object> reportData = DataBaseController.getInstance().generateIncomeReport(startDate, endDate,currentUser);
-         Message<Map<String, Object>> response = new Message<>("IncomeReportResponse", reportData);
+         IncomeReport reportData = DataBaseController.getInstance().generateIncomeReport(startDate, endDate,currentUser);
+         Message<IncomeReport> response = new Message<>("IncomeReportResponse", reportData);
          try {
-			client.sendToClient(response);
+			sendResponse(message, client, response);
 		} catch (IOException e) {
 	        serverController.logToConsole("Error sending income report to client: " + e.getMessage());
 
@@ -515,9 +1022,9 @@ public class EchoServer extends AbstractServer {
      * and sends a confirmation or failure message back to the client.
      *
      * @param message The Message object containing the menu item update details
-     * @param client The ConnectionToClient object representing the client connection
+     * @param client The ClientConnection object representing the client connection
      */
-    private void handleUpdateMenuItem(Message<?> message, ConnectionToClient client) {
+    private void handleUpdateMenuItem(Message<?> message, ClientConnection client) {
         if (message.getType() instanceof Object[]) {
             Object[] updateData = (Object[]) message.getType();
             int itemId = (int) updateData[0];
@@ -533,13 +1040,13 @@ public class EchoServer extends AbstractServer {
 
             Message<String> response = DataBaseController.getInstance().updateMenuItem(updatedItem);
             try {
-                client.sendToClient(response);
+                sendResponse(message, client, response);
             } catch (IOException e) {
                 e.printStackTrace();
             }
         } else {
             try {
-                client.sendToClient(new Message<>("UPDATE_FAILED", "Invalid update data"));
+                sendResponse(message, client, new Message<>("UPDATE_FAILED", "Invalid update data"));
             } catch (IOException e) {
                 e.printStackTrace();
             }
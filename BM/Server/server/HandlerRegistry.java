@@ -0,0 +1,177 @@
+package server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import entities.Message;
+
+/**
+ * Maps every {@link OpCode} to its handler and keeps per-operation statistics:
+ * number of calls, failures, handling time and, when the binary codec is in use,
+ * request and response sizes. Handlers are registered once at startup; afterwards
+ * the registry is only read, so dispatching needs no locking.
+ */
+public class HandlerRegistry {
+
+    /** The registered handlers with their statistics */
+    private final Map<OpCode, Registration> handlers = new EnumMap<>(OpCode.class);
+
+    /**
+     * Registers the handler of an operation.
+     *
+     * @param opCode The operation
+     * @param handler The handler of its requests
+     * @throws IllegalStateException if the operation already has a handler
+     */
+    public void register(OpCode opCode, RequestHandler handler) {
+        if (handlers.containsKey(opCode)) {
+            throw new IllegalStateException("Handler already registered for " + opCode);
+        }
+        handlers.put(opCode, new Registration(handler));
+    }
+
+    /**
+     * Runs the handler of a request and records its statistics.
+     *
+     * @param opCode The operation of the request
+     * @param message The request
+     * @param client The connection the request came from
+     * @param requestBytes Encoded size of the request, or -1 if unknown
+     * @return false if no handler is registered for the operation
+     */
+    public boolean dispatch(OpCode opCode, Message<?> message, ClientConnection client, int requestBytes) {
+        Registration registration = opCode == null ? null : handlers.get(opCode);
+        if (registration == null) {
+            return false;
+        }
+        OperationMetrics metrics = registration.metrics;
+        if (requestBytes >= 0) {
+            metrics.requestBytes.add(requestBytes);
+        }
+        long start = System.nanoTime();
+        try {
+            registration.handler.handle(message, client);
+        } catch (RuntimeException e) {
+            metrics.errors.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.calls.increment();
+            metrics.totalNanos.add(elapsed);
+            metrics.maxNanos.accumulate(elapsed);
+        }
+        return true;
+    }
+
+    /**
+     * Records the encoded size of a response sent for an operation.
+     *
+     * @param opCode The operation answered
+     * @param bytes The encoded size of the response
+     */
+    public void recordResponseBytes(OpCode opCode, int bytes) {
+        Registration registration = opCode == null ? null : handlers.get(opCode);
+        if (registration != null) {
+            registration.metrics.responseBytes.add(bytes);
+        }
+    }
+
+    /**
+     * Records a request that failed without throwing, for example because its response
+     * could not be sent.
+     *
+     * @param opCode The operation that failed
+     */
+    public void recordError(OpCode opCode) {
+        Registration registration = opCode == null ? null : handlers.get(opCode);
+        if (registration != null) {
+            registration.metrics.errors.increment();
+        }
+    }
+
+    /**
+     * Records a request that was refused because the server was busy.
+     *
+     * @param opCode The operation that was refused
+     */
+    public void recordRejected(OpCode opCode) {
+        Registration registration = opCode == null ? null : handlers.get(opCode);
+        if (registration != null) {
+            registration.metrics.rejected.increment();
+        }
+    }
+
+    /**
+     * Formats the statistics of every operation that was called or refused at least once.
+     *
+     * @return One line per operation
+     */
+    public String formatStatistics() {
+        StringBuilder sb = new StringBuilder("Request statistics:");
+        for (Map.Entry<OpCode, Registration> entry : handlers.entrySet()) {
+            OperationMetrics metrics = entry.getValue().metrics;
+            long calls = metrics.calls.sum();
+            long rejected = metrics.rejected.sum();
+            if (calls == 0 && rejected == 0) {
+                continue;
+            }
+            sb.append(String.format("%n  %-30s calls=%d errors=%d rejected=%d avg=%.1fms max=%.1fms in=%dB out=%dB",
+                    entry.getKey(), calls, metrics.errors.sum(), rejected,
+                    calls == 0 ? 0.0 : metrics.totalNanos.sum() / (double) calls / 1_000_000.0,
+                    metrics.maxNanos.get() / 1_000_000.0,
+                    metrics.requestBytes.sum(), metrics.responseBytes.sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A handler together with its statistics.
+     */
+    private static final class Registration {
+
+        /** The handler */
+        private final RequestHandler handler;
+
+        /** The statistics of the handler */
+        private final OperationMetrics metrics = new OperationMetrics();
+
+        /**
+         * Creates a registration.
+         *
+         * @param handler The handler
+         */
+        Registration(RequestHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Counters of one operation. LongAdder keeps the hot path cheap when many
+     * workers run the same operation at once.
+     */
+    private static final class OperationMetrics {
+
+        /** Number of completed calls */
+        private final LongAdder calls = new LongAdder();
+
+        /** Number of failed calls */
+        private final LongAdder errors = new LongAdder();
+
+        /** Number of requests refused because the server was busy */
+        private final LongAdder rejected = new LongAdder();
+
+        /** Total handling time in nanoseconds */
+        private final LongAdder totalNanos = new LongAdder();
+
+        /** Longest handling time in nanoseconds */
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        /** Total encoded size of the requests, when known */
+        private final LongAdder requestBytes = new LongAdder();
+
+        /** Total encoded size of the responses, when known */
+        private final LongAdder responseBytes = new LongAdder();
+    }
+}
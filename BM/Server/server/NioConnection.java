@@ -0,0 +1,306 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import entities.MessageCodec;
+
+/**
+ * A client connection of the NIO transport.
+ * Each message travels in its own frame: a 4 byte big-endian length followed by either
+ * the Java serialization of the message or, once negotiated, a binary codec frame
+ * (see {@link MessageCodec}), which is passed on as a byte array. Reading happens on the owning event loop thread
+ * into a buffer borrowed from the pool only while bytes are pending; writes may come
+ * from any thread and are queued until the socket can take them.
+ */
+public class NioConnection implements ClientConnection {
+
+    /** Number of bytes of the length prefix of a frame */
+    static final int FRAME_HEADER_BYTES = 4;
+
+    /** The socket of the client */
+    private final SocketChannel channel;
+
+    /** The event loop that owns this connection */
+    private final NioServer.EventLoop eventLoop;
+
+    /** The server that accepted this connection */
+    private final NioServer server;
+
+    /** The address of the client, kept because it is no longer available once the socket is closed */
+    private final InetAddress address;
+
+    /** The selection key of the channel, set once the event loop registered it */
+    private SelectionKey key;
+
+    /** Pooled buffer holding bytes read but not consumed yet, or null. Event loop thread only */
+    private ByteBuffer readBuffer;
+
+    /** Body of the frame being received, or null between frames. Event loop thread only */
+    private byte[] frame;
+
+    /** Number of bytes of the current frame received so far. Event loop thread only */
+    private int frameFilled;
+
+    /** Encoded frames waiting to be written, guarded by itself */
+    private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+    /** Whether the connection was closed */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Creates a connection for an accepted socket.
+     *
+     * @param channel The socket of the client, in non-blocking mode
+     * @param eventLoop The event loop that will own the connection
+     * @param server The server that accepted the connection
+     */
+    NioConnection(SocketChannel channel, NioServer.EventLoop eventLoop, NioServer server) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.server = server;
+        this.address = channel.socket().getInetAddress();
+    }
+
+    /**
+     * Returns the socket of the client.
+     *
+     * @return The socket channel
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Called by the event loop once the channel is registered with its selector.
+     *
+     * @param key The selection key of the channel
+     */
+    void registered(SelectionKey key) {
+        this.key = key;
+        synchronized (writeQueue) {
+            if (!writeQueue.isEmpty()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    /**
+     * Reads the available bytes and delivers every complete frame to the message handler.
+     * Called on the event loop thread when the socket is readable.
+     */
+    void onReadable() {
+        if (readBuffer == null) {
+            readBuffer = server.getBufferPool().acquire();
+        }
+        try {
+            if (channel.read(readBuffer) < 0) {
+                closeQuietly();
+                return;
+            }
+            readBuffer.flip();
+            while (true) {
+                if (frame == null) {
+                    if (readBuffer.remaining() < FRAME_HEADER_BYTES) {
+                        break;
+                    }
+                    int length = readBuffer.getInt();
+                    if (length <= 0 || length > ServerConfig.NIO_MAX_FRAME_BYTES) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    frame = new byte[length];
+                    frameFilled = 0;
+                }
+                int chunk = Math.min(readBuffer.remaining(), frame.length - frameFilled);
+                readBuffer.get(frame, frameFilled, chunk);
+                frameFilled += chunk;
+                if (frameFilled < frame.length) {
+                    break;
+                }
+                byte[] complete = frame;
+                frame = null;
+                server.getHandler().handleMessageFromClient(decodeFrame(complete), this);
+            }
+            readBuffer.compact();
+            if (readBuffer.position() == 0) {
+                server.getBufferPool().release(readBuffer);
+                readBuffer = null;
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            if (!closed.get()) {
+                NioServer.log("Closing connection " + this + ": " + e.getMessage());
+            }
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Writes queued frames until the queue is empty or the socket buffer is full.
+     * Called on the event loop thread when the socket is writable.
+     */
+    void onWritable() {
+        try {
+            synchronized (writeQueue) {
+                while (!writeQueue.isEmpty()) {
+                    ByteBuffer head = writeQueue.peek();
+                    channel.write(head);
+                    if (head.hasRemaining()) {
+                        return;
+                    }
+                    writeQueue.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Queues a message for sending. Safe to call from any thread.
+     *
+     * @param msg The object to send
+     * @throws IOException if the connection is closed or the message cannot be serialized
+     */
+    @Override
+    public void sendToClient(Object msg) throws IOException {
+        if (closed.get()) {
+            throw new SocketException("socket does not exist");
+        }
+        boolean wasIdle;
+        if (msg instanceof PreEncodedFrame) {
+            // The shared body is written from its own array, without copying it into the frame
+            PreEncodedFrame frame = (PreEncodedFrame) msg;
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES + frame.getHeader().length);
+            header.putInt(frame.length()).put(frame.getHeader()).flip();
+            synchronized (writeQueue) {
+                wasIdle = writeQueue.isEmpty();
+                writeQueue.add(header);
+                writeQueue.add(ByteBuffer.wrap(frame.getBody()).asReadOnlyBuffer());
+            }
+        } else {
+            ByteBuffer encoded = encodeFrame(msg);
+            synchronized (writeQueue) {
+                wasIdle = writeQueue.isEmpty();
+                writeQueue.add(encoded);
+            }
+        }
+        if (wasIdle) {
+            eventLoop.execute(this::enableWrite);
+        }
+    }
+
+    /**
+     * Asks the selector to report when the socket is writable. Event loop thread only.
+     */
+    private void enableWrite() {
+        if (key != null && key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return address;
+    }
+
+    /**
+     * Closes the socket and notifies the server. Later calls do nothing.
+     *
+     * @throws IOException if the socket cannot be closed cleanly
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.close();
+        } finally {
+            synchronized (writeQueue) {
+                writeQueue.clear();
+            }
+            eventLoop.execute(this::releaseReadBuffer);
+            server.connectionClosed(this);
+        }
+    }
+
+    /**
+     * Closes the connection, ignoring any error.
+     */
+    void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The connection is going away anyway
+        }
+    }
+
+    /**
+     * Gives the read buffer back to the pool. Event loop thread only.
+     */
+    private void releaseReadBuffer() {
+        if (readBuffer != null) {
+            server.getBufferPool().release(readBuffer);
+            readBuffer = null;
+        }
+        frame = null;
+    }
+
+    /**
+     * Serializes a message into a frame ready to be written.
+     *
+     * @param msg The message to encode
+     * @return The frame, positioned at its first byte
+     * @throws IOException if the message cannot be serialized
+     */
+    static ByteBuffer encodeFrame(Object msg) throws IOException {
+        if (msg instanceof byte[]) {
+            byte[] body = (byte[]) msg;
+            ByteBuffer encoded = ByteBuffer.allocate(FRAME_HEADER_BYTES + body.length);
+            encoded.putInt(body.length).put(body).flip();
+            return encoded;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        bytes.write(new byte[FRAME_HEADER_BYTES]);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(msg);
+        }
+        ByteBuffer encoded = ByteBuffer.wrap(bytes.toByteArray());
+        encoded.putInt(0, encoded.capacity() - FRAME_HEADER_BYTES);
+        return encoded;
+    }
+
+    /**
+     * Deserializes the body of a frame. Binary codec frames are returned as they are.
+     *
+     * @param body The frame body, without the length prefix
+     * @return The decoded message, or the body itself for a binary codec frame
+     * @throws IOException if the body is not a valid serialized object
+     * @throws ClassNotFoundException if the class of the message is unknown
+     */
+    static Object decodeFrame(byte[] body) throws IOException, ClassNotFoundException {
+        if (MessageCodec.isBinaryFrame(body)) {
+            return body;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body))) {
+            return in.readObject();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return address == null ? "NioConnection[closed]" : address.getHostAddress();
+    }
+}
@@ -0,0 +1,326 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import controller.ServerController;
+
+/**
+ * A server transport built on java.nio selectors, used instead of the OCSF
+ * thread-per-client model when the server must hold many idle connections.
+ * One acceptor thread accepts sockets and hands them round robin to a small number
+ * of event loop threads, each multiplexing its connections on one Selector.
+ * Messages are exchanged as length-prefixed frames (see {@link NioConnection}) and
+ * delivered to the same {@link ClientMessageHandler} contract EchoServer implements
+ * for OCSF clients.
+ */
+public class NioServer {
+
+    /** Transport name of the OCSF thread-per-client server */
+    public static final String TRANSPORT_OCSF = "ocsf";
+
+    /** Transport name of this selector based server */
+    public static final String TRANSPORT_NIO = "nio";
+
+    /** The port the server listens on */
+    private final int port;
+
+    /** Receives the messages and disconnections of the clients */
+    private final ClientMessageHandler handler;
+
+    /** The event loops the connections are spread over */
+    private final EventLoop[] eventLoops;
+
+    /** Read buffers shared by all the connections */
+    private final BufferPool bufferPool;
+
+    /** The connections currently open */
+    private final Set<NioConnection> connections = ConcurrentHashMap.newKeySet();
+
+    /** Index of the event loop that receives the next accepted connection */
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    /** The listening socket */
+    private ServerSocketChannel serverChannel;
+
+    /** Whether the server is accepting connections */
+    private volatile boolean running;
+
+    /**
+     * Creates a NIO server. Nothing is opened until {@link #start()} is called.
+     *
+     * @param port The port to listen on
+     * @param eventLoopCount Number of event loop threads
+     * @param handler Receives the messages of the clients
+     */
+    public NioServer(int port, int eventLoopCount, ClientMessageHandler handler) {
+        this.port = port;
+        this.handler = handler;
+        this.eventLoops = new EventLoop[Math.max(1, eventLoopCount)];
+        this.bufferPool = new BufferPool(ServerConfig.NIO_BUFFER_SIZE, ServerConfig.NIO_BUFFER_POOL_SIZE);
+    }
+
+    /**
+     * Opens the listening socket and starts the acceptor and event loop threads.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), 100);
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop("nio-event-loop-" + (i + 1));
+            eventLoops[i].start();
+        }
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "nio-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accepts sockets until the server is closed.
+     */
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = eventLoops[Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length)];
+                NioConnection connection = new NioConnection(channel, loop, this);
+                connections.add(connection);
+                loop.register(connection);
+            } catch (AsynchronousCloseException e) {
+                return;
+            } catch (IOException e) {
+                if (running) {
+                    log("Error accepting a client connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting clients, closes every open connection and stops the event loops.
+     *
+     * @throws IOException if the listening socket cannot be closed cleanly
+     */
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverChannel.close();
+        } finally {
+            for (NioConnection connection : connections) {
+                connection.closeQuietly();
+            }
+            for (EventLoop loop : eventLoops) {
+                loop.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Called by a connection when it is closed, exactly once per connection.
+     *
+     * @param connection The closed connection
+     */
+    void connectionClosed(NioConnection connection) {
+        if (connections.remove(connection)) {
+            handler.connectionClosed(connection);
+        }
+    }
+
+    /**
+     * Returns the handler receiving the messages of the clients.
+     *
+     * @return The message handler
+     */
+    ClientMessageHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Returns the pool of read buffers shared by the connections.
+     *
+     * @return The buffer pool
+     */
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Returns the number of clients currently connected.
+     *
+     * @return The number of open connections
+     */
+    public int getNumberOfClients() {
+        return connections.size();
+    }
+
+    /**
+     * Returns the number of event loop threads.
+     *
+     * @return The event loop count
+     */
+    public int getEventLoopCount() {
+        return eventLoops.length;
+    }
+
+    /**
+     * Logs a message to the server console if a controller is available.
+     *
+     * @param message The message to log
+     */
+    static void log(String message) {
+        ServerController.log(EchoServer.serverController, message);
+    }
+
+    /**
+     * Logs a failure to the server console if a controller is available.
+     *
+     * @param message What failed
+     * @param error The cause of the failure
+     */
+    static void log(String message, Throwable error) {
+        ServerController.log(EchoServer.serverController, message, error);
+    }
+
+    /**
+     * A thread multiplexing a set of connections on one Selector.
+     * Registration and interest changes requested by other threads are queued as tasks
+     * and run by the loop itself, so the selector is only ever touched from its own thread.
+     */
+    final class EventLoop implements Runnable {
+
+        /** The selector of this loop */
+        private final Selector selector;
+
+        /** The thread running this loop */
+        private final Thread thread;
+
+        /** Work handed to the loop by other threads */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        /** Whether the loop keeps running */
+        private volatile boolean active = true;
+
+        /**
+         * Creates an event loop.
+         *
+         * @param name The name of the loop thread
+         * @throws IOException if the selector cannot be opened
+         */
+        EventLoop(String name) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Starts the loop thread.
+         */
+        void start() {
+            thread.start();
+        }
+
+        /**
+         * Runs a task on the loop thread.
+         *
+         * @param task The task to run
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Registers a newly accepted connection with this loop.
+         *
+         * @param connection The connection to register
+         */
+        void register(NioConnection connection) {
+            execute(() -> {
+                try {
+                    connection.registered(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+                } catch (ClosedChannelException e) {
+                    connection.closeQuietly();
+                }
+            });
+        }
+
+        /**
+         * Stops the loop; the selector is closed by the loop thread on its way out.
+         */
+        void shutdown() {
+            active = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (active) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (RuntimeException | Error e) {
+                            log("Task failed on NIO event loop " + thread.getName(), e);
+                        }
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (CancelledKeyException e) {
+                            connection.closeQuietly();
+                        } catch (RuntimeException | Error e) {
+                            // Only this connection is dropped; the loop keeps serving the others
+                            log("Error on connection " + connection, e);
+                            connection.closeQuietly();
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log("NIO event loop " + thread.getName() + " stopped: " + e);
+            } finally {
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // The loop is terminating anyway
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import ocsf.server.ConnectionToClient;
+
+/**
+ * Adapts an OCSF ConnectionToClient to the ClientConnection interface.
+ */
+public class OcsfClientConnection implements ClientConnection {
+
+    /** The wrapped OCSF connection */
+    private final ConnectionToClient connection;
+
+    /**
+     * Wraps an OCSF connection.
+     *
+     * @param connection The connection to wrap
+     */
+    public OcsfClientConnection(ConnectionToClient connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Sends an object to the client.
+     * OCSF writes straight to the connection's ObjectOutputStream, so concurrent
+     * writers are serialized here. A pre-encoded frame is sent as one byte array,
+     * like any other binary frame.
+     *
+     * @param msg The object to send
+     * @throws IOException if the object cannot be sent
+     */
+    @Override
+    public void sendToClient(Object msg) throws IOException {
+        if (msg instanceof PreEncodedFrame) {
+            msg = ((PreEncodedFrame) msg).toByteArray();
+        }
+        synchronized (connection) {
+            connection.sendToClient(msg);
+        }
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return connection.getInetAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    @Override
+    public String toString() {
+        return connection.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import entities.MessageCodec;
+
+/**
+ * The requests the server understands, identified on the wire by their message name.
+ * Read-only operations may be pipelined: when they carry a request id they run alongside
+ * the other pipelined requests of the same client and may answer out of order.
+ * Sheddable operations are the first to be refused with SERVER_BUSY when the server is
+ * loaded, so order placement keeps its latency while reports wait.
+ */
+public enum OpCode {
+
+    CODEC_HELLO(MessageCodec.HELLO, false),
+    LOGIN("LOGIN", false),
+    LOGOUT("LOGOUT", false),
+    REPORT_MANAGEMENT("REPORT_MANAGEMENT", false),
+    NEW_CUSTOMER_REGISTRATION("NEW_CUSTOMER_REGISTRATION", false),
+    GET_RESTAURANTS("GET_RESTAURANTS", true),
+    GET_MENU_ITEMS("GET_MENU_ITEMS", true),
+    PLACE_ORDER("PLACE_ORDER", false),
+    GET_CUSTOMER_ORDERS("GET_CUSTOMER_ORDERS", true),
+    RESTAURANT_ORDERS("RESTAURANT_ORDERS", true),
+    GET_CUSTOMER_ORDERS_PAGE("GET_CUSTOMER_ORDERS_PAGE", true),
+    RESTAURANT_ORDERS_PAGE("RESTAURANT_ORDERS_PAGE", true),
+    UPDATE_ORDER_STATUS("UPDATE_ORDER_STATUS", false),
+    INCOME_REPORT("IncomeReport", true, true),
+    ORDERS_REPORT("OrdersReport", true, true),
+    PERFORMANCE_REPORT("PerformanceReport", true, true),
+    QUARTERLY_REPORT("QuarterlyReport", true, true),
+    BRANCH_REPORTS("BranchReports", true, true),
+    UPDATE_MENU_ITEM("UPDATE_MENU_ITEM", false),
+    SUBSCRIBE_RESTAURANT_ORDERS("SUBSCRIBE_RESTAURANT_ORDERS", false),
+    UNSUBSCRIBE_RESTAURANT_ORDERS("UNSUBSCRIBE_RESTAURANT_ORDERS", false);
+
+    /** Operations by message name */
+    private static final Map<String, OpCode> BY_MESSAGE = new HashMap<>();
+
+    static {
+        for (OpCode opCode : values()) {
+            BY_MESSAGE.put(opCode.message, opCode);
+        }
+    }
+
+    /** The message name used on the wire */
+    private final String message;
+
+    /** Whether the operation only reads data */
+    private final boolean readOnly;
+
+    /** Whether the operation is refused first when the server is loaded */
+    private final boolean sheddable;
+
+    /**
+     * Creates an operation that is not shed before the others.
+     *
+     * @param message The message name used on the wire
+     * @param readOnly Whether the operation only reads data
+     */
+    OpCode(String message, boolean readOnly) {
+        this(message, readOnly, false);
+    }
+
+    /**
+     * Creates an operation.
+     *
+     * @param message The message name used on the wire
+     * @param readOnly Whether the operation only reads data
+     * @param sheddable Whether the operation is refused first when the server is loaded
+     */
+    OpCode(String message, boolean readOnly, boolean sheddable) {
+        this.message = message;
+        this.readOnly = readOnly;
+        this.sheddable = sheddable;
+    }
+
+    /**
+     * Returns the message name used on the wire.
+     *
+     * @return The message name
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks whether the operation only reads data and may therefore be pipelined.
+     *
+     * @return true for read-only operations
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Checks whether the operation is refused first when the server is loaded.
+     *
+     * @return true for expensive operations that can wait, such as reports
+     */
+    public boolean isSheddable() {
+        return sheddable;
+    }
+
+    /**
+     * Finds the operation of a message name.
+     *
+     * @param message The message name
+     * @return The operation, or null if the name is unknown
+     */
+    public static OpCode fromMessage(String message) {
+        return message == null ? null : BY_MESSAGE.get(message);
+    }
+}
@@ -0,0 +1,245 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import controller.ServerController;
+import database.OrderEventListener;
+import entities.Message;
+import entities.Order;
+
+/**
+ * Pushes order changes to the restaurant terminals that subscribed to them.
+ * A terminal subscribes to its restaurant id and then receives an
+ * {@link #ORDER_CREATED} or {@link #ORDER_STATUS_CHANGED} message, carrying the order,
+ * as soon as DataBaseController commits a change to one of the restaurant's orders.
+ * Pushed messages have request id 0, so clients tell them apart from responses.
+ * <p>
+ * The messages are not sent on the thread that committed the change: every connection
+ * has its own send queue, drained by a fixed pool of sender threads, so a terminal that
+ * stops reading only delays its own messages. A terminal whose queue grows past
+ * {@link ServerConfig#ORDER_EVENT_QUEUE_LIMIT} has missed changes, so its connection is
+ * closed: the terminal reconnects and reloads its orders instead of silently showing
+ * stale ones, and the sender blocked on it is released.
+ */
+public class OrderEventBroadcaster implements OrderEventListener {
+
+    /** Message pushed when an order is placed */
+    public static final String ORDER_CREATED = "ORDER_CREATED";
+
+    /** Message pushed when the status of an order changes */
+    public static final String ORDER_STATUS_CHANGED = "ORDER_STATUS_CHANGED";
+
+    /** The server used to send the pushed messages in each client's codec */
+    private final EchoServer server;
+
+    /** Subscribed connections by restaurant id */
+    private final Map<String, Set<ClientConnection>> subscribers = new ConcurrentHashMap<>();
+
+    /** The send queues of the subscribed connections */
+    private final Map<ClientConnection, SendQueue> queues = new ConcurrentHashMap<>();
+
+    /** Runs the sender tasks; a connection has at most one running at a time */
+    private final ExecutorService senders;
+
+    /** Maximum number of messages waiting in one send queue */
+    private final int queueLimit;
+
+    /**
+     * Creates a broadcaster.
+     *
+     * @param server The server used to send the pushed messages
+     * @param queueLimit Maximum number of messages waiting for one connection
+     * @param senderThreads Number of threads pushing the messages
+     */
+    public OrderEventBroadcaster(EchoServer server, int queueLimit, int senderThreads) {
+        this.server = server;
+        this.queueLimit = Math.max(1, queueLimit);
+        AtomicInteger counter = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "order-event-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribes a connection to the order changes of a restaurant.
+     *
+     * @param restaurantId The restaurant id
+     * @param client The subscribing connection
+     */
+    public void subscribe(String restaurantId, ClientConnection client) {
+        subscribers.computeIfAbsent(restaurantId, id -> ConcurrentHashMap.newKeySet()).add(client);
+    }
+
+    /**
+     * Cancels a subscription.
+     *
+     * @param restaurantId The restaurant id
+     * @param client The connection to unsubscribe
+     */
+    public void unsubscribe(String restaurantId, ClientConnection client) {
+        subscribers.computeIfPresent(restaurantId, (id, clients) -> {
+            clients.remove(client);
+            return clients.isEmpty() ? null : clients;
+        });
+    }
+
+    /**
+     * Removes every subscription of a closed connection.
+     *
+     * @param client The closed connection
+     */
+    public void connectionClosed(ClientConnection client) {
+        for (String restaurantId : subscribers.keySet()) {
+            unsubscribe(restaurantId, client);
+        }
+        SendQueue queue = queues.remove(client);
+        if (queue != null) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Closes a connection whose messages cannot be delivered any more.
+     *
+     * @param client The connection
+     * @param reason Why the connection is closed, for the server console
+     */
+    private void drop(ClientConnection client, String reason) {
+        connectionClosed(client);
+        ServerController.log(EchoServer.serverController, "Closing " + client + ": " + reason);
+        try {
+            client.close();
+        } catch (IOException e) {
+            // The connection is going away anyway
+        }
+    }
+
+    /**
+     * Stops the sender threads; messages not sent yet are dropped.
+     */
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    @Override
+    public void orderCreated(Order order) {
+        publish(ORDER_CREATED, order);
+    }
+
+    @Override
+    public void orderStatusChanged(Order order) {
+        publish(ORDER_STATUS_CHANGED, order);
+    }
+
+    /**
+     * Queues an order change for every subscriber of the order's restaurant.
+     *
+     * @param event The message name of the change
+     * @param order The changed order
+     */
+    private void publish(String event, Order order) {
+        Set<ClientConnection> clients = subscribers.get(order.getRestaurantId());
+        if (clients == null) {
+            return;
+        }
+        Message<Order> message = new Message<>(event, order);
+        for (ClientConnection client : clients) {
+            queues.computeIfAbsent(client, SendQueue::new).offer(message);
+        }
+    }
+
+    /**
+     * The messages waiting to be pushed to one connection, in commit order.
+     */
+    private final class SendQueue implements Runnable {
+
+        /** The connection the messages are pushed to */
+        private final ClientConnection client;
+
+        /** The waiting messages, guarded by this object */
+        private final Deque<Message<Order>> messages = new ArrayDeque<>();
+
+        /** Whether a sender task is scheduled or running, guarded by this object */
+        private boolean draining;
+
+        /**
+         * Creates the send queue of a connection.
+         *
+         * @param client The connection
+         */
+        SendQueue(ClientConnection client) {
+            this.client = client;
+        }
+
+        /**
+         * Adds a message and schedules a sender task if none is running.
+         * A connection that has fallen too far behind is closed instead.
+         *
+         * @param message The message to push
+         */
+        void offer(Message<Order> message) {
+            synchronized (this) {
+                if (messages.size() < queueLimit) {
+                    messages.add(message);
+                    if (draining) {
+                        return;
+                    }
+                    draining = true;
+                } else {
+                    message = null;
+                }
+            }
+            if (message == null) {
+                drop(client, "more than " + queueLimit + " order changes waiting to be sent");
+                return;
+            }
+            try {
+                senders.execute(this);
+            } catch (RuntimeException e) {
+                clear();
+            }
+        }
+
+        /**
+         * Drops the waiting messages.
+         */
+        synchronized void clear() {
+            messages.clear();
+            draining = false;
+        }
+
+        /**
+         * Pushes the waiting messages until the queue is empty.
+         * A connection that cannot be reached is closed.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Message<Order> message;
+                synchronized (this) {
+                    message = messages.poll();
+                    if (message == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    server.push(client, message);
+                } catch (IOException | RuntimeException e) {
+                    drop(client, "pushing an order change failed: " + e);
+                    return;
+                }
+            }
+        }
+    }
+}
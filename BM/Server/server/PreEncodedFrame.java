@@ -0,0 +1,65 @@
+package server;
+
+/**
+ * A binary codec frame made of a per-request header and a body encoded once and
+ * shared by every client the same response is sent to. Transports write the two
+ * parts one after the other without re-encoding the body.
+ */
+public final class PreEncodedFrame {
+
+    /** The frame start, up to and including the request id */
+    private final byte[] header;
+
+    /** The message name and payload, shared and never modified */
+    private final byte[] body;
+
+    /**
+     * Creates a frame.
+     *
+     * @param header The frame start, from MessageCodec.encodeHeader
+     * @param body The message name and payload, from MessageCodec.encodeBody
+     */
+    public PreEncodedFrame(byte[] header, byte[] body) {
+        this.header = header;
+        this.body = body;
+    }
+
+    /**
+     * Returns the frame start.
+     *
+     * @return The header bytes
+     */
+    public byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the shared body. Callers must not modify it.
+     *
+     * @return The body bytes
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the size of the whole frame.
+     *
+     * @return The number of bytes of header and body
+     */
+    public int length() {
+        return header.length + body.length;
+    }
+
+    /**
+     * Copies the frame into one array, for transports that send whole arrays.
+     *
+     * @return The frame bytes
+     */
+    public byte[] toByteArray() {
+        byte[] frame = new byte[length()];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(body, 0, frame, header.length, body.length);
+        return frame;
+    }
+}
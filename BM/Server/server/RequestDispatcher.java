@@ -0,0 +1,349 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs client requests on worker threads instead of the OCSF connection reader threads,
+ * so a slow database call never blocks the socket it came from.
+ * Requests from different connections run in parallel. Requests from the same connection
+ * run in arrival order, except that read-only requests tagged with a request id may be
+ * pipelined: up to a configurable window of them run at once and answer out of order.
+ * Admission is bounded: each connection may have a limited number of requests queued
+ * or running, and the whole server a limited number in flight. Sheddable requests are
+ * refused once the server reaches a lower threshold, keeping headroom for the rest.
+ */
+public class RequestDispatcher {
+
+    /** Dispatch mode that starts one virtual thread per request (Java 21 and later) */
+    public static final String MODE_VIRTUAL = "virtual";
+
+    /** Dispatch mode that uses a fixed pool of platform threads */
+    public static final String MODE_PLATFORM = "platform";
+
+    /** The executor that runs the requests */
+    private final ExecutorService executor;
+
+    /** The mode actually in use, after falling back if virtual threads are unavailable */
+    private final String mode;
+
+    /** Per-connection queues that keep requests from the same client in order */
+    private final Map<ClientConnection, Lane> lanes = new ConcurrentHashMap<>();
+
+    /** Maximum number of pipelined requests of one connection running at the same time */
+    private final int window;
+
+    /** Maximum number of requests of one connection queued or running */
+    private final int maxQueuedPerConnection;
+
+    /** Maximum number of requests queued or running in the whole server */
+    private final int maxInFlight;
+
+    /** Number of requests in flight above which sheddable requests are refused */
+    private final int sheddableLimit;
+
+    /** Number of requests currently queued or running in the whole server */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param requestedMode {@link #MODE_VIRTUAL} or {@link #MODE_PLATFORM}
+     * @param platformThreads Number of worker threads used in platform mode
+     * @param window Maximum number of pipelined requests of one connection running at once
+     * @param maxQueuedPerConnection Maximum number of requests of one connection queued or running
+     * @param maxInFlight Maximum number of requests queued or running in the whole server
+     * @param sheddableLimit Number of requests in flight above which sheddable requests are refused
+     */
+    public RequestDispatcher(String requestedMode, int platformThreads, int window,
+                             int maxQueuedPerConnection, int maxInFlight, int sheddableLimit) {
+        this.window = Math.max(1, window);
+        this.maxQueuedPerConnection = Math.max(1, maxQueuedPerConnection);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.sheddableLimit = Math.max(1, Math.min(sheddableLimit, this.maxInFlight));
+        ExecutorService virtualExecutor = null;
+        if (!MODE_PLATFORM.equalsIgnoreCase(requestedMode)) {
+            virtualExecutor = createVirtualThreadExecutor();
+        }
+        if (virtualExecutor != null) {
+            executor = virtualExecutor;
+            mode = MODE_VIRTUAL;
+        } else {
+            executor = Executors.newFixedThreadPool(Math.max(1, platformThreads), new WorkerThreadFactory());
+            mode = MODE_PLATFORM;
+        }
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor through reflection, so the server still
+     * runs on Java versions that do not have virtual threads.
+     *
+     * @return The executor, or null if virtual threads are not supported
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Queues a request of the given connection for execution.
+     * The request runs only after all the requests queued before it have finished.
+     *
+     * @param client The connection the request came from
+     * @param task The work to run for the request
+     * @return false if the request was refused because a limit was reached
+     */
+    public boolean dispatch(ClientConnection client, Runnable task) {
+        return dispatch(client, task, false, false);
+    }
+
+    /**
+     * Queues a request of the given connection for execution, unless the connection or
+     * the server already has too much work queued.
+     *
+     * @param client The connection the request came from
+     * @param task The work to run for the request
+     * @param concurrent Whether the request may run alongside other pipelined requests
+     *                   of the same connection and complete out of order
+     * @param sheddable Whether the request is refused at the lower, sheddable limit
+     * @return false if the request was refused because a limit was reached
+     */
+    public boolean dispatch(ClientConnection client, Runnable task, boolean concurrent, boolean sheddable) {
+        int limit = sheddable ? sheddableLimit : maxInFlight;
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        if (!lanes.computeIfAbsent(client, c -> new Lane()).submit(task, concurrent)) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the queue of a connection that was closed.
+     * Requests already queued for it still run, their responses simply fail to send.
+     *
+     * @param client The closed connection
+     */
+    public void connectionClosed(ClientConnection client) {
+        lanes.remove(client);
+    }
+
+    /**
+     * Stops accepting new requests. Requests already running are allowed to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        lanes.clear();
+    }
+
+    /**
+     * Returns the pipelining window of a connection.
+     *
+     * @return The maximum number of pipelined requests of one connection running at once
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the number of requests queued or running in the whole server.
+     *
+     * @return The number of requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the dispatch mode in use.
+     *
+     * @return {@link #MODE_VIRTUAL} or {@link #MODE_PLATFORM}
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Runs a request and logs anything it throws, so one bad message cannot
+     * stop the requests queued behind it.
+     *
+     * @param task The request to run
+     */
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            if (EchoServer.serverController != null) {
+                EchoServer.serverController.logToConsole("Error while handling request: " + e);
+            }
+        }
+    }
+
+    /**
+     * A first-in first-out queue of the requests of one connection.
+     * Requests marked as concurrent may run side by side, up to the pipelining window,
+     * and complete in any order; the client tells their responses apart by request id.
+     * Any other request acts as a barrier: it starts only after everything queued before it
+     * has finished, and nothing queued after it starts until it is done.
+     */
+    private final class Lane {
+
+        /** Requests waiting to run */
+        private final Queue<Task> tasks = new ArrayDeque<>();
+
+        /** Number of requests of this lane currently scheduled or running */
+        private int running;
+
+        /** Whether the request currently running is a barrier */
+        private boolean barrierRunning;
+
+        /**
+         * Adds a request to the lane and starts every request that is allowed to run.
+         *
+         * @param task The request to add
+         * @param concurrent Whether the request may run alongside other requests of the lane
+         * @return false if the lane is full and the request was not added
+         */
+        boolean submit(Runnable task, boolean concurrent) {
+            List<Task> ready;
+            synchronized (this) {
+                if (tasks.size() + running >= maxQueuedPerConnection) {
+                    return false;
+                }
+                tasks.add(new Task(task, concurrent));
+                ready = takeReady();
+            }
+            schedule(ready);
+            return true;
+        }
+
+        /**
+         * Removes from the queue the requests that may start now.
+         * Must be called while holding the lane lock.
+         *
+         * @return The requests to schedule
+         */
+        private List<Task> takeReady() {
+            List<Task> ready = new ArrayList<>();
+            while (!barrierRunning && !tasks.isEmpty()) {
+                Task head = tasks.peek();
+                if (head.concurrent) {
+                    if (running >= window) {
+                        break;
+                    }
+                } else if (running > 0) {
+                    break;
+                } else {
+                    barrierRunning = true;
+                }
+                tasks.poll();
+                running++;
+                ready.add(head);
+            }
+            return ready;
+        }
+
+        /**
+         * Hands requests to the executor.
+         *
+         * @param ready The requests to run
+         */
+        private void schedule(List<Task> ready) {
+            for (Task task : ready) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    synchronized (this) {
+                        inFlight.addAndGet(-(tasks.size() + running));
+                        tasks.clear();
+                        running = 0;
+                        barrierRunning = false;
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Records the end of a request and starts the requests it was holding back.
+         *
+         * @param task The request that finished
+         */
+        private void finished(Task task) {
+            inFlight.decrementAndGet();
+            List<Task> ready;
+            synchronized (this) {
+                running--;
+                if (!task.concurrent) {
+                    barrierRunning = false;
+                }
+                ready = takeReady();
+            }
+            schedule(ready);
+        }
+
+        /**
+         * A queued request together with its scheduling mode.
+         */
+        private final class Task implements Runnable {
+
+            /** The work to run for the request */
+            private final Runnable work;
+
+            /** Whether the request may run alongside other requests of the lane */
+            private final boolean concurrent;
+
+            /**
+             * Creates a queued request.
+             *
+             * @param work The work to run
+             * @param concurrent Whether the request may run alongside other requests
+             */
+            Task(Runnable work, boolean concurrent) {
+                this.work = work;
+                this.concurrent = concurrent;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    runSafely(work);
+                } finally {
+                    finished(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Names the platform worker threads and marks them as daemon threads.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        /** Counter used to number the worker threads */
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "request-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
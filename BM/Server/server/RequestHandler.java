@@ -0,0 +1,18 @@
+package server;
+
+import entities.Message;
+
+/**
+ * Handles one kind of request. Registered in a {@link HandlerRegistry} under its {@link OpCode}.
+ */
+@FunctionalInterface
+public interface RequestHandler {
+
+    /**
+     * Handles a request and sends the response to the client.
+     *
+     * @param message The request
+     * @param client The connection the request came from
+     */
+    void handle(Message<?> message, ClientConnection client);
+}
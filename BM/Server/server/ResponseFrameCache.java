@@ -0,0 +1,106 @@
+package server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import entities.Message;
+import entities.MessageCodec;
+
+/**
+ * Encoded bodies of the read-only responses many clients ask for, such as the
+ * restaurant list and the menus. Each entry remembers the data it was encoded from,
+ * by identity, and the data version: the reference data cache replaces its lists
+ * whenever the data changes, so an entry is used only while it still describes the
+ * current data, and is encoded again on the first request after a change.
+ * <p>
+ * Only clients using the binary codec are served from here; a body encoded for one
+ * request is valid for every other request once the request id header is put in front.
+ */
+public class ResponseFrameCache {
+
+    /** The encoded bodies, by response key */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Number of responses sent from an encoded body */
+    private final LongAdder hits = new LongAdder();
+
+    /** Number of responses that had to be encoded */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the encoded body of a response, encoding it if the cached body was
+     * encoded from other data.
+     *
+     * @param key The response key, for example the message name and the restaurant ID
+     * @param source The data the response is built from, compared by identity
+     * @param version The version of the data, or 0 if it has none
+     * @param response The response to encode on a miss
+     * @return The encoded body
+     * @throws IOException if the response cannot be encoded
+     */
+    public byte[] body(String key, Object source, long version, Message<?> response) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.source == source && entry.version == version) {
+            hits.increment();
+            return entry.body;
+        }
+        misses.increment();
+        byte[] body = MessageCodec.encodeBody(response.getMessage(), response.getType());
+        entries.put(key, new Entry(source, version, body));
+        return body;
+    }
+
+    /**
+     * Drops every encoded body.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Formats the number of entries, their size, hits and misses.
+     *
+     * @return One line of statistics
+     */
+    public String formatStatistics() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            bytes += entry.body.length;
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        return String.format("Response frame cache: size=%d bytes=%d hits=%d misses=%d hitRate=%.1f%%",
+                entries.size(), bytes, hitCount, missCount,
+                hitCount + missCount == 0 ? 0.0 : hitCount * 100.0 / (hitCount + missCount));
+    }
+
+    /**
+     * An encoded body with the data it was encoded from.
+     */
+    private static final class Entry {
+
+        /** The data the body was encoded from */
+        private final Object source;
+
+        /** The version of the data */
+        private final long version;
+
+        /** The encoded body */
+        private final byte[] body;
+
+        /**
+         * Creates an entry.
+         *
+         * @param source The data the body was encoded from
+         * @param version The version of the data
+         * @param body The encoded body
+         */
+        Entry(Object source, long version, byte[] body) {
+            this.source = source;
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
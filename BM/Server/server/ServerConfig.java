@@ -0,0 +1,189 @@
+package server;
+
+/**
+ * Central place for the server tuning parameters.
+ * Every value can be overridden at startup with a JVM system property,
+ * for example {@code -Dbiteme.db.pool.max=32}.
+ */
+public final class ServerConfig {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ServerConfig() {
+    }
+
+    /** Number of database connections kept open at all times */
+    public static final int DB_POOL_MIN = intProperty("biteme.db.pool.min", 2);
+
+    /** Maximum number of open database connections */
+    public static final int DB_POOL_MAX = intProperty("biteme.db.pool.max", 16);
+
+    /** Maximum time in milliseconds a request waits for a free database connection */
+    public static final long DB_POOL_WAIT_TIMEOUT_MS = longProperty("biteme.db.pool.waitTimeoutMs", 5000);
+
+    /** Idle time in milliseconds after which surplus database connections are closed */
+    public static final long DB_POOL_IDLE_TIMEOUT_MS = longProperty("biteme.db.pool.idleTimeoutMs", 300000);
+
+    /** Borrow time in milliseconds after which a connection is reported as a possible leak */
+    public static final long DB_POOL_LEAK_THRESHOLD_MS = longProperty("biteme.db.pool.leakThresholdMs", 30000);
+
+    /** Whether the stack trace of every borrow is kept, so a leak warning shows where the connection was taken */
+    public static final boolean DB_POOL_LEAK_TRACE = booleanProperty("biteme.db.pool.leakTrace", false);
+
+    /** Whether the server applies the pending schema migrations at startup */
+    public static final boolean DB_MIGRATE = booleanProperty("biteme.db.migrate", true);
+
+    /** What to do when a hot query would fully scan a large table: "off", "warn" or "fail" (refuse to start) */
+    public static final String DB_PLAN_CHECK = stringProperty("biteme.db.planCheck", "warn");
+
+    /** How client requests are executed: "virtual" (one virtual thread per request) or "platform" */
+    public static final String DISPATCH_MODE = stringProperty("biteme.dispatch.mode", RequestDispatcher.MODE_VIRTUAL);
+
+    /** Number of worker threads when requests run on platform threads */
+    public static final int DISPATCH_THREADS = intProperty("biteme.dispatch.threads",
+            Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+
+    /** Maximum number of pipelined read-only requests of one client connection running at once */
+    public static final int PIPELINE_WINDOW = intProperty("biteme.pipeline.window", 8);
+
+    /** Maximum number of requests of one client connection queued or running before it is told to back off */
+    public static final int MAX_QUEUED_PER_CONNECTION = intProperty("biteme.admission.maxQueuedPerConnection", 32);
+
+    /** Maximum number of requests queued or running in the whole server */
+    public static final int MAX_IN_FLIGHT_REQUESTS = intProperty("biteme.admission.maxInFlight", 256);
+
+    /** Number of requests in flight above which sheddable requests (reports) are refused */
+    public static final int SHED_SHEDDABLE_AT = intProperty("biteme.admission.shedSheddableAt", MAX_IN_FLIGHT_REQUESTS / 2);
+
+    /** Delay in milliseconds a refused client is asked to wait before retrying; sheddable requests wait four times longer */
+    public static final long BUSY_RETRY_AFTER_MS = longProperty("biteme.admission.retryAfterMs", 250);
+
+    /** Largest number of orders the server returns in one page */
+    public static final int MAX_ORDER_PAGE_SIZE = intProperty("biteme.orders.maxPageSize", 100);
+
+    /** Whether orders placed at the same moment are stored together in one transaction */
+    public static final boolean ORDER_GROUP_COMMIT = booleanProperty("biteme.orders.groupCommit", true);
+
+    /** Time in microseconds the order ingestor waits for more orders to join a batch */
+    public static final long ORDER_GROUP_WINDOW_MICROS = longProperty("biteme.orders.groupWindowMicros", 2000);
+
+    /** Largest number of orders stored in one transaction by the order ingestor */
+    public static final int ORDER_GROUP_MAX_ORDERS = intProperty("biteme.orders.groupMaxOrders", 64);
+
+    /** Whether order status changes are acknowledged once journaled and written to the database in batches */
+    public static final boolean STATUS_WRITE_BEHIND = booleanProperty("biteme.orders.statusWriteBehind", false);
+
+    /** File journaling the order status changes not yet written to the database */
+    public static final String STATUS_JOURNAL_PATH = stringProperty("biteme.orders.statusJournal", "order-status.journal");
+
+    /** Time in milliseconds between two writes of journaled order status changes to the database */
+    public static final long STATUS_FLUSH_INTERVAL_MS = longProperty("biteme.orders.statusFlushIntervalMs", 200);
+
+    /** Number of journaled order status changes that triggers a write before the interval elapses */
+    public static final int STATUS_FLUSH_BATCH = intProperty("biteme.orders.statusFlushBatch", 256);
+
+    /** Number of threads computing the branches of a multi-branch report side by side */
+    public static final int REPORT_THREADS = intProperty("biteme.reports.threads", 4);
+
+    /** Whether the income, performance and quarterly reports read the daily rollups instead of every order */
+    public static final boolean REPORT_ROLLUPS = booleanProperty("biteme.reports.rollups", true);
+
+    /** Whether the reports are computed from an in-memory copy of the delivered orders, loaded at startup */
+    public static final boolean REPORT_STORE = booleanProperty("biteme.reports.inMemory", true);
+
+    /** Time in seconds cached restaurants, menus and managers are used before they are read again, 0 for no expiry */
+    public static final long REFERENCE_CACHE_TTL_SECONDS = longProperty("biteme.cache.referenceTtlSeconds", 600);
+
+    /** Estimated memory in bytes kept by cached report results, 0 to disable the report cache */
+    public static final long REPORT_CACHE_MAX_BYTES = longProperty("biteme.cache.reportMaxBytes", 16 * 1024 * 1024);
+
+    /** Time in seconds a resolved client host name is reused before it is looked up again */
+    public static final long HOSTNAME_CACHE_TTL_SECONDS = longProperty("biteme.sessions.hostNameTtlSeconds", 600);
+
+    /** Number of threads resolving client host names in the background */
+    public static final int HOSTNAME_RESOLVER_THREADS = intProperty("biteme.sessions.resolverThreads", 2);
+
+    /** Interval in seconds between request statistics logs on the server console, 0 to disable */
+    public static final long STATISTICS_LOG_INTERVAL_SECONDS = longProperty("biteme.statistics.logIntervalSeconds", 300);
+
+    /** Maximum number of order changes waiting to be pushed to one terminal before its connection is closed */
+    public static final int ORDER_EVENT_QUEUE_LIMIT = intProperty("biteme.orders.eventQueueLimit", 256);
+
+    /** Number of threads pushing order changes to the subscribed terminals */
+    public static final int ORDER_EVENT_SENDER_THREADS = intProperty("biteme.orders.eventSenderThreads", 4);
+
+    /** Whether clients may switch to the binary message codec instead of Java serialization */
+    public static final boolean BINARY_CODEC = booleanProperty("biteme.codec.binary", true);
+
+    /** Whether the encoded restaurant list and menus are reused for every binary codec client until the data changes */
+    public static final boolean RESPONSE_FRAME_CACHE = booleanProperty("biteme.codec.frameCache", true);
+
+    /** Transport used to accept clients: "ocsf" (one thread per client) or "nio" (event loops) */
+    public static final String TRANSPORT = stringProperty("biteme.transport", NioServer.TRANSPORT_OCSF);
+
+    /** Number of event loop threads of the NIO transport */
+    public static final int NIO_EVENT_LOOPS = intProperty("biteme.nio.eventLoops",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    /** Size in bytes of the pooled read buffers of the NIO transport */
+    public static final int NIO_BUFFER_SIZE = intProperty("biteme.nio.bufferSize", 16 * 1024);
+
+    /** Maximum number of idle read buffers kept by the NIO transport */
+    public static final int NIO_BUFFER_POOL_SIZE = intProperty("biteme.nio.bufferPoolSize", 256);
+
+    /** Largest frame in bytes the NIO transport accepts from a client */
+    public static final int NIO_MAX_FRAME_BYTES = intProperty("biteme.nio.maxFrameBytes", 16 * 1024 * 1024);
+
+    /**
+     * Reads an integer system property.
+     *
+     * @param name The property name
+     * @param defaultValue The value used when the property is missing or invalid
+     * @return The property value
+     */
+    static int intProperty(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a long system property.
+     *
+     * @param name The property name
+     * @param defaultValue The value used when the property is missing or invalid
+     * @return The property value
+     */
+    static long longProperty(String name, long defaultValue) {
+        try {
+            return Long.parseLong(System.getProperty(name, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a string system property.
+     *
+     * @param name The property name
+     * @param defaultValue The value used when the property is missing
+     * @return The property value
+     */
+    static String stringProperty(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue).trim();
+    }
+
+    /**
+     * Reads a boolean system property.
+     *
+     * @param name The property name
+     * @param defaultValue The value used when the property is missing
+     * @return The property value
+     */
+    static boolean booleanProperty(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(System.getProperty(name, String.valueOf(defaultValue)).trim());
+    }
+}
@@ -0,0 +1,118 @@
+package server;
+
+import entities.ConnectedClients;
+import entities.User.UserRole;
+
+/**
+ * A logged-in user together with the connection it uses.
+ * Sessions are created by {@link SessionRegistry} on login and dropped on logout
+ * or when the connection closes.
+ */
+public final class Session {
+
+    /** The id of the logged-in user */
+    private final String userId;
+
+    /** The role of the logged-in user */
+    private final UserRole role;
+
+    /** The connection the user logged in on */
+    private final ClientConnection connection;
+
+    /** The IP address of the client */
+    private final String ip;
+
+    /** The host name of the client; the IP address until reverse DNS answers */
+    private volatile String hostName;
+
+    /** Time the user logged in, in milliseconds */
+    private final long loginTime = System.currentTimeMillis();
+
+    /**
+     * Creates a session.
+     *
+     * @param userId The id of the logged-in user
+     * @param role The role of the logged-in user
+     * @param connection The connection the user logged in on
+     * @param ip The IP address of the client
+     */
+    Session(String userId, UserRole role, ClientConnection connection, String ip) {
+        this.userId = userId;
+        this.role = role;
+        this.connection = connection;
+        this.ip = ip;
+        this.hostName = ip;
+    }
+
+    /**
+     * Returns the id of the logged-in user.
+     *
+     * @return The user id
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the role of the logged-in user.
+     *
+     * @return The user role
+     */
+    public UserRole getRole() {
+        return role;
+    }
+
+    /**
+     * Returns the connection the user logged in on.
+     *
+     * @return The connection
+     */
+    public ClientConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the IP address of the client.
+     *
+     * @return The IP address
+     */
+    public String getIp() {
+        return ip;
+    }
+
+    /**
+     * Returns the host name of the client, or its IP address if the name is not resolved yet.
+     *
+     * @return The host name
+     */
+    public String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * Sets the resolved host name of the client.
+     *
+     * @param hostName The host name
+     */
+    void setHostName(String hostName) {
+        this.hostName = hostName;
+    }
+
+    /**
+     * Returns the time the user logged in.
+     *
+     * @return The login time in milliseconds since the epoch
+     */
+    public long getLoginTime() {
+        return loginTime;
+    }
+
+    /**
+     * Converts the session to the entity shown in the server window.
+     *
+     * @return The connected client entry
+     */
+    public ConnectedClients toConnectedClient() {
+        return new ConnectedClients(ip, hostName, userId, role);
+    }
+}
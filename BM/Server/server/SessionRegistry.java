@@ -0,0 +1,237 @@
+package server;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import entities.ConnectedClients;
+import entities.User.UserRole;
+
+/**
+ * The users currently logged in to the server, indexed by user id and connection so a
+ * logout or a closed connection finds its session in constant time.
+ * Lookups never block; updates are serialized so the indexes always agree.
+ * Client host names are resolved by reverse DNS on background threads and cached while
+ * a session of the same address is logged in, so logging in never waits for DNS: a
+ * session shows its IP address until its name is known.
+ */
+public class SessionRegistry {
+
+    /** Sessions by user id */
+    private final Map<String, Session> byUser = new ConcurrentHashMap<>();
+
+    /** Sessions by connection */
+    private final Map<ClientConnection, Session> byConnection = new ConcurrentHashMap<>();
+
+    /** Resolved host names by IP address, of the addresses with a logged-in session */
+    private final Map<String, CachedHostName> hostNames = new ConcurrentHashMap<>();
+
+    /** Time in milliseconds a resolved host name is reused */
+    private final long hostNameTtlMillis;
+
+    /** Runs the reverse DNS lookups */
+    private final ExecutorService resolver;
+
+    /** Called whenever the sessions or their host names change */
+    private final Runnable onChange;
+
+    /**
+     * Creates an empty registry.
+     *
+     * @param hostNameTtlMillis Time in milliseconds a resolved host name is reused
+     * @param resolverThreads Number of threads running reverse DNS lookups
+     * @param onChange Called whenever the sessions or their host names change, may be null
+     */
+    public SessionRegistry(long hostNameTtlMillis, int resolverThreads, Runnable onChange) {
+        this.hostNameTtlMillis = hostNameTtlMillis;
+        this.onChange = onChange;
+        AtomicInteger counter = new AtomicInteger();
+        resolver = Executors.newFixedThreadPool(Math.max(1, resolverThreads), r -> {
+            Thread thread = new Thread(r, "hostname-resolver-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a user that logged in on a connection.
+     * A previous session of the same user or on the same connection is replaced.
+     *
+     * @param userId The id of the user
+     * @param role The role of the user
+     * @param connection The connection the user logged in on
+     * @return The new session
+     */
+    public Session login(String userId, UserRole role, ClientConnection connection) {
+        InetAddress address = connection.getInetAddress();
+        String ip = address != null ? address.getHostAddress() : "unknown";
+        Session session = new Session(userId, role, connection, ip);
+        synchronized (this) {
+            // Indexed first, so the host name of an address logging in again stays cached
+            Session previousOfUser = byUser.put(userId, session);
+            Session previousOnConnection = byConnection.put(connection, session);
+            unindex(previousOfUser);
+            unindex(previousOnConnection);
+        }
+        resolveHostName(session, address);
+        changed();
+        return session;
+    }
+
+    /**
+     * Removes the session of a user that logged out.
+     *
+     * @param userId The id of the user
+     * @return The removed session, or null if the user had none
+     */
+    public Session logout(String userId) {
+        Session session;
+        synchronized (this) {
+            session = byUser.get(userId);
+            unindex(session);
+        }
+        if (session != null) {
+            changed();
+        }
+        return session;
+    }
+
+    /**
+     * Removes the session of a connection that closed.
+     *
+     * @param connection The closed connection
+     * @return The removed session, or null if no user was logged in on the connection
+     */
+    public Session connectionClosed(ClientConnection connection) {
+        Session session;
+        synchronized (this) {
+            session = byConnection.get(connection);
+            unindex(session);
+        }
+        if (session != null) {
+            changed();
+        }
+        return session;
+    }
+
+    /**
+     * Removes a session from every index, and forgets the host name of its address once
+     * no other session uses it. Must be called while holding the registry lock.
+     *
+     * @param session The session to remove, may be null
+     */
+    private void unindex(Session session) {
+        if (session == null) {
+            return;
+        }
+        byUser.remove(session.getUserId(), session);
+        byConnection.remove(session.getConnection(), session);
+        for (Session other : byConnection.values()) {
+            if (other.getIp().equals(session.getIp())) {
+                return;
+            }
+        }
+        hostNames.remove(session.getIp());
+    }
+
+    /**
+     * Returns the number of logged-in users.
+     *
+     * @return The number of sessions
+     */
+    public int size() {
+        return byUser.size();
+    }
+
+    /**
+     * Returns the logged-in users as shown in the server window.
+     *
+     * @return A snapshot of the sessions
+     */
+    public List<ConnectedClients> getConnectedClients() {
+        List<ConnectedClients> clients = new ArrayList<>(byUser.size());
+        for (Session session : byUser.values()) {
+            clients.add(session.toConnectedClient());
+        }
+        return clients;
+    }
+
+    /**
+     * Stops the host name resolver threads.
+     */
+    public void shutdown() {
+        resolver.shutdownNow();
+    }
+
+    /**
+     * Fills in the host name of a session from the cache, or looks it up in the background.
+     *
+     * @param session The new session
+     * @param address The address of the client, may be null
+     */
+    private void resolveHostName(Session session, InetAddress address) {
+        if (address == null) {
+            return;
+        }
+        CachedHostName cached = hostNames.get(session.getIp());
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            session.setHostName(cached.hostName);
+            return;
+        }
+        try {
+            resolver.execute(() -> {
+                String hostName = address.getHostName();
+                synchronized (this) {
+                    if (byConnection.get(session.getConnection()) == session) {
+                        hostNames.put(session.getIp(),
+                                new CachedHostName(hostName, System.currentTimeMillis() + hostNameTtlMillis));
+                    }
+                }
+                session.setHostName(hostName);
+                if (byUser.get(session.getUserId()) == session) {
+                    changed();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the session keeps showing its IP address
+        }
+    }
+
+    /**
+     * Notifies the change listener.
+     */
+    private void changed() {
+        if (onChange != null) {
+            onChange.run();
+        }
+    }
+
+    /**
+     * A resolved host name with its expiry time.
+     */
+    private static final class CachedHostName {
+
+        /** The host name */
+        private final String hostName;
+
+        /** Time in milliseconds after which the name is looked up again */
+        private final long expiresAt;
+
+        /**
+         * Creates a cache entry.
+         *
+         * @param hostName The host name
+         * @param expiresAt Time in milliseconds after which the name is looked up again
+         */
+        CachedHostName(String hostName, long expiresAt) {
+            this.hostName = hostName;
+            this.expiresAt = expiresAt;
+        }
+    }
+}